@@ -313,14 +313,9 @@ INSERT INTO [Notification] (notTitle, notDescription, FK_Notification_Account) V
 (N'Thông báo hệ thống', N'Hệ thống sẽ bảo trì vào lúc 23:00 ngày 30/06. Mong quý khách thông cảm.', 1);
 
 
--- Ví dụ có các customerID là 101, 102, 103
-INSERT INTO CustomerNotification (customerID, notID, isRead) VALUES
-(11, 1, 0), -- Khách 101 được gửi thông báo tạm đóng cửa
-(6, 2, 1), -- Khách 101 đã đọc voucher mới
-(8, 2, 0), -- Khách 102 nhận voucher mới
-(9, 4, 0), -- Khách 102 nhận thông báo hệ thống
-(10, 1, 0), -- Khách 103 nhận thông báo tạm đóng cửa
-(6, 3, 0); -- Khách 103 đã đọc giờ phục vụ thay đổi
+-- Thông báo gửi cho mọi khách hàng; chỉ lưu những thông báo đã đọc
+INSERT INTO NotificationRead (customerID, notID) VALUES
+(6, 2); -- Khách 6 đã đọc voucher mới
 
 
 
@@ -9,17 +9,17 @@ import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
-import dao.OrderDAO;
+import dao.DailyRollupDAO;
 import java.math.BigDecimal;
 
 @WebServlet(name = "AdminDashboardServlet", urlPatterns = {"/admin/dashboard"})
 public class AdminServlet extends HttpServlet {
 
-    private OrderDAO orderDAO;
+    private DailyRollupDAO rollupDAO;
 
     @Override
     public void init() throws ServletException {
-        orderDAO = new OrderDAO();
+        rollupDAO = new DailyRollupDAO();
     }
 
     @Override
@@ -29,7 +29,7 @@ public class AdminServlet extends HttpServlet {
         // Year selection from request
         String yearParam = request.getParameter("year");
         int selectedYear;
-        List<Integer> availableYears = orderDAO.getAvailableOrderYears(); // get years with orders
+        List<Integer> availableYears = rollupDAO.getAvailableYears(); // get years with orders
 
         if (yearParam != null) {
             selectedYear = Integer.parseInt(yearParam);
@@ -40,7 +40,7 @@ public class AdminServlet extends HttpServlet {
         }
 
         // Get income data (which now includes both positive calculated income and negative refunds)
-        Map<Integer, Double> monthlyIncomeMap = orderDAO.getMonthlyIncomeMap(selectedYear);
+        Map<Integer, Double> monthlyIncomeMap = rollupDAO.getMonthlyIncome(selectedYear);
         
         // Set attributes for the JSP
         request.setAttribute("availableYears", availableYears);
@@ -6,7 +6,6 @@ package controller.admin;
 
 //import controller.staff.*;
 import dao.AccountDAO;
-import dao.CategoryDAO;
 import dao.DishDAO;
 import dao.OrderDAO;
 import java.io.IOException;
@@ -16,10 +15,12 @@ import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import java.math.BigDecimal;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import model.Category;
 import model.Dish;
+import utils.catalog.MenuCatalog;
 
 /**
  *
@@ -66,11 +67,8 @@ public class CreateOrderAdminServlet extends HttpServlet {
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-        DishDAO dishDAO = new DishDAO();
-        List<Dish> dishes = dishDAO.getAllDishes();
-
-        CategoryDAO categoryDAO = new CategoryDAO();
-        List<Category> categories = categoryDAO.getAllCategories();
+        List<Dish> dishes = MenuCatalog.getAllDishes();
+        List<Category> categories = MenuCatalog.getCategories();
 
         request.setAttribute("dishes", dishes);
         request.setAttribute("categories", categories);
@@ -80,7 +78,7 @@ public class CreateOrderAdminServlet extends HttpServlet {
 
     private void loadAndReturn(HttpServletRequest request, HttpServletResponse response,
             String message, DishDAO dishDAO) throws ServletException, IOException {
-        List<Dish> dishes = dishDAO.getAllDishes();
+        List<Dish> dishes = MenuCatalog.getAllDishes();
         request.setAttribute("dishes", dishes);
         request.setAttribute("error", message);
         request.getRequestDispatcher("/WEB-INF/views/admin/order_create.jsp").forward(request, response);
@@ -100,26 +98,9 @@ public class CreateOrderAdminServlet extends HttpServlet {
         OrderDAO orderDAO = new OrderDAO();
         DishDAO dishDAO = new DishDAO();
 
-        // Bước 1: Tạo customer ẩn danh
-        int customerID = accountDAO.insertAnonymousCustomerAndReturnCustomerID(customerName);
-        if (customerID == -1) {
-            message = "Failed to create customer.";
-            loadAndReturn(request, response, message, dishDAO);
-            return;
-        }
-
-        // Bước 2: Tạo order
-        int orderID = orderDAO.insertOrder(customerID);
-        if (orderID == -1) {
-            message = "Failed to create order.";
-            loadAndReturn(request, response, message, dishDAO);
-            return;
-        }
-
-        // Bước 3: Xử lý các món ăn và tính amount
-        List<Dish> dishes = dishDAO.getAllDishes();
-        boolean atLeastOneDish = false;
-        BigDecimal amount = BigDecimal.ZERO;
+        // Bước 1: Đọc các món và kiểm tra stock
+        List<Dish> dishes = MenuCatalog.getAllDishes();
+        Map<Dish, Integer> lines = new LinkedHashMap<>();
 
         for (Dish dish : dishes) {
             String quantityParam = request.getParameter("quantity_" + dish.getDishID());
@@ -133,29 +114,7 @@ public class CreateOrderAdminServlet extends HttpServlet {
                             loadAndReturn(request, response, message, dishDAO);
                             return;
                         }
-
-                        // Tính tiền
-                        BigDecimal price = dish.getTotalPrice();
-                        BigDecimal lineTotal = price.multiply(BigDecimal.valueOf(quantity));
-                        amount = amount.add(lineTotal);
-
-                        // Thêm vào OrderDetail
-                        boolean success = orderDAO.insertOrderDetail(orderID, dish.getDishID(), quantity);
-                        if (!success) {
-                            message = "Failed to insert order detail for dish: " + dish.getDishName();
-                            loadAndReturn(request, response, message, dishDAO);
-                            return;
-                        }
-
-                        // ✅ Trừ stock
-                        boolean stockUpdated = dishDAO.updateStockAfterOrder(dish.getDishID(), quantity);
-                        if (!stockUpdated) {
-                            message = "Failed to update stock for dish: " + dish.getDishName();
-                            loadAndReturn(request, response, message, dishDAO);
-                            return;
-                        }
-
-                        atLeastOneDish = true;
+                        lines.put(dish, quantity);
                     }
                 } catch (NumberFormatException e) {
                     message = "Invalid quantity format.";
@@ -165,14 +124,27 @@ public class CreateOrderAdminServlet extends HttpServlet {
             }
         }
 
-        if (!atLeastOneDish) {
+        if (lines.isEmpty()) {
             message = "Please enter quantity for at least one dish.";
             loadAndReturn(request, response, message, dishDAO);
             return;
         }
 
-        // Cập nhật tổng tiền
-        orderDAO.updateOrderAmount(orderID, amount);
+        // Bước 2: Tạo customer ẩn danh
+        int customerID = accountDAO.insertAnonymousCustomerAndReturnCustomerID(customerName);
+        if (customerID == -1) {
+            message = "Failed to create customer.";
+            loadAndReturn(request, response, message, dishDAO);
+            return;
+        }
+
+        // Bước 3: Tạo order, các món, trừ stock và tổng tiền trong một transaction
+        int orderID = orderDAO.createCounterOrder(customerID, lines);
+        if (orderID == -1) {
+            message = "Failed to create order. Some dishes may have run out.";
+            loadAndReturn(request, response, message, dishDAO);
+            return;
+        }
 
         // Thành công
         request.setAttribute("success", "Order created successfully!");
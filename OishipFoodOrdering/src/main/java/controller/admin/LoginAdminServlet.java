@@ -1,13 +1,15 @@
 package controller.admin;
 
+import controller.auth.LoginThrottleFilter;
+import dao.AccountDAO;
 import dao.AdminDAO;
-import dao.SecurityDAO;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.*;
 import model.Admin;
 
 import java.io.IOException;
+import utils.security.PasswordHasher;
 
 @WebServlet(name = "LoginAdminServlet", urlPatterns = { "/admin/login" })
 public class LoginAdminServlet extends HttpServlet {
@@ -48,7 +50,14 @@ public class LoginAdminServlet extends HttpServlet {
             return;
         }
 
-        if (!SecurityDAO.checkPassword(password, admin.getPassword())) {
+        boolean passwordMatches;
+        try {
+            passwordMatches = PasswordHasher.tryVerify(password, admin.getPassword());
+        } catch (PasswordHasher.BusyException e) {
+            LoginThrottleFilter.tooManyRequests(request, response, 5, "/WEB-INF/views/admin/login_admin.jsp");
+            return;
+        }
+        if (!passwordMatches) {
             System.out.println(
                     "DEBUG: Password check failed for email=" + email + ", hashed password=" + admin.getPassword());
             System.out.println("Admin login failed: Invalid password for email=" + email);
@@ -57,6 +66,8 @@ public class LoginAdminServlet extends HttpServlet {
             return;
         }
 
+        AccountDAO.rehashIfOutdated(admin.getAdminId(), admin.getPassword(), password);
+
         // Login successful
         HttpSession session = request.getSession(true);
         session.setAttribute("adminId", admin.getAdminId());
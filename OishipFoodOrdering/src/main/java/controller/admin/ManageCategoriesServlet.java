@@ -9,6 +9,7 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.util.List;
 import model.Category;
+import utils.catalog.MenuCatalog;
 
 @WebServlet(urlPatterns = {"/admin/manage-categories"})
 public class ManageCategoriesServlet extends HttpServlet {
@@ -28,6 +29,9 @@ public class ManageCategoriesServlet extends HttpServlet {
             switch (action) {
                 case "delete":
                     boolean deleted = dao.deleteCategoryById(id);
+                    if (deleted) {
+                        MenuCatalog.invalidate();
+                    }
                     response.sendRedirect("manage-categories?success=" + (deleted ? "delete" : "false"));
                     return;
             }
@@ -62,6 +66,9 @@ public class ManageCategoriesServlet extends HttpServlet {
             status = dao.addCategory(newCat) ? "add" : "false";
         }
 
+        if (!"false".equals(status)) {
+            MenuCatalog.invalidate();
+        }
         response.sendRedirect("manage-categories?success=" + status);
     }
 }
@@ -8,6 +8,8 @@ import model.Dish;
 import java.util.List;
 import jakarta.servlet.annotation.WebServlet;
 import utils.CloudinaryConfig;
+import utils.catalog.MenuCatalog;
+import utils.stock.StockCounter;
 import java.io.InputStream;
 import java.math.BigDecimal;
 import java.nio.file.Paths;
@@ -20,6 +22,7 @@ import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.Part;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Comparator;
 
 @WebServlet(urlPatterns = {"/admin/manage-dishes"})
@@ -41,11 +44,16 @@ public class ManageDishesServlet extends HttpServlet {
 
             if ("delete".equals(action)) {
                 boolean deleted = dishDAO.deleteDishById(dishID);
+                if (deleted) {
+                    MenuCatalog.invalidate();
+                    StockCounter.reconcile(Collections.singletonList(dishID));
+                }
                 response.sendRedirect("manage-dishes?success=" + (deleted ? "delete" : "false"));
                 return;
             }
         }
 
+        StockCounter.flush(); // show stock with queued checkout decrements applied
         List<Dish> dishes = dishDAO.getAllDishes();
         dishes.sort(Comparator.comparing(d -> d.getCategory().getCatName())); // Sort dishes by category name
 
@@ -123,7 +131,12 @@ public class ManageDishesServlet extends HttpServlet {
                 }
 
                 Dish updatedDish = new Dish(dishID, name, opCost, interest, imageUrl, description, stock, isAvailable, categoryID);
+                StockCounter.flush();
                 boolean updated = dishDAO.updateDish(updatedDish);
+                if (updated) {
+                    MenuCatalog.invalidate();
+                    StockCounter.reconcile(Collections.singletonList(dishID)); // staff set a new stock level
+                }
                 response.sendRedirect("manage-dishes?success=" + (updated ? "edit" : "false"));
                 return;
 
@@ -135,6 +148,9 @@ public class ManageDishesServlet extends HttpServlet {
         } else {
             Dish newDish = new Dish(name, opCost, interest, imageUrl, description, stock, isAvailable, categoryID);
             boolean added = dishDAO.addDish(newDish);
+            if (added) {
+                MenuCatalog.invalidate();
+            }
             response.sendRedirect("manage-dishes?success=" + (added ? "add" : "false"));
             return;
         }
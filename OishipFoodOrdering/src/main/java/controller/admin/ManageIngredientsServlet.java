@@ -9,6 +9,7 @@ import jakarta.servlet.http.*;
 import model.Dish;
 import model.DishIngredient;
 import model.Ingredient;
+import utils.catalog.MenuCatalog;
 
 import java.io.IOException;
 import java.math.BigDecimal;
@@ -42,6 +43,10 @@ public class ManageIngredientsServlet extends HttpServlet {
             e.printStackTrace();
             response.sendRedirect("manage-ingredients?success=false");
             return;
+        } finally {
+            if ("delete".equals(action) || "deleteDishIngredient".equals(action)) {
+                MenuCatalog.invalidate(); // ingredient costs feed dish prices
+            }
         }
 
         List<Ingredient> ingredients = ingredientDAO.getAllIngredients();
@@ -86,6 +91,8 @@ public class ManageIngredientsServlet extends HttpServlet {
         } catch (Exception e) {
             e.printStackTrace();
             response.sendRedirect("manage-ingredients?success=false");
+        } finally {
+            MenuCatalog.invalidate(); // ingredient costs feed dish prices
         }
     }
 
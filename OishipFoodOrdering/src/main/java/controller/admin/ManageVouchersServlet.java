@@ -11,6 +11,7 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import utils.voucher.VoucherEngine;
 
 @WebServlet("/admin/manage-vouchers")
 public class ManageVouchersServlet extends HttpServlet {
@@ -63,12 +64,14 @@ public class ManageVouchersServlet extends HttpServlet {
                         start, end, usageLimit, 0, active, accountID);
 
                 voucherDAO.addVoucher(v);
+                VoucherEngine.invalidate();
                 response.sendRedirect("manage-vouchers?success=add");
                 return;
 
             } else if ("delete".equals(action)) {
                 int id = Integer.parseInt(request.getParameter("id"));
                 voucherDAO.deleteVoucher(id);
+                VoucherEngine.invalidate();
                 response.sendRedirect("manage-vouchers?success=delete");
                 return;
 
@@ -97,6 +100,7 @@ public class ManageVouchersServlet extends HttpServlet {
                         start, end, usageLimit, usedCount, active, accountID);
 
                 voucherDAO.updateVoucher(updatedVoucher);
+                VoucherEngine.invalidate();
                 response.sendRedirect("manage-vouchers?success=edit");
                 return;
             }
@@ -0,0 +1,30 @@
+package controller.admin;
+
+import com.google.gson.Gson;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import utils.db.ConnectionPool;
+
+/**
+ * Exposes connection pool saturation metrics as JSON for admins.
+ */
+@WebServlet(name = "PoolStatsServlet", urlPatterns = {"/admin/pool-stats"})
+public class PoolStatsServlet extends HttpServlet {
+
+    private final Gson gson = new Gson();
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        PrintWriter out = response.getWriter();
+        out.print(gson.toJson(ConnectionPool.getInstance().getStats()));
+        out.flush();
+    }
+}
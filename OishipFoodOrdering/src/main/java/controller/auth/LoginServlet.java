@@ -1,7 +1,6 @@
 package controller.auth;
 
 import dao.AccountDAO;
-import dao.SecurityDAO;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.*;
@@ -9,6 +8,7 @@ import model.Account;
 import model.Customer;
 import model.Staff;
 import java.io.IOException;
+import utils.security.PasswordHasher;
 
 @WebServlet(name = "LoginServlet", urlPatterns = {"/login"})
 public class LoginServlet extends HttpServlet {
@@ -52,7 +52,13 @@ public class LoginServlet extends HttpServlet {
         }
 
         AccountDAO accountDAO = new AccountDAO();
-        Object user = accountDAO.getAuthenticatedUser(email, password);
+        Object user;
+        try {
+            user = accountDAO.getAuthenticatedUser(email, password);
+        } catch (PasswordHasher.BusyException e) {
+            LoginThrottleFilter.tooManyRequests(request, response, 5, "/WEB-INF/views/auth/login.jsp");
+            return;
+        }
 
         if (user == null) {
             request.setAttribute("error", "Invalid email or password, please try again.");
@@ -0,0 +1,47 @@
+package controller.auth;
+
+import jakarta.servlet.*;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.*;
+import java.io.IOException;
+import utils.security.LoginThrottle;
+
+/**
+ * Turns away login attempts over the per-IP or per-email limit (see
+ * LoginThrottle) with 429 before the password is checked, so they cost no
+ * BCrypt time.
+ */
+@WebFilter(urlPatterns = {"/login", "/admin/login"})
+public class LoginThrottleFilter implements Filter {
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest req = (HttpServletRequest) request;
+        HttpServletResponse res = (HttpServletResponse) response;
+
+        if (!"POST".equalsIgnoreCase(req.getMethod())) {
+            chain.doFilter(request, response);
+            return;
+        }
+        long waitSeconds = LoginThrottle.tryAcquire(req.getRemoteAddr(), req.getParameter("email"));
+        if (waitSeconds == 0) {
+            chain.doFilter(request, response);
+            return;
+        }
+        boolean admin = req.getServletPath().startsWith("/admin");
+        tooManyRequests(req, res, waitSeconds,
+                admin ? "/WEB-INF/views/admin/login_admin.jsp" : "/WEB-INF/views/auth/login.jsp");
+    }
+
+    /**
+     * Answer 429 with the login page and an error asking to wait.
+     */
+    public static void tooManyRequests(HttpServletRequest request, HttpServletResponse response, long waitSeconds,
+            String loginPage) throws ServletException, IOException {
+        response.setStatus(429);
+        response.setHeader("Retry-After", String.valueOf(waitSeconds));
+        request.setAttribute("error", "Too many login attempts. Please try again in " + waitSeconds + " seconds.");
+        request.getRequestDispatcher(loginPage).forward(request, response);
+    }
+}
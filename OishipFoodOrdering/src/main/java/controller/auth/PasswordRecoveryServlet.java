@@ -1,7 +1,6 @@
 package controller.auth;
 
 import dao.AccountDAO;
-import dao.OTPDAO;
 import dao.SecurityDAO;
 import jakarta.mail.MessagingException;
 import jakarta.servlet.ServletException;
@@ -10,11 +9,10 @@ import jakarta.servlet.http.*;
 import model.Account;
 import model.Customer;
 import utils.EmailService;
+import utils.security.OtpStore;
+import utils.security.PasswordHasher;
 
 import java.io.IOException;
-import java.sql.Timestamp;
-import java.time.LocalDateTime;
-import model.OTP;
 
 @WebServlet(name = "PasswordRecoveryServlet", urlPatterns = {"/password-recovery"})
 public class PasswordRecoveryServlet extends HttpServlet {
@@ -74,15 +72,15 @@ public class PasswordRecoveryServlet extends HttpServlet {
 
         System.out.println("Found account for email: " + email + ", accountId: " + account.getAccountID() + ", role: " + account.getRole());
 
-        // Vô hiệu hóa OTP cũ
-        OTPDAO otpDAO = new OTPDAO();
-        otpDAO.markOtpAsUsed(email);
-        System.out.println("Marked old OTPs as used for email: " + email);
-
-        String[] otpData;
+        // Mã mới thay thế mã cũ (xem OtpStore)
+        Integer customerId = "customer".equals(account.getRole()) ? account.getAccountID() : null;
         try {
-            otpData = EmailService.generateAndSendVerificationByEmail(email, account.getFullName());
-            System.out.println("Generated OTP for email: " + email + ", plainOTP: " + otpData[0] + ", hashedOTP: " + otpData[1]);
+            if (EmailService.generateAndSendVerificationByEmail(email, account.getFullName(), customerId) == null) {
+                System.out.println("Could not store OTP for email: " + email);
+                response.sendRedirect("login?error=send_failed");
+                return;
+            }
+            System.out.println("Generated OTP for email: " + email);
         } catch (MessagingException e) {
             System.out.println("Failed to send OTP to: " + email);
             e.printStackTrace();
@@ -90,11 +88,6 @@ public class PasswordRecoveryServlet extends HttpServlet {
             return;
         }
 
-        String hashedOtp = otpData[1];
-        Timestamp createdAt = Timestamp.valueOf(LocalDateTime.now());
-        Timestamp expiresAt = Timestamp.valueOf(LocalDateTime.now().plusMinutes(5));
-        otpDAO.insertOtpTemp(email, hashedOtp, createdAt, expiresAt, account.getAccountID());
-
         session.setAttribute("reset_email", email);
         System.out.println("OTP sent and session set for email: " + email);
 
@@ -118,60 +111,57 @@ public class PasswordRecoveryServlet extends HttpServlet {
             return;
         }
 
-        OTPDAO otpDAO = new OTPDAO();
-        OTP otp = otpDAO.getLatestOtpByEmail(email);
-        if (otp == null) {
-            System.out.println("No valid OTP for email: " + email);
-            request.setAttribute("error", "The verification code is invalid or expired.");
+        // Form and account first, so a typo in the password does not use up the code
+        if (password == null || confirm == null || !password.equals(confirm)) {
+            System.out.println("Password mismatch for email: " + email);
+            request.setAttribute("error", "Passwords do not match.");
             request.setAttribute("email", email);
             request.getRequestDispatcher("/WEB-INF/views/auth/reset_password.jsp").forward(request, response);
             return;
         }
 
-        System.out.println("Retrieved OTP for email: " + email + ", hashedOtp: " + otp.getOtp());
-
-        if (otpDAO.isOtpExpired(otp.getOtpExpiresAt()) || otp.getIsUsed() == 1) {
-            System.out.println("OTP expired or used for email: " + email);
-            otpDAO.markOtpAsUsed(email);
-            session.invalidate();
-            request.setAttribute("error", "The verification code is invalid or expired.");
+        AccountDAO accountDAO = new AccountDAO();
+        Account account = accountDAO.findByEmail(email); // Use new method
+        if (account == null) {
+            System.out.println("Account not found for email: " + email);
+            request.setAttribute("error", "Account does not exist.");
             request.setAttribute("email", email);
             request.getRequestDispatcher("/WEB-INF/views/auth/reset_password.jsp").forward(request, response);
             return;
         }
 
-        if (otpCode == null || !SecurityDAO.checkOTP(otpCode.trim(), otp.getOtp())) {
-            System.out.println("Invalid OTP for email: " + email + ", inputOTP: " + otpCode + ", hashedInput: " + SecurityDAO.hashOTP(otpCode != null ? otpCode.trim() : "") + ", hashedOTP: " + otp.getOtp());
-            request.setAttribute("error", "The verification code is invalid or expired.");
+        // Before the code is checked, so a busy server does not use it up
+        String hashedPassword;
+        try {
+            hashedPassword = SecurityDAO.hashPassword(password);
+        } catch (PasswordHasher.BusyException e) {
+            request.setAttribute("error", "The server is busy right now. Please try again in a moment.");
             request.setAttribute("email", email);
             request.getRequestDispatcher("/WEB-INF/views/auth/reset_password.jsp").forward(request, response);
             return;
         }
 
-        if (password == null || confirm == null || !password.equals(confirm)) {
-            System.out.println("Password mismatch for email: " + email);
-            request.setAttribute("error", "Passwords do not match.");
+        OtpStore.Result result = OtpStore.verify(email, otpCode);
+        System.out.println("OTP check for email: " + email + ": " + result);
+        if (result == OtpStore.Result.EXPIRED || result == OtpStore.Result.TOO_MANY_ATTEMPTS) {
+            session.invalidate();
+            request.setAttribute("error", "The verification code is invalid or expired.");
             request.setAttribute("email", email);
             request.getRequestDispatcher("/WEB-INF/views/auth/reset_password.jsp").forward(request, response);
             return;
         }
 
-        AccountDAO accountDAO = new AccountDAO();
-        Account account = accountDAO.findByEmail(email); // Use new method
-        if (account == null) {
-            System.out.println("Account not found for email: " + email);
-            request.setAttribute("error", "Account does not exist.");
+        if (result != OtpStore.Result.VALID) {
+            request.setAttribute("error", "The verification code is invalid or expired.");
             request.setAttribute("email", email);
             request.getRequestDispatcher("/WEB-INF/views/auth/reset_password.jsp").forward(request, response);
             return;
         }
 
         System.out.println("Attempting password update for email: " + email + ", role: " + account.getRole());
-        String hashedPassword = SecurityDAO.hashPassword(password);
         boolean updated = accountDAO.updatePasswordByEmail(email, account.getRole(), hashedPassword);
 
         if (updated) {
-            otpDAO.markOtpAsUsed(email);
             System.out.println("Password updated for email: " + email);
             session.invalidate();
             response.sendRedirect("login?success=reset");
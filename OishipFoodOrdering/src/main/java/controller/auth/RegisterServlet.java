@@ -7,6 +7,7 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.*;
 import model.Customer;
+import utils.security.PasswordHasher;
 
 import java.io.IOException;
 
@@ -63,13 +64,22 @@ public class RegisterServlet extends HttpServlet {
             return;
         }
 
+        String hashedPassword;
+        try {
+            hashedPassword = SecurityDAO.hashPassword(password);
+        } catch (PasswordHasher.BusyException e) {
+            request.setAttribute("error", "The server is busy right now. Please try again in a moment.");
+            request.getRequestDispatcher("/WEB-INF/views/auth/register.jsp").forward(request, response);
+            return;
+        }
+
         // Store registration data in session
         HttpSession session = request.getSession(true);
         session.setAttribute("regFullName", fullName);
         session.setAttribute("regEmail", email);
         session.setAttribute("regPhone", phone);
         session.setAttribute("regAddress", address);
-        session.setAttribute("regHashedPassword", SecurityDAO.hashPassword(password));
+        session.setAttribute("regHashedPassword", hashedPassword);
         session.setAttribute("regRememberMe", rememberMe);
 
         System.out.println("doPost - Stored registration data in session, redirecting to verify");
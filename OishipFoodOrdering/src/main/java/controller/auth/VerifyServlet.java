@@ -1,13 +1,11 @@
 package controller.auth;
 
-import dao.OTPDAO;
-import dao.SecurityDAO;
 import jakarta.mail.MessagingException;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.*;
-import model.OTP;
 import utils.EmailService;
+import utils.security.OtpStore;
 
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -35,9 +33,13 @@ public class VerifyServlet extends HttpServlet {
                 try {
                     System.out.println("doGet - Sending OTP to: " + email);
                     String[] otpData = EmailService.generateAndSendVerificationByEmail(email, fullName);
-                    session.setAttribute("regHashedOTP", otpData[1]);
-                    session.setAttribute("codeExpiryTime", System.currentTimeMillis() + 5 * 60 * 1000);
-                    System.out.println("doGet - OTP sent to: " + email + ", Hashed OTP: " + otpData[1]);
+                    if (otpData == null) {
+                        request.setAttribute("error", "Could not create a verification code. Please try again.");
+                    } else {
+                        session.setAttribute("regHashedOTP", otpData[1]);
+                        session.setAttribute("codeExpiryTime", System.currentTimeMillis() + 5 * 60 * 1000);
+                        System.out.println("doGet - OTP sent to: " + email + ", Hashed OTP: " + otpData[1]);
+                    }
                 } catch (MessagingException e) {
                     System.out.println("doGet - Failed to send OTP to: " + email + ": " + e.getMessage());
                     e.printStackTrace();
@@ -80,34 +82,28 @@ public class VerifyServlet extends HttpServlet {
             return;
         }
 
-        OTPDAO otpDAO = new OTPDAO();
-        OTP otpRecord = otpDAO.getLatestOtpByEmail(email);
-        System.out.println("handleVerify - OTP Record: " + (otpRecord != null ? otpRecord.getOtp() : "null"));
+        OtpStore.Result result = OtpStore.verify(email, otpInput);
+        System.out.println("handleVerify - OTP check for email: " + email + ": " + result);
 
-        if (otpRecord == null) {
-            System.out.println("handleVerify - No valid OTP found for email: " + email);
-            request.setAttribute("error", "No valid OTP found. Please request a new code.");
+        if (result == OtpStore.Result.EXPIRED) {
+            request.setAttribute("error", "OTP has expired or already used. Please request a new code.");
             request.getRequestDispatcher("/WEB-INF/views/auth/verify.jsp").forward(request, response);
             return;
         }
 
-        if (otpDAO.isOtpExpired(otpRecord.getOtpExpiresAt()) || otpRecord.getIsUsed() == 1) {
-            System.out.println("handleVerify - OTP expired or used for email: " + email);
-            request.setAttribute("error", "OTP has expired or already used. Please request a new code.");
+        if (result == OtpStore.Result.TOO_MANY_ATTEMPTS) {
+            request.setAttribute("error", "Too many wrong codes. Please request a new code.");
             request.getRequestDispatcher("/WEB-INF/views/auth/verify.jsp").forward(request, response);
             return;
         }
 
-        System.out.println("handleVerify - OTP Input: " + otpInput + ", Hashed OTP from DB: " + otpRecord.getOtp());
-        if (otpInput == null || otpInput.trim().isEmpty() || !SecurityDAO.checkOTP(otpInput.trim(), otpRecord.getOtp())) {
-            System.out.println("handleVerify - OTP check failed. Input hashed: " + SecurityDAO.hashOTP(otpInput.trim()));
+        if (result != OtpStore.Result.VALID) {
             request.setAttribute("error", "Invalid OTP. Please try again.");
             request.getRequestDispatcher("/WEB-INF/views/auth/verify.jsp").forward(request, response);
             return;
         }
 
         System.out.println("handleVerify - OTP verified successfully for email: " + email);
-        otpDAO.markOtpAsUsed(email);
         response.sendRedirect("register?verified=true");
     }
 
@@ -142,6 +138,10 @@ public class VerifyServlet extends HttpServlet {
 
             // Generate and send new OTP
             String[] otpData = EmailService.generateAndSendVerificationByEmail(email, fullName);
+            if (otpData == null) {
+                out.print("{\"success\": false, \"error\": \"Could not create a verification code. Please try again.\"}");
+                return;
+            }
             
             // Update session with new OTP data
             session.setAttribute("regHashedOTP", otpData[1]);
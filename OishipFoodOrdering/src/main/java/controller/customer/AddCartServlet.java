@@ -1,8 +1,7 @@
 package controller.customer;
 
 import dao.CartDAO;
-import dao.DishDAO;
-import model.Cart;
+import model.CartUpsert;
 import model.Dish;
 
 import jakarta.servlet.ServletException;
@@ -12,6 +11,7 @@ import jakarta.servlet.http.*;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import utils.catalog.MenuCatalog;
 
 @WebServlet(name = "AddCart", urlPatterns = {"/customer/add-cart"})
 public class AddCartServlet extends HttpServlet {
@@ -58,10 +58,9 @@ public class AddCartServlet extends HttpServlet {
                 return;
             }
 
-            DishDAO dishDAO = new DishDAO();
-            Dish dish = dishDAO.getDishById(dishID);
-
-            if (dish == null || !dish.isIsAvailable()) {
+            // Menu cache only supplies the details shown back; the upsert checks availability
+            Dish dish = MenuCatalog.getDish(dishID);
+            if (dish == null) {
                 session.setAttribute("errorMessage", "Invalid or unavailable dish.");
                 response.sendRedirect(request.getContextPath() + "/customer");
                 return;
@@ -69,19 +68,18 @@ public class AddCartServlet extends HttpServlet {
 
             int customerID = (int) session.getAttribute("userId");
             CartDAO cartDAO = new CartDAO();
-            Cart existingItem = cartDAO.getCartItem(customerID, dishID);
-            int stock = dishDAO.getDishStockByDishId(dishID);
-            if (quantity > stock) {
-                session.setAttribute("errorMessage", "Only " + stock + " items in stock.");
-                response.sendRedirect(request.getContextPath() + "/customer");
-                return;
-            } else {
-                if (existingItem != null) {
-                    cartDAO.updateQuantity(customerID, dishID, existingItem.getQuantity() + quantity);
+            CartUpsert upsert = cartDAO.addOrIncrement(customerID, dishID, quantity);
+            if (!upsert.isAdded()) {
+                if (!upsert.isDishAvailable()) {
+                    session.setAttribute("errorMessage", "Invalid or unavailable dish.");
+                } else if (upsert.getQuantity() > 0) {
+                    session.setAttribute("errorMessage", "Only " + upsert.getAvailable() + " items in stock and "
+                            + upsert.getQuantity() + " are already in your cart.");
                 } else {
-                    cartDAO.addToCart(customerID, dishID, quantity);
+                    session.setAttribute("errorMessage", "Only " + upsert.getAvailable() + " items in stock.");
                 }
-
+                response.sendRedirect(request.getContextPath() + "/customer");
+                return;
             }
 
             Map<String, Object> cartSuccessDetails = new HashMap<>();
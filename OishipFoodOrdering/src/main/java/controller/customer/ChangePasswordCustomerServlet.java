@@ -4,9 +4,7 @@
  */
 package controller.customer;
 
-import dao.AccountDAO;
 import dao.CustomerProfileDAO;
-import dao.NotificationDAO;
 import dao.SecurityDAO;
 import java.io.IOException;
 import jakarta.servlet.ServletException;
@@ -20,6 +18,10 @@ import java.util.List;
 import model.Account;
 import model.Customer;
 import model.Notification;
+import model.NotificationSummary;
+import utils.notification.NotificationCache;
+import utils.account.PrincipalCache;
+import utils.security.PasswordHasher;
 
 @WebServlet(name = "ChangePasswordCustomerServlet", urlPatterns = {"/customer/profile/change-password"})
 public class ChangePasswordCustomerServlet extends HttpServlet {
@@ -34,10 +36,9 @@ public class ChangePasswordCustomerServlet extends HttpServlet {
             return;
         }
 
-        // Get customer information using email stored in session
+        // Get customer information (resolved once per request by PrincipalFilter)
         // int userId = (int) session.getAttribute("userId");
-        AccountDAO accountDAO = new AccountDAO();
-        Account account = accountDAO.findByEmail((String) session.getAttribute("email"));
+        Account account = PrincipalCache.current(request);
         if (account != null) {
             request.setAttribute("account", account);
             request.setAttribute("userName", account.getFullName());
@@ -59,9 +60,10 @@ public class ChangePasswordCustomerServlet extends HttpServlet {
             }
         }
 
-        NotificationDAO notificationDAO = new NotificationDAO();
-        List<Notification> notifications = notificationDAO.getUnreadNotificationsByCustomer(userId);
+        NotificationSummary notificationSummary = NotificationCache.get(userId);
+        List<Notification> notifications = notificationSummary.getLatest();
         request.setAttribute("notifications", notifications);
+        request.setAttribute("notificationCount", notificationSummary.getCount());
         String email = (String) session.getAttribute("email");
         
         request.getRequestDispatcher("/WEB-INF/views/customer/customer_change_password.jsp").forward(request, response);
@@ -89,7 +91,14 @@ public class ChangePasswordCustomerServlet extends HttpServlet {
             return;
         }
 
-        boolean isCurrentPasswordValid = SecurityDAO.checkPassword(currentPassword, cus.getPassword());
+        boolean isCurrentPasswordValid;
+        try {
+            isCurrentPasswordValid = SecurityDAO.checkPassword(currentPassword, cus.getPassword());
+        } catch (PasswordHasher.BusyException e) {
+            request.setAttribute("error", "The server is busy right now. Please try again in a moment.");
+            request.getRequestDispatcher("/WEB-INF/views/customer/customer_change_password.jsp").forward(request, response);
+            return;
+        }
         if (!isCurrentPasswordValid) {
             request.setAttribute("error", "Current password is incorrect.");
             request.getRequestDispatcher("/WEB-INF/views/customer/customer_change_password.jsp").forward(request, response);
@@ -102,9 +111,20 @@ public class ChangePasswordCustomerServlet extends HttpServlet {
             return;
         }
 
-        boolean success = customer.changePasswordCustomerByEmail(email, newPassword);
+        boolean success;
+        try {
+            success = customer.changePasswordCustomerByEmail(email, newPassword);
+        } catch (PasswordHasher.BusyException e) {
+            request.setAttribute("error", "The server is busy right now. Please try again in a moment.");
+            request.getRequestDispatcher("/WEB-INF/views/customer/customer_change_password.jsp").forward(request, response);
+            return;
+        }
 
         if (success) {
+            Object userId = request.getSession().getAttribute("userId");
+            if (userId instanceof Integer) {
+                PrincipalCache.invalidate((Integer) userId);
+            }
             request.setAttribute("message", "Password changed successfully.");
         } else {
             request.setAttribute("error", "Failed to change password. Please try again.");
@@ -4,10 +4,8 @@
  */
 package controller.customer;
 
-import dao.AccountDAO;
-import dao.CartDAO;
+import utils.cart.CartCache;
 import dao.ContactDAO;
-import dao.NotificationDAO;
 import java.io.IOException;
 import java.io.PrintWriter;
 import jakarta.servlet.ServletException;
@@ -20,8 +18,11 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 import model.Account;
-import model.Cart;
+import model.CartSummary;
 import model.Notification;
+import model.NotificationSummary;
+import utils.notification.NotificationCache;
+import utils.account.PrincipalCache;
 
 @WebServlet(name = "ContactServlet", urlPatterns = {"/customer/contact"})
 public class ContactServlet extends HttpServlet {
@@ -66,9 +67,8 @@ public class ContactServlet extends HttpServlet {
 
         int customerId = (int) session.getAttribute("userId");
 
-        // Get customer information using userId
-        AccountDAO accountDAO = new AccountDAO();
-        Account account = accountDAO.findByID(customerId);
+        // Get customer information (resolved once per request by PrincipalFilter)
+        Account account = PrincipalCache.current(request);
 
         if (account != null) {
             request.setAttribute("account", account);
@@ -81,17 +81,17 @@ public class ContactServlet extends HttpServlet {
         }
 
         // Get notifications for the customer
-        NotificationDAO notificationDAO = new NotificationDAO();
-        List<Notification> notifications = notificationDAO.getUnreadNotificationsByCustomer(customerId);
+        NotificationSummary notificationSummary = NotificationCache.get(customerId);
+        List<Notification> notifications = notificationSummary.getLatest();
         request.setAttribute("notifications", notifications);
+        request.setAttribute("notificationCount", notificationSummary.getCount());
         System.out.println("ContactServlet - Notifications count: " + (notifications != null ? notifications.size() : 0) + " for userId: " + customerId);
 
         // Get cart items for sidebar
-        CartDAO cartDAO = new CartDAO();
         try {
-            List<Cart> cartItems = cartDAO.getCartByCustomerId(customerId);
-            session.setAttribute("cartItems", cartItems);
-            System.out.println("ContactServlet - Cart items count: " + (cartItems != null ? cartItems.size() : 0));
+            CartSummary cartSummary = CartCache.getSummary(customerId);
+            session.setAttribute("cartSummary", cartSummary);
+            System.out.println("ContactServlet - Cart items count: " + cartSummary.getLineCount());
         } catch (SQLException ex) {
             System.err.println("ContactServlet - Error getting cart items for sidebar at 2025-07-29 18:13:08: " + ex.getMessage());
             ex.printStackTrace();
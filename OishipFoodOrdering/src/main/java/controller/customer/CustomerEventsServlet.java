@@ -0,0 +1,87 @@
+package controller.customer;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import utils.push.PushHub;
+
+/**
+ * Server-Sent Events stream of the logged-in customer's order status,
+ * payment status and notification events (see PushHub).
+ *
+ * The request goes async right away, so the request thread is given back
+ * while the stream stays open. Streams end after a while and the browser's
+ * EventSource reconnects by itself, which also drops streams of sessions
+ * that are gone.
+ */
+@WebServlet(name = "CustomerEventsServlet", urlPatterns = {"/customer/events"}, asyncSupported = true)
+public class CustomerEventsServlet extends HttpServlet {
+
+    private static final long STREAM_TIMEOUT_MS = 10 * 60 * 1000L;
+    private static final int RECONNECT_MS = 5000;
+    // Wait longer before trying again when the node is full
+    private static final int FULL_RETRY_SECONDS = 60;
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        HttpSession session = request.getSession(false);
+        if (session == null || session.getAttribute("userId") == null || !"customer".equals(session.getAttribute("role"))) {
+            // Anything but a 200 event stream makes EventSource stop reconnecting
+            response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+        int customerId = (int) session.getAttribute("userId");
+
+        response.setContentType("text/event-stream");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        response.setHeader("X-Accel-Buffering", "no"); // nginx: do not buffer the stream
+
+        AsyncContext stream = request.startAsync();
+        stream.setTimeout(STREAM_TIMEOUT_MS);
+        stream.addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+                PushHub.unregister(customerId, stream);
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                PushHub.unregister(customerId, stream);
+                stream.complete();
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                PushHub.unregister(customerId, stream);
+                stream.complete();
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+
+        // Written before registering, as afterwards the stream is written without blocking
+        ServletOutputStream out = response.getOutputStream();
+        out.write(("retry: " + RECONNECT_MS + "\n: connected\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        if (!PushHub.register(customerId, stream)) {
+            // A 503 would make EventSource give up for good; have it come back later instead
+            out.write(("retry: " + FULL_RETRY_SECONDS * 1000 + "\n\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            stream.complete();
+        }
+    }
+}
@@ -1,10 +1,6 @@
 package controller.customer;
 
-import dao.AccountDAO;
-import dao.CartDAO;
-import dao.CategoryDAO;
-import dao.DishDAO;
-import dao.NotificationDAO;
+import utils.cart.CartCache;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.*;
@@ -12,13 +8,16 @@ import model.Account;
 import model.Category;
 import model.Dish;
 import model.Notification;
+import model.NotificationSummary;
 
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import model.Cart;
+import utils.catalog.MenuCatalog;
+import utils.notification.NotificationCache;
+import utils.account.PrincipalCache;
 
 @WebServlet(name = "CustomerServlet", urlPatterns = {"/customer"})
 public class CustomerServlet extends HttpServlet {
@@ -35,24 +34,22 @@ public class CustomerServlet extends HttpServlet {
         }
 
         // Get list of categories
-        CategoryDAO categoryDAO = new CategoryDAO();
-        List<Category> categories = categoryDAO.getAllCategories();
+        List<Category> categories = MenuCatalog.getCategories();
         request.setAttribute("categories", categories);
 
         // Get all dishes
         List<Dish> menuItems = null;
         try {
-            menuItems = new DishDAO().getAllDishesAvailable();
+            menuItems = MenuCatalog.getAvailableDishes();
             request.setAttribute("menuItems", menuItems);
         } catch (Exception e) {
             e.printStackTrace();
             request.setAttribute("error", "Failed to load menu items.");
         }
 
-        // Get customer information using email stored in session
+        // Get customer information (resolved once per request by PrincipalFilter)
         // int userId = (int) session.getAttribute("userId");
-        AccountDAO accountDAO = new AccountDAO();
-        Account account = accountDAO.findByEmail((String) session.getAttribute("email"));
+        Account account = PrincipalCache.current(request);
         if (account != null) {
             request.setAttribute("account", account);
             request.setAttribute("userName", account.getFullName());
@@ -74,9 +71,10 @@ public class CustomerServlet extends HttpServlet {
             }
         }
 
-        NotificationDAO notificationDAO = new NotificationDAO();
-        List<Notification> notifications = notificationDAO.getUnreadNotificationsByCustomer(userId);
+        NotificationSummary notificationSummary = NotificationCache.get(userId);
+        List<Notification> notifications = notificationSummary.getLatest();
         request.setAttribute("notifications", notifications);
+        request.setAttribute("notificationCount", notificationSummary.getCount());
         
 
         String cartSuccessMessage = (String) request.getAttribute("cartSuccessMessage");
@@ -84,16 +82,12 @@ public class CustomerServlet extends HttpServlet {
             request.setAttribute("cartSuccessMessage", cartSuccessMessage);
         }
 
-        CartDAO cartDAO = new CartDAO();
-        List<Cart> cartItems = null;
         try {
-            cartItems = cartDAO.getCartByCustomerId(userId);
+            session.setAttribute("cartSummary", CartCache.getSummary(userId));
         } catch (SQLException ex) {
             Logger.getLogger(CustomerServlet.class.getName()).log(Level.SEVERE, null, ex);
         }
 
-        session.setAttribute("cartItems", cartItems); 
-
         request.getRequestDispatcher("/WEB-INF/views/customer/customer.jsp").forward(request, response);
     }
 
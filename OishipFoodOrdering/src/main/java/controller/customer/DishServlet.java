@@ -1,6 +1,5 @@
 package controller.customer;
 
-import dao.CategoryDAO;
 import dao.DishDAO;
 import dao.ReviewDAO;
 import jakarta.servlet.ServletException;
@@ -13,6 +12,7 @@ import java.util.List;
 import model.Category;
 import model.Dish;
 import model.Review;
+import utils.catalog.MenuCatalog;
 
 @WebServlet(name = "DishServlet", urlPatterns = {"/customer/dish-detail"})
 public class DishServlet extends HttpServlet {
@@ -23,9 +23,8 @@ public class DishServlet extends HttpServlet {
 
         DishDAO dishDAO = new DishDAO();
         ReviewDAO reviewDAO = new ReviewDAO();
-        CategoryDAO categoryDAO = new CategoryDAO();
 
-        List<Category> categories = categoryDAO.getAllCategories();
+        List<Category> categories = MenuCatalog.getCategories();
         request.setAttribute("categories", categories);
 
         String dishIdParam = request.getParameter("dishId");
@@ -75,12 +74,12 @@ public class DishServlet extends HttpServlet {
         if (catIdParam != null) {
             try {
                 int catId = Integer.parseInt(catIdParam);
-                menuItems = dishDAO.getDishesByCategory(catId);
+                menuItems = MenuCatalog.getDishesByCategory(catId);
             } catch (NumberFormatException e) {
-                menuItems = dishDAO.getAllDishes(); 
+                menuItems = MenuCatalog.getAllDishes();
             }
         } else {
-            menuItems = dishDAO.getAllDishes();
+            menuItems = MenuCatalog.getAllDishes();
         }
 
         request.setAttribute("menuItems", menuItems);
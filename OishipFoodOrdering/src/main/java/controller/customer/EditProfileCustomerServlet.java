@@ -2,7 +2,6 @@ package controller.customer;
 
 import dao.AccountDAO;
 import dao.CustomerProfileDAO;
-import dao.NotificationDAO;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.*;
@@ -12,6 +11,8 @@ import java.util.List;
 import java.util.logging.Logger;
 import model.Account;
 import model.Notification;
+import model.NotificationSummary;
+import utils.notification.NotificationCache;
 
 @WebServlet(name = "EditProfileCustomerServlet", urlPatterns = {"/customer/profile/edit-profile"})
 public class EditProfileCustomerServlet extends HttpServlet {
@@ -204,9 +205,10 @@ public class EditProfileCustomerServlet extends HttpServlet {
                     
                     // Get notifications using account ID
                     int userId = account.getAccountID();
-                    NotificationDAO notificationDAO = new NotificationDAO();
-                    List<Notification> notifications = notificationDAO.getUnreadNotificationsByCustomer(userId);
+                    NotificationSummary notificationSummary = NotificationCache.get(userId);
+                    List<Notification> notifications = notificationSummary.getLatest();
                     request.setAttribute("notifications", notifications);
+                    request.setAttribute("notificationCount", notificationSummary.getCount());
                     
                 } else {
                     request.setAttribute("error", "Account not found.");
@@ -6,13 +6,16 @@ import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.*;
 import model.*;
 
-import utils.TotalPriceCalculator;
 
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import utils.cart.CartCache;
+import utils.voucher.VoucherEngine;
+import utils.notification.NotificationCache;
+import utils.account.PrincipalCache;
 
 @WebServlet(name = "OrderServlet", urlPatterns = {"/customer/order"})
 public class OrderServlet extends HttpServlet {
@@ -30,9 +33,8 @@ public class OrderServlet extends HttpServlet {
 
         int customerId = (int) session.getAttribute("userId");
 
-        // Get customer information using userId
-        AccountDAO accountDAO = new AccountDAO();
-        Account account = accountDAO.findByID(customerId);
+        // Get customer information (resolved once per request by PrincipalFilter)
+        Account account = PrincipalCache.current(request);
 
         if (account != null) {
             request.setAttribute("account", account);
@@ -45,16 +47,16 @@ public class OrderServlet extends HttpServlet {
         }
 
         // Get notifications for the customer
-        NotificationDAO notificationDAO = new NotificationDAO();
-        List<Notification> notifications = notificationDAO.getUnreadNotificationsByCustomer(customerId);
+        NotificationSummary notificationSummary = NotificationCache.get(customerId);
+        List<Notification> notifications = notificationSummary.getLatest();
         request.setAttribute("notifications", notifications);
+        request.setAttribute("notificationCount", notificationSummary.getCount());
 
         // Get cart items for sidebar
-        CartDAO cartDAO = new CartDAO();
         try {
-            List<Cart> cartItems = cartDAO.getCartByCustomerId(customerId);
-            session.setAttribute("cartItems", cartItems);
-            System.out.println("OrderServlet - Cart items count: " + (cartItems != null ? cartItems.size() : 0));
+            CartSummary cartSummary = CartCache.getSummary(customerId);
+            session.setAttribute("cartSummary", cartSummary);
+            System.out.println("OrderServlet - Cart items count: " + cartSummary.getLineCount());
         } catch (SQLException ex) {
             System.err.println("OrderServlet - Error getting cart items for sidebar at 2025-07-29 17:59:17: " + ex.getMessage());
             ex.printStackTrace();
@@ -110,10 +112,9 @@ public class OrderServlet extends HttpServlet {
             return;
         }
 
-        // Get customer information using email stored in session
+        // Get customer information (resolved once per request by PrincipalFilter)
         // int userId = (int) session.getAttribute("userId");
-        AccountDAO accountDAO = new AccountDAO();
-        Account account = accountDAO.findByEmail((String) session.getAttribute("email"));
+        Account account = PrincipalCache.current(request);
         if (account != null) {
             request.setAttribute("account", account);
             request.setAttribute("userName", account.getFullName());
@@ -135,9 +136,10 @@ public class OrderServlet extends HttpServlet {
             }
         }
 
-        NotificationDAO notificationDAO = new NotificationDAO();
-        List<Notification> notifications = notificationDAO.getUnreadNotificationsByCustomer(userId);
+        NotificationSummary notificationSummary = NotificationCache.get(userId);
+        List<Notification> notifications = notificationSummary.getLatest();
         request.setAttribute("notifications", notifications);
+        request.setAttribute("notificationCount", notificationSummary.getCount());
         String email = (String) session.getAttribute("email");
 
         if (email == null) {
@@ -189,62 +191,17 @@ public class OrderServlet extends HttpServlet {
 
             try {
                 int customerId = customer.getCustomerID();
-                CartDAO cartDAO = new CartDAO();
-                OrderDAO orderDAO = new OrderDAO();
-                DishDAO dishDAO = new DishDAO();
-
-                List<Cart> selectedCarts = cartDAO.getCartsByIDs(selectedCartIDs);
-                BigDecimal grandTotal = BigDecimal.ZERO;
-
-                for (Cart cart : selectedCarts) {
-                    Dish dish = cart.getDish();
-                    BigDecimal ingredientCost = TotalPriceCalculator.calculateIngredientCost(dish.getIngredients());
-                    BigDecimal dishPrice = TotalPriceCalculator.calculateTotalPrice(
-                            dish.getOpCost(), dish.getInterestPercentage(), ingredientCost);
-                    grandTotal = grandTotal.add(dishPrice.multiply(BigDecimal.valueOf(cart.getQuantity())));
-                }
 
                 String voucherIdStr = request.getParameter("voucherID");
                 Integer voucherID = null;
-                BigDecimal discountAmount = BigDecimal.ZERO;
-
                 if (voucherIdStr != null && !voucherIdStr.isEmpty()) {
                     try {
                         voucherID = Integer.parseInt(voucherIdStr);
-                        VoucherDAO voucherDAO = new VoucherDAO();
-                        Voucher voucher = voucherDAO.getVoucherById(voucherID);
-                        boolean usedAlready = voucherDAO.hasCustomerUsedVoucher(customerId, voucherID);
-
-                        if (voucher != null && !usedAlready && voucher.isActive()
-                                && voucher.getStartDate().isBefore(java.time.LocalDateTime.now())
-                                && voucher.getEndDate().isAfter(java.time.LocalDateTime.now())
-                                && voucher.getUsageLimit() > voucher.getUsedCount()
-                                && grandTotal.compareTo(voucher.getMinOrderValue()) >= 0) {
-
-                            if ("%".equals(voucher.getDiscountType())) {
-                                discountAmount = grandTotal.multiply(voucher.getDiscount().divide(new BigDecimal(100)));
-                                if (voucher.getMaxDiscountValue() != null
-                                        && discountAmount.compareTo(voucher.getMaxDiscountValue()) > 0) {
-                                    discountAmount = voucher.getMaxDiscountValue();
-                                }
-                            } else {
-                                discountAmount = voucher.getDiscount();
-                            }
-
-                            ApplyVoucherDAO applyDAO = new ApplyVoucherDAO();
-                            applyDAO.increaseUsedCount(voucherID);
-                        } else {
-                            voucherID = null;
-                        }
-
-                    } catch (Exception e) {
-                        e.printStackTrace();
+                    } catch (NumberFormatException e) {
                         voucherID = null;
                     }
                 }
 
-                BigDecimal finalTotal = grandTotal.subtract(discountAmount);
-
                 String fullname = request.getParameter("fullname");
                 String phone = request.getParameter("phone");
                 String address = request.getParameter("address");
@@ -257,25 +214,25 @@ public class OrderServlet extends HttpServlet {
                     return;
                 }
 
-                int orderId = orderDAO.createOrder(customerId, finalTotal, voucherID);
-                session.setAttribute("pendingOrderId", orderId); // ✅ lưu orderId vào session
-
-                for (Cart cart : selectedCarts) {
-                    orderDAO.addOrderDetail(orderId, cart.getDish().getDishID(), cart.getQuantity());
-
-                    boolean updated = dishDAO.decreaseStock(cart.getDish().getDishID(), cart.getQuantity());
-                    if (!updated) {
-                        request.setAttribute("error", "Một hoặc nhiều món không đủ số lượng trong kho.");
-                        request.getRequestDispatcher("/WEB-INF/views/customer/confirm_order.jsp").forward(request, response);
-                        return;
+                // Order, lines, stock, voucher and cart are written in one transaction
+                String paymentMethod = request.getParameter("payment");
+                boolean payOnline = "bank_transfer".equalsIgnoreCase(paymentMethod);
+                OrderPlacement placement = new OrderPlacementDAO().placeOrder(customerId, selectedCartIDs, voucherID, payOnline);
+                if (!placement.isPlaced()) {
+                    StringBuilder error = new StringBuilder("Một hoặc nhiều món không đủ số lượng trong kho.");
+                    for (OrderPlacement.StockShortage shortage : placement.getShortages()) {
+                        error.append(" ").append(shortage.getDishName())
+                                .append(": còn ").append(shortage.getAvailable()).append(".");
                     }
+                    request.setAttribute("error", error.toString());
+                    request.getRequestDispatcher("/WEB-INF/views/customer/confirm_order.jsp").forward(request, response);
+                    return;
                 }
 
-                cartDAO.deleteCartsByIDs(selectedCartIDs);
-
-                String paymentMethod = request.getParameter("payment");
+                int orderId = placement.getOrderID();
+                session.setAttribute("pendingOrderId", orderId); // ✅ lưu orderId vào session
 
-                if ("bank_transfer".equalsIgnoreCase(paymentMethod)) {
+                if (payOnline) {
                     session.setAttribute("pendingOrderId", orderId);
                     response.sendRedirect(request.getContextPath() + "/customer/payment/create-payment-link");
                     return;
@@ -304,18 +261,14 @@ public class OrderServlet extends HttpServlet {
 
                 for (Cart cart : selectedCarts) {
                     Dish dish = cart.getDish();
-                    BigDecimal ingredientCost = TotalPriceCalculator.calculateIngredientCost(dish.getIngredients());
-                    BigDecimal dishPrice = TotalPriceCalculator.calculateTotalPrice(
-                            dish.getOpCost(), dish.getInterestPercentage(), ingredientCost);
+                    BigDecimal dishPrice = dish.getTotalPrice();
                     BigDecimal itemTotal = dishPrice.multiply(BigDecimal.valueOf(cart.getQuantity()));
-                    cart.getDish().setTotalPrice(dishPrice);
                     grandTotal = grandTotal.add(itemTotal);
                 }
 
                 CustomerProfileDAO cusPro = new CustomerProfileDAO();
                 Customer cus = cusPro.getCustomerByEmail(email);
-                ApplyVoucherDAO voucherDAO = new ApplyVoucherDAO();
-                List<Voucher> vouchers = voucherDAO.getAvailableVouchersForCustomer(customer.getCustomerID());
+                List<Voucher> vouchers = VoucherEngine.getAvailableVouchers(customer.getCustomerID());
 
                 request.setAttribute("customer", cus);
                 request.setAttribute("selectedCarts", selectedCarts);
@@ -0,0 +1,27 @@
+package controller.customer;
+
+import jakarta.servlet.*;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.*;
+import java.io.IOException;
+import utils.account.PrincipalCache;
+
+/**
+ * Resolves the logged-in customer's account once per request, from
+ * PrincipalCache, for the customer pages to use through
+ * {@link PrincipalCache#current(HttpServletRequest)}.
+ */
+@WebFilter(urlPatterns = {"/customer", "/customer/*"})
+public class PrincipalFilter implements Filter {
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest req = (HttpServletRequest) request;
+        HttpSession session = req.getSession(false);
+        if (session != null && "customer".equals(session.getAttribute("role"))) {
+            PrincipalCache.current(req);
+        }
+        chain.doFilter(request, response);
+    }
+}
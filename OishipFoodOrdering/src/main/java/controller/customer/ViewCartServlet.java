@@ -1,8 +1,6 @@
 package controller.customer;
 
-import dao.AccountDAO;
 import dao.CartDAO;
-import dao.NotificationDAO;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.*;
@@ -13,7 +11,11 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import model.Account;
 import model.Cart;
+import model.CartSummary;
 import model.Notification;
+import model.NotificationSummary;
+import utils.notification.NotificationCache;
+import utils.account.PrincipalCache;
 
 @WebServlet(name = "ViewCartServlet", urlPatterns = {"/customer/view-cart"})
 public class ViewCartServlet extends HttpServlet {
@@ -32,9 +34,8 @@ public class ViewCartServlet extends HttpServlet {
         // Get userId from session
         int userId = (int) session.getAttribute("userId");
 
-        // Get customer information using userId stored in session
-        AccountDAO accountDAO = new AccountDAO();
-        Account account = accountDAO.findByID(userId);
+        // Get customer information (resolved once per request by PrincipalFilter)
+        Account account = PrincipalCache.current(request);
 
         if (account != null) {
             request.setAttribute("account", account);
@@ -61,17 +62,18 @@ public class ViewCartServlet extends HttpServlet {
         }
 
         // Get notifications for the customer
-        NotificationDAO notificationDAO = new NotificationDAO();
-        List<Notification> notifications = notificationDAO.getUnreadNotificationsByCustomer(userId);
+        NotificationSummary notificationSummary = NotificationCache.get(userId);
+        List<Notification> notifications = notificationSummary.getLatest();
         request.setAttribute("notifications", notifications);
+        request.setAttribute("notificationCount", notificationSummary.getCount());
         System.out.println("ViewCartServlet - Notifications count: " + (notifications != null ? notifications.size() : 0) + " for userId: " + userId);
 
         try {
             CartDAO cartDAO = new CartDAO();
             List<Cart> cartItems = cartDAO.getCartByCustomerId(userId);
 
-            // Store cart items in session for use in sidebar
-            session.setAttribute("cartItems", cartItems);
+            // Store the cart summary in session for use in sidebar
+            session.setAttribute("cartSummary", CartSummary.of(cartItems));
             request.setAttribute("cartItems", cartItems);
 
             System.out.println("ViewCartServlet - Cart items count: " + (cartItems != null ? cartItems.size() : 0));
@@ -4,9 +4,7 @@
  */
 package controller.customer;
 
-import dao.AccountDAO;
 import dao.CustomerProfileDAO;
-import dao.NotificationDAO;
 import jakarta.servlet.RequestDispatcher;
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -21,6 +19,9 @@ import java.util.List;
 import model.Account;
 import model.Customer;
 import model.Notification;
+import model.NotificationSummary;
+import utils.notification.NotificationCache;
+import utils.account.PrincipalCache;
 
 @WebServlet(name = "ViewProfileCustomerServlet", urlPatterns = {"/customer/profile"})
 public class ViewProfileCustomerServllet extends HttpServlet {
@@ -52,10 +53,9 @@ public class ViewProfileCustomerServllet extends HttpServlet {
             return;
         }
 
-        // Get customer information using email stored in session
+        // Get customer information (resolved once per request by PrincipalFilter)
         // int userId = (int) session.getAttribute("userId");
-        AccountDAO accountDAO = new AccountDAO();
-        Account account = accountDAO.findByEmail((String) session.getAttribute("email"));
+        Account account = PrincipalCache.current(request);
         if (account != null) {
             request.setAttribute("account", account);
             request.setAttribute("userName", account.getFullName());
@@ -77,9 +77,10 @@ public class ViewProfileCustomerServllet extends HttpServlet {
             }
         }
 
-        NotificationDAO notificationDAO = new NotificationDAO();
-        List<Notification> notifications = notificationDAO.getUnreadNotificationsByCustomer(userId);
+        NotificationSummary notificationSummary = NotificationCache.get(userId);
+        List<Notification> notifications = notificationSummary.getLatest();
         request.setAttribute("notifications", notifications);
+        request.setAttribute("notificationCount", notificationSummary.getCount());
         String email = (String) session.getAttribute("email");
 
         if (email == null) {
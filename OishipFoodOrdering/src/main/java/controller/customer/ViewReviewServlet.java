@@ -4,8 +4,6 @@
  */
 package controller.customer;
 
-import dao.AccountDAO;
-import dao.NotificationDAO;
 import dao.ReviewDAO;
 import dao.OrderDAO;
 import java.io.IOException;
@@ -24,8 +22,11 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import model.Account;
 import model.Notification;
+import model.NotificationSummary;
 import model.Review;
 import model.Order;
+import utils.notification.NotificationCache;
+import utils.account.PrincipalCache;
 
 /**
  *
@@ -77,10 +78,9 @@ public class ViewReviewServlet extends HttpServlet {
             return;
         }
 
-        // Get customer information using email stored in session
+        // Get customer information (resolved once per request by PrincipalFilter)
         // int userId = (int) session.getAttribute("userId");
-        AccountDAO accountDAO = new AccountDAO();
-        Account account = accountDAO.findByEmail((String) session.getAttribute("email"));
+        Account account = PrincipalCache.current(request);
         if (account != null) {
             request.setAttribute("account", account);
             request.setAttribute("userName", account.getFullName());
@@ -102,9 +102,10 @@ public class ViewReviewServlet extends HttpServlet {
             }
         }
 
-        NotificationDAO notificationDAO = new NotificationDAO();
-        List<Notification> notifications = notificationDAO.getUnreadNotificationsByCustomer(userId);
+        NotificationSummary notificationSummary = NotificationCache.get(userId);
+        List<Notification> notifications = notificationSummary.getLatest();
         request.setAttribute("notifications", notifications);
+        request.setAttribute("notificationCount", notificationSummary.getCount());
         String email = (String) session.getAttribute("email");
         
         String deleteIdParam = request.getParameter("reviewID");
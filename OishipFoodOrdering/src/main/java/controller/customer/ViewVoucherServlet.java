@@ -1,8 +1,6 @@
 package controller.customer;
 
-import dao.AccountDAO;
-import dao.CartDAO;
-import dao.NotificationDAO;
+import utils.cart.CartCache;
 import dao.VoucherDAO;
 import java.io.IOException;
 import java.sql.SQLException;
@@ -17,9 +15,11 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 import model.Account;
-import model.Cart;
 import model.Notification;
+import model.NotificationSummary;
 import model.Voucher;
+import utils.notification.NotificationCache;
+import utils.account.PrincipalCache;
 
 @WebServlet(name = "ViewVoucherServlet", urlPatterns = {"/customer/view-vouchers-list"})
 public class ViewVoucherServlet extends HttpServlet {
@@ -40,9 +40,8 @@ public class ViewVoucherServlet extends HttpServlet {
         List<Voucher> vouchers = voucherDAO.getAllVouchers();
         request.setAttribute("vouchers", vouchers);
 
-        // Get customer information using email stored in session
-        AccountDAO accountDAO = new AccountDAO();
-        Account account = accountDAO.findByEmail((String) session.getAttribute("email"));
+        // Get customer information (resolved once per request by PrincipalFilter)
+        Account account = PrincipalCache.current(request);
         if (account != null) {
             request.setAttribute("account", account);
             request.setAttribute("userName", account.getFullName());
@@ -67,22 +66,19 @@ public class ViewVoucherServlet extends HttpServlet {
         }
 
         // Get notifications for the customer
-        NotificationDAO notificationDAO = new NotificationDAO();
-        List<Notification> notifications = notificationDAO.getUnreadNotificationsByCustomer(userId);
+        NotificationSummary notificationSummary = NotificationCache.get(userId);
+        List<Notification> notifications = notificationSummary.getLatest();
         request.setAttribute("notifications", notifications);
+        request.setAttribute("notificationCount", notificationSummary.getCount());
 
         // Get cart items for the customer
-        CartDAO cartDAO = new CartDAO();
-        List<Cart> cartItems = null;
         try {
-            cartItems = cartDAO.getCartByCustomerId(userId);
+            // Store the cart summary in session for use in sidebar
+            session.setAttribute("cartSummary", CartCache.getSummary(userId));
         } catch (SQLException ex) {
             Logger.getLogger(ViewVoucherServlet.class.getName()).log(Level.SEVERE, null, ex);
         }
 
-        // Store cart items in session for use in sidebar
-        session.setAttribute("cartItems", cartItems);
-
         // Forward to vouchers page
         request.getRequestDispatcher("/WEB-INF/views/customer/vouchers_list.jsp").forward(request, response);
     }
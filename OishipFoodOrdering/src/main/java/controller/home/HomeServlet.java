@@ -1,7 +1,5 @@
 package controller.home;
 
-import dao.CategoryDAO;
-import dao.DishDAO;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.*;
@@ -9,6 +7,7 @@ import java.io.IOException;
 import java.util.List;
 import model.Category;
 import model.Dish;
+import utils.catalog.MenuCatalog;
 
 @WebServlet(name = "HomeServlet", urlPatterns = {"/home"})
 public class HomeServlet extends HttpServlet {
@@ -28,8 +27,7 @@ public class HomeServlet extends HttpServlet {
         request.setAttribute("userName", null);
         request.setAttribute("error", null);
         // Get list of categories
-        CategoryDAO categoryDAO = new CategoryDAO();
-        List<Category> categories = categoryDAO.getAllCategories();
+        List<Category> categories = MenuCatalog.getCategories();
 
         // Store in request scope to send to JSP
         request.setAttribute("categories", categories);
@@ -37,7 +35,7 @@ public class HomeServlet extends HttpServlet {
         // Get all dishes to display on the home.jsp page
         List<Dish> menuItems = null;
         try {
-            menuItems = new DishDAO().getAllDishesAvailable()   ;
+            menuItems = MenuCatalog.getAvailableDishes();
             request.setAttribute("menuItems", menuItems);
         } catch (Exception e) {
             e.printStackTrace();
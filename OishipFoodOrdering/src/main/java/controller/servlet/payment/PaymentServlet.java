@@ -3,7 +3,7 @@ package controller.servlet.payment;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
-import utils.service.payment.PaymentService;
+import utils.service.payment.PaymentWebhookQueue;
 import utils.service.paymentconfig.PayOSConfig;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
@@ -23,7 +23,6 @@ public class PaymentServlet extends HttpServlet {
 
     private final PayOS payOS;
     private final Gson gson = new GsonBuilder().create();
-    private final PaymentService paymentService = new PaymentService(); // đã viết DAO ở đây
 
     public PaymentServlet() {
         this.payOS = PayOSConfig.getPayOS();
@@ -51,9 +50,17 @@ public class PaymentServlet extends HttpServlet {
             if ("00".equals(data.getCode())) {
                 long orderCode = data.getOrderCode();
 
-                // ✅ Gọi xử lý cập nhật DB: payment_status = 1
-                paymentService.payOrder((int) orderCode);
-                System.out.println("Payment SUCCESS for order #" + orderCode);
+                // Only stored here; PaymentWebhookQueue marks the order paid in the background
+                BigDecimal amount = data.getAmount() != null ? BigDecimal.valueOf(data.getAmount()) : null;
+                if (!PaymentWebhookQueue.accept(orderCode, amount, data.getReference(), jb.toString())) {
+                    // Not acknowledged, so PayOS sends the webhook again
+                    response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                    responseJson.addProperty("error", -1);
+                    responseJson.addProperty("message", "Webhook not stored, retry later");
+                    response.getWriter().write(gson.toJson(responseJson));
+                    return;
+                }
+                System.out.println("Payment webhook queued for order #" + orderCode);
             } else {
                 System.out.println("Payment FAILED or CANCELLED: " + data.getCode());
             }
@@ -14,6 +14,7 @@ import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import model.Staff;
+import utils.security.PasswordHasher;
 
 /**
  *
@@ -96,7 +97,14 @@ public class ChangePasswordServlet extends HttpServlet {
             return;
         }
 
-        boolean isCurrentPasswordValid = SecurityDAO.checkPassword(currentPassword, staff.getPassword());
+        boolean isCurrentPasswordValid;
+        try {
+            isCurrentPasswordValid = SecurityDAO.checkPassword(currentPassword, staff.getPassword());
+        } catch (PasswordHasher.BusyException e) {
+            request.setAttribute("error", "The server is busy right now. Please try again in a moment.");
+            request.getRequestDispatcher("/WEB-INF/views/staff/staff_change_password.jsp").forward(request, response);
+            return;
+        }
         if (!isCurrentPasswordValid) {
             request.setAttribute("error", "Current password is incorrect.");
             request.getRequestDispatcher("/WEB-INF/views/staff/staff_change_password.jsp").forward(request, response);
@@ -111,7 +119,14 @@ public class ChangePasswordServlet extends HttpServlet {
         }
 
         // Bước 5: Cập nhật mật khẩu mới nếu hợp lệ
-        boolean success = staffDAO.changePasswordStaffByEmail(email, newPassword);
+        boolean success;
+        try {
+            success = staffDAO.changePasswordStaffByEmail(email, newPassword);
+        } catch (PasswordHasher.BusyException e) {
+            request.setAttribute("error", "The server is busy right now. Please try again in a moment.");
+            request.getRequestDispatcher("/WEB-INF/views/staff/staff_change_password.jsp").forward(request, response);
+            return;
+        }
 
         // Bước 6: Thông báo
         if (success) {
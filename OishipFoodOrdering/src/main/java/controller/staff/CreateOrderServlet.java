@@ -5,7 +5,6 @@
 package controller.staff;
 
 import dao.AccountDAO;
-import dao.CategoryDAO;
 import dao.DishDAO;
 import dao.OrderDAO;
 import java.io.IOException;
@@ -15,10 +14,12 @@ import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import java.math.BigDecimal;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import model.Category;
 import model.Dish;
+import utils.catalog.MenuCatalog;
 
 /**
  *
@@ -65,11 +66,8 @@ public class CreateOrderServlet extends HttpServlet {
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-        DishDAO dishDAO = new DishDAO();
-        List<Dish> dishes = dishDAO.getAllDishes();
-
-        CategoryDAO categoryDAO = new CategoryDAO();
-        List<Category> categories = categoryDAO.getAllCategories();
+        List<Dish> dishes = MenuCatalog.getAllDishes();
+        List<Category> categories = MenuCatalog.getCategories();
 
         request.setAttribute("dishes", dishes);
         request.setAttribute("categories", categories);
@@ -79,7 +77,7 @@ public class CreateOrderServlet extends HttpServlet {
 
     private void loadAndReturn(HttpServletRequest request, HttpServletResponse response,
             String message, DishDAO dishDAO) throws ServletException, IOException {
-        List<Dish> dishes = dishDAO.getAllDishes();
+        List<Dish> dishes = MenuCatalog.getAllDishes();
         request.setAttribute("dishes", dishes);
         request.setAttribute("error", message);
         request.getRequestDispatcher("/WEB-INF/views/staff/order_create.jsp").forward(request, response);
@@ -99,26 +97,9 @@ public class CreateOrderServlet extends HttpServlet {
         OrderDAO orderDAO = new OrderDAO();
         DishDAO dishDAO = new DishDAO();
 
-        // Bước 1: Tạo customer ẩn danh
-        int customerID = accountDAO.insertAnonymousCustomerAndReturnCustomerID(customerName);
-        if (customerID == -1) {
-            message = "Failed to create customer.";
-            loadAndReturn(request, response, message, dishDAO);
-            return;
-        }
-
-        // Bước 2: Tạo order
-        int orderID = orderDAO.insertOrder(customerID);
-        if (orderID == -1) {
-            message = "Failed to create order.";
-            loadAndReturn(request, response, message, dishDAO);
-            return;
-        }
-
-        // Bước 3: Xử lý các món ăn và tính amount
-        List<Dish> dishes = dishDAO.getAllDishes();
-        boolean atLeastOneDish = false;
-        BigDecimal amount = BigDecimal.ZERO;
+        // Bước 1: Đọc các món và kiểm tra stock
+        List<Dish> dishes = MenuCatalog.getAllDishes();
+        Map<Dish, Integer> lines = new LinkedHashMap<>();
 
         for (Dish dish : dishes) {
             String quantityParam = request.getParameter("quantity_" + dish.getDishID());
@@ -132,29 +113,7 @@ public class CreateOrderServlet extends HttpServlet {
                             loadAndReturn(request, response, message, dishDAO);
                             return;
                         }
-
-                        // Tính tiền
-                        BigDecimal price = dish.getTotalPrice();
-                        BigDecimal lineTotal = price.multiply(BigDecimal.valueOf(quantity));
-                        amount = amount.add(lineTotal);
-
-                        // Thêm vào OrderDetail
-                        boolean success = orderDAO.insertOrderDetail(orderID, dish.getDishID(), quantity);
-                        if (!success) {
-                            message = "Failed to insert order detail for dish: " + dish.getDishName();
-                            loadAndReturn(request, response, message, dishDAO);
-                            return;
-                        }
-
-                        // ✅ Trừ stock
-                        boolean stockUpdated = dishDAO.updateStockAfterOrder(dish.getDishID(), quantity);
-                        if (!stockUpdated) {
-                            message = "Failed to update stock for dish: " + dish.getDishName();
-                            loadAndReturn(request, response, message, dishDAO);
-                            return;
-                        }
-
-                        atLeastOneDish = true;
+                        lines.put(dish, quantity);
                     }
                 } catch (NumberFormatException e) {
                     message = "Invalid quantity format.";
@@ -164,14 +123,27 @@ public class CreateOrderServlet extends HttpServlet {
             }
         }
 
-        if (!atLeastOneDish) {
+        if (lines.isEmpty()) {
             message = "Please enter quantity for at least one dish.";
             loadAndReturn(request, response, message, dishDAO);
             return;
         }
 
-        // Cập nhật tổng tiền
-        orderDAO.updateOrderAmount(orderID, amount);
+        // Bước 2: Tạo customer ẩn danh
+        int customerID = accountDAO.insertAnonymousCustomerAndReturnCustomerID(customerName);
+        if (customerID == -1) {
+            message = "Failed to create customer.";
+            loadAndReturn(request, response, message, dishDAO);
+            return;
+        }
+
+        // Bước 3: Tạo order, các món, trừ stock và tổng tiền trong một transaction
+        int orderID = orderDAO.createCounterOrder(customerID, lines);
+        if (orderID == -1) {
+            message = "Failed to create order. Some dishes may have run out.";
+            loadAndReturn(request, response, message, dishDAO);
+            return;
+        }
 
         // Thành công
         request.setAttribute("success", "Order created successfully!");
@@ -10,11 +10,15 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import model.Order;
+import model.OrderFilter;
+import model.OrderPage;
+import utils.TotalPriceCalculator;
 
 /**
  *
@@ -61,25 +65,21 @@ public class ManageOrdersServlet extends HttpServlet {
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
         
-        // Get order list
+        // Get one page of orders
         OrderDAO orderDAO = new OrderDAO();
-        List<Order> orderList = orderDAO.getAllOrders();
+        OrderFilter filter = OrderFilter.fromParameters(request::getParameter);
+        OrderPage page = orderDAO.getOrdersPage(filter);
+        List<Order> orderList = page.getOrders();
 
-        // Create a map to store order income
-        Map<Integer, String> orderIncomeMap = new HashMap<>();
-        Map<Integer, BigDecimal> orderIncomeRawMap = new HashMap<>();
-        
-        // Calculate income for each order
+        // Income of the orders on this page, loaded in one query
+        List<Integer> orderIds = new ArrayList<>();
         for (Order order : orderList) {
-            int orderId = order.getOrderID();
-            
-            // Get formatted income for display
-            String formattedIncome = orderDAO.getFormattedOrderIncome(orderId);
-            orderIncomeMap.put(orderId, formattedIncome);
-            
-            // Get raw income value for calculations if needed
-            BigDecimal rawIncome = orderDAO.getOrderIncomeByOrderId(orderId);
-            orderIncomeRawMap.put(orderId, rawIncome);
+            orderIds.add(order.getOrderID());
+        }
+        Map<Integer, BigDecimal> orderIncomeRawMap = orderDAO.getOrderIncomes(orderIds);
+        Map<Integer, String> orderIncomeMap = new HashMap<>();
+        for (Map.Entry<Integer, BigDecimal> entry : orderIncomeRawMap.entrySet()) {
+            orderIncomeMap.put(entry.getKey(), TotalPriceCalculator.formatVND(entry.getValue()));
         }
 
         // Status maps
@@ -100,6 +100,8 @@ public class ManageOrdersServlet extends HttpServlet {
 
         // Set attributes
         request.setAttribute("orders", orderList);
+        request.setAttribute("orderPage", page);
+        request.setAttribute("filter", filter);
         request.setAttribute("statusMap", statusMap);
         request.setAttribute("paymentStatusMap", paymentStatusMap);
         request.setAttribute("orderIncomeMap", orderIncomeMap);
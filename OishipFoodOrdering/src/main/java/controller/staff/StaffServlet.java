@@ -1,6 +1,6 @@
 package controller.staff;
 
-import dao.OrderDAO;
+import dao.DailyRollupDAO;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
@@ -15,11 +15,11 @@ import java.util.Map;
 @WebServlet("/staff/*")
 public class StaffServlet extends HttpServlet {
 
-    private OrderDAO orderDAO;
+    private DailyRollupDAO rollupDAO;
 
     @Override
     public void init() throws ServletException {
-        orderDAO = new OrderDAO();
+        rollupDAO = new DailyRollupDAO();
     }
 
     @Override
@@ -37,7 +37,7 @@ public class StaffServlet extends HttpServlet {
             // Year selection from request
             String yearParam = request.getParameter("year");
             int selectedYear;
-            List<Integer> availableYears = orderDAO.getAvailableOrderYears(); // get years with orders
+            List<Integer> availableYears = rollupDAO.getAvailableYears(); // get years with orders
 
             if (yearParam != null) {
                 selectedYear = Integer.parseInt(yearParam);
@@ -48,7 +48,7 @@ public class StaffServlet extends HttpServlet {
             }
 
             // Get income data (which now includes both positive calculated income and negative refunds)
-            Map<Integer, Double> monthlyIncomeMap = orderDAO.getMonthlyIncomeMap(selectedYear);
+            Map<Integer, Double> monthlyIncomeMap = rollupDAO.getMonthlyIncome(selectedYear);
 
             // Set attributes for JSP
             request.setAttribute("availableYears", availableYears);
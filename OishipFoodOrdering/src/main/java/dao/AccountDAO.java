@@ -8,6 +8,10 @@ import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
 import utils.Util;
+import utils.account.PrincipalCache;
+import utils.notification.NotificationCache;
+import utils.security.PasswordHasher;
+import utils.voucher.VoucherEngine;
 
 public class AccountDAO extends DBContext {
 
@@ -15,7 +19,16 @@ public class AccountDAO extends DBContext {
         super();
     }
 
-    // Login method
+    /**
+     * The account with this email and password, or null.
+     *
+     * The password is checked after the connection is given back, on the
+     * PasswordHasher pool. A password hashed with an outdated cost factor is
+     * hashed again in the background.
+     *
+     * @throws PasswordHasher.BusyException if too many logins are being
+     * checked right now
+     */
     public Object getAuthenticatedUser(String email, String plainPassword) {
         if (email == null || plainPassword == null) {
             System.out.println("login: email or plainPassword is null, email=" + email);
@@ -25,45 +38,87 @@ public class AccountDAO extends DBContext {
                 + "c.phone, c.address "
                 + "FROM Account a LEFT JOIN Customer c ON a.accountID = c.customerID "
                 + "WHERE a.email = ? AND a.status = 1";
+        Object user = null;
+        int accountId = 0;
+        String hashedPassword = null;
         try (Connection conn = getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, email);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
-                    String hashedPassword = rs.getString("password");
-                    if (SecurityDAO.checkPassword(plainPassword, hashedPassword)) {
-                        String role = rs.getString("role");
-                        if ("customer".equals(role)) {
-                            return new Customer(
-                                    rs.getInt("accountID"),
-                                    rs.getString("phone") != null ? rs.getString("phone") : "",
-                                    rs.getString("address") != null ? rs.getString("address") : "");
-                        } else if ("staff".equals(role)) {
-                            return new Staff(
-                                    rs.getInt("accountID"),
-                                    rs.getString("fullName"),
-                                    rs.getString("email"),
-                                    hashedPassword,
-                                    rs.getInt("status"),
-                                    role,
-                                    rs.getTimestamp("createAt"));
-                        } else if ("admin".equals(role)) {
-                            return new Account(
-                                    rs.getInt("accountID"),
-                                    rs.getString("fullName"),
-                                    rs.getString("email"),
-                                    hashedPassword,
-                                    rs.getInt("status"),
-                                    role,
-                                    rs.getTimestamp("createAt"));
-                        }
+                    accountId = rs.getInt("accountID");
+                    hashedPassword = rs.getString("password");
+                    String role = rs.getString("role");
+                    if ("customer".equals(role)) {
+                        user = new Customer(
+                                accountId,
+                                rs.getString("phone") != null ? rs.getString("phone") : "",
+                                rs.getString("address") != null ? rs.getString("address") : "");
+                    } else if ("staff".equals(role)) {
+                        user = new Staff(
+                                accountId,
+                                rs.getString("fullName"),
+                                rs.getString("email"),
+                                hashedPassword,
+                                rs.getInt("status"),
+                                role,
+                                rs.getTimestamp("createAt"));
+                    } else if ("admin".equals(role)) {
+                        user = new Account(
+                                accountId,
+                                rs.getString("fullName"),
+                                rs.getString("email"),
+                                hashedPassword,
+                                rs.getInt("status"),
+                                role,
+                                rs.getTimestamp("createAt"));
                     }
                 }
             }
         } catch (SQLException e) {
             System.out.println("Error during login for email: " + email + ": " + e.getMessage());
             e.printStackTrace();
+            return null;
         }
-        return null;
+        if (user == null || hashedPassword == null || !PasswordHasher.tryVerify(plainPassword, hashedPassword)) {
+            return null;
+        }
+        rehashIfOutdated(accountId, hashedPassword, plainPassword);
+        return user;
+    }
+
+    /**
+     * After a successful login, replace a password hash made with an
+     * outdated BCrypt cost factor. Done in the background; the login does not
+     * wait for it.
+     */
+    public static void rehashIfOutdated(int accountId, String hashedPassword, String plainPassword) {
+        if (!PasswordHasher.needsRehash(hashedPassword)) {
+            return;
+        }
+        PasswordHasher.rehashLater(plainPassword, newHash -> {
+            try (AccountDAO dao = new AccountDAO()) {
+                dao.replacePasswordHash(accountId, hashedPassword, newHash);
+            }
+        });
+    }
+
+    /**
+     * Replace a password hash, unless the password was changed meanwhile.
+     */
+    public boolean replacePasswordHash(int accountId, String oldHash, String newHash) {
+        String sql = "UPDATE Account SET [password] = ? WHERE accountID = ? AND [password] = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, newHash);
+            ps.setInt(2, accountId);
+            ps.setString(3, oldHash);
+            if (ps.executeUpdate() > 0) {
+                PrincipalCache.invalidate(accountId);
+                return true;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
     }
 
     public List<Account> getAccountsByRole(String role) {
@@ -392,6 +447,7 @@ public class AccountDAO extends DBContext {
             psAccount.setTimestamp(4, account.getCreateAt());
             psAccount.setInt(5, account.getAccountID());
             int rowsAccount = psAccount.executeUpdate();
+            PrincipalCache.invalidate(account.getAccountID()); // name, status or role may have changed
 
             if ("staff".equals(account.getRole()) && department != null) {
                 String sqlStaff = "UPDATE Staff SET department = ?, accessLevel = ? WHERE staffID = ?";
@@ -513,6 +569,7 @@ public class AccountDAO extends DBContext {
 
                 if (affectedRows > 0) {
                     conn.commit(); // Commit nếu thành công
+                    PrincipalCache.invalidate(id);
                     return true;
                 } else {
                     conn.rollback(); // Rollback nếu không xóa được
@@ -702,6 +759,7 @@ public class AccountDAO extends DBContext {
                         int affectedRows = psUpdate.executeUpdate();
                         System.out.println("updateCustomer: Updated customerID " + customer.getCustomerID()
                                 + ", affected rows: " + affectedRows);
+                        PrincipalCache.invalidate(customer.getCustomerID());
                         return affectedRows > 0;
                     }
                 } else {
@@ -714,6 +772,7 @@ public class AccountDAO extends DBContext {
                         int affectedRows = psInsert.executeUpdate();
                         System.out.println("updateCustomer: Inserted customerID " + customer.getCustomerID()
                                 + ", affected rows: " + affectedRows);
+                        PrincipalCache.invalidate(customer.getCustomerID());
                         return affectedRows > 0;
                     }
                 }
@@ -930,12 +989,17 @@ public class AccountDAO extends DBContext {
                 ps.executeUpdate();
             }
 
-            // 7. Xóa CustomerNotification
-            String notiSql = "DELETE FROM CustomerNotification WHERE customerID = ?";
+            // 7. Xóa trạng thái đã đọc thông báo
+            String notiSql = "DELETE FROM NotificationRead WHERE customerID = ?";
             try (PreparedStatement ps = conn.prepareStatement(notiSql)) {
                 ps.setInt(1, customerID);
                 ps.executeUpdate();
             }
+            String notiMarkSql = "DELETE FROM NotificationReadMark WHERE customerID = ?";
+            try (PreparedStatement ps = conn.prepareStatement(notiMarkSql)) {
+                ps.setInt(1, customerID);
+                ps.executeUpdate();
+            }
 
             // 8. Xóa Cart
             String cartSql = "DELETE FROM Cart WHERE FK_Cart_Customer = ?";
@@ -982,6 +1046,7 @@ public class AccountDAO extends DBContext {
                 int affectedRows = ps.executeUpdate();
                 if (affectedRows > 0) {
                     conn.commit();
+                    PrincipalCache.invalidate(customerID);
                     return true;
                 } else {
                     throw new SQLException(
@@ -1066,8 +1131,8 @@ public class AccountDAO extends DBContext {
                 ps.executeUpdate();
             }
 
-            // 6. Xóa CustomerNotification liên quan đến Notification do staff tạo
-            String customerNotificationSql = "DELETE FROM CustomerNotification WHERE notID IN "
+            // 6. Xóa trạng thái đã đọc của Notification do staff tạo
+            String customerNotificationSql = "DELETE FROM NotificationRead WHERE notID IN "
                     + "(SELECT notID FROM Notification WHERE FK_Notification_Account = ?)";
             try (PreparedStatement ps = conn.prepareStatement(customerNotificationSql)) {
                 ps.setInt(1, staffId);
@@ -1109,6 +1174,9 @@ public class AccountDAO extends DBContext {
                 int affectedRows = ps.executeUpdate();
                 if (affectedRows > 0) {
                     conn.commit();
+                    VoucherEngine.invalidate(); // the staff member's vouchers are gone
+                    NotificationCache.invalidateAll(); // ... and their notifications
+                    PrincipalCache.invalidate(staffId);
                     return true;
                 } else {
                     throw new SQLException("No Account found with staffId = " + staffId + " and role = 'staff'");
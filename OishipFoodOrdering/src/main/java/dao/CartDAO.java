@@ -2,25 +2,57 @@ package dao;
 
 import java.math.BigDecimal;
 import model.Cart;
+import model.CartUpsert;
 import model.Dish;
 import utils.DBContext;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
-import model.DishIngredient;
-import model.Ingredient;
 import utils.TotalPriceCalculator;
+import utils.cart.CartCache;
+import utils.cart.CustomerCart;
+import utils.stock.StockCounter;
 
 public class CartDAO extends DBContext {
 
+    /**
+     * The customer's cart with dish details, served from {@link CartCache}
+     * and the menu catalog when possible.
+     */
     public List<Cart> getCartByCustomerId(int customerId) throws SQLException {
+        List<Cart> cached = CartCache.getCarts(customerId);
+        return cached != null ? cached : loadCartByCustomerId(customerId);
+    }
+
+    /**
+     * Cart ID, dish ID and quantity of every line of a customer's cart, for
+     * loading {@link CartCache}.
+     */
+    public List<CustomerCart.Line> getCartLines(int customerId) throws SQLException {
+        List<CustomerCart.Line> lines = new ArrayList<>();
+        String sql = "SELECT cartID, FK_Cart_Dish, quantity FROM Cart WHERE FK_Cart_Customer = ? ORDER BY cartID";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, customerId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    lines.add(new CustomerCart.Line(rs.getInt("cartID"), rs.getInt("FK_Cart_Dish"), rs.getInt("quantity")));
+                }
+            }
+        }
+        return lines;
+    }
+
+    private List<Cart> loadCartByCustomerId(int customerId) throws SQLException {
         List<Cart> cartItems = new ArrayList<>();
 
         String sql = "SELECT "
                 + "c.cartID, c.quantity, c.FK_Cart_Customer, c.FK_Cart_Dish, "
-                + "d.DishID, d.DishName, d.image, d.opCost, d.interestPercentage, d.stock "
+                + "d.DishID, d.DishName, d.image, d.opCost, d.interestPercentage, "
+                + "d.stock - " + StockReservationDAO.ACTIVE_HOLDS_SQL + " AS stock, "
+                + "d.ingredientCost, d.price "
                 + "FROM Cart c "
                 + "JOIN Dish d ON c.FK_Cart_Dish = d.DishID "
                 + "WHERE c.FK_Cart_Customer = ?";
@@ -29,8 +61,6 @@ public class CartDAO extends DBContext {
             ps.setInt(1, customerId);
             ResultSet rs = ps.executeQuery();
 
-            IngredientDAO ingredientDAO = new IngredientDAO();
-
             while (rs.next()) {
                 Cart cart = new Cart();
                 cart.setCartID(rs.getInt("cartID"));
@@ -47,15 +77,7 @@ public class CartDAO extends DBContext {
                 dish.setOpCost(rs.getBigDecimal("opCost"));
                 dish.setInterestPercentage(rs.getBigDecimal("interestPercentage"));
                 dish.setStock(rs.getInt("stock"));
-
-                List<Ingredient> ingredients = ingredientDAO.getIngredientsByDishId(dishId);
-                BigDecimal ingredientCost = TotalPriceCalculator.calculateIngredientCost(ingredients);
-                BigDecimal totalPrice = TotalPriceCalculator.calculateTotalPrice(
-                        dish.getOpCost(), dish.getInterestPercentage(), ingredientCost);
-
-                dish.setIngredients(ingredients);
-                dish.setTotalPrice(totalPrice);
-                dish.setFormattedPrice(TotalPriceCalculator.formatVND(totalPrice));
+                readPrice(dish, rs);
 
                 cart.setDish(dish);
                 cartItems.add(cart);
@@ -65,14 +87,85 @@ public class CartDAO extends DBContext {
         return cartItems;
     }
 
+    /**
+     * Add a dish to the customer's cart, or raise the quantity of the line
+     * already there, in one MERGE. The dish must be on sale and the new line
+     * quantity must not exceed what is left; otherwise nothing is written.
+     * With the stock counter enabled the counter decides what is left.
+     *
+     * @return the written line, or why nothing was written
+     */
+    public CartUpsert addOrIncrement(int customerId, int dishId, int quantity) throws SQLException {
+        String sql = "MERGE Cart WITH (HOLDLOCK) AS c "
+                + "USING (SELECT d.DishID, ISNULL(?, d.stock - " + StockReservationDAO.ACTIVE_HOLDS_SQL + ") AS available "
+                + "FROM Dish d WHERE d.DishID = ? AND d.isAvailable = 1) AS s "
+                + "ON c.FK_Cart_Customer = ? AND c.FK_Cart_Dish = s.DishID "
+                + "WHEN MATCHED AND c.quantity + ? <= s.available THEN UPDATE SET c.quantity = c.quantity + ? "
+                + "WHEN NOT MATCHED AND ? <= s.available THEN "
+                + "INSERT (quantity, FK_Cart_Customer, FK_Cart_Dish) VALUES (?, ?, s.DishID) "
+                + "OUTPUT inserted.cartID, inserted.quantity, s.available;";
+
+        CartUpsert result = new CartUpsert();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            Integer counted = StockCounter.getAvailable(dishId);
+            if (counted != null) {
+                ps.setInt(1, counted);
+            } else {
+                ps.setNull(1, Types.INTEGER);
+            }
+            ps.setInt(2, dishId);
+            ps.setInt(3, customerId);
+            ps.setInt(4, quantity);
+            ps.setInt(5, quantity);
+            ps.setInt(6, quantity);
+            ps.setInt(7, quantity);
+            ps.setInt(8, customerId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    result.setCartID(rs.getInt("cartID"));
+                    result.setQuantity(rs.getInt("quantity"));
+                    result.setAvailable(rs.getInt("available"));
+                    result.setDishAvailable(true);
+                    CartCache.lineWritten(customerId, result.getCartID(), dishId, result.getQuantity());
+                    return result;
+                }
+            }
+        }
+
+        // Nothing written: look up why, only on this path
+        String whySql = "SELECT d.isAvailable, d.stock - " + StockReservationDAO.ACTIVE_HOLDS_SQL + " AS available, "
+                + "ISNULL((SELECT c.quantity FROM Cart c WHERE c.FK_Cart_Customer = ? AND c.FK_Cart_Dish = d.DishID), 0) AS inCart "
+                + "FROM Dish d WHERE d.DishID = ?";
+        try (PreparedStatement ps = conn.prepareStatement(whySql)) {
+            ps.setInt(1, customerId);
+            ps.setInt(2, dishId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    Integer counted = StockCounter.getAvailable(dishId);
+                    result.setDishAvailable(rs.getBoolean("isAvailable"));
+                    result.setAvailable(counted != null ? counted : rs.getInt("available"));
+                    result.setQuantity(rs.getInt("inCart"));
+                }
+            }
+        }
+        return result;
+    }
+
     // Thêm món mới vào giỏ hàng
     public void addToCart(int customerId, int dishId, int quantity) throws SQLException {
         String sql = "INSERT INTO Cart (quantity, FK_Cart_Customer, FK_Cart_Dish) VALUES (?, ?, ?)";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             ps.setInt(1, quantity);
             ps.setInt(2, customerId);
             ps.setInt(3, dishId);
             ps.executeUpdate();
+            try (ResultSet rs = ps.getGeneratedKeys()) {
+                if (rs.next()) {
+                    CartCache.lineWritten(customerId, rs.getInt(1), dishId, quantity);
+                } else {
+                    CartCache.evict(customerId);
+                }
+            }
         }
     }
 
@@ -85,6 +178,7 @@ public class CartDAO extends DBContext {
             ps.setInt(3, dishID);
             ps.executeUpdate();
         }
+        CartCache.quantityWritten(customerID, dishID, newQuantity);
     }
 
     public boolean updateCartQuantity(int cartID, int quantity) throws SQLException {
@@ -93,6 +187,9 @@ public class CartDAO extends DBContext {
             ps.setInt(1, quantity);
             ps.setInt(2, cartID);
             int rowsAffected = ps.executeUpdate();
+            if (rowsAffected > 0) {
+                CartCache.quantityWritten(cartID, quantity);
+            }
 
             // Return true if at least one row was updated, false otherwise
             return rowsAffected > 0;
@@ -109,7 +206,9 @@ public class CartDAO extends DBContext {
 
             ps.setInt(1, quantity);
             ps.setInt(2, cartID);
-            ps.executeUpdate();
+            if (ps.executeUpdate() > 0) {
+                CartCache.quantityWritten(cartID, quantity);
+            }
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -122,6 +221,9 @@ public class CartDAO extends DBContext {
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, cartID);
             int rowsAffected = ps.executeUpdate();
+            if (rowsAffected > 0) {
+                CartCache.linesRemoved(Collections.singletonList(cartID));
+            }
 
             // Return true if at least one row was deleted, false otherwise
             return rowsAffected > 0;
@@ -176,7 +278,9 @@ public class CartDAO extends DBContext {
         }
         StringBuilder sql = new StringBuilder(
                 "SELECT c.cartID, c.quantity, c.FK_Cart_Customer, c.FK_Cart_Dish, "
-                + "d.DishID, d.DishName, d.image, d.opCost, d.interestPercentage, d.stock "
+                + "d.DishID, d.DishName, d.image, d.opCost, d.interestPercentage, "
+                + "d.stock - " + StockReservationDAO.ACTIVE_HOLDS_SQL + " AS stock, "
+                + "d.ingredientCost, d.price "
                 + "FROM Cart c JOIN Dish d ON c.FK_Cart_Dish = d.DishID "
                 + "WHERE c.cartID IN ("
         );
@@ -204,7 +308,7 @@ public class CartDAO extends DBContext {
                 dish.setOpCost(rs.getBigDecimal("opCost"));
                 dish.setInterestPercentage(rs.getBigDecimal("interestPercentage"));
                 dish.setStock(rs.getInt("stock"));
-                loadIngredientsForDish(dish);
+                readPrice(dish, rs);
 
                 cart.setDish(dish);
                 carts.add(cart);
@@ -214,36 +318,17 @@ public class CartDAO extends DBContext {
         return carts;
     }
 
-    private void loadIngredientsForDish(Dish dish) throws SQLException {
-        List<Ingredient> ingredients = new ArrayList<>();
-
-        String sql = "SELECT i.ingredientID, i.name, i.unitCost, \n"
-                + "               di.quantity AS usedQuantity\n"
-                + "        FROM DishIngredient di\n"
-                + "        JOIN Ingredient i ON di.ingredientID = i.ingredientID\n"
-                + "        WHERE di.dishID = ?";
-
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, dish.getDishID());
-            ResultSet rs = ps.executeQuery();
-
-            while (rs.next()) {
-                Ingredient ingredient = new Ingredient();
-                ingredient.setIngredientId(rs.getInt("ingredientID"));
-                ingredient.setIngredientName(rs.getString("name"));
-                ingredient.setUnitCost(rs.getBigDecimal("unitCost"));
-
-                DishIngredient di = new DishIngredient();
-                di.setDishId(dish.getDishID());
-                di.setIngredientId(rs.getInt("ingredientID"));
-                di.setQuantity(rs.getBigDecimal("usedQuantity").doubleValue());
-
-                ingredient.setDishIngredients(List.of(di));
-                ingredients.add(ingredient);
-            }
+    /**
+     * Fill the dish price from the stored Dish.price / ingredientCost columns.
+     */
+    private void readPrice(Dish dish, ResultSet rs) throws SQLException {
+        BigDecimal totalPrice = rs.getBigDecimal("price");
+        if (totalPrice == null) {
+            totalPrice = BigDecimal.ZERO;
         }
-
-        dish.setIngredients(ingredients);
+        dish.setIngredientCost(rs.getBigDecimal("ingredientCost"));
+        dish.setTotalPrice(totalPrice);
+        dish.setFormattedPrice(TotalPriceCalculator.formatVND(totalPrice));
     }
 
     public boolean deleteCartsByIDs(String[] cartIDs) {
@@ -262,11 +347,16 @@ public class CartDAO extends DBContext {
 
         try (Connection conn = getConnection(); PreparedStatement ps = conn.prepareStatement(sqlBuilder.toString())) {
 
+            List<Integer> ids = new ArrayList<>();
             for (int i = 0; i < cartIDs.length; i++) {
-                ps.setInt(i + 1, Integer.parseInt(cartIDs[i]));
+                ids.add(Integer.parseInt(cartIDs[i]));
+                ps.setInt(i + 1, ids.get(i));
             }
 
             int rowsAffected = ps.executeUpdate();
+            if (rowsAffected > 0) {
+                CartCache.linesRemoved(ids);
+            }
             return rowsAffected > 0;
 
         } catch (Exception e) {
@@ -277,7 +367,9 @@ public class CartDAO extends DBContext {
     }
 
     public int getDishStockByCartId(int cartID) throws SQLException {
-        String sql = "SELECT d.stock FROM Cart c JOIN Dish d ON c.FK_Cart_Dish = d.DishID WHERE c.cartID = ?";
+        // Stock held for unpaid online orders is not available to this cart
+        String sql = "SELECT d.stock - " + StockReservationDAO.ACTIVE_HOLDS_SQL + " AS stock "
+                + "FROM Cart c JOIN Dish d ON c.FK_Cart_Dish = d.DishID WHERE c.cartID = ?";
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, cartID);
             ResultSet rs = ps.executeQuery();
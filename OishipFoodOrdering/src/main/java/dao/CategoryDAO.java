@@ -5,6 +5,7 @@ import utils.DBContext;
 
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 import dao.DishDAO;
@@ -28,6 +29,19 @@ public class CategoryDAO extends DBContext {
     }
 
     public List<Category> getAllCategories() {
+        try {
+            return loadAllCategories();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Same as {@link #getAllCategories()}, but a database error is thrown
+     * instead of giving an empty list, for the menu catalog.
+     */
+    public List<Category> loadAllCategories() throws SQLException {
         List<Category> list = new ArrayList<>();
         String sql = "SELECT catID, catName, catDescription FROM Category";
         try (PreparedStatement ps = conn.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
@@ -38,8 +52,6 @@ public class CategoryDAO extends DBContext {
                 c.setCatDescription(rs.getString("catDescription"));
                 list.add(c);
             }
-        } catch (Exception e) {
-            e.printStackTrace();
         }
         return list;
     }
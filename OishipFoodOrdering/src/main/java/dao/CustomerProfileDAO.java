@@ -13,6 +13,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import model.Customer;
 import utils.DBContext;
+import utils.account.PrincipalCache;
 
 /**
  *
@@ -160,6 +161,7 @@ public class CustomerProfileDAO extends DBContext {
 
                 if (rowsAccount > 0 && rowsCustomer > 0) {
                     conn.commit();
+                    PrincipalCache.invalidate(accountId);
                     LOGGER.info("Customer info updated successfully for email: " + email);
                     return true;
                 } else {
@@ -0,0 +1,424 @@
+package dao;
+
+import java.math.BigDecimal;
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import utils.DBContext;
+
+/**
+ * Per-day order, payment and revenue totals used by the admin and staff
+ * dashboards.
+ *
+ * DailyOrderRollup holds one row per day and DailyDishRollup one row per day
+ * and dish, so dashboards read O(days) rows no matter how many orders exist.
+ * When an order is created, paid, refunded, cancelled, deleted or changes
+ * status, the writer takes a {@link Share} of the order before and after the
+ * change and adds the difference to its day's rows in the same transaction.
+ * That touches one order and a handful of rollup rows, however busy the day.
+ * Only {@link #rebuildAll()} re-aggregates whole days from the orders.
+ */
+public class DailyRollupDAO extends DBContext {
+
+    private static final String REFRESH_ORDER_SQL
+            = "MERGE DailyOrderRollup WITH (HOLDLOCK) AS t "
+            + "USING (SELECT CAST(? AS DATE) AS rollupDate, "
+            + "  COUNT(*) AS totalOrders, "
+            + "  ISNULL(SUM(CASE WHEN o.orderStatus = 0 THEN 1 ELSE 0 END), 0) AS pendingOrders, "
+            + "  ISNULL(SUM(CASE WHEN o.orderStatus = 1 THEN 1 ELSE 0 END), 0) AS confirmedOrders, "
+            + "  ISNULL(SUM(CASE WHEN o.orderStatus = 2 THEN 1 ELSE 0 END), 0) AS preparingOrders, "
+            + "  ISNULL(SUM(CASE WHEN o.orderStatus = 3 THEN 1 ELSE 0 END), 0) AS deliveringOrders, "
+            + "  ISNULL(SUM(CASE WHEN o.orderStatus = 4 THEN 1 ELSE 0 END), 0) AS deliveredOrders, "
+            + "  ISNULL(SUM(CASE WHEN o.orderStatus = 5 THEN 1 ELSE 0 END), 0) AS cancelledOrders, "
+            + "  ISNULL(SUM(CASE WHEN o.orderStatus = 6 THEN 1 ELSE 0 END), 0) AS failedOrders, "
+            + "  ISNULL(SUM(CASE WHEN o.paymentStatus = 0 THEN 1 ELSE 0 END), 0) AS unpaidOrders, "
+            + "  ISNULL(SUM(CASE WHEN o.paymentStatus = 1 THEN 1 ELSE 0 END), 0) AS paidOrders, "
+            + "  ISNULL(SUM(CASE WHEN o.paymentStatus = 2 THEN 1 ELSE 0 END), 0) AS refundedOrders, "
+            + "  ISNULL(SUM(CASE WHEN o.paymentStatus = 1 THEN o.amount END), 0) AS revenue, "
+            + "  ISNULL(SUM(CASE WHEN o.paymentStatus = 1 THEN li.profit END), 0) AS profit, "
+            + "  ISNULL(SUM(CASE WHEN o.paymentStatus = 2 THEN o.amount END), 0) AS refunds, "
+            + "  ISNULL(SUM(CASE WHEN o.paymentStatus = 1 THEN ISNULL(li.profit, 0) "
+            + "                  WHEN o.paymentStatus = 2 AND o.orderStatus = 4 THEN -o.amount END), 0) AS income "
+            + "  FROM [Order] o "
+            + "  OUTER APPLY (SELECT SUM(od.profit * od.quantity) AS profit "
+            + "               FROM OrderDetail od WHERE od.FK_OD_Order = o.orderID) li "
+            + "  WHERE o.orderCreatedAt >= ? AND o.orderCreatedAt < DATEADD(DAY, 1, ?)) AS s "
+            + "ON t.rollupDate = s.rollupDate "
+            + "WHEN MATCHED THEN UPDATE SET "
+            + "  totalOrders = s.totalOrders, pendingOrders = s.pendingOrders, confirmedOrders = s.confirmedOrders, "
+            + "  preparingOrders = s.preparingOrders, deliveringOrders = s.deliveringOrders, "
+            + "  deliveredOrders = s.deliveredOrders, cancelledOrders = s.cancelledOrders, failedOrders = s.failedOrders, "
+            + "  unpaidOrders = s.unpaidOrders, paidOrders = s.paidOrders, refundedOrders = s.refundedOrders, "
+            + "  revenue = s.revenue, profit = s.profit, refunds = s.refunds, income = s.income, updatedAt = GETDATE() "
+            + "WHEN NOT MATCHED AND s.totalOrders > 0 THEN INSERT "
+            + "  (rollupDate, totalOrders, pendingOrders, confirmedOrders, preparingOrders, deliveringOrders, "
+            + "   deliveredOrders, cancelledOrders, failedOrders, unpaidOrders, paidOrders, refundedOrders, "
+            + "   revenue, profit, refunds, income, updatedAt) "
+            + "VALUES (s.rollupDate, s.totalOrders, s.pendingOrders, s.confirmedOrders, s.preparingOrders, "
+            + "   s.deliveringOrders, s.deliveredOrders, s.cancelledOrders, s.failedOrders, s.unpaidOrders, "
+            + "   s.paidOrders, s.refundedOrders, s.revenue, s.profit, s.refunds, s.income, GETDATE());";
+
+    private static final String DELETE_DISH_SQL = "DELETE FROM DailyDishRollup WHERE rollupDate = ?";
+
+    // Cancelled / failed orders and refunds do not count as sold
+    private static final String INSERT_DISH_SQL
+            = "INSERT INTO DailyDishRollup (rollupDate, dishID, itemsSold, revenue) "
+            + "SELECT CAST(? AS DATE), od.FK_OD_Dish, SUM(od.quantity), SUM(od.quantity * ISNULL(od.unitPrice, 0)) "
+            + "FROM OrderDetail od "
+            + "JOIN [Order] o ON od.FK_OD_Order = o.orderID "
+            + "WHERE o.orderCreatedAt >= ? AND o.orderCreatedAt < DATEADD(DAY, 1, ?) "
+            + "AND o.orderStatus NOT IN (5, 6) AND o.paymentStatus <> 2 "
+            + "GROUP BY od.FK_OD_Dish";
+
+    /**
+     * Re-aggregate every day from the first order up to today. Used to build
+     * the rollup for an existing database and to repair it after bulk edits
+     * made directly in SQL.
+     *
+     * @return number of days rebuilt
+     */
+    public int rebuildAll() {
+        LocalDate first = null;
+        String sql = "SELECT CAST(MIN(orderCreatedAt) AS DATE) AS firstDay FROM [Order]";
+        try (PreparedStatement ps = conn.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
+            if (rs.next() && rs.getDate("firstDay") != null) {
+                first = rs.getDate("firstDay").toLocalDate();
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return -1;
+        }
+        if (first == null) {
+            return 0;
+        }
+
+        int days = 0;
+        try {
+            for (LocalDate day = first; !day.isAfter(LocalDate.now()); day = day.plusDays(1)) {
+                refreshDay(conn, day);
+                days++;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return -1;
+        }
+        return days;
+    }
+
+    /**
+     * Years that have at least one order, oldest first.
+     */
+    public List<Integer> getAvailableYears() {
+        List<Integer> years = new ArrayList<>();
+        String sql = "SELECT DISTINCT YEAR(rollupDate) AS year FROM DailyOrderRollup "
+                + "WHERE totalOrders > 0 ORDER BY year";
+        try (PreparedStatement ps = conn.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                years.add(rs.getInt("year"));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return years;
+    }
+
+    /**
+     * Month (1-12) to income for a year: captured profit of paid orders minus
+     * the amount of refunded delivered orders, same rule as
+     * OrderDAO.getOrderIncomeByOrderId.
+     */
+    public Map<Integer, Double> getMonthlyIncome(int year) {
+        Map<Integer, Double> incomeMap = new LinkedHashMap<>();
+        for (int i = 1; i <= 12; i++) {
+            incomeMap.put(i, 0.0);
+        }
+
+        String sql = "SELECT MONTH(rollupDate) AS month, SUM(income) AS income "
+                + "FROM DailyOrderRollup "
+                + "WHERE rollupDate >= DATEFROMPARTS(?, 1, 1) AND rollupDate < DATEFROMPARTS(?, 1, 1) "
+                + "GROUP BY MONTH(rollupDate)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, year);
+            ps.setInt(2, year + 1);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    incomeMap.put(rs.getInt("month"), rs.getDouble("income"));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return incomeMap;
+    }
+
+    /**
+     * What one order adds to the rollup rows of the day it was created on.
+     */
+    static final class Share {
+
+        final Date day;
+        final int orderStatus;
+        final int paymentStatus;
+        final BigDecimal amount;
+        final BigDecimal profit;
+        // Dish ID to {quantity, quantity * unitPrice}, in dish order so rows are locked in one order
+        final Map<Integer, BigDecimal[]> dishes;
+
+        Share(Date day, int orderStatus, int paymentStatus, BigDecimal amount, BigDecimal profit,
+                Map<Integer, BigDecimal[]> dishes) {
+            this.day = day;
+            this.orderStatus = orderStatus;
+            this.paymentStatus = paymentStatus;
+            this.amount = amount;
+            this.profit = profit;
+            this.dishes = dishes;
+        }
+
+        boolean isPaid() {
+            return paymentStatus == 1;
+        }
+
+        // Cancelled / failed orders and refunds do not count as sold
+        boolean isSold() {
+            return orderStatus != 5 && orderStatus != 6 && paymentStatus != 2;
+        }
+
+        /**
+         * totalOrders, the seven orderStatus columns and the three
+         * paymentStatus columns.
+         */
+        int[] counts() {
+            int[] counts = new int[ORDER_COUNT_COLUMNS.length];
+            counts[0] = 1;
+            if (orderStatus >= 0 && orderStatus < 7) {
+                counts[1 + orderStatus] = 1;
+            }
+            if (paymentStatus >= 0 && paymentStatus < 3) {
+                counts[8 + paymentStatus] = 1;
+            }
+            return counts;
+        }
+
+        /**
+         * revenue, profit, refunds and income.
+         */
+        BigDecimal[] money() {
+            BigDecimal refunded = paymentStatus == 2 ? amount : BigDecimal.ZERO;
+            BigDecimal income = isPaid() ? profit
+                    : paymentStatus == 2 && orderStatus == 4 ? amount.negate() : BigDecimal.ZERO;
+            return new BigDecimal[]{isPaid() ? amount : BigDecimal.ZERO, isPaid() ? profit : BigDecimal.ZERO,
+                refunded, income};
+        }
+    }
+
+    private static final String[] ORDER_COUNT_COLUMNS = {"totalOrders",
+        "pendingOrders", "confirmedOrders", "preparingOrders", "deliveringOrders", "deliveredOrders",
+        "cancelledOrders", "failedOrders", "unpaidOrders", "paidOrders", "refundedOrders"};
+    private static final String[] ORDER_MONEY_COLUMNS = {"revenue", "profit", "refunds", "income"};
+
+    private static final String ADD_ORDER_SQL = buildAddOrderSql();
+
+    // The key range lock on a missing day or dish keeps two first writers from both inserting
+    private static final String ADD_DISH_SQL
+            = "UPDATE DailyDishRollup WITH (UPDLOCK, SERIALIZABLE) SET itemsSold = itemsSold + ?, revenue = revenue + ? "
+            + "WHERE rollupDate = ? AND dishID = ?; "
+            + "IF @@ROWCOUNT = 0 INSERT INTO DailyDishRollup (itemsSold, revenue, rollupDate, dishID) VALUES (?, ?, ?, ?);";
+
+    private static String buildAddOrderSql() {
+        List<String> columns = new ArrayList<>(List.of(ORDER_COUNT_COLUMNS));
+        columns.addAll(List.of(ORDER_MONEY_COLUMNS));
+        StringBuilder set = new StringBuilder();
+        for (String column : columns) {
+            set.append(column).append(" = ").append(column).append(" + ?, ");
+        }
+        return "UPDATE DailyOrderRollup WITH (UPDLOCK, SERIALIZABLE) SET " + set + "updatedAt = GETDATE() "
+                + "WHERE rollupDate = ?; "
+                + "IF @@ROWCOUNT = 0 INSERT INTO DailyOrderRollup (" + String.join(", ", columns)
+                + ", rollupDate, updatedAt) VALUES (" + String.join(", ", Collections.nCopies(columns.size() + 1, "?"))
+                + ", GETDATE());";
+    }
+
+    /**
+     * Read what an order adds to its day, locking the order row until the
+     * caller's transaction ends so two changes to one order cannot both
+     * start from the same share. Take it before changing the order and again
+     * after, then pass both to {@link #applyChange}.
+     *
+     * @return null if there is no such order
+     */
+    static Share snapshot(Connection c, int orderId) throws SQLException {
+        Date day;
+        int orderStatus;
+        int paymentStatus;
+        BigDecimal amount;
+        String orderSql = "SELECT CAST(orderCreatedAt AS DATE) AS orderDay, orderStatus, paymentStatus, amount "
+                + "FROM [Order] WITH (UPDLOCK, ROWLOCK) WHERE orderID = ?";
+        try (PreparedStatement ps = c.prepareStatement(orderSql)) {
+            ps.setInt(1, orderId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next() || rs.getDate("orderDay") == null) {
+                    return null;
+                }
+                day = rs.getDate("orderDay");
+                orderStatus = rs.getInt("orderStatus");
+                paymentStatus = rs.getInt("paymentStatus");
+                amount = rs.getBigDecimal("amount");
+            }
+        }
+
+        BigDecimal profit = BigDecimal.ZERO;
+        Map<Integer, BigDecimal[]> dishes = new TreeMap<>();
+        String linesSql = "SELECT FK_OD_Dish, quantity, unitPrice, profit FROM OrderDetail WHERE FK_OD_Order = ?";
+        try (PreparedStatement ps = c.prepareStatement(linesSql)) {
+            ps.setInt(1, orderId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    BigDecimal quantity = BigDecimal.valueOf(rs.getInt("quantity"));
+                    BigDecimal unitPrice = rs.getBigDecimal("unitPrice");
+                    BigDecimal unitProfit = rs.getBigDecimal("profit");
+                    if (unitProfit != null) {
+                        profit = profit.add(unitProfit.multiply(quantity));
+                    }
+                    BigDecimal lineRevenue = unitPrice == null ? BigDecimal.ZERO : unitPrice.multiply(quantity);
+                    dishes.merge(rs.getInt("FK_OD_Dish"), new BigDecimal[]{quantity, lineRevenue},
+                            (a, b) -> new BigDecimal[]{a[0].add(b[0]), a[1].add(b[1])});
+                }
+            }
+        }
+        return new Share(day, orderStatus, paymentStatus, amount == null ? BigDecimal.ZERO : amount, profit, dishes);
+    }
+
+    /**
+     * Add the difference between two shares of one order to its day's rows,
+     * in the caller's transaction. Call it last before committing, so the
+     * day's row stays locked as briefly as possible.
+     *
+     * @param before null for a new order
+     * @param after  null for a deleted order
+     */
+    static void applyChange(Connection c, Share before, Share after) throws SQLException {
+        Share any = after != null ? after : before;
+        if (any == null) {
+            return;
+        }
+        int[] counts = new int[ORDER_COUNT_COLUMNS.length];
+        BigDecimal[] money = new BigDecimal[ORDER_MONEY_COLUMNS.length];
+        Arrays.fill(money, BigDecimal.ZERO);
+        add(counts, money, after, 1);
+        add(counts, money, before, -1);
+        boolean changed = Arrays.stream(counts).anyMatch(count -> count != 0)
+                || Arrays.stream(money).anyMatch(value -> value.signum() != 0);
+        if (changed) {
+            try (PreparedStatement ps = c.prepareStatement(ADD_ORDER_SQL)) {
+                int index = 1;
+                for (int copy = 0; copy < 2; copy++) {
+                    for (int count : counts) {
+                        ps.setInt(index++, count);
+                    }
+                    for (BigDecimal value : money) {
+                        ps.setBigDecimal(index++, value);
+                    }
+                    ps.setDate(index++, any.day);
+                }
+                ps.executeUpdate();
+            }
+        }
+
+        Map<Integer, BigDecimal[]> dishes = new TreeMap<>();
+        addDishes(dishes, after, BigDecimal.ONE);
+        addDishes(dishes, before, BigDecimal.ONE.negate());
+        try (PreparedStatement ps = c.prepareStatement(ADD_DISH_SQL)) {
+            boolean batched = false;
+            for (Map.Entry<Integer, BigDecimal[]> dish : dishes.entrySet()) {
+                BigDecimal[] delta = dish.getValue();
+                if (delta[0].signum() == 0 && delta[1].signum() == 0) {
+                    continue;
+                }
+                for (int offset : new int[]{0, 4}) {
+                    ps.setInt(offset + 1, delta[0].intValue());
+                    ps.setBigDecimal(offset + 2, delta[1]);
+                    ps.setDate(offset + 3, any.day);
+                    ps.setInt(offset + 4, dish.getKey());
+                }
+                ps.addBatch();
+                batched = true;
+            }
+            if (batched) {
+                ps.executeBatch();
+            }
+        }
+    }
+
+    private static void add(int[] counts, BigDecimal[] money, Share share, int sign) {
+        if (share == null) {
+            return;
+        }
+        int[] shareCounts = share.counts();
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += sign * shareCounts[i];
+        }
+        BigDecimal[] shareMoney = share.money();
+        for (int i = 0; i < money.length; i++) {
+            money[i] = sign > 0 ? money[i].add(shareMoney[i]) : money[i].subtract(shareMoney[i]);
+        }
+    }
+
+    private static void addDishes(Map<Integer, BigDecimal[]> dishes, Share share, BigDecimal sign) {
+        if (share == null || !share.isSold()) {
+            return;
+        }
+        for (Map.Entry<Integer, BigDecimal[]> dish : share.dishes.entrySet()) {
+            BigDecimal[] value = dish.getValue();
+            dishes.merge(dish.getKey(), new BigDecimal[]{value[0].multiply(sign), value[1].multiply(sign)},
+                    (a, b) -> new BigDecimal[]{a[0].add(b[0]), a[1].add(b[1])});
+        }
+    }
+
+    /**
+     * Recompute both rollup tables for one day from its orders, in a
+     * transaction of its own. Only for rebuildAll: it scans the whole day.
+     */
+    private static void refreshDay(Connection c, LocalDate day) throws SQLException {
+        Date date = Date.valueOf(day);
+        boolean ownTransaction = c.getAutoCommit();
+        if (ownTransaction) {
+            c.setAutoCommit(false);
+        }
+        try {
+            try (PreparedStatement ps = c.prepareStatement(REFRESH_ORDER_SQL)) {
+                ps.setDate(1, date);
+                ps.setDate(2, date);
+                ps.setDate(3, date);
+                ps.executeUpdate();
+            }
+            try (PreparedStatement ps = c.prepareStatement(DELETE_DISH_SQL)) {
+                ps.setDate(1, date);
+                ps.executeUpdate();
+            }
+            try (PreparedStatement ps = c.prepareStatement(INSERT_DISH_SQL)) {
+                ps.setDate(1, date);
+                ps.setDate(2, date);
+                ps.setDate(3, date);
+                ps.executeUpdate();
+            }
+            if (ownTransaction) {
+                c.commit();
+            }
+        } catch (SQLException e) {
+            if (ownTransaction) {
+                c.rollback();
+            }
+            throw e;
+        } finally {
+            if (ownTransaction) {
+                c.setAutoCommit(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package dao;
+
+import java.sql.*;
+import java.time.LocalDate;
+import model.DashboardStats;
+import utils.DBContext;
+
+/**
+ * Order, payment and rating distributions for a time window, read with one
+ * statement: a single conditional-aggregate scan of [Order] and one of
+ * Review, cross joined into one row.
+ */
+public class DashboardStatsDAO extends DBContext {
+
+    /**
+     * Load the stats for orders and reviews created in [from, to).
+     *
+     * @param from first day included, or null for no lower bound
+     * @param to first day excluded, or null for no upper bound
+     * @return populated stats, all zero if the query failed
+     */
+    public DashboardStats loadStats(LocalDate from, LocalDate to) {
+        String orderWindow = window("o.orderCreatedAt", from, to);
+        String reviewWindow = window("r.reviewCreatedAt", from, to);
+        String sql = "SELECT os.*, rs.* FROM "
+                + "(SELECT COUNT(*) AS totalOrders, "
+                + "  ISNULL(SUM(CASE WHEN o.orderStatus = 0 THEN 1 ELSE 0 END), 0) AS pending, "
+                + "  ISNULL(SUM(CASE WHEN o.orderStatus = 1 THEN 1 ELSE 0 END), 0) AS confirmed, "
+                + "  ISNULL(SUM(CASE WHEN o.orderStatus = 2 THEN 1 ELSE 0 END), 0) AS preparing, "
+                + "  ISNULL(SUM(CASE WHEN o.orderStatus = 3 THEN 1 ELSE 0 END), 0) AS delivery, "
+                + "  ISNULL(SUM(CASE WHEN o.orderStatus = 4 THEN 1 ELSE 0 END), 0) AS delivered, "
+                + "  ISNULL(SUM(CASE WHEN o.orderStatus = 5 THEN 1 ELSE 0 END), 0) AS cancelled, "
+                + "  ISNULL(SUM(CASE WHEN o.orderStatus = 6 THEN 1 ELSE 0 END), 0) AS failed, "
+                + "  ISNULL(SUM(CASE WHEN o.paymentStatus = 0 THEN 1 ELSE 0 END), 0) AS unpaid, "
+                + "  ISNULL(SUM(CASE WHEN o.paymentStatus = 1 THEN 1 ELSE 0 END), 0) AS paid, "
+                + "  ISNULL(SUM(CASE WHEN o.paymentStatus = 2 THEN 1 ELSE 0 END), 0) AS refunded "
+                + " FROM [Order] o " + orderWindow + ") os "
+                + "CROSS JOIN "
+                + "(SELECT COUNT(*) AS totalReviews, "
+                + "  ISNULL(SUM(CASE WHEN r.rating = 1 THEN 1 ELSE 0 END), 0) AS star1, "
+                + "  ISNULL(SUM(CASE WHEN r.rating = 2 THEN 1 ELSE 0 END), 0) AS star2, "
+                + "  ISNULL(SUM(CASE WHEN r.rating = 3 THEN 1 ELSE 0 END), 0) AS star3, "
+                + "  ISNULL(SUM(CASE WHEN r.rating = 4 THEN 1 ELSE 0 END), 0) AS star4, "
+                + "  ISNULL(SUM(CASE WHEN r.rating = 5 THEN 1 ELSE 0 END), 0) AS star5 "
+                + " FROM Review r " + reviewWindow + ") rs";
+
+        DashboardStats stats = new DashboardStats();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int index = 1;
+            for (int i = 0; i < 2; i++) {
+                if (from != null) {
+                    ps.setDate(index++, Date.valueOf(from));
+                }
+                if (to != null) {
+                    ps.setDate(index++, Date.valueOf(to));
+                }
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    stats.setTotalOrders(rs.getInt("totalOrders"));
+                    stats.setPending(rs.getInt("pending"));
+                    stats.setConfirmed(rs.getInt("confirmed"));
+                    stats.setPreparing(rs.getInt("preparing"));
+                    stats.setDelivery(rs.getInt("delivery"));
+                    stats.setDelivered(rs.getInt("delivered"));
+                    stats.setCancelled(rs.getInt("cancelled"));
+                    stats.setFailed(rs.getInt("failed"));
+                    stats.setUnpaid(rs.getInt("unpaid"));
+                    stats.setPaid(rs.getInt("paid"));
+                    stats.setRefunded(rs.getInt("refunded"));
+                    stats.setTotalReviews(rs.getInt("totalReviews"));
+                    stats.setStar1(rs.getInt("star1"));
+                    stats.setStar2(rs.getInt("star2"));
+                    stats.setStar3(rs.getInt("star3"));
+                    stats.setStar4(rs.getInt("star4"));
+                    stats.setStar5(rs.getInt("star5"));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return stats;
+    }
+
+    // Range predicate on the raw column so an index on it can be used
+    private String window(String column, LocalDate from, LocalDate to) {
+        if (from == null && to == null) {
+            return "";
+        }
+        StringBuilder where = new StringBuilder("WHERE ");
+        if (from != null) {
+            where.append(column).append(" >= ?");
+        }
+        if (to != null) {
+            if (from != null) {
+                where.append(" AND ");
+            }
+            where.append(column).append(" < ?");
+        }
+        return where.toString();
+    }
+}
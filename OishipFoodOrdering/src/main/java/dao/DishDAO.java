@@ -1,21 +1,27 @@
 package dao;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import model.Dish;
 import utils.DBContext;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import model.Category;
-import model.Ingredient;
 import utils.TotalPriceCalculator;
+import utils.catalog.MenuCatalog;
+import utils.stock.StockCounter;
 
 public class DishDAO extends DBContext {
 
     public boolean addDish(Dish dish) {
         String sql = "INSERT INTO Dish (DishName, opCost, interestPercentage, image, DishDescription, stock, isAvailable, FK_Dish_Category) "
                 + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             ps.setString(1, dish.getDishName());
             ps.setBigDecimal(2, dish.getOpCost());
             ps.setBigDecimal(3, dish.getInterestPercentage());
@@ -24,7 +30,16 @@ public class DishDAO extends DBContext {
             ps.setInt(6, dish.getStock());
             ps.setBoolean(7, dish.isIsAvailable());
             ps.setInt(8, dish.getCategoryId());
-            return ps.executeUpdate() > 0;
+            if (ps.executeUpdate() == 0) {
+                return false;
+            }
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                if (keys.next()) {
+                    dish.setDishID(keys.getInt(1));
+                    recalculatePrices(conn, dish.getDishID());
+                }
+            }
+            return true;
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
@@ -44,7 +59,12 @@ public class DishDAO extends DBContext {
             ps.setBoolean(7, dish.isIsAvailable());
             ps.setInt(8, dish.getCategoryId());
             ps.setInt(9, dish.getDishID());
-            return ps.executeUpdate() > 0;
+            if (ps.executeUpdate() == 0) {
+                return false;
+            }
+            // opCost / interestPercentage may have changed
+            recalculatePrices(conn, dish.getDishID());
+            return true;
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
@@ -112,123 +132,24 @@ public class DishDAO extends DBContext {
     }
 
     public List<Dish> getAllDishes() {
-        List<Dish> dishes = new ArrayList<>();
-        String sql = "SELECT d.DishID, d.DishName, d.image, d.opCost, d.interestPercentage, d.DishDescription, "
-                + "d.stock, d.isAvailable, d.FK_Dish_Category, "
-                + "c.catName, c.catDescription "
-                + "FROM Dish d "
-                + "LEFT JOIN Category c ON d.FK_Dish_Category = c.catID "
-                + "ORDER BY d.DishID ASC";
-
-        try (PreparedStatement stmt = conn.prepareStatement(sql); ResultSet rs = stmt.executeQuery()) {
-            IngredientDAO ingredientDAO = new IngredientDAO();
-
-            while (rs.next()) {
-                Dish item = new Dish();
-                int dishId = rs.getInt("DishID");
-
-                item.setDishID(dishId);
-                item.setDishName(rs.getString("DishName"));
-                item.setImage(rs.getString("image"));
-                item.setOpCost(rs.getBigDecimal("opCost"));
-                item.setInterestPercentage(rs.getBigDecimal("interestPercentage"));
-                item.setDishDescription(rs.getString("DishDescription"));
-                item.setStock(rs.getInt("stock"));
-                item.setIsAvailable(rs.getBoolean("isAvailable"));
-                item.setCategoryId(rs.getInt("FK_Dish_Category"));
-
-                List<Ingredient> ingredients = ingredientDAO.getIngredientsByDishId(dishId);
-                BigDecimal ingredientCost = TotalPriceCalculator.calculateIngredientCost(ingredients);
-                BigDecimal totalPrice = TotalPriceCalculator.calculateTotalPrice(
-                        item.getOpCost(), item.getInterestPercentage(), ingredientCost);
-
-                BigDecimal profit = totalPrice.subtract(item.getOpCost().add(ingredientCost));
-                item.setIngredients(ingredients);
-                item.setFormattedIngredientsPrice(TotalPriceCalculator.formatVND(ingredientCost));
-                item.setTotalPrice(totalPrice);
-                item.setFormattedPrice(TotalPriceCalculator.formatVND(totalPrice));
-                item.setFormattedOpCost(TotalPriceCalculator.formatVND(item.getOpCost()));
-                item.setFormattedProfit(TotalPriceCalculator.formatVND(profit));
-
-                String catName = rs.getString("catName");
-                if (catName != null) {
-                    Category category = new Category();
-                    category.setCatID(item.getCategoryId());
-                    category.setCatName(catName);
-                    category.setCatDescription(rs.getString("catDescription"));
-                    item.setCategory(category);
-                }
-
-                dishes.add(item);
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        return loadDishesOrEmpty("", "ORDER BY d.DishID ASC");
+    }
 
-        return dishes;
+    /**
+     * Same as {@link #getAllDishes()}, but a database error is thrown
+     * instead of giving an empty list, for the menu catalog.
+     */
+    public List<Dish> loadAllDishes() throws SQLException {
+        return loadDishes("", "ORDER BY d.DishID ASC");
     }
 
     public List<Dish> getAllDishesAvailable() {
-        List<Dish> dishes = new ArrayList<>();
-        String sql = "SELECT d.DishID, d.DishName, d.image, d.opCost, d.interestPercentage, d.DishDescription, "
-                + "d.stock, d.isAvailable, d.FK_Dish_Category, "
-                + "c.catName, c.catDescription "
-                + "FROM Dish d "
-                + "LEFT JOIN Category c ON d.FK_Dish_Category = c.catID "
-                + "WHERE d.isAvailable = 1"
-                + "ORDER BY d.DishID ASC";
-
-        try (PreparedStatement stmt = conn.prepareStatement(sql); ResultSet rs = stmt.executeQuery()) {
-            IngredientDAO ingredientDAO = new IngredientDAO();
-
-            while (rs.next()) {
-                Dish item = new Dish();
-                int dishId = rs.getInt("DishID");
-
-                item.setDishID(dishId);
-                item.setDishName(rs.getString("DishName"));
-                item.setImage(rs.getString("image"));
-                item.setOpCost(rs.getBigDecimal("opCost"));
-                item.setInterestPercentage(rs.getBigDecimal("interestPercentage"));
-                item.setDishDescription(rs.getString("DishDescription"));
-                item.setStock(rs.getInt("stock"));
-                item.setIsAvailable(rs.getBoolean("isAvailable"));
-                item.setCategoryId(rs.getInt("FK_Dish_Category"));
-
-                List<Ingredient> ingredients = ingredientDAO.getIngredientsByDishId(dishId);
-                BigDecimal ingredientCost = TotalPriceCalculator.calculateIngredientCost(ingredients);
-                BigDecimal totalPrice = TotalPriceCalculator.calculateTotalPrice(
-                        item.getOpCost(), item.getInterestPercentage(), ingredientCost);
-
-                BigDecimal profit = totalPrice.subtract(item.getOpCost().add(ingredientCost));
-                item.setIngredients(ingredients);
-                item.setFormattedIngredientsPrice(TotalPriceCalculator.formatVND(ingredientCost));
-                item.setTotalPrice(totalPrice);
-                item.setFormattedPrice(TotalPriceCalculator.formatVND(totalPrice));
-                item.setFormattedOpCost(TotalPriceCalculator.formatVND(item.getOpCost()));
-                item.setFormattedProfit(TotalPriceCalculator.formatVND(profit));
-
-                String catName = rs.getString("catName");
-                if (catName != null) {
-                    Category category = new Category();
-                    category.setCatID(item.getCategoryId());
-                    category.setCatName(catName);
-                    category.setCatDescription(rs.getString("catDescription"));
-                    item.setCategory(category);
-                }
-
-                dishes.add(item);
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-
-        return dishes;
+        return loadDishesOrEmpty("WHERE d.isAvailable = 1 ", "ORDER BY d.DishID ASC");
     }
 
     public Dish getDishDetailById(int dishId) {
         String sql = "SELECT d.DishID, d.DishName, d.image, d.dishDescription, d.stock,\n"
-                + "       d.opCost, d.interestPercentage,\n"
+                + "       d.opCost, d.interestPercentage, d.ingredientCost, d.price,\n"
                 + "       STUFF((SELECT DISTINCT ', ' + i2.name\n"
                 + "              FROM DishIngredient di2\n"
                 + "              JOIN Ingredient i2 ON di2.ingredientID = i2.ingredientID\n"
@@ -239,7 +160,8 @@ public class DishDAO extends DBContext {
                 + "LEFT JOIN OrderDetail od ON od.FK_OD_Dish = d.DishID\n"
                 + "LEFT JOIN Review r ON r.FK_Review_OrderDetail = od.ODID\n"
                 + "WHERE d.DishID = ?\n"
-                + "GROUP BY d.DishID, d.DishName, d.image, d.dishDescription, d.stock, d.opCost, d.interestPercentage";
+                + "GROUP BY d.DishID, d.DishName, d.image, d.dishDescription, d.stock, d.opCost, d.interestPercentage,\n"
+                + "         d.ingredientCost, d.price";
 
         try (PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, dishId);
@@ -255,18 +177,12 @@ public class DishDAO extends DBContext {
                 dish.setIngredientNames(rs.getString("ingredientNames"));
                 dish.setAvgRating(rs.getDouble("avgRating"));
 
-                BigDecimal opCost = rs.getBigDecimal("opCost");
-                BigDecimal interest = rs.getBigDecimal("interestPercentage");
-
-                IngredientDAO dao = new IngredientDAO();
-                List<Ingredient> ingredients = dao.getIngredientsByDishId(dish.getDishID());
-
-                BigDecimal ingredientCost = TotalPriceCalculator.calculateIngredientCost(ingredients);
-                BigDecimal totalPrice = TotalPriceCalculator.calculateTotalPrice(opCost, interest, ingredientCost);
-                String formatted = TotalPriceCalculator.formatVND(totalPrice);
-
-                dish.setTotalPrice(totalPrice);
-                dish.setFormattedPrice(formatted);
+                dish.setOpCost(rs.getBigDecimal("opCost"));
+                dish.setInterestPercentage(rs.getBigDecimal("interestPercentage"));
+                readPricing(dish, rs);
+                if (dish.getTotalPrice() == null) {
+                    fillMissingPrices(List.of(dish));
+                }
 
                 return dish;
             }
@@ -277,92 +193,380 @@ public class DishDAO extends DBContext {
     }
 
     public List<Dish> searchDishByName(String searchQuery) {
+        return loadDishesOrEmpty("WHERE d.DishName LIKE ? ", "", "%" + searchQuery + "%");
+    }
+
+    public List<Dish> getDishesByCategory(int catId) {
+        return loadDishesOrEmpty("WHERE d.FK_Dish_Category = ? ", "", catId);
+    }
+
+    /**
+     * Load dishes matching a filter together with their category and stored
+     * prices in a single query. Dishes created before the price columns were
+     * added get their price computed and persisted on first read.
+     *
+     * @param where WHERE clause on alias d (Dish), or empty
+     * @param orderBy ORDER BY clause, or empty
+     * @param params values for the placeholders in the WHERE clause
+     * @return the matching dishes with pricing fields filled in
+     */
+    private List<Dish> loadDishes(String where, String orderBy, Object... params) throws SQLException {
         List<Dish> dishes = new ArrayList<>();
-        String sql = "SELECT d.DishID, d.DishName, d.image, d.DishDescription, d.stock, d.opCost, d.interestPercentage "
-                + "FROM Dish d WHERE d.DishName LIKE ?";
+        String sql = "SELECT d.DishID, d.DishName, d.image, d.opCost, d.interestPercentage, d.DishDescription, "
+                + "d.stock, d.isAvailable, d.FK_Dish_Category, d.ingredientCost, d.price, d.priceVersion, "
+                + "c.catName, c.catDescription "
+                + "FROM Dish d "
+                + "LEFT JOIN Category c ON d.FK_Dish_Category = c.catID "
+                + where
+                + orderBy;
 
         try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, "%" + searchQuery + "%");
-            ResultSet rs = stmt.executeQuery();
-            IngredientDAO ingredientDAO = new IngredientDAO();
+            setParams(stmt, params);
+            List<Dish> unpriced = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Dish item = new Dish();
+                    item.setDishID(rs.getInt("DishID"));
+                    item.setDishName(rs.getString("DishName"));
+                    item.setImage(rs.getString("image"));
+                    item.setOpCost(rs.getBigDecimal("opCost"));
+                    item.setInterestPercentage(rs.getBigDecimal("interestPercentage"));
+                    item.setDishDescription(rs.getString("DishDescription"));
+                    item.setStock(rs.getInt("stock"));
+                    item.setIsAvailable(rs.getBoolean("isAvailable"));
+                    item.setCategoryId(rs.getInt("FK_Dish_Category"));
+                    item.setPriceVersion(rs.getInt("priceVersion"));
+                    readPricing(item, rs);
+
+                    String catName = rs.getString("catName");
+                    if (catName != null) {
+                        Category category = new Category();
+                        category.setCatID(item.getCategoryId());
+                        category.setCatName(catName);
+                        category.setCatDescription(rs.getString("catDescription"));
+                        item.setCategory(category);
+                    }
+
+                    if (item.getTotalPrice() == null) {
+                        unpriced.add(item);
+                    }
+                    dishes.add(item);
+                }
+            }
 
-            while (rs.next()) {
-                Dish dish = new Dish();
-                int dishId = rs.getInt("DishID");
+            if (!unpriced.isEmpty()) {
+                fillMissingPrices(unpriced);
+            }
+        }
 
-                dish.setDishID(dishId);
-                dish.setDishName(rs.getString("DishName"));
-                dish.setImage(rs.getString("image"));
-                dish.setDishDescription(rs.getString("DishDescription"));
-                dish.setStock(rs.getInt("stock"));
+        return dishes;
+    }
 
-                BigDecimal opCost = rs.getBigDecimal("opCost");
-                BigDecimal interest = rs.getBigDecimal("interestPercentage");
+    private List<Dish> loadDishesOrEmpty(String where, String orderBy, Object... params) {
+        try {
+            return loadDishes(where, orderBy, params);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
 
-                List<Ingredient> ingredients = ingredientDAO.getIngredientsByDishId(dishId);
-                BigDecimal ingredientCost = TotalPriceCalculator.calculateIngredientCost(ingredients);
-                BigDecimal totalPrice = TotalPriceCalculator.calculateTotalPrice(opCost, interest, ingredientCost);
+    /**
+     * Copy the stored ingredientCost / price columns onto the dish and fill
+     * the formatted fields. Leaves totalPrice null if the dish has not been
+     * priced yet.
+     */
+    private void readPricing(Dish item, ResultSet rs) throws SQLException {
+        BigDecimal price = rs.getBigDecimal("price");
+        if (price == null) {
+            return;
+        }
+        applyPricing(item, rs.getBigDecimal("ingredientCost"), price);
+    }
 
-                dish.setTotalPrice(totalPrice);
-                dish.setFormattedPrice(TotalPriceCalculator.formatVND(totalPrice));
-                dishes.add(dish);
+    private void fillMissingPrices(List<Dish> dishes) throws SQLException {
+        int[] ids = new int[dishes.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = dishes.get(i).getDishID();
+        }
+        Map<Integer, BigDecimal[]> prices = recalculatePrices(conn, ids);
+        for (Dish item : dishes) {
+            BigDecimal[] p = prices.get(item.getDishID());
+            if (p != null) {
+                applyPricing(item, p[0], p[1]);
             }
+        }
+    }
+
+    private void applyPricing(Dish item, BigDecimal ingredientCost, BigDecimal totalPrice) {
+        BigDecimal opCost = item.getOpCost() != null ? item.getOpCost() : BigDecimal.ZERO;
+        if (ingredientCost == null) {
+            ingredientCost = BigDecimal.ZERO;
+        }
+
+        BigDecimal profit = totalPrice.subtract(opCost.add(ingredientCost));
+        item.setIngredientCost(ingredientCost);
+        item.setFormattedIngredientsPrice(TotalPriceCalculator.formatVND(ingredientCost));
+        item.setTotalPrice(totalPrice);
+        item.setFormattedPrice(TotalPriceCalculator.formatVND(totalPrice));
+        item.setFormattedOpCost(TotalPriceCalculator.formatVND(item.getOpCost()));
+        item.setFormattedProfit(TotalPriceCalculator.formatVND(profit));
+    }
+
+    /**
+     * Recompute the stored price of a single dish, e.g. after its recipe
+     * changed outside the DAOs.
+     *
+     * @param dishId dish to reprice
+     * @return true if the dish exists
+     */
+    public boolean recalculatePrice(int dishId) {
+        try {
+            return !recalculatePrices(conn, dishId).isEmpty();
         } catch (SQLException e) {
             e.printStackTrace();
+            return false;
         }
-        return dishes;
     }
 
-    public List<Dish> getDishesByCategory(int catId) {
-        List<Dish> dishes = new ArrayList<>();
-        String sql = "SELECT d.DishID, d.DishName, d.image, d.DishDescription, d.stock, d.opCost, d.interestPercentage "
-                + "FROM Dish d WHERE d.FK_Dish_Category = ?";
-
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, catId);
-            ResultSet rs = stmt.executeQuery();
-            IngredientDAO ingredientDAO = new IngredientDAO();
+    /**
+     * Recompute the stored price of every dish. Used once after adding the
+     * price columns and whenever the pricing formula changes.
+     *
+     * @return number of dishes checked
+     */
+    public int recalculateAllPrices() {
+        try {
+            return recalculatePrices(conn, "", new Object[0]).size();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
 
-            while (rs.next()) {
-                Dish dish = new Dish();
-                int dishId = rs.getInt("DishID");
+    /**
+     * Recompute the stored prices of the given dishes on the caller's
+     * connection, so it can run inside the caller's transaction.
+     *
+     * @param c connection to use
+     * @param dishIds dishes to reprice
+     * @return map of dish ID to {ingredientCost, price}
+     */
+    static Map<Integer, BigDecimal[]> recalculatePrices(Connection c, int... dishIds) throws SQLException {
+        if (dishIds.length == 0) {
+            return new HashMap<>();
+        }
+        Object[] params = new Object[dishIds.length];
+        for (int i = 0; i < dishIds.length; i++) {
+            params[i] = dishIds[i];
+        }
+        String placeholders = String.join(",", Collections.nCopies(dishIds.length, "?"));
+        return recalculatePrices(c, "WHERE d.DishID IN (" + placeholders + ") ", params);
+    }
 
-                dish.setDishID(dishId);
-                dish.setDishName(rs.getString("DishName"));
-                dish.setImage(rs.getString("image"));
-                dish.setDishDescription(rs.getString("DishDescription"));
-                dish.setStock(rs.getInt("stock"));
+    /**
+     * Recompute the stored prices of every dish that uses an ingredient, after
+     * its unit cost changed.
+     *
+     * @param c connection to use
+     * @param ingredientId ingredient whose cost changed
+     * @return map of dish ID to {ingredientCost, price}
+     */
+    static Map<Integer, BigDecimal[]> recalculatePricesForIngredient(Connection c, int ingredientId) throws SQLException {
+        return recalculatePrices(c,
+                "WHERE d.DishID IN (SELECT di2.dishID FROM DishIngredient di2 WHERE di2.ingredientID = ?) ",
+                ingredientId);
+    }
 
-                BigDecimal opCost = rs.getBigDecimal("opCost");
-                BigDecimal interest = rs.getBigDecimal("interestPercentage");
+    /**
+     * IDs of the dishes that use an ingredient. Read before deleting the
+     * ingredient so those dishes can be repriced afterwards.
+     */
+    static int[] getDishIdsByIngredient(Connection c, int ingredientId) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        try (PreparedStatement ps = c.prepareStatement("SELECT dishID FROM DishIngredient WHERE ingredientID = ?")) {
+            ps.setInt(1, ingredientId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getInt("dishID"));
+                }
+            }
+        }
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
 
-                List<Ingredient> ingredients = ingredientDAO.getIngredientsByDishId(dishId);
-                BigDecimal ingredientCost = TotalPriceCalculator.calculateIngredientCost(ingredients);
-                BigDecimal totalPrice = TotalPriceCalculator.calculateTotalPrice(opCost, interest, ingredientCost);
+    /**
+     * Sum the recipe cost of the matching dishes in one grouped query, apply
+     * TotalPriceCalculator and write back only the rows whose cost or price
+     * actually changed, bumping priceVersion for each.
+     */
+    private static Map<Integer, BigDecimal[]> recalculatePrices(Connection c, String where, Object... params) throws SQLException {
+        Map<Integer, BigDecimal[]> result = new HashMap<>();
+        String sql = "SELECT d.DishID, d.opCost, d.interestPercentage, d.ingredientCost, d.price, "
+                + "SUM(i.unitCost * di.quantity) AS recipeCost "
+                + "FROM Dish d "
+                + "LEFT JOIN DishIngredient di ON di.dishID = d.DishID "
+                + "LEFT JOIN Ingredient i ON i.ingredientID = di.ingredientID "
+                + where
+                + "GROUP BY d.DishID, d.opCost, d.interestPercentage, d.ingredientCost, d.price";
+        String updateSql = "UPDATE Dish SET ingredientCost = ?, price = ?, priceVersion = priceVersion + 1 "
+                + "WHERE DishID = ?";
+
+        try (PreparedStatement select = c.prepareStatement(sql);
+                PreparedStatement update = c.prepareStatement(updateSql)) {
+            for (int i = 0; i < params.length; i++) {
+                select.setObject(i + 1, params[i]);
+            }
 
-                dish.setTotalPrice(totalPrice);
-                dish.setFormattedPrice(TotalPriceCalculator.formatVND(totalPrice));
-                dishes.add(dish);
+            int pending = 0;
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    int dishId = rs.getInt("DishID");
+                    BigDecimal recipeCost = rs.getBigDecimal("recipeCost");
+                    if (recipeCost == null) {
+                        recipeCost = BigDecimal.ZERO;
+                    }
+                    BigDecimal price = TotalPriceCalculator.calculateTotalPrice(
+                            rs.getBigDecimal("opCost"), rs.getBigDecimal("interestPercentage"), recipeCost);
+                    BigDecimal ingredientCost = recipeCost.setScale(2, RoundingMode.HALF_UP);
+                    result.put(dishId, new BigDecimal[]{ingredientCost, price});
+
+                    BigDecimal oldCost = rs.getBigDecimal("ingredientCost");
+                    BigDecimal oldPrice = rs.getBigDecimal("price");
+                    if (oldCost != null && oldPrice != null
+                            && oldCost.compareTo(ingredientCost) == 0 && oldPrice.compareTo(price) == 0) {
+                        continue;
+                    }
+                    update.setBigDecimal(1, ingredientCost);
+                    update.setBigDecimal(2, price);
+                    update.setInt(3, dishId);
+                    update.addBatch();
+                    pending++;
+                }
+            }
+            if (pending > 0) {
+                update.executeBatch();
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
+        return result;
+    }
 
-        return dishes;
+    private void setParams(PreparedStatement stmt, Object... params) throws SQLException {
+        for (int i = 0; i < params.length; i++) {
+            stmt.setObject(i + 1, params[i]);
+        }
     }
 
     public boolean decreaseStock(int dishId, int quantity) throws SQLException {
+        if (StockCounter.isEnabled()) {
+            return takeFromCounter(dishId, quantity);
+        }
         String sql = "UPDATE Dish SET stock = stock - ? WHERE dishID = ? AND stock >= ?";
         try (PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, quantity);
             stmt.setInt(2, dishId);
             stmt.setInt(3, quantity);
-            return stmt.executeUpdate() > 0;
+            boolean updated = stmt.executeUpdate() > 0;
+            if (updated) {
+                MenuCatalog.invalidateStock();
+            }
+            return updated;
+        }
+    }
+
+    /**
+     * Take stock from the in-process counter and leave the Dish update to its
+     * next write-back.
+     */
+    private boolean takeFromCounter(int dishId, int quantity) {
+        if (!StockCounter.tryDecrement(dishId, quantity)) {
+            return false;
         }
+        StockCounter.decrementLater(dishId, quantity);
+        return true;
+    }
+
+    /**
+     * Write back decrements queued by the stock counter in one statement.
+     * Stock never goes below zero; a staff edit may have lowered it since the
+     * decrement was taken.
+     *
+     * @param decrements dish ID to quantity
+     * @return false if the update failed
+     */
+    public boolean applyStockDecrements(Map<Integer, Integer> decrements) {
+        String values = String.join(",", Collections.nCopies(decrements.size(), "(?, ?)"));
+        String sql = "UPDATE d SET d.stock = CASE WHEN d.stock >= x.qty THEN d.stock - x.qty ELSE 0 END "
+                + "FROM Dish d JOIN (VALUES " + values + ") AS x(dishID, qty) ON d.DishID = x.dishID";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int index = 1;
+            for (Map.Entry<Integer, Integer> entry : decrements.entrySet()) {
+                ps.setInt(index++, entry.getKey());
+                ps.setInt(index++, entry.getValue());
+            }
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+        MenuCatalog.invalidateStock();
+        return true;
+    }
+
+    /**
+     * Stock and availability of every dish, used to overlay live stock on the
+     * cached menu catalog. Stock held for unpaid online orders is already
+     * subtracted.
+     *
+     * @return map of dish ID to {stock, isAvailable (1/0)}
+     */
+    public Map<Integer, int[]> getStockLevels() {
+        Map<Integer, int[]> levels = new HashMap<>();
+        String sql = "SELECT d.DishID, d.stock - " + StockReservationDAO.ACTIVE_HOLDS_SQL + " AS stock, d.isAvailable "
+                + "FROM Dish d";
+        try (PreparedStatement ps = conn.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                levels.put(rs.getInt("DishID"), new int[]{rs.getInt("stock"), rs.getBoolean("isAvailable") ? 1 : 0});
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return levels;
+    }
+
+    /**
+     * Same as {@link #getStockLevels()} for a few dishes only.
+     */
+    public Map<Integer, int[]> getStockLevels(Collection<Integer> dishIds) {
+        Map<Integer, int[]> levels = new HashMap<>();
+        if (dishIds.isEmpty()) {
+            return levels;
+        }
+        String placeholders = String.join(",", Collections.nCopies(dishIds.size(), "?"));
+        String sql = "SELECT d.DishID, d.stock - " + StockReservationDAO.ACTIVE_HOLDS_SQL + " AS stock, d.isAvailable "
+                + "FROM Dish d WHERE d.DishID IN (" + placeholders + ")";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int index = 1;
+            for (Integer dishId : dishIds) {
+                ps.setInt(index++, dishId);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    levels.put(rs.getInt("DishID"), new int[]{rs.getInt("stock"), rs.getBoolean("isAvailable") ? 1 : 0});
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return levels;
     }
 
     public int getDishStockByDishId(int dishID) throws SQLException {
-        String sql = "SELECT stock FROM Dish WHERE DishID = ?";
+        Integer counted = StockCounter.getAvailable(dishID);
+        if (counted != null) {
+            return counted;
+        }
+        String sql = "SELECT d.stock - " + StockReservationDAO.ACTIVE_HOLDS_SQL + " AS stock FROM Dish d WHERE d.DishID = ?";
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, dishID);
             ResultSet rs = ps.executeQuery();
@@ -375,12 +579,18 @@ public class DishDAO extends DBContext {
     //for staff create order
 
     public boolean updateStockAfterOrder(int dishID, int quantityOrdered) {
+        if (StockCounter.isEnabled()) {
+            return takeFromCounter(dishID, quantityOrdered);
+        }
         String sql = "UPDATE Dish SET stock = stock - ? WHERE DishID = ? AND stock >= ?";
         try (Connection conn = getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, quantityOrdered);
             ps.setInt(2, dishID);
             ps.setInt(3, quantityOrdered);
             int rows = ps.executeUpdate();
+            if (rows > 0) {
+                MenuCatalog.invalidateStock();
+            }
             return rows > 0;
         } catch (SQLException e) {
             e.printStackTrace();
@@ -19,7 +19,11 @@ public class DishIngredientDAO extends DBContext {
             ps.setInt(1, dishID);
             ps.setInt(2, ingredientID);
             ps.setDouble(3, quantity);
-            return ps.executeUpdate() > 0;
+            if (ps.executeUpdate() == 0) {
+                return false;
+            }
+            DishDAO.recalculatePrices(conn, dishID);
+            return true;
         } catch (SQLException e) {
             System.err.println("Error adding DishIngredient: " + e.getMessage());
             return false;
@@ -61,7 +65,11 @@ public class DishIngredientDAO extends DBContext {
         String sql = "DELETE FROM DishIngredient WHERE dishID = ?";
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, dishID);
-            return ps.executeUpdate() > 0;
+            if (ps.executeUpdate() == 0) {
+                return false;
+            }
+            DishDAO.recalculatePrices(conn, dishID);
+            return true;
         } catch (SQLException e) {
             System.err.println("Error deleting DishIngredient by dishID: " + e.getMessage());
             return false;
@@ -99,7 +107,10 @@ public class DishIngredientDAO extends DBContext {
             stmt.setBigDecimal(1, newQuantity);
             stmt.setInt(2, dishId);
             stmt.setInt(3, ingredientId);
-            return stmt.executeUpdate() > 0;
+            if (stmt.executeUpdate() > 0) {
+                DishDAO.recalculatePrices(conn, dishId);
+                return true;
+            }
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -113,7 +124,10 @@ public class DishIngredientDAO extends DBContext {
             stmt.setInt(1, dishId);
             stmt.setInt(2, ingredientId);
 
-            return stmt.executeUpdate() > 0;
+            if (stmt.executeUpdate() > 0) {
+                DishDAO.recalculatePrices(conn, dishId);
+                return true;
+            }
 
         } catch (SQLException e) {
             e.printStackTrace();
@@ -147,6 +161,9 @@ public class DishIngredientDAO extends DBContext {
             ps.setInt(2, ingredientID);
             ps.setBigDecimal(3, quantity);
             int rows = ps.executeUpdate();
+            if (rows > 0) {
+                DishDAO.recalculatePrices(conn, dishID);
+            }
             return rows > 0;
         } catch (SQLException e) {
             e.printStackTrace();
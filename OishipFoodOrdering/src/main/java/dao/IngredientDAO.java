@@ -4,7 +4,9 @@ import model.Dish;
 import model.DishIngredient;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.math.BigDecimal;
 import model.Ingredient;
 import utils.DBContext;
@@ -201,6 +203,7 @@ public class IngredientDAO extends DBContext {
             int rowsAffected = pstmt.executeUpdate();
             if (rowsAffected > 0) {
                 System.out.println("Updated ingredient ID: " + ingredient.getIngredientId());
+                DishDAO.recalculatePricesForIngredient(conn, ingredient.getIngredientId());
                 if (dishId != null && quantity != null) {
                     DishIngredient existing = getDishIngredient(dishId, ingredient.getIngredientId());
                     if (existing != null) {
@@ -245,6 +248,14 @@ public class IngredientDAO extends DBContext {
         try {
             conn.setAutoCommit(false); // Start transaction
 
+            // Remember which dishes lose an ingredient so they can be repriced
+            Set<Integer> affectedDishIds = new HashSet<>();
+            for (int id : ingredientIds) {
+                for (int dishId : DishDAO.getDishIdsByIngredient(conn, id)) {
+                    affectedDishIds.add(dishId);
+                }
+            }
+
             // Delete all associated DishIngredient records
             try (PreparedStatement pstmtDish = conn.prepareStatement(deleteDishIngredientSql)) {
                 for (int id : ingredientIds) {
@@ -267,6 +278,8 @@ public class IngredientDAO extends DBContext {
                 }
             }
 
+            DishDAO.recalculatePrices(conn, affectedDishIds.stream().mapToInt(Integer::intValue).toArray());
+
             conn.commit(); // Commit transaction
             return true;
         } catch (SQLException e) {
@@ -300,6 +313,7 @@ public class IngredientDAO extends DBContext {
             int rowsAffected = pstmt.executeUpdate();
             if (rowsAffected > 0) {
                 System.out.println("Added relation: DishID " + dishId + " - IngredientID " + ingredientId);
+                DishDAO.recalculatePrices(conn, dishId);
             } else {
                 System.err.println("Failed to add relation: DishID " + dishId + " - IngredientID " + ingredientId);
             }
@@ -373,6 +387,7 @@ public class IngredientDAO extends DBContext {
             int rowsAffected = pstmt.executeUpdate();
             if (rowsAffected > 0) {
                 System.out.println("Updated DishIngredient: DishID " + dishIngredient.getDishId() + " - IngredientID " + dishIngredient.getIngredientId());
+                DishDAO.recalculatePrices(conn, dishIngredient.getDishId());
             } else {
                 System.err.println("No DishIngredient updated for DishID " + dishIngredient.getDishId() + " - IngredientID " + dishIngredient.getIngredientId());
             }
@@ -394,6 +409,7 @@ public class IngredientDAO extends DBContext {
             int rowsAffected = pstmt.executeUpdate();
             if (rowsAffected > 0) {
                 System.out.println("Deleted DishIngredient: DishID " + dishId + " - IngredientID " + ingredientId);
+                DishDAO.recalculatePrices(conn, dishId);
                 return true;
             } else {
                 System.err.println("No DishIngredient found to delete for DishID " + dishId + " - IngredientID " + ingredientId);
@@ -459,6 +475,7 @@ public class IngredientDAO extends DBContext {
                     if (generatedKeys.next()) {
                         int dishId = generatedKeys.getInt(1);
                         System.out.println("Added new dish: " + dishName + " (ID: " + dishId + ")");
+                        DishDAO.recalculatePrices(conn, dishId);
                         return dishId;
                     }
                 }
@@ -542,7 +559,11 @@ public class IngredientDAO extends DBContext {
             ps.setBigDecimal(2, ingredient.getUnitCost());
             ps.setInt(3, ingredient.getIngredientId());
 
-            return ps.executeUpdate() > 0;
+            if (ps.executeUpdate() == 0) {
+                return false;
+            }
+            DishDAO.recalculatePricesForIngredient(conn, ingredient.getIngredientId());
+            return true;
 
         } catch (SQLException e) {
             e.printStackTrace();
@@ -556,12 +577,16 @@ public class IngredientDAO extends DBContext {
 
         try (
                 PreparedStatement ps1 = conn.prepareStatement(deleteDishIngredientSql); PreparedStatement ps2 = conn.prepareStatement(deleteIngredientSql)) {
+            int[] affectedDishIds = DishDAO.getDishIdsByIngredient(conn, ingredientId);
+
             ps1.setInt(1, ingredientId);
             ps1.executeUpdate();
 
             ps2.setInt(1, ingredientId);
             int affected = ps2.executeUpdate();
 
+            DishDAO.recalculatePrices(conn, affectedDishIds);
+
             conn.commit();
             return affected > 0;
         } catch (SQLException ex) {
@@ -0,0 +1,96 @@
+package dao;
+
+import java.sql.*;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import model.MailMessage;
+import utils.DBContext;
+import utils.queue.LeasedQueue;
+
+/**
+ * Emails waiting to be sent, one MailOutbox row per email.
+ *
+ * EmailService.queueEmail stores an email here and returns at once;
+ * MailQueue sends stored emails in the background over pooled SMTP
+ * connections and retries those that fail. The body is cleared once an
+ * email is sent, so one-time codes do not stay in the table.
+ */
+public class MailOutboxDAO extends DBContext {
+
+    /**
+     * Store an email to be sent.
+     *
+     * @return false on error, in which case nothing is stored
+     */
+    public boolean enqueue(List<String> recipients, String subject, String htmlContent) {
+        String sql = "INSERT INTO MailOutbox (recipients, subject, body) VALUES (?, ?, ?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, String.join(",", recipients));
+            ps.setString(2, subject);
+            ps.setString(3, htmlContent);
+            return ps.executeUpdate() > 0;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Pick up pending emails that are due, oldest first. Each is leased for
+     * {@code leaseSeconds}: if it is neither sent nor rescheduled by then, it
+     * is picked up again.
+     *
+     * @param limit at most this many emails
+     */
+    public List<MailMessage> claimDue(int limit, int leaseSeconds) throws SQLException {
+        List<MailMessage> mails = LeasedQueue.claimDue(conn, "MailOutbox", "mailID",
+                "inserted.mailID, inserted.recipients, inserted.subject, inserted.body, inserted.attempts",
+                limit, leaseSeconds, rs -> new MailMessage(rs.getLong("mailID"),
+                        Arrays.asList(rs.getString("recipients").split(",")),
+                        rs.getString("subject"), rs.getString("body"), rs.getInt("attempts")));
+        mails.sort((a, b) -> Long.compare(a.getMailID(), b.getMailID()));
+        return mails;
+    }
+
+    /**
+     * Mark emails sent and drop their bodies, in one statement.
+     */
+    public void markSent(Collection<Long> mailIds) throws SQLException {
+        if (mailIds.isEmpty()) {
+            return;
+        }
+        String placeholders = String.join(",", Collections.nCopies(mailIds.size(), "?"));
+        String sql = "UPDATE MailOutbox SET status = 1, body = NULL, lastError = NULL, sentAt = GETDATE() "
+                + "WHERE status = 0 AND mailID IN (" + placeholders + ")";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int index = 1;
+            for (long id : mailIds) {
+                ps.setLong(index++, id);
+            }
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Try the email again after {@code delaySeconds}.
+     */
+    public void retryLater(long mailId, int delaySeconds, String error) {
+        LeasedQueue.retryLater(conn, "MailOutbox", "mailID", mailId, delaySeconds, error);
+    }
+
+    /**
+     * Stop trying the email. Staff can set it back to pending in SQL.
+     */
+    public void giveUp(long mailId, String error) {
+        String sql = "UPDATE MailOutbox SET status = 2, lastError = ? WHERE mailID = ? AND status = 0";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, LeasedQueue.truncate(error));
+            ps.setLong(2, mailId);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -1,10 +1,14 @@
 package dao;
 
+import com.google.gson.JsonObject;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
 import model.Notification;
+import model.NotificationSummary;
 import utils.DBContext;
+import utils.notification.NotificationCache;
+import utils.push.PushHub;
 
 public class NotificationDAO extends DBContext {
 
@@ -26,34 +30,29 @@ public class NotificationDAO extends DBContext {
         return list;
     }
 
+    /**
+     * Add a notification for all customers. It is stored once; customers
+     * who have not read it see it until they do.
+     */
     public boolean addNotification(Notification noti) {
-        String insertNotificationSQL = "INSERT INTO Notification (notTitle, notDescription, FK_Notification_Account) VALUES (?, ?, ?)";
-        String insertCustomerNotificationSQL
-                = "INSERT INTO CustomerNotification (customerID, notID) "
-                + "SELECT c.customerID, ? FROM Customer c";
-
-        try (
-                PreparedStatement st1 = conn.prepareStatement(insertNotificationSQL, Statement.RETURN_GENERATED_KEYS);) {
-            st1.setString(1, noti.getNotTitle());
-            st1.setString(2, noti.getNotDescription());
-            st1.setInt(3, noti.getAccountID());
-
-            int rows = st1.executeUpdate();
-            if (rows == 0) {
-                return false;
-            }
-
-            // Get the generated notID
-            ResultSet generatedKeys = st1.getGeneratedKeys();
-            if (generatedKeys.next()) {
-                int newNotID = generatedKeys.getInt(1);
-
-                // Now insert into CustomertNotification
-                try (PreparedStatement st2 = conn.prepareStatement(insertCustomerNotificationSQL)) {
-                    st2.setInt(1, newNotID);
-                    st2.executeUpdate(); // no need to check rows, since 0 customers is still valid
+        String sql = "INSERT INTO Notification (notTitle, notDescription, FK_Notification_Account) VALUES (?, ?, ?)";
+        try (PreparedStatement st = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            st.setString(1, noti.getNotTitle());
+            st.setString(2, noti.getNotDescription());
+            st.setInt(3, noti.getAccountID());
+            if (st.executeUpdate() > 0) {
+                NotificationCache.invalidateAll();
+                try (ResultSet keys = st.getGeneratedKeys()) {
+                    if (keys.next()) {
+                        noti.setNotID(keys.getInt(1));
+                    }
                 }
-
+                // Every customer gets it, so every open stream hears about it
+                JsonObject event = new JsonObject();
+                event.addProperty("notID", noti.getNotID());
+                event.addProperty("title", noti.getNotTitle());
+                event.addProperty("description", noti.getNotDescription());
+                PushHub.broadcast("notification", event.toString());
                 return true;
             }
         } catch (SQLException e) {
@@ -66,7 +65,10 @@ public class NotificationDAO extends DBContext {
         String sql = "DELETE FROM Notification WHERE notID = ?";
         try (PreparedStatement st = conn.prepareStatement(sql)) {
             st.setInt(1, id);
-            return st.executeUpdate() > 0;
+            if (st.executeUpdate() > 0) {
+                NotificationCache.invalidateAll();
+                return true;
+            }
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -83,6 +85,9 @@ public class NotificationDAO extends DBContext {
             stmt.setInt(3, noti.getNotID());
 
             int rowsAffected = stmt.executeUpdate();
+            if (rowsAffected > 0) {
+                NotificationCache.invalidateAll();
+            }
             return rowsAffected > 0;
 
         } catch (Exception e) {
@@ -91,29 +96,33 @@ public class NotificationDAO extends DBContext {
         }
     }
 
+    /**
+     * Notifications the customer has not read, newest first. Notifications
+     * added before the customer signed up are not shown; accounts without a
+     * sign-up time see them all.
+     */
     public List<Notification> getUnreadNotificationsByCustomer(int customerID) {
         List<Notification> list = new ArrayList<>();
-        String sql = " SELECT n.*\n"
-                + "        FROM Notification n\n"
-                + "        JOIN CustomerNotification cn ON n.notID = cn.notID\n"
-                + "        WHERE cn.customerID = ? AND cn.isRead = 0\n"
-                + "        ORDER BY n.notID DESC ";
-
-        try (
-                PreparedStatement ps = conn.prepareStatement(sql)) {
+        String sql = "SELECT n.notID, n.notTitle, n.notDescription, n.FK_Notification_Account "
+                + "FROM Account a "
+                + "LEFT JOIN NotificationReadMark m ON m.customerID = a.accountID "
+                + "JOIN Notification n ON n.notID > ISNULL(m.readUpTo, 0) AND (a.createAt IS NULL OR n.createdAt >= a.createAt) "
+                + "WHERE a.accountID = ? "
+                + "AND NOT EXISTS (SELECT 1 FROM NotificationRead r WHERE r.customerID = a.accountID AND r.notID = n.notID) "
+                + "ORDER BY n.notID DESC";
 
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, customerID);
-            ResultSet rs = ps.executeQuery();
-
-            while (rs.next()) {
-                Notification noti = new Notification();
-                noti.setNotID(rs.getInt("notID"));
-                noti.setNotTitle(rs.getString("notTitle"));
-                noti.setNotDescription(rs.getString("notDescription"));
-                noti.setAccountID(rs.getInt("FK_Notification_Account"));
-                list.add(noti);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Notification noti = new Notification();
+                    noti.setNotID(rs.getInt("notID"));
+                    noti.setNotTitle(rs.getString("notTitle"));
+                    noti.setNotDescription(rs.getString("notDescription"));
+                    noti.setAccountID(rs.getInt("FK_Notification_Account"));
+                    list.add(noti);
+                }
             }
-
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -121,24 +130,117 @@ public class NotificationDAO extends DBContext {
         return list;
     }
 
-    public boolean markAsRead(int customerID, int notID) {
-        String sql = "UPDATE CustomerNotification SET isRead = 1 WHERE customerID = ? AND notID = ?";
+    /**
+     * Number of unread notifications of a customer and the newest
+     * {@code limit} of them, in one query.
+     */
+    public NotificationSummary getUnreadSummary(int customerID, int limit) throws SQLException {
+        String sql = "SELECT TOP (?) n.notID, n.notTitle, n.notDescription, n.FK_Notification_Account, "
+                + "COUNT(*) OVER () AS unreadCount "
+                + "FROM Account a "
+                + "LEFT JOIN NotificationReadMark m ON m.customerID = a.accountID "
+                + "JOIN Notification n ON n.notID > ISNULL(m.readUpTo, 0) AND (a.createAt IS NULL OR n.createdAt >= a.createAt) "
+                + "WHERE a.accountID = ? "
+                + "AND NOT EXISTS (SELECT 1 FROM NotificationRead r WHERE r.customerID = a.accountID AND r.notID = n.notID) "
+                + "ORDER BY n.notID DESC";
+
+        int count = 0;
+        List<Notification> latest = new ArrayList<>();
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, limit);
+            ps.setInt(2, customerID);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    count = rs.getInt("unreadCount");
+                    latest.add(new Notification(
+                            rs.getInt("notID"),
+                            rs.getString("notTitle"),
+                            rs.getString("notDescription"),
+                            rs.getInt("FK_Notification_Account")
+                    ));
+                }
+            }
+        }
+        return new NotificationSummary(count, latest);
+    }
 
-            System.out.println("Executing markAsRead - customerID: " + customerID + ", notID: " + notID); // Debug log
-
-            ps.setInt(1, customerID);
-            ps.setInt(2, notID);
-
-            int rowsAffected = ps.executeUpdate();
-            System.out.println("Rows affected: " + rowsAffected); // Debug log
-
-            return rowsAffected > 0;
-
-        } catch (Exception e) {
+    /**
+     * Mark a notification read for a customer.
+     *
+     * Read state is a high-water mark per customer (every notification up to
+     * NotificationReadMark.readUpTo is read) plus a NotificationRead row for
+     * each notification read above it. Marking one read moves the mark up
+     * past every notification that is now read and drops the rows below it,
+     * so a customer who reads everything keeps no rows at all.
+     *
+     * @return true if the notification exists and is now read
+     */
+    public boolean markAsRead(int customerID, int notID) {
+        String markSql = "IF NOT EXISTS (SELECT 1 FROM NotificationReadMark WITH (UPDLOCK, HOLDLOCK) WHERE customerID = ?) "
+                + "INSERT INTO NotificationReadMark (customerID, readUpTo) VALUES (?, 0)";
+        String readSql = "INSERT INTO NotificationRead (customerID, notID) "
+                + "SELECT m.customerID, n.notID FROM NotificationReadMark m "
+                + "JOIN Notification n ON n.notID = ? "
+                + "WHERE m.customerID = ? AND n.notID > m.readUpTo "
+                + "AND NOT EXISTS (SELECT 1 FROM NotificationRead r WHERE r.customerID = m.customerID AND r.notID = n.notID)";
+        // Up to just below the oldest visible notification still unread, or
+        // to the newest notification if none is
+        String advanceSql = "UPDATE m SET readUpTo = ISNULL("
+                + "    (SELECT MIN(n.notID) - 1 FROM Notification n "
+                + "     WHERE n.notID > m.readUpTo AND (a.createAt IS NULL OR n.createdAt >= a.createAt) "
+                + "     AND NOT EXISTS (SELECT 1 FROM NotificationRead r WHERE r.customerID = m.customerID AND r.notID = n.notID)), "
+                + "    (SELECT ISNULL(MAX(notID), 0) FROM Notification)) "
+                + "FROM NotificationReadMark m JOIN Account a ON a.accountID = m.customerID "
+                + "WHERE m.customerID = ?";
+        String pruneSql = "DELETE r FROM NotificationRead r JOIN NotificationReadMark m ON m.customerID = r.customerID "
+                + "WHERE r.customerID = ? AND r.notID <= m.readUpTo";
+
+        try {
+            if (!exists(notID)) {
+                return false;
+            }
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement ps = conn.prepareStatement(markSql)) {
+                    ps.setInt(1, customerID);
+                    ps.setInt(2, customerID);
+                    ps.executeUpdate();
+                }
+                try (PreparedStatement ps = conn.prepareStatement(readSql)) {
+                    ps.setInt(1, notID);
+                    ps.setInt(2, customerID);
+                    ps.executeUpdate();
+                }
+                try (PreparedStatement ps = conn.prepareStatement(advanceSql)) {
+                    ps.setInt(1, customerID);
+                    ps.executeUpdate();
+                }
+                try (PreparedStatement ps = conn.prepareStatement(pruneSql)) {
+                    ps.setInt(1, customerID);
+                    ps.executeUpdate();
+                }
+                conn.commit();
+                NotificationCache.invalidate(customerID);
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
             System.out.println("Error in markAsRead: " + e.getMessage());
             e.printStackTrace();
             return false;
         }
     }
+
+    private boolean exists(int notID) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT 1 FROM Notification WHERE notID = ?")) {
+            ps.setInt(1, notID);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
 }
@@ -11,19 +11,39 @@ public class OTPDAO extends DBContext {
         super();
     }
 
-    public void insertOtpTemp(String email, String hashedOTP, Timestamp createdAt, Timestamp expiresAt, Integer customerId) {
-        String sql = "INSERT INTO OTP (otp, otpCreatedAt, otpExpiresAt, isUsed, email, FK_OTP_Customer) VALUES (?, ?, ?, 0, ?, ?)";
+    /**
+     * Store a new code for an email and mark the email's earlier unused codes
+     * used, in one batch, so only the newest code can be accepted.
+     *
+     * @return the new otpID, or -1 if it could not be stored
+     */
+    public int insertOtpTemp(String email, String hashedOTP, Timestamp createdAt, Timestamp expiresAt, Integer customerId) {
+        String sql = "UPDATE OTP SET isUsed = 1 WHERE email = ? AND isUsed = 0; "
+                + "INSERT INTO OTP (otp, otpCreatedAt, otpExpiresAt, isUsed, email, FK_OTP_Customer) "
+                + "OUTPUT inserted.otpID VALUES (?, ?, ?, 0, ?, ?)";
         try (Connection conn = getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, hashedOTP);
-            ps.setTimestamp(2, createdAt);
-            ps.setTimestamp(3, expiresAt);
-            ps.setString(4, email);
-            ps.setObject(5, customerId, java.sql.Types.INTEGER); // Cho phép null nếu customerId là null
-            ps.executeUpdate();
+            ps.setString(1, email);
+            ps.setString(2, hashedOTP);
+            ps.setTimestamp(3, createdAt);
+            ps.setTimestamp(4, expiresAt);
+            ps.setString(5, email);
+            ps.setObject(6, customerId, java.sql.Types.INTEGER); // Cho phép null nếu customerId là null
+            // Past the update count of the UPDATE to the inserted ID
+            boolean isResultSet = ps.execute();
+            while (!isResultSet && ps.getUpdateCount() != -1) {
+                isResultSet = ps.getMoreResults();
+            }
             System.out.println("Inserted OTP for email: " + email + ", customerId: " + (customerId != null ? customerId : "null"));
+            if (!isResultSet) {
+                return -1;
+            }
+            try (ResultSet keys = ps.getResultSet()) {
+                return keys.next() ? keys.getInt(1) : -1;
+            }
         } catch (SQLException e) {
             System.out.println("Error inserting OTP for email: " + email + ", customerId: " + (customerId != null ? customerId : "null") + ": " + e.getMessage());
             e.printStackTrace();
+            return -1;
         }
     }
 
@@ -45,7 +65,8 @@ public class OTPDAO extends DBContext {
                     otp.setIsUsed(rs.getInt("isUsed"));
                     otp.setEmail(rs.getString("email"));
                     otp.setCustomerId(rs.getInt("FK_OTP_Customer"));
-                    System.out.println("Found OTP for email: " + email + ", OTP: " + otp.getOtp()); // Debug log
+                    otp.setAttempts(rs.getInt("attempts"));
+                    System.out.println("Found OTP for email: " + email); // Debug log
                     return otp;
                 } else {
                     System.out.println("No OTP found for email: " + email); // Debug log
@@ -74,6 +95,60 @@ public class OTPDAO extends DBContext {
         }
     }
 
+    /**
+     * Use up one code.
+     *
+     * @return false if it was already used, e.g. on another server
+     */
+    public boolean markOtpAsUsed(int otpId) {
+        String sql = "UPDATE OTP SET isUsed = 1 WHERE otpID = ? AND isUsed = 0";
+        try (Connection conn = getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, otpId);
+            return ps.executeUpdate() > 0;
+        } catch (SQLException e) {
+            System.out.println("Error marking OTP " + otpId + " as used: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Count a wrong code entered for an OTP, using it up once it reaches
+     * {@code maxAttempts}.
+     *
+     * @return wrong codes so far, or -1 on error
+     */
+    public int recordFailedAttempt(int otpId, int maxAttempts) {
+        String sql = "UPDATE OTP SET attempts = attempts + 1, "
+                + "isUsed = CASE WHEN attempts + 1 >= ? THEN 1 ELSE isUsed END "
+                + "OUTPUT inserted.attempts WHERE otpID = ?";
+        try (Connection conn = getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, maxAttempts);
+            ps.setInt(2, otpId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : -1;
+            }
+        } catch (SQLException e) {
+            System.out.println("Error counting OTP attempt for " + otpId + ": " + e.getMessage());
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    /**
+     * Delete up to {@code limit} OTPs that expired before {@code before}.
+     *
+     * @return rows deleted
+     */
+    public int deleteExpired(Timestamp before, int limit) throws SQLException {
+        String sql = "DELETE TOP (?) FROM OTP WHERE otpExpiresAt < ?";
+        try (PreparedStatement ps = getConnection().prepareStatement(sql)) {
+            ps.setInt(1, limit);
+            ps.setTimestamp(2, before);
+            return ps.executeUpdate();
+        }
+    }
+
     public boolean isOtpExpired(LocalDateTime expiresAt) {
         if (expiresAt == null) {
             System.out.println("isOtpExpired: expiresAt is null");
@@ -2,15 +2,23 @@ package dao;
 
 import java.math.BigDecimal;
 import model.Order;
+import model.OrderFilter;
+import model.OrderPage;
 import utils.DBContext;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import model.Cart;
 import model.DashboardStats;
 import model.Dish;
-import model.Ingredient;
 import model.OrderDetail;
+import model.OrderOutboxEvent;
 import utils.TotalPriceCalculator;
+import utils.catalog.MenuCatalog;
+import utils.outbox.OrderOutboxDispatcher;
+import utils.stats.DashboardStatsEngine;
+import utils.stats.StatsWindow;
+import utils.stock.StockCounter;
 import java.sql.*;
 import java.util.*;
 
@@ -20,51 +28,26 @@ public class OrderDAO extends DBContext {
         super();
     }
 
+    // Columns shown on the order management list; lastUpdated is the name of
+    // the account behind the latest status or payment change
+    private static final String LIST_COLUMNS
+            = "SELECT o.*, a.fullName AS customerName, c.address, "
+            + "v.code AS voucherCode, v.discountType, v.discount, "
+            + "lu.fullName AS lastUpdated "
+            + "FROM [Order] o "
+            + "JOIN Customer c ON o.FK_Order_Customer = c.customerID "
+            + "JOIN Account a ON c.customerID = a.accountID "
+            + "LEFT JOIN Voucher v ON o.FK_Order_Voucher = v.voucherID "
+            + "LEFT JOIN Account lu ON o.lastUpdatedBy = lu.accountID ";
+
     public List<Order> getAllOrders() {
         List<Order> orders = new ArrayList<>();
-        String sql = "SELECT o.*, a.fullName AS customerName, c.address, "
-                + "v.code AS voucherCode, v.discountType, v.discount, "
-                + "lastUpdate.fullName AS lastUpdated "
-                + "FROM [Order] o "
-                + "JOIN Customer c ON o.FK_Order_Customer = c.customerID "
-                + "JOIN Account a ON c.customerID = a.accountID "
-                + "LEFT JOIN Voucher v ON o.FK_Order_Voucher = v.voucherID "
-                + "OUTER APPLY ( "
-                + "    SELECT TOP 1 acc.fullName "
-                + "    FROM ( "
-                + "        SELECT changedByAccountID, changeTime "
-                + "        FROM OrderStatusHistory "
-                + "        WHERE orderID = o.orderID "
-                + "        UNION ALL "
-                + "        SELECT changedByAccountID, changeTime "
-                + "        FROM PaymentStatusHistory "
-                + "        WHERE orderID = o.orderID "
-                + "    ) combined "
-                + "    JOIN Account acc ON combined.changedByAccountID = acc.accountID "
-                + "    ORDER BY combined.changeTime DESC "
-                + ") lastUpdate "
-                + "ORDER BY o.orderCreatedAt DESC";
+        String sql = LIST_COLUMNS + "ORDER BY o.orderCreatedAt DESC";
 
         try (Connection conn = getConnection(); PreparedStatement ps = conn.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
 
             while (rs.next()) {
-                Order order = new Order();
-                order.setOrderID(rs.getInt("orderID"));
-                order.setAmount(rs.getBigDecimal("amount"));
-                order.setOrderStatus(rs.getInt("orderStatus"));
-                order.setPaymentStatus(rs.getInt("paymentStatus"));
-                order.setOrderCreatedAt(rs.getTimestamp("orderCreatedAt"));
-                order.setOrderUpdatedAt(rs.getTimestamp("orderUpdatedAt"));
-                order.setVoucherID(rs.getInt("FK_Order_Voucher"));
-                order.setCustomerID(rs.getInt("FK_Order_Customer"));
-                order.setCustomerName(rs.getString("customerName"));
-                order.setAddress(rs.getString("address"));
-                order.setVoucherCode(rs.getString("voucherCode"));
-                order.setDiscountType(rs.getString("discountType"));
-                order.setDiscount(rs.getBigDecimal("discount"));
-                order.setLastUpdated(rs.getString("lastUpdated")); // nullable
-
-                orders.add(order);
+                orders.add(mapListedOrder(rs));
             }
 
         } catch (SQLException e) {
@@ -74,11 +57,99 @@ public class OrderDAO extends DBContext {
         return orders;
     }
 
+    /**
+     * One page of orders, newest first, for the staff and admin order lists.
+     * Pages are addressed by the (orderCreatedAt, orderID) of the previous
+     * page's last row rather than an offset, so every page costs the same
+     * index seek however deep the user pages.
+     *
+     * @param filter filters, cursor and page size
+     * @return the page and whether an older page exists
+     */
+    public OrderPage getOrdersPage(OrderFilter filter) {
+        StringBuilder sql = new StringBuilder("SELECT TOP (?) * FROM (").append(LIST_COLUMNS).append("WHERE 1 = 1 ");
+        List<Object> params = new ArrayList<>();
+        params.add(filter.getPageSize() + 1); // one extra row tells us if there is a next page
+
+        if (filter.getOrderStatus() != null) {
+            sql.append("AND o.orderStatus = ? ");
+            params.add(filter.getOrderStatus());
+        }
+        if (filter.getPaymentStatus() != null) {
+            sql.append("AND o.paymentStatus = ? ");
+            params.add(filter.getPaymentStatus());
+        }
+        if (filter.getFromDate() != null) {
+            sql.append("AND o.orderCreatedAt >= ? ");
+            params.add(java.sql.Date.valueOf(filter.getFromDate()));
+        }
+        if (filter.getToDate() != null) {
+            sql.append("AND o.orderCreatedAt < ? ");
+            params.add(java.sql.Date.valueOf(filter.getToDate().plusDays(1)));
+        }
+        if (filter.getCustomerID() != null) {
+            sql.append("AND o.FK_Order_Customer = ? ");
+            params.add(filter.getCustomerID());
+        }
+        if (filter.getCustomerName() != null && !filter.getCustomerName().trim().isEmpty()) {
+            sql.append("AND a.fullName LIKE ? ");
+            params.add("%" + filter.getCustomerName().trim() + "%");
+        }
+        if (filter.hasCursor()) {
+            // CAST keeps the comparison in DATETIME precision so the cursor row matches itself
+            sql.append("AND (o.orderCreatedAt < CAST(? AS DATETIME) "
+                    + "OR (o.orderCreatedAt = CAST(? AS DATETIME) AND o.orderID < ?)) ");
+            params.add(filter.getAfterCreatedAt());
+            params.add(filter.getAfterCreatedAt());
+            params.add(filter.getAfterOrderID());
+        }
+        sql.append(") page ORDER BY page.orderCreatedAt DESC, page.orderID DESC");
+
+        List<Order> orders = new ArrayList<>();
+        try (Connection conn = getConnection(); PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < params.size(); i++) {
+                ps.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    orders.add(mapListedOrder(rs));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        boolean hasNext = orders.size() > filter.getPageSize();
+        if (hasNext) {
+            orders.remove(orders.size() - 1);
+        }
+        return new OrderPage(orders, hasNext);
+    }
+
+    private Order mapListedOrder(ResultSet rs) throws SQLException {
+        Order order = new Order();
+        order.setOrderID(rs.getInt("orderID"));
+        order.setAmount(rs.getBigDecimal("amount"));
+        order.setOrderStatus(rs.getInt("orderStatus"));
+        order.setPaymentStatus(rs.getInt("paymentStatus"));
+        order.setOrderCreatedAt(rs.getTimestamp("orderCreatedAt"));
+        order.setOrderUpdatedAt(rs.getTimestamp("orderUpdatedAt"));
+        order.setVoucherID(rs.getInt("FK_Order_Voucher"));
+        order.setCustomerID(rs.getInt("FK_Order_Customer"));
+        order.setCustomerName(rs.getString("customerName"));
+        order.setAddress(rs.getString("address"));
+        order.setVoucherCode(rs.getString("voucherCode"));
+        order.setDiscountType(rs.getString("discountType"));
+        order.setDiscount(rs.getBigDecimal("discount"));
+        order.setLastUpdated(rs.getString("lastUpdated")); // nullable
+        return order;
+    }
+
     public List<OrderDetail> getOrderDetailsByOrderID(int orderID) {
         List<OrderDetail> list = new ArrayList<>();
 
         String sql = "SELECT od.ODID, od.quantity, "
-                + "d.DishID, d.DishName, d.DishDescription, d.image, d.opCost, d.interestPercentage, "
+                + "d.DishID, d.DishName, d.DishDescription, d.image, ISNULL(od.unitPrice, d.price) AS price, "
                 + "o.orderStatus, o.paymentStatus, o.orderCreatedAt, o.orderUpdatedAt, o.amount, "
                 + "c.customerID, a.fullName AS customerName, c.phone, c.address, "
                 + "v.code AS voucherCode, v.discount, v.discountType "
@@ -94,12 +165,9 @@ public class OrderDAO extends DBContext {
             ps.setInt(1, orderID);
             ResultSet rs = ps.executeQuery();
 
-            IngredientDAO ingredientDAO = new IngredientDAO();
-
             while (rs.next()) {
                 OrderDetail detail = new OrderDetail();
 
-                int dishID = rs.getInt("DishID");
                 int quantity = rs.getInt("quantity");
 
                 detail.setODID(rs.getInt("ODID"));
@@ -120,15 +188,9 @@ public class OrderDAO extends DBContext {
                 detail.setDiscountType(rs.getString("discountType"));
                 detail.setAmount(rs.getBigDecimal("amount"));
 
-                // Tính đơn giá
-                BigDecimal opCost = rs.getBigDecimal("opCost");
-                BigDecimal interestPercentage = rs.getBigDecimal("interestPercentage");
-                List<Ingredient> ingredients = ingredientDAO.getIngredientsByDishId(dishID);
-                BigDecimal ingredientCost = TotalPriceCalculator.calculateIngredientCost(ingredients);
-                BigDecimal unitPrice = TotalPriceCalculator.calculateTotalPrice(opCost, interestPercentage,
-                        ingredientCost);
-
-                detail.setUnitPrice(unitPrice);
+                // Đơn giá chốt lúc đặt hàng (OrderDetail.unitPrice)
+                BigDecimal unitPrice = rs.getBigDecimal("price");
+                detail.setUnitPrice(unitPrice != null ? unitPrice : BigDecimal.ZERO);
 
                 list.add(detail);
             }
@@ -156,29 +218,24 @@ public class OrderDAO extends DBContext {
     }
 
     public boolean updateStatusOrderByOrderId(int orderId, int newOrderStatus, int changedByAccountID) {
-        String updateSql = "UPDATE [Order] SET orderStatus = ?, orderUpdatedAt = GETDATE() WHERE orderID = ?";
+        String updateSql = "UPDATE [Order] SET orderStatus = ?, lastUpdatedBy = ?, orderUpdatedAt = GETDATE() WHERE orderID = ?";
         String logSql = "INSERT INTO OrderStatusHistory (orderID, oldStatus, newStatus, changedByAccountID, changeTime) VALUES (?, ?, ?, ?, GETDATE())";
 
         try (Connection conn = getConnection()) {
             conn.setAutoCommit(false); // Bắt đầu transaction
 
-            // Lấy trạng thái cũ
-            int oldStatus = -1;
-            String selectSql = "SELECT orderStatus FROM [Order] WHERE orderID = ?";
-            try (PreparedStatement psSelect = conn.prepareStatement(selectSql)) {
-                psSelect.setInt(1, orderId);
-                ResultSet rs = psSelect.executeQuery();
-                if (rs.next()) {
-                    oldStatus = rs.getInt("orderStatus");
-                } else {
-                    return false; // Không tìm thấy đơn
-                }
+            // Lấy trạng thái cũ (khóa dòng đơn đến khi commit)
+            DailyRollupDAO.Share before = DailyRollupDAO.snapshot(conn, orderId);
+            if (before == null) {
+                return false; // Không tìm thấy đơn
             }
+            int oldStatus = before.orderStatus;
 
             // Cập nhật trạng thái mới
             try (PreparedStatement psUpdate = conn.prepareStatement(updateSql)) {
                 psUpdate.setInt(1, newOrderStatus);
-                psUpdate.setInt(2, orderId);
+                psUpdate.setInt(2, changedByAccountID);
+                psUpdate.setInt(3, orderId);
                 psUpdate.executeUpdate();
             }
 
@@ -191,7 +248,10 @@ public class OrderDAO extends DBContext {
                 psLog.executeUpdate();
             }
 
+            OrderOutboxDAO.add(conn, orderId, OrderOutboxEvent.ORDER_STATUS, oldStatus, newOrderStatus);
+            DailyRollupDAO.applyChange(conn, before, DailyRollupDAO.snapshot(conn, orderId));
             conn.commit();
+            OrderOutboxDispatcher.wake();
             return true;
 
         } catch (SQLException e) {
@@ -222,34 +282,92 @@ public class OrderDAO extends DBContext {
         return generatedID;
     }
 
-    // Các method cần cho staff tạo order
-    public int insertOrder(int customerID) {
-        String sql = "INSERT INTO [Order] (FK_Order_Customer, orderStatus, paymentStatus, orderCreatedAt) "
-                + "OUTPUT INSERTED.orderID VALUES (?, 1, 1, GETDATE())";
-        try (Connection conn = getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, customerID);
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                return rs.getInt("orderID");
+    /**
+     * Create an order taken at the counter by staff or admin: confirmed and
+     * paid, with its lines, stock decrement and amount written in one
+     * transaction that also adds it to the daily rollup.
+     *
+     * @param lines dish to quantity; each dish carries the price charged
+     * @return the new orderID, or -1 if a dish ran out or the order could not
+     * be written
+     */
+    public int createCounterOrder(int customerID, Map<Dish, Integer> lines) {
+        // Dish rows in ID order, like every other stock update
+        Map<Integer, Integer> quantities = new TreeMap<>();
+        BigDecimal amount = BigDecimal.ZERO;
+        for (Map.Entry<Dish, Integer> line : lines.entrySet()) {
+            quantities.merge(line.getKey().getDishID(), line.getValue(), Integer::sum);
+            amount = amount.add(line.getKey().getTotalPrice().multiply(BigDecimal.valueOf(line.getValue())));
+        }
+
+        boolean counted = StockCounter.isEnabled();
+        Map<Integer, Integer> taken = Collections.emptyMap();
+        if (counted) {
+            if (!StockCounter.tryDecrementAll(quantities).isEmpty()) {
+                return -1;
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
+            taken = quantities;
         }
-        return -1;
-    }
 
-    public boolean insertOrderDetail(int orderID, int dishID, int quantity) {
-        String sql = "INSERT INTO OrderDetail (FK_OD_Order, FK_OD_Dish, quantity) VALUES (?, ?, ?)";
-        try (Connection conn = getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, orderID);
-            ps.setInt(2, dishID);
-            ps.setInt(3, quantity);
-            return ps.executeUpdate() > 0;
+        String orderSql = "INSERT INTO [Order] (amount, FK_Order_Customer, orderStatus, paymentStatus, orderCreatedAt) "
+                + "OUTPUT INSERTED.orderID VALUES (?, ?, 1, 1, GETDATE())";
+        String lineSql = "INSERT INTO OrderDetail (FK_OD_Order, FK_OD_Dish, quantity, unitPrice, unitCost, profit) "
+                + "VALUES (?, ?, ?, ?, ?, ?)";
+        String stockSql = "UPDATE Dish SET stock = stock - ? WHERE DishID = ? AND stock >= ?";
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                int orderId;
+                try (PreparedStatement ps = conn.prepareStatement(orderSql)) {
+                    ps.setBigDecimal(1, amount);
+                    ps.setInt(2, customerID);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        rs.next();
+                        orderId = rs.getInt("orderID");
+                    }
+                }
+                try (PreparedStatement ps = conn.prepareStatement(lineSql)) {
+                    for (Map.Entry<Dish, Integer> line : lines.entrySet()) {
+                        ps.setInt(1, orderId);
+                        ps.setInt(2, line.getKey().getDishID());
+                        ps.setInt(3, line.getValue());
+                        setLinePrice(ps, 4, line.getKey());
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+                if (!counted) {
+                    try (PreparedStatement ps = conn.prepareStatement(stockSql)) {
+                        for (Map.Entry<Integer, Integer> entry : quantities.entrySet()) {
+                            ps.setInt(1, entry.getValue());
+                            ps.setInt(2, entry.getKey());
+                            ps.setInt(3, entry.getValue());
+                            if (ps.executeUpdate() == 0) {
+                                conn.rollback();
+                                return -1;
+                            }
+                        }
+                    }
+                }
+                // Last, so the day's rollup row is locked only until the commit
+                DailyRollupDAO.applyChange(conn, null, DailyRollupDAO.snapshot(conn, orderId));
+                conn.commit();
+                for (Map.Entry<Integer, Integer> entry : taken.entrySet()) {
+                    StockCounter.decrementLater(entry.getKey(), entry.getValue());
+                }
+                MenuCatalog.invalidateStock();
+                return orderId;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                StockCounter.cancelAll(taken);
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
         } catch (SQLException e) {
-            System.out.println("Failed to insert OrderDetail:");
             e.printStackTrace();
         }
-        return false;
+        return -1;
     }
 
     // public int createOrder(int customerId, BigDecimal amount) throws SQLException
@@ -292,17 +410,81 @@ public class OrderDAO extends DBContext {
         return -1;
     }
 
-    public void addOrderDetail(int orderId, int dishId, int quantity) throws SQLException {
-        String sql = "INSERT INTO OrderDetail (quantity, FK_OD_Order, FK_OD_Dish) VALUES (?, ?, ?)";
+    public void addOrderDetail(int orderId, Dish dish, int quantity) throws SQLException {
+        String sql = "INSERT INTO OrderDetail (quantity, FK_OD_Order, FK_OD_Dish, unitPrice, unitCost, profit) "
+                + "VALUES (?, ?, ?, ?, ?, ?)";
         try (
                 PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, quantity);
             ps.setInt(2, orderId);
-            ps.setInt(3, dishId);
+            ps.setInt(3, dish.getDishID());
+            setLinePrice(ps, 4, dish);
             ps.executeUpdate();
         }
     }
 
+    /**
+     * Insert every line of an order as one JDBC batch on the caller's
+     * connection, so the lines commit together with the order itself.
+     */
+    static void insertOrderDetails(Connection c, int orderId, List<Cart> carts) throws SQLException {
+        String sql = "INSERT INTO OrderDetail (quantity, FK_OD_Order, FK_OD_Dish, unitPrice, unitCost, profit) "
+                + "VALUES (?, ?, ?, ?, ?, ?)";
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            for (Cart cart : carts) {
+                ps.setInt(1, cart.getQuantity());
+                ps.setInt(2, orderId);
+                ps.setInt(3, cart.getDish().getDishID());
+                setLinePrice(ps, 4, cart.getDish());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /**
+     * Bind unitPrice, unitCost and profit (all per unit) for an order line,
+     * frozen from the price the customer was charged so later menu edits do
+     * not rewrite the order's history.
+     */
+    private static void setLinePrice(PreparedStatement ps, int index, Dish dish) throws SQLException {
+        BigDecimal unitPrice = valueOrZero(dish.getTotalPrice());
+        BigDecimal unitCost = valueOrZero(dish.getOpCost()).add(valueOrZero(dish.getIngredientCost()));
+        ps.setBigDecimal(index, unitPrice);
+        ps.setBigDecimal(index + 1, unitCost);
+        ps.setBigDecimal(index + 2, unitPrice.subtract(unitCost));
+    }
+
+    /**
+     * Fill unitPrice / unitCost / profit on order lines created before those
+     * columns existed, using the dish's current stored price. Runs in batches
+     * so a large OrderDetail table is not locked in one statement.
+     *
+     * @param batchSize rows to update per statement
+     * @return number of rows backfilled
+     */
+    public int backfillOrderDetailPrices(int batchSize) {
+        String sql = "UPDATE TOP (?) od "
+                + "SET od.unitPrice = ISNULL(d.price, 0), "
+                + "    od.unitCost = ISNULL(d.opCost, 0) + ISNULL(d.ingredientCost, 0), "
+                + "    od.profit = ISNULL(d.price, 0) - (ISNULL(d.opCost, 0) + ISNULL(d.ingredientCost, 0)) "
+                + "FROM OrderDetail od "
+                + "JOIN Dish d ON od.FK_OD_Dish = d.DishID "
+                + "WHERE od.unitPrice IS NULL";
+        int total = 0;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, batchSize);
+            int updated;
+            do {
+                updated = ps.executeUpdate();
+                total += updated;
+            } while (updated == batchSize);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return total;
+    }
+
     public boolean deleteOrder(int orderId) {
         String deleteReview = "DELETE FROM Review WHERE FK_Review_OrderDetail IN "
                 + "(SELECT ODID FROM OrderDetail WHERE FK_OD_Order = ?)";
@@ -314,6 +496,7 @@ public class OrderDAO extends DBContext {
             conn.setAutoCommit(false); // Bắt đầu transaction
 
             try (PreparedStatement ps1 = conn.prepareStatement(deleteReview); PreparedStatement ps2 = conn.prepareStatement(deleteOrderDetail); PreparedStatement ps3 = conn.prepareStatement(deletePayment); PreparedStatement ps4 = conn.prepareStatement(deleteOrder)) {
+                DailyRollupDAO.Share before = DailyRollupDAO.snapshot(conn, orderId);
 
                 // Xóa Review
                 ps1.setInt(1, orderId);
@@ -331,6 +514,7 @@ public class OrderDAO extends DBContext {
                 ps4.setInt(1, orderId);
                 int affected = ps4.executeUpdate();
 
+                DailyRollupDAO.applyChange(conn, before, null);
                 conn.commit(); // Commit nếu mọi thứ thành công
 
                 return affected > 0;
@@ -427,23 +611,33 @@ public class OrderDAO extends DBContext {
                 "orderUpdatedAt = GETDATE() "
                 + "WHERE orderID = ? AND orderStatus = 0"; // Only allow canceling pending orders
 
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, orderId);
-            int rows = ps.executeUpdate();
+        conn.setAutoCommit(false);
+        try {
+            DailyRollupDAO.Share before = DailyRollupDAO.snapshot(conn, orderId);
+            int rows;
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, orderId);
+                rows = ps.executeUpdate();
+            }
+            Map<Integer, Integer> released = Collections.emptyMap();
+            if (rows > 0) {
+                // Give back held or already decremented stock with the cancellation
+                released = StockReservationDAO.release(conn, orderId);
+                OrderOutboxDAO.add(conn, orderId, OrderOutboxEvent.ORDER_STATUS, 0, 5);
+                DailyRollupDAO.applyChange(conn, before, DailyRollupDAO.snapshot(conn, orderId));
+            }
+            conn.commit();
+            StockCounter.incrementAll(released);
+            if (rows > 0) {
+                OrderOutboxDispatcher.wake();
+            }
             return rows > 0;
-        }
-    }
-
-    public boolean updateOrderAmount(int orderID, BigDecimal amount) {
-        String sql = "UPDATE [Order] SET amount = ? WHERE orderID = ?";
-        try (Connection conn = getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setBigDecimal(1, amount);
-            ps.setInt(2, orderID);
-            return ps.executeUpdate() > 0;
         } catch (SQLException e) {
-            e.printStackTrace();
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
         }
-        return false;
     }
 
     // for staff
@@ -462,29 +656,24 @@ public class OrderDAO extends DBContext {
     }
 
     public boolean updatePaymentStatusByOrderId(int orderId, int newPaymentStatus, int changedByAccountID) {
-        String updateSql = "UPDATE [Order] SET paymentStatus = ?, orderUpdatedAt = GETDATE() WHERE orderID = ?";
+        String updateSql = "UPDATE [Order] SET paymentStatus = ?, lastUpdatedBy = ?, orderUpdatedAt = GETDATE() WHERE orderID = ?";
         String logSql = "INSERT INTO PaymentStatusHistory (orderID, oldStatus, newStatus, changedByAccountID, changeTime) VALUES (?, ?, ?, ?, GETDATE())";
 
         try (Connection conn = getConnection()) {
             conn.setAutoCommit(false); // Bắt đầu transaction
 
-            // Lấy trạng thái cũ
-            int oldStatus = -1;
-            String selectSql = "SELECT paymentStatus FROM [Order] WHERE orderID = ?";
-            try (PreparedStatement psSelect = conn.prepareStatement(selectSql)) {
-                psSelect.setInt(1, orderId);
-                ResultSet rs = psSelect.executeQuery();
-                if (rs.next()) {
-                    oldStatus = rs.getInt("paymentStatus");
-                } else {
-                    return false; // Không tìm thấy đơn
-                }
+            // Lấy trạng thái cũ (khóa dòng đơn đến khi commit)
+            DailyRollupDAO.Share before = DailyRollupDAO.snapshot(conn, orderId);
+            if (before == null) {
+                return false; // Không tìm thấy đơn
             }
+            int oldStatus = before.paymentStatus;
 
             // Cập nhật trạng thái mới
             try (PreparedStatement psUpdate = conn.prepareStatement(updateSql)) {
                 psUpdate.setInt(1, newPaymentStatus);
-                psUpdate.setInt(2, orderId);
+                psUpdate.setInt(2, changedByAccountID);
+                psUpdate.setInt(3, orderId);
                 psUpdate.executeUpdate();
             }
 
@@ -496,8 +685,16 @@ public class OrderDAO extends DBContext {
                 psLog.setInt(4, changedByAccountID);
                 psLog.executeUpdate();
             }
+            OrderOutboxDAO.add(conn, orderId, OrderOutboxEvent.PAYMENT_STATUS, oldStatus, newPaymentStatus);
 
+            Map<Integer, Integer> late = Collections.emptyMap();
+            if (newPaymentStatus == 1) {
+                late = StockReservationDAO.commit(conn, orderId); // Paid: held stock becomes a real decrement
+            }
+            DailyRollupDAO.applyChange(conn, before, DailyRollupDAO.snapshot(conn, orderId));
             conn.commit();
+            StockCounter.takeAll(late);
+            OrderOutboxDispatcher.wake();
             return true;
 
         } catch (SQLException e) {
@@ -549,22 +746,6 @@ public class OrderDAO extends DBContext {
         return null;
     }
 
-    public boolean updatePaymentStatus(int orderId, int paymentStatus) {
-        String sql = "UPDATE [Order] SET paymentStatus = ? WHERE orderID = ?";
-
-        try (Connection conn = new DBContext().getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setInt(1, paymentStatus);
-            ps.setInt(2, orderId);
-
-            int rowsAffected = ps.executeUpdate();
-            return rowsAffected > 0; // ✅ Trả về true nếu update thành công
-
-        } catch (SQLException e) {
-            throw new RuntimeException("Failed to update order payment status", e);
-        }
-    }
-
     public Order findUnpaidOrderByCustomerId(int customerId) {
         String sql = "SELECT TOP 1 * FROM [Order] WHERE FK_Order_Customer = ? AND paymentStatus = 0 ORDER BY orderCreatedAt DESC";
 
@@ -754,189 +935,16 @@ public class OrderDAO extends DBContext {
 
     // Hôm nay
     public DashboardStats getTodayStats() {
-        DashboardStats stats = new DashboardStats();
-        String today = "CAST(GETDATE() AS DATE)";
-
-        // Total orders today
-        String sql1 = "SELECT COUNT(*) FROM [Order] WHERE CAST(orderCreatedAt AS DATE) = " + today;
-        stats.setTotalOrders(executeCountQuery(sql1));
-
-        // Order status counts
-        for (int status = 0; status <= 6; status++) {
-            String sql = "SELECT COUNT(*) FROM [Order] WHERE CAST(orderCreatedAt AS DATE) = " + today
-                    + " AND orderStatus = " + status;
-            int count = executeCountQuery(sql);
-            switch (status) {
-                case 0:
-                    stats.setPending(count);
-                    break;
-                case 1:
-                    stats.setConfirmed(count);
-                    break;
-                case 2:
-                    stats.setPreparing(count);
-                    break;
-                case 3:
-                    stats.setDelivery(count);
-                    break;
-                case 4:
-                    stats.setDelivered(count);
-                    break;
-                case 5:
-                    stats.setCancelled(count);
-                    break;
-                case 6:
-                    stats.setFailed(count);
-                    break;
-            }
-        }
-
-        // Payment status counts
-        for (int payStatus = 0; payStatus <= 2; payStatus++) {
-            String sql = "SELECT COUNT(*) FROM [Order] WHERE CAST(orderCreatedAt AS DATE) = " + today
-                    + " AND paymentStatus = " + payStatus;
-            int count = executeCountQuery(sql);
-            switch (payStatus) {
-                case 0:
-                    stats.setUnpaid(count);
-                    break;
-                case 1:
-                    stats.setPaid(count);
-                    break;
-                case 2:
-                    stats.setRefunded(count);
-                    break;
-            }
-        }
-
-        return stats;
+        return DashboardStatsEngine.get(StatsWindow.TODAY);
     }
 
     // Tháng nay
     public DashboardStats getMonthStats() {
-        DashboardStats stats = new DashboardStats();
-        String monthCondition = "YEAR(orderCreatedAt) = YEAR(GETDATE()) AND MONTH(orderCreatedAt) = MONTH(GETDATE())";
-
-        // Total orders this month
-        String sql1 = "SELECT COUNT(*) FROM [Order] WHERE " + monthCondition;
-        stats.setTotalOrders(executeCountQuery(sql1));
-
-        // Order status counts
-        for (int status = 0; status <= 6; status++) {
-            String sql = "SELECT COUNT(*) FROM [Order] WHERE " + monthCondition + " AND orderStatus = " + status;
-            int count = executeCountQuery(sql);
-            switch (status) {
-                case 0:
-                    stats.setPending(count);
-                    break;
-                case 1:
-                    stats.setConfirmed(count);
-                    break;
-                case 2:
-                    stats.setPreparing(count);
-                    break;
-                case 3:
-                    stats.setDelivery(count);
-                    break;
-                case 4:
-                    stats.setDelivered(count);
-                    break;
-                case 5:
-                    stats.setCancelled(count);
-                    break;
-                case 6:
-                    stats.setFailed(count);
-                    break;
-            }
-        }
-
-        // Payment status counts
-        for (int payStatus = 0; payStatus <= 2; payStatus++) {
-            String sql = "SELECT COUNT(*) FROM [Order] WHERE " + monthCondition + " AND paymentStatus = " + payStatus;
-            int count = executeCountQuery(sql);
-            switch (payStatus) {
-                case 0:
-                    stats.setUnpaid(count);
-                    break;
-                case 1:
-                    stats.setPaid(count);
-                    break;
-                case 2:
-                    stats.setRefunded(count);
-                    break;
-            }
-        }
-
-        return stats;
+        return DashboardStatsEngine.get(StatsWindow.MONTH);
     }
 
     public DashboardStats getAllStats() {
-        DashboardStats stats = new DashboardStats();
-
-        // Total orders (no time filter)
-        String sql1 = "SELECT COUNT(*) FROM [Order]";
-        stats.setTotalOrders(executeCountQuery(sql1));
-
-        // Order status counts
-        for (int status = 0; status <= 6; status++) {
-            String sql = "SELECT COUNT(*) FROM [Order] WHERE orderStatus = " + status;
-            int count = executeCountQuery(sql);
-            switch (status) {
-                case 0:
-                    stats.setPending(count);
-                    break;
-                case 1:
-                    stats.setConfirmed(count);
-                    break;
-                case 2:
-                    stats.setPreparing(count);
-                    break;
-                case 3:
-                    stats.setDelivery(count);
-                    break;
-                case 4:
-                    stats.setDelivered(count);
-                    break;
-                case 5:
-                    stats.setCancelled(count);
-                    break;
-                case 6:
-                    stats.setFailed(count);
-                    break;
-            }
-        }
-
-        // Payment status counts
-        for (int payStatus = 0; payStatus <= 2; payStatus++) {
-            String sql = "SELECT COUNT(*) FROM [Order] WHERE paymentStatus = " + payStatus;
-            int count = executeCountQuery(sql);
-            switch (payStatus) {
-                case 0:
-                    stats.setUnpaid(count);
-                    break;
-                case 1:
-                    stats.setPaid(count);
-                    break;
-                case 2:
-                    stats.setRefunded(count);
-                    break;
-            }
-        }
-
-        return stats;
-    }
-
-    // Helper method
-    private int executeCountQuery(String sql) {
-        try (Connection conn = getConnection(); PreparedStatement ps = conn.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
-            if (rs.next()) {
-                return rs.getInt(1);
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return 0;
-
+        return DashboardStatsEngine.get(StatsWindow.ALL);
     }
 
     // Get list of years that have orders
@@ -962,64 +970,24 @@ public class OrderDAO extends DBContext {
             incomeMap.put(i, 0.0);
         }
 
-        // Handle refunded delivered orders (negative order amount)
-        String refundedSql = "SELECT MONTH(orderCreatedAt) AS month, amount "
-                + "FROM [Order] "
-                + "WHERE YEAR(orderCreatedAt) = ? AND paymentStatus = 2 AND orderStatus = 4";
-
-        try (Connection conn = getConnection(); PreparedStatement ps = conn.prepareStatement(refundedSql)) {
-            ps.setInt(1, year);
-            ResultSet rs = ps.executeQuery();
-
-            while (rs.next()) {
-                int month = rs.getInt("month");
-                double amount = rs.getDouble("amount");
-
-                // Add negative order amount to monthly income
-                double currentMonthIncome = incomeMap.get(month);
-                incomeMap.put(month, currentMonthIncome - amount); // Subtract amount (make it negative)
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-
-        // Handle paid orders (positive calculated income)
-        String paidSql = "SELECT MONTH(o.orderCreatedAt) AS month, od.quantity, "
-                + "d.DishID, d.opCost, d.interestPercentage "
+        // Paid orders contribute the profit captured on their lines; refunded
+        // delivered orders contribute their negative amount
+        String sql = "SELECT MONTH(o.orderCreatedAt) AS month, "
+                + "SUM(CASE WHEN o.paymentStatus = 1 THEN ISNULL(li.profit, 0) ELSE -o.amount END) AS income "
                 + "FROM [Order] o "
-                + "JOIN OrderDetail od ON o.orderID = od.FK_OD_Order "
-                + "JOIN Dish d ON od.FK_OD_Dish = d.DishID "
-                + "WHERE YEAR(o.orderCreatedAt) = ? AND o.paymentStatus = 1";
+                + "OUTER APPLY (SELECT SUM(od.profit * od.quantity) AS profit "
+                + "             FROM OrderDetail od WHERE od.FK_OD_Order = o.orderID) li "
+                + "WHERE o.orderCreatedAt >= DATEFROMPARTS(?, 1, 1) AND o.orderCreatedAt < DATEFROMPARTS(?, 1, 1) "
+                + "AND (o.paymentStatus = 1 OR (o.paymentStatus = 2 AND o.orderStatus = 4)) "
+                + "GROUP BY MONTH(o.orderCreatedAt)";
 
-        try (Connection conn = getConnection(); PreparedStatement ps = conn.prepareStatement(paidSql)) {
+        try (Connection conn = getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, year);
+            ps.setInt(2, year + 1);
             ResultSet rs = ps.executeQuery();
 
             while (rs.next()) {
-                int month = rs.getInt("month");
-                int quantity = rs.getInt("quantity");
-                int dishId = rs.getInt("DishID");
-                BigDecimal opCost = rs.getBigDecimal("opCost");
-                BigDecimal interestPercentage = rs.getBigDecimal("interestPercentage");
-
-                // Get ingredients for this dish
-                IngredientDAO ingredientDAO = new IngredientDAO();
-                List<Ingredient> ingredients = ingredientDAO.getIngredientsByDishId(dishId);
-                BigDecimal ingredientCost = TotalPriceCalculator.calculateIngredientCost(ingredients);
-
-                // Calculate unit price
-                BigDecimal unitPrice = TotalPriceCalculator.calculateTotalPrice(
-                        opCost, interestPercentage, ingredientCost);
-
-                // Calculate income per dish
-                BigDecimal incomePerDish = unitPrice.subtract(opCost.add(ingredientCost));
-
-                // Calculate total income for this order detail
-                BigDecimal totalIncomeForItem = incomePerDish.multiply(new BigDecimal(quantity));
-
-                // Add to monthly income
-                double currentMonthIncome = incomeMap.get(month);
-                incomeMap.put(month, currentMonthIncome + totalIncomeForItem.doubleValue());
+                incomeMap.put(rs.getInt("month"), rs.getDouble("income"));
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -1035,74 +1003,67 @@ public class OrderDAO extends DBContext {
      * delivered orders)
      */
     public BigDecimal getOrderIncomeByOrderId(int orderId) {
-        // First check if this is a refunded delivered order
-        String checkSql = "SELECT amount, paymentStatus, orderStatus FROM [Order] WHERE orderID = ?";
-        try (Connection conn = getConnection(); PreparedStatement ps = conn.prepareStatement(checkSql)) {
+        String sql = "SELECT o.amount, o.paymentStatus, o.orderStatus, "
+                + "(SELECT SUM(od.profit * od.quantity) FROM OrderDetail od WHERE od.FK_OD_Order = o.orderID) AS profit "
+                + "FROM [Order] o WHERE o.orderID = ?";
+        try (Connection conn = getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, orderId);
             ResultSet rs = ps.executeQuery();
 
             if (rs.next()) {
-                int paymentStatus = rs.getInt("paymentStatus");
-                int orderStatus = rs.getInt("orderStatus");
-                BigDecimal amount = rs.getBigDecimal("amount");
-
-                // If refunded and delivered, return negative order amount
-                if (paymentStatus == 2 && orderStatus == 4) {
-                    return amount.negate();
-                }
-
-                // If not paid, return zero
-                if (paymentStatus != 1) {
-                    return BigDecimal.ZERO;
-                }
+                return readIncome(rs);
             }
         } catch (SQLException e) {
             e.printStackTrace();
-            return BigDecimal.ZERO;
         }
+        return BigDecimal.ZERO;
+    }
 
-        // Calculate normal income for paid orders
-        BigDecimal totalIncome = BigDecimal.ZERO;
-
-        String sql = "SELECT od.quantity, d.DishID, d.opCost, d.interestPercentage "
-                + "FROM OrderDetail od "
-                + "JOIN Dish d ON od.FK_OD_Dish = d.DishID "
-                + "JOIN [Order] o ON od.FK_OD_Order = o.orderID "
-                + "WHERE od.FK_OD_Order = ? AND o.paymentStatus = 1";
+    /**
+     * Income of several orders in one query, same rule as
+     * getOrderIncomeByOrderId. Used for a page of the order list instead of
+     * one query per row; orders that do not exist are left out.
+     */
+    public Map<Integer, BigDecimal> getOrderIncomes(Collection<Integer> orderIds) {
+        Map<Integer, BigDecimal> incomes = new HashMap<>();
+        if (orderIds == null || orderIds.isEmpty()) {
+            return incomes;
+        }
 
+        String placeholders = String.join(",", Collections.nCopies(orderIds.size(), "?"));
+        String sql = "SELECT o.orderID, o.amount, o.paymentStatus, o.orderStatus, "
+                + "(SELECT SUM(od.profit * od.quantity) FROM OrderDetail od WHERE od.FK_OD_Order = o.orderID) AS profit "
+                + "FROM [Order] o WHERE o.orderID IN (" + placeholders + ")";
         try (Connection conn = getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, orderId);
-            ResultSet rs = ps.executeQuery();
-
-            while (rs.next()) {
-                int quantity = rs.getInt("quantity");
-                int dishId = rs.getInt("DishID");
-                BigDecimal opCost = rs.getBigDecimal("opCost");
-                BigDecimal interestPercentage = rs.getBigDecimal("interestPercentage");
-
-                // Get ingredients for this dish
-                IngredientDAO ingredientDAO = new IngredientDAO();
-                List<Ingredient> ingredients = ingredientDAO.getIngredientsByDishId(dishId);
-                BigDecimal ingredientCost = TotalPriceCalculator.calculateIngredientCost(ingredients);
-
-                // Calculate unit price (selling price per dish)
-                BigDecimal unitPrice = TotalPriceCalculator.calculateTotalPrice(
-                        opCost, interestPercentage, ingredientCost);
-
-                // Calculate income per dish = unitPrice - (opCost + ingredientCost)
-                BigDecimal incomePerDish = unitPrice.subtract(opCost.add(ingredientCost));
-
-                // Calculate total income for this dish in the order
-                BigDecimal dishTotalIncome = incomePerDish.multiply(new BigDecimal(quantity));
-
-                // Add to total order income
-                totalIncome = totalIncome.add(dishTotalIncome);
+            int index = 1;
+            for (Integer orderId : orderIds) {
+                ps.setInt(index++, orderId);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    incomes.put(rs.getInt("orderID"), readIncome(rs));
+                }
             }
         } catch (SQLException e) {
             e.printStackTrace();
         }
+        return incomes;
+    }
+
+    private BigDecimal readIncome(ResultSet rs) throws SQLException {
+        int paymentStatus = rs.getInt("paymentStatus");
+        int orderStatus = rs.getInt("orderStatus");
+
+        // If refunded and delivered, return negative order amount
+        if (paymentStatus == 2 && orderStatus == 4) {
+            return valueOrZero(rs.getBigDecimal("amount")).negate();
+        }
 
-        return totalIncome;
+        // Paid orders earn the profit captured on each line
+        if (paymentStatus == 1) {
+            return valueOrZero(rs.getBigDecimal("profit"));
+        }
+        return BigDecimal.ZERO;
     }
 
     /**
@@ -1113,4 +1074,8 @@ public class OrderDAO extends DBContext {
         BigDecimal income = getOrderIncomeByOrderId(orderId);
         return TotalPriceCalculator.formatVND(income);
     }
+
+    private static BigDecimal valueOrZero(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
 }
@@ -0,0 +1,142 @@
+package dao;
+
+import java.sql.*;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import model.Account;
+import model.OrderOutboxEvent;
+import utils.DBContext;
+import utils.queue.LeasedQueue;
+
+/**
+ * Outbox of order changes, one OrderOutbox row per order or payment status
+ * change.
+ *
+ * Rows are written in the same transaction as the change itself (see
+ * {@link #add(Connection, int, String, int, int)}), so a change that
+ * committed always gets its side effects and one that rolled back never
+ * does, even if the server stops in between. OrderOutboxDispatcher carries
+ * the side effects out in the background, so the request that changed the
+ * order does not wait for SMTP.
+ */
+public class OrderOutboxDAO extends DBContext {
+
+    /**
+     * Record an order change in the caller's transaction. Nothing is recorded
+     * if the value did not change.
+     *
+     * @param eventType {@link OrderOutboxEvent#ORDER_STATUS} or
+     *                  {@link OrderOutboxEvent#PAYMENT_STATUS}
+     */
+    static void add(Connection c, int orderId, String eventType, int oldValue, int newValue) throws SQLException {
+        if (oldValue == newValue) {
+            return;
+        }
+        String sql = "INSERT INTO OrderOutbox (orderID, eventType, oldValue, newValue) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setInt(1, orderId);
+            ps.setString(2, eventType);
+            ps.setInt(3, oldValue);
+            ps.setInt(4, newValue);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Pick up pending events that are due, oldest first. Each is leased for
+     * {@code leaseSeconds}: if it is neither finished nor rescheduled by
+     * then, it is picked up again.
+     *
+     * @param limit at most this many events
+     */
+    public List<OrderOutboxEvent> claimDue(int limit, int leaseSeconds) throws SQLException {
+        List<OrderOutboxEvent> events = LeasedQueue.claimDue(conn, "OrderOutbox", "eventID",
+                "inserted.eventID, inserted.orderID, inserted.eventType, inserted.oldValue, "
+                + "inserted.newValue, inserted.attempts", limit, leaseSeconds,
+                rs -> new OrderOutboxEvent(rs.getLong("eventID"), rs.getInt("orderID"),
+                        rs.getString("eventType"), rs.getInt("oldValue"), rs.getInt("newValue"),
+                        rs.getInt("attempts")));
+        events.sort((a, b) -> Long.compare(a.getEventID(), b.getEventID()));
+        return events;
+    }
+
+    /**
+     * Customer accounts of the given orders, in one query.
+     *
+     * @return order ID to the ordering customer's account; orders without a
+     * customer are left out
+     */
+    public Map<Integer, Account> getCustomers(Collection<Integer> orderIds) throws SQLException {
+        if (orderIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Set<Integer> ids = new LinkedHashSet<>(orderIds);
+        String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+        String sql = "SELECT o.orderID, a.accountID, a.fullName, a.email FROM [Order] o "
+                + "JOIN Account a ON a.accountID = o.FK_Order_Customer "
+                + "WHERE o.orderID IN (" + placeholders + ")";
+        Map<Integer, Account> customers = new HashMap<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int index = 1;
+            for (int id : ids) {
+                ps.setInt(index++, id);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Account account = new Account();
+                    account.setAccountID(rs.getInt("accountID"));
+                    account.setFullName(rs.getString("fullName"));
+                    account.setEmail(rs.getString("email"));
+                    customers.put(rs.getInt("orderID"), account);
+                }
+            }
+        }
+        return customers;
+    }
+
+    /**
+     * Mark events done, in one statement.
+     */
+    public void markDone(Collection<Long> eventIds) throws SQLException {
+        if (eventIds.isEmpty()) {
+            return;
+        }
+        String placeholders = String.join(",", Collections.nCopies(eventIds.size(), "?"));
+        String sql = "UPDATE OrderOutbox SET status = 1, lastError = NULL, processedAt = GETDATE() "
+                + "WHERE status = 0 AND eventID IN (" + placeholders + ")";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int index = 1;
+            for (long id : eventIds) {
+                ps.setLong(index++, id);
+            }
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Try the event again after {@code delaySeconds}.
+     */
+    public void retryLater(long eventId, int delaySeconds, String error) {
+        LeasedQueue.retryLater(conn, "OrderOutbox", "eventID", eventId, delaySeconds, error);
+    }
+
+    /**
+     * Stop trying the event. Staff can set it back to pending in SQL.
+     */
+    public void giveUp(long eventId, String error) {
+        String sql = "UPDATE OrderOutbox SET status = 2, lastError = ?, processedAt = GETDATE() "
+                + "WHERE eventID = ? AND status = 0";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, LeasedQueue.truncate(error));
+            ps.setLong(2, eventId);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+}
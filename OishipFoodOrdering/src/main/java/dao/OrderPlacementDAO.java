@@ -0,0 +1,297 @@
+package dao;
+
+import java.math.BigDecimal;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import model.Cart;
+import model.Dish;
+import model.OrderPlacement;
+import model.Voucher;
+import utils.DBContext;
+import utils.cart.CartCache;
+import utils.catalog.MenuCatalog;
+import utils.stock.StockCounter;
+import utils.stock.StockHolds;
+import utils.voucher.VoucherEngine;
+import utils.voucher.VoucherPermits;
+
+/**
+ * Places a customer order from selected cart lines in a single transaction.
+ *
+ * The order row, its lines, the stock decrement, the voucher redemption and
+ * the removal of the ordered cart lines all commit together or not at all. Dish
+ * rows are read with an update lock so the stock check cannot race another
+ * checkout, and any shortage is reported before anything is written. Stock
+ * held for other customers' unpaid online orders counts as taken.
+ *
+ * With the stock counter enabled the counter decides instead: stock is taken
+ * from it with a compare-and-decrement before the order is written, so Dish
+ * rows are neither locked nor updated by checkout. Cash orders queue their
+ * Dish decrement for the counter's next write-back once the order has
+ * committed, and the counter gets the stock back if the order fails.
+ *
+ * A voucher is priced from the in-memory voucher index and needs a permit
+ * from VoucherPermits, so checkouts for a used-up voucher never reach the
+ * Voucher row. It is redeemed (VoucherRedemptionDAO) right before the commit,
+ * which keeps the Voucher row locked as briefly as possible; if another
+ * checkout took the last use in the meantime, the order is placed again
+ * without the voucher.
+ */
+public class OrderPlacementDAO extends DBContext {
+
+    /**
+     * Place an order for the given cart lines of a customer.
+     *
+     * @param customerId the ordering customer
+     * @param cartIDs    cart lines to order; lines of other customers are
+     *                   ignored
+     * @param voucherID  voucher to apply, or null. A voucher that is no longer
+     *                   usable is skipped and the order placed without it.
+     * @param payOnline  true if the customer pays through PayOS: stock is then
+     *                   only held (see StockReservationDAO) until the payment
+     *                   arrives or the hold expires
+     * @return the placed order, or the stock shortages if it was not placed
+     * @throws SQLException if the transaction failed and was rolled back
+     */
+    public OrderPlacement placeOrder(int customerId, String[] cartIDs, Integer voucherID, boolean payOnline)
+            throws SQLException {
+        try {
+            return place(customerId, cartIDs, voucherID, payOnline);
+        } catch (VoucherUsedUpException e) {
+            return place(customerId, cartIDs, null, payOnline);
+        }
+    }
+
+    private OrderPlacement place(int customerId, String[] cartIDs, Integer voucherID, boolean payOnline)
+            throws SQLException {
+        OrderPlacement result = new OrderPlacement();
+        if (cartIDs == null || cartIDs.length == 0) {
+            return result;
+        }
+
+        boolean counted = StockCounter.isEnabled();
+        Map<Integer, Integer> taken = Collections.emptyMap();
+        Map<Integer, Integer> requested = new LinkedHashMap<>();
+        Integer permit = null;
+        conn.setAutoCommit(false);
+        try {
+            List<Cart> carts = lockCartLines(customerId, cartIDs, !counted);
+            if (carts.isEmpty()) {
+                conn.rollback();
+                return result;
+            }
+
+            // Quantity per dish, so two cart lines of one dish are checked together
+            Map<Integer, Dish> dishes = new LinkedHashMap<>();
+            BigDecimal grandTotal = BigDecimal.ZERO;
+            for (Cart cart : carts) {
+                Dish dish = cart.getDish();
+                requested.merge(dish.getDishID(), cart.getQuantity(), Integer::sum);
+                dishes.putIfAbsent(dish.getDishID(), dish);
+                grandTotal = grandTotal.add(dish.getTotalPrice().multiply(BigDecimal.valueOf(cart.getQuantity())));
+            }
+
+            if (counted) {
+                Map<Integer, Integer> shortages = StockCounter.tryDecrementAll(requested);
+                for (Map.Entry<Integer, Integer> entry : shortages.entrySet()) {
+                    Dish dish = dishes.get(entry.getKey());
+                    result.addShortage(new OrderPlacement.StockShortage(dish.getDishID(), dish.getDishName(),
+                            requested.get(entry.getKey()), entry.getValue()));
+                }
+                if (shortages.isEmpty()) {
+                    taken = requested;
+                }
+            } else {
+                for (Map.Entry<Integer, Integer> entry : requested.entrySet()) {
+                    Dish dish = dishes.get(entry.getKey());
+                    if (dish.getStock() < entry.getValue()) {
+                        result.addShortage(new OrderPlacement.StockShortage(dish.getDishID(), dish.getDishName(),
+                                entry.getValue(), dish.getStock()));
+                    }
+                }
+            }
+            if (!result.getShortages().isEmpty()) {
+                conn.rollback();
+                return result;
+            }
+
+            BigDecimal discount = BigDecimal.ZERO;
+            if (voucherID != null) {
+                BigDecimal voucherDiscount = VoucherEngine.evaluate(customerId, voucherID, grandTotal);
+                Voucher voucher = VoucherEngine.findById(voucherID);
+                if (voucherDiscount != null && voucher != null && VoucherPermits.tryAcquire(voucher)) {
+                    permit = voucherID;
+                    discount = voucherDiscount;
+                } else {
+                    voucherID = null;
+                }
+            }
+            BigDecimal amount = grandTotal.subtract(discount);
+
+            int orderId = insertOrder(customerId, amount, voucherID);
+            OrderDAO.insertOrderDetails(conn, orderId, carts);
+
+            if (payOnline) {
+                StockReservationDAO.hold(conn, orderId, requested, StockHolds.getHoldMinutes());
+            } else {
+                // Cannot fail while the dish rows are locked, but never commit oversold stock
+                if (!counted && !decreaseStock(requested)) {
+                    throw new SQLException("Stock changed while placing order for customer " + customerId);
+                }
+                StockReservationDAO.recordCommitted(conn, orderId, requested);
+            }
+
+            deleteCartLines(customerId, carts);
+            if (voucherID != null && !VoucherRedemptionDAO.redeem(conn, customerId, voucherID, grandTotal)) {
+                throw new VoucherUsedUpException(voucherID);
+            }
+            // Last, so the day's rollup row, shared by every checkout, is locked only until the commit
+            DailyRollupDAO.applyChange(conn, null, DailyRollupDAO.snapshot(conn, orderId));
+            conn.commit();
+            List<Integer> orderedLines = new ArrayList<>();
+            for (Cart cart : carts) {
+                orderedLines.add(cart.getCartID());
+            }
+            CartCache.linesRemoved(orderedLines);
+            if (voucherID != null) {
+                VoucherPermits.confirm(voucherID);
+                VoucherEngine.recordRedemption(customerId, voucherID);
+            }
+            if (counted) {
+                if (payOnline) {
+                    // The hold now shows in the database
+                    StockCounter.settleAll(taken);
+                } else {
+                    for (Map.Entry<Integer, Integer> entry : taken.entrySet()) {
+                        StockCounter.decrementLater(entry.getKey(), entry.getValue());
+                    }
+                }
+                taken = Collections.emptyMap();
+            }
+
+            result.setOrderID(orderId);
+            result.setAmount(amount);
+            result.setDiscount(discount);
+            result.setVoucherID(voucherID);
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            StockCounter.cancelAll(taken);
+            if (permit != null) {
+                VoucherPermits.release(permit);
+            }
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+
+        MenuCatalog.invalidateStock();
+        return result;
+    }
+
+    private List<Cart> lockCartLines(int customerId, String[] cartIDs, boolean lockDishes) throws SQLException {
+        String placeholders = String.join(",", Collections.nCopies(cartIDs.length, "?"));
+        String sql = "SELECT c.cartID, c.quantity, c.FK_Cart_Customer, c.FK_Cart_Dish, "
+                + "d.DishID, d.DishName, d.opCost, d.interestPercentage, d.ingredientCost, d.price, "
+                + "d.stock - " + StockReservationDAO.ACTIVE_HOLDS_SQL + " AS available "
+                + "FROM Cart c JOIN Dish d" + (lockDishes ? " WITH (UPDLOCK, ROWLOCK)" : "") + " ON c.FK_Cart_Dish = d.DishID "
+                + "WHERE c.FK_Cart_Customer = ? AND c.cartID IN (" + placeholders + ") "
+                + "ORDER BY d.DishID";
+
+        List<Cart> carts = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, customerId);
+            for (int i = 0; i < cartIDs.length; i++) {
+                ps.setInt(i + 2, Integer.parseInt(cartIDs[i]));
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Dish dish = new Dish();
+                    dish.setDishID(rs.getInt("DishID"));
+                    dish.setDishName(rs.getString("DishName"));
+                    dish.setOpCost(rs.getBigDecimal("opCost"));
+                    dish.setInterestPercentage(rs.getBigDecimal("interestPercentage"));
+                    dish.setStock(rs.getInt("available"));
+                    dish.setIngredientCost(rs.getBigDecimal("ingredientCost"));
+                    BigDecimal price = rs.getBigDecimal("price");
+                    dish.setTotalPrice(price != null ? price : BigDecimal.ZERO);
+
+                    Cart cart = new Cart();
+                    cart.setCartID(rs.getInt("cartID"));
+                    cart.setQuantity(rs.getInt("quantity"));
+                    cart.setCustomerID(rs.getInt("FK_Cart_Customer"));
+                    cart.setDishID(rs.getInt("FK_Cart_Dish"));
+                    cart.setDish(dish);
+                    carts.add(cart);
+                }
+            }
+        }
+        return carts;
+    }
+
+    private int insertOrder(int customerId, BigDecimal amount, Integer voucherID) throws SQLException {
+        String sql = "INSERT INTO [Order](amount, orderStatus, FK_Order_Customer, FK_Order_Voucher) VALUES (?, 0, ?, ?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            ps.setBigDecimal(1, amount);
+            ps.setInt(2, customerId);
+            if (voucherID != null) {
+                ps.setInt(3, voucherID);
+            } else {
+                ps.setNull(3, Types.INTEGER);
+            }
+            ps.executeUpdate();
+            try (ResultSet rs = ps.getGeneratedKeys()) {
+                if (rs.next()) {
+                    return rs.getInt(1);
+                }
+            }
+        }
+        throw new SQLException("No order ID returned for customer " + customerId);
+    }
+
+    /**
+     * Take the ordered quantity of every dish off stock in one statement.
+     *
+     * @return false if any dish no longer had enough stock
+     */
+    private boolean decreaseStock(Map<Integer, Integer> requested) throws SQLException {
+        String values = String.join(",", Collections.nCopies(requested.size(), "(?, ?)"));
+        String sql = "UPDATE d SET d.stock = d.stock - x.qty "
+                + "FROM Dish d JOIN (VALUES " + values + ") AS x(dishID, qty) ON d.DishID = x.dishID "
+                + "WHERE d.stock >= x.qty";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int index = 1;
+            for (Map.Entry<Integer, Integer> entry : requested.entrySet()) {
+                ps.setInt(index++, entry.getKey());
+                ps.setInt(index++, entry.getValue());
+            }
+            return ps.executeUpdate() == requested.size();
+        }
+    }
+
+    private void deleteCartLines(int customerId, List<Cart> carts) throws SQLException {
+        String placeholders = String.join(",", Collections.nCopies(carts.size(), "?"));
+        String sql = "DELETE FROM Cart WHERE FK_Cart_Customer = ? AND cartID IN (" + placeholders + ")";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, customerId);
+            for (int i = 0; i < carts.size(); i++) {
+                ps.setInt(i + 2, carts.get(i).getCartID());
+            }
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * The voucher was used up or used by this customer while the order was
+     * being placed.
+     */
+    private static class VoucherUsedUpException extends SQLException {
+
+        VoucherUsedUpException(int voucherID) {
+            super("Voucher " + voucherID + " can no longer be redeemed");
+        }
+    }
+}
@@ -1,15 +1,20 @@
 package dao;
 
+import model.OrderOutboxEvent;
 import model.Payment;
 import utils.DBContext;
 
 import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.Instant;
-import utils.DBContext;
+import java.util.Collections;
+import java.util.Map;
+import utils.outbox.OrderOutboxDispatcher;
+import utils.stock.StockCounter;
 
 /**
  * PaymentDAO handles database operations related to the Payment entity.
@@ -36,6 +41,90 @@ public class PaymentDAO extends DBContext {
         }
     }
 
+    /**
+     * Mark an order paid online and record its payment, in a transaction of
+     * its own. Safe to call again for an order that is already paid.
+     *
+     * @return false if there is no such order or on error
+     */
+    public boolean payOrder(int orderId) {
+        try {
+            conn.setAutoCommit(false);
+            Map<Integer, Integer> late;
+            try {
+                late = confirmPaid(conn, orderId);
+                if (late == null) {
+                    conn.rollback();
+                    return false;
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            StockCounter.takeAll(late);
+            OrderOutboxDispatcher.wake();
+            return true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Mark an order paid online and record its payment, in the caller's
+     * transaction. The order row is locked first, so concurrent calls for one
+     * order run one after the other and only the first inserts a Payment row
+     * and commits the order's stock holds.
+     *
+     * @return dish ID to quantity the caller takes off the stock counter with
+     * {@link StockCounter#takeAll(Map)} after committing (see
+     * StockReservationDAO.commit), or null if there is no such order
+     */
+    static Map<Integer, Integer> confirmPaid(Connection c, int orderId) throws SQLException {
+        BigDecimal amount;
+        int customerId;
+        int paymentStatus;
+        DailyRollupDAO.Share before = DailyRollupDAO.snapshot(c, orderId); // Also locks the order row
+        String orderSql = "SELECT amount, FK_Order_Customer, paymentStatus FROM [Order] WHERE orderID = ?";
+        try (PreparedStatement ps = c.prepareStatement(orderSql)) {
+            ps.setInt(1, orderId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                amount = rs.getBigDecimal("amount");
+                customerId = rs.getInt("FK_Order_Customer"); // customerID is the accountID
+                paymentStatus = rs.getInt("paymentStatus");
+            }
+        }
+
+        String paymentSql = "INSERT INTO Payment (PaymentTime, IsConfirmed, OrderID, AccountID, AmountPaid) "
+                + "SELECT SYSDATETIME(), 1, ?, ?, ? "
+                + "WHERE NOT EXISTS (SELECT 1 FROM Payment WHERE OrderID = ? AND IsConfirmed = 1)";
+        try (PreparedStatement ps = c.prepareStatement(paymentSql)) {
+            ps.setInt(1, orderId);
+            ps.setInt(2, customerId);
+            ps.setBigDecimal(3, amount);
+            ps.setInt(4, orderId);
+            ps.executeUpdate();
+        }
+
+        if (paymentStatus == 1) {
+            return Collections.emptyMap();
+        }
+        try (PreparedStatement ps = c.prepareStatement("UPDATE [Order] SET paymentStatus = 1 WHERE orderID = ?")) {
+            ps.setInt(1, orderId);
+            ps.executeUpdate();
+        }
+        OrderOutboxDAO.add(c, orderId, OrderOutboxEvent.PAYMENT_STATUS, paymentStatus, 1);
+        Map<Integer, Integer> late = StockReservationDAO.commit(c, orderId); // Held stock becomes a real decrement
+        DailyRollupDAO.applyChange(c, before, DailyRollupDAO.snapshot(c, orderId));
+        return late;
+    }
+
 //    public static void main(String[] args) {
 //        PaymentDAO paymentDAO = new PaymentDAO();
 //        Payment payment = new Payment();
@@ -0,0 +1,133 @@
+package dao;
+
+import java.math.BigDecimal;
+import java.sql.*;
+import java.util.List;
+import java.util.Map;
+import model.PaymentWebhookEvent;
+import utils.DBContext;
+import utils.outbox.OrderOutboxDispatcher;
+import utils.queue.LeasedQueue;
+import utils.stock.StockCounter;
+
+/**
+ * Inbox of verified PayOS payment webhooks, one PaymentWebhookEvent row per
+ * order code.
+ *
+ * The webhook servlet only stores the event, so PayOS gets its answer after a
+ * single insert; PaymentWebhookQueue applies stored events in the background.
+ * A repeated webhook for the same order code is not stored twice, and
+ * applying an event is idempotent (see PaymentDAO.confirmPaid), so retries
+ * from PayOS or from the queue never record a payment twice.
+ */
+public class PaymentWebhookDAO extends DBContext {
+
+    // SQL Server: duplicate key in a primary key or unique index
+    private static final int DUPLICATE_KEY = 2627;
+    private static final int DUPLICATE_INDEX_KEY = 2601;
+
+    /**
+     * Store a verified webhook unless one for the order code is already
+     * stored.
+     *
+     * @return true if the event is stored, now or before; false on error, in
+     * which case the webhook must not be acknowledged
+     */
+    public boolean enqueue(long orderCode, BigDecimal amount, String reference, String payload) {
+        String sql = "INSERT INTO PaymentWebhookEvent (orderCode, amount, reference, payload) "
+                + "SELECT ?, ?, ?, ? WHERE NOT EXISTS (SELECT 1 FROM PaymentWebhookEvent WHERE orderCode = ?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, orderCode);
+            ps.setBigDecimal(2, amount);
+            ps.setString(3, reference);
+            ps.setString(4, payload);
+            ps.setLong(5, orderCode);
+            ps.executeUpdate();
+            return true;
+        } catch (SQLException e) {
+            // The same webhook arrived twice at the same moment
+            if (e.getErrorCode() == DUPLICATE_KEY || e.getErrorCode() == DUPLICATE_INDEX_KEY) {
+                return true;
+            }
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Pick up pending events that are due. Each is leased for
+     * {@code leaseSeconds}: if it is neither applied nor rescheduled by then
+     * (e.g. the worker died), it is picked up again.
+     *
+     * @param limit at most this many events
+     */
+    public List<PaymentWebhookEvent> claimDue(int limit, int leaseSeconds) throws SQLException {
+        return LeasedQueue.claimDue(conn, "PaymentWebhookEvent", "nextAttemptAt",
+                "inserted.eventID, inserted.orderCode, inserted.attempts", limit, leaseSeconds,
+                rs -> new PaymentWebhookEvent(rs.getLong("eventID"), rs.getLong("orderCode"), rs.getInt("attempts")));
+    }
+
+    /**
+     * Mark the event's order paid and the event applied, in one transaction.
+     * An event for an order that does not exist is marked failed.
+     *
+     * @return true if the order is paid
+     * @throws SQLException if the transaction failed and was rolled back; the
+     * event stays pending
+     */
+    public boolean apply(PaymentWebhookEvent event) throws SQLException {
+        conn.setAutoCommit(false);
+        Map<Integer, Integer> late;
+        try {
+            long orderCode = event.getOrderCode();
+            late = orderCode > 0 && orderCode <= Integer.MAX_VALUE
+                    ? PaymentDAO.confirmPaid(conn, (int) orderCode) : null;
+            if (late == null) {
+                finish(conn, event.getEventID(), PaymentWebhookEvent.FAILED, "Order not found");
+            } else {
+                finish(conn, event.getEventID(), PaymentWebhookEvent.APPLIED, null);
+            }
+            conn.commit();
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+        if (late == null) {
+            return false;
+        }
+        StockCounter.takeAll(late);
+        OrderOutboxDispatcher.wake();
+        return true;
+    }
+
+    /**
+     * Try the event again after {@code delaySeconds}.
+     */
+    public void retryLater(long eventId, int delaySeconds, String error) {
+        LeasedQueue.retryLater(conn, "PaymentWebhookEvent", "eventID", eventId, delaySeconds, error);
+    }
+
+    /**
+     * Stop trying the event. Staff can set it back to pending in SQL.
+     */
+    public void giveUp(long eventId, String error) {
+        try {
+            finish(conn, eventId, PaymentWebhookEvent.FAILED, error);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void finish(Connection c, long eventId, int status, String error) throws SQLException {
+        String sql = "UPDATE PaymentWebhookEvent SET status = ?, lastError = ?, processedAt = GETDATE() "
+                + "WHERE eventID = ? AND status = 0";
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setInt(1, status);
+            ps.setString(2, LeasedQueue.truncate(error));
+            ps.setLong(3, eventId);
+            ps.executeUpdate();
+        }
+    }
+}
@@ -11,6 +11,8 @@ import java.util.ArrayList;
 import java.util.List;
 import model.Review;
 import utils.DBContext;
+import utils.stats.DashboardStatsEngine;
+import utils.stats.StatsWindow;
 
 /**
  *
@@ -110,65 +112,25 @@ public class ReviewDAO extends DBContext {
 
     // Dashboard Stats Methods for Reviews
     public void addReviewStatsToday(model.DashboardStats stats) {
-        String todayCondition = "CAST(reviewCreatedAt AS DATE) = CAST(GETDATE() AS DATE)";
-        addReviewStats(stats, todayCondition);
+        addReviewStats(stats, StatsWindow.TODAY);
     }
 
     public void addReviewStatsMonth(model.DashboardStats stats) {
-        String monthCondition = "YEAR(reviewCreatedAt) = YEAR(GETDATE()) AND MONTH(reviewCreatedAt) = MONTH(GETDATE())";
-        addReviewStats(stats, monthCondition);
+        addReviewStats(stats, StatsWindow.MONTH);
     }
 
     public void addReviewStatsAll(model.DashboardStats stats) {
-        addReviewStats(stats, "1=1"); // No time condition
+        addReviewStats(stats, StatsWindow.ALL);
     }
 
-    private void addReviewStats(model.DashboardStats stats, String condition) {
-        // Total reviews
-        String totalSql = "SELECT COUNT(*) FROM Review WHERE " + condition;
-        stats.setTotalReviews(executeCountQuery(totalSql));
-
-        // Reviews by rating
-        String ratingSql = "SELECT rating, COUNT(*) as count FROM Review WHERE " + condition + " GROUP BY rating";
-
-        try (PreparedStatement ps = conn.prepareStatement(ratingSql);
-                ResultSet rs = ps.executeQuery()) {
-
-            while (rs.next()) {
-                int rating = rs.getInt("rating");
-                int count = rs.getInt("count");
-
-                switch (rating) {
-                    case 1:
-                        stats.setStar1(count);
-                        break;
-                    case 2:
-                        stats.setStar2(count);
-                        break;
-                    case 3:
-                        stats.setStar3(count);
-                        break;
-                    case 4:
-                        stats.setStar4(count);
-                        break;
-                    case 5:
-                        stats.setStar5(count);
-                        break;
-                }
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-    }
-
-    private int executeCountQuery(String sql) {
-        try (PreparedStatement ps = conn.prepareStatement(sql);
-                ResultSet rs = ps.executeQuery()) {
-            if (rs.next())
-                return rs.getInt(1);
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return 0;
+    // Rating counts come from the same cached single-pass load as the order stats
+    private void addReviewStats(model.DashboardStats stats, StatsWindow window) {
+        model.DashboardStats source = DashboardStatsEngine.get(window);
+        stats.setTotalReviews(source.getTotalReviews());
+        stats.setStar1(source.getStar1());
+        stats.setStar2(source.getStar2());
+        stats.setStar3(source.getStar3());
+        stats.setStar4(source.getStar4());
+        stats.setStar5(source.getStar5());
     }
 }
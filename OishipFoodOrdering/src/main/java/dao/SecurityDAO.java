@@ -3,21 +3,20 @@ package dao;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import org.mindrot.jbcrypt.BCrypt;
+import utils.security.PasswordHasher;
 
 public class SecurityDAO {
 
-    // Số vòng băm BCrypt, càng cao thì càng bảo mật nhưng chậm hơn
-    private static final int SALT_ROUNDS = 12;
-
-    // Mã hóa mật khẩu
+    // Mã hóa mật khẩu (BCrypt, trên pool của PasswordHasher).
+    // Throws PasswordHasher.BusyException if the pool stays full for 10 seconds
     public static String hashPassword(String plainPassword) {
-        return BCrypt.hashpw(plainPassword, BCrypt.gensalt(SALT_ROUNDS));
+        return PasswordHasher.hash(plainPassword);
     }
 
-    // Kiểm tra mật khẩu nhập vào có khớp với mật khẩu đã mã hóa không
+    // Kiểm tra mật khẩu nhập vào có khớp với mật khẩu đã mã hóa không.
+    // Throws PasswordHasher.BusyException like hashPassword
     public static boolean checkPassword(String plainPassword, String hashedPassword) {
-        return BCrypt.checkpw(plainPassword, hashedPassword);
+        return PasswordHasher.verify(plainPassword, hashedPassword);
     }
 
     public static String hashOTP(String plainOTP) {
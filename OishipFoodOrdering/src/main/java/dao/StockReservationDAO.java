@@ -0,0 +1,246 @@
+package dao;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import utils.DBContext;
+import utils.Util;
+import utils.catalog.MenuCatalog;
+import utils.stock.StockCounter;
+
+/**
+ * Stock reserved by orders, one StockReservation row per order and dish.
+ *
+ * Orders paid online place a hold instead of taking stock off Dish: the hold
+ * counts against what customers can still buy until it expires, and becomes a
+ * real decrement when the payment webhook arrives. Orders paid on delivery
+ * are decremented at once and recorded as committed, so cancelling either
+ * kind gives back exactly what it took. Nothing here keeps Dish rows locked
+ * while the customer is on the payment page.
+ */
+public class StockReservationDAO extends DBContext {
+
+    public static final int HELD = 0;
+    public static final int COMMITTED = 1;
+    public static final int RELEASED = 2;
+
+    /**
+     * Quantity of dish {@code d} held by unexpired reservations. Subtract it
+     * from d.stock wherever customers are told what is left.
+     */
+    static final String ACTIVE_HOLDS_SQL
+            = "ISNULL((SELECT SUM(r.quantity) FROM StockReservation r "
+            + "WHERE r.dishID = d.DishID AND r.status = 0 AND r.expiresAt > GETDATE()), 0)";
+
+    /**
+     * Release the holds of unpaid orders whose hold time ran out, and cancel
+     * those orders if they are still pending.
+     *
+     * @return number of orders released
+     */
+    public int releaseExpired() {
+        List<Integer> orderIds = new ArrayList<>();
+        String sql = "SELECT DISTINCT r.orderID FROM StockReservation r "
+                + "JOIN [Order] o ON o.orderID = r.orderID "
+                + "WHERE r.status = 0 AND r.expiresAt <= GETDATE() AND o.paymentStatus = 0";
+        try (PreparedStatement ps = conn.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                orderIds.add(rs.getInt("orderID"));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return -1;
+        }
+
+        OrderDAO orderDAO = new OrderDAO();
+        int released = 0;
+        try {
+            for (int orderId : orderIds) {
+                try {
+                    // cancelOrder releases the holds with the cancellation;
+                    // orders staff already confirmed only lose their hold
+                    if (orderDAO.cancelOrder(orderId)) {
+                        Util.logError("Cancelled unpaid order #" + orderId + " after its stock hold expired");
+                    } else {
+                        StockCounter.incrementAll(release(conn, orderId));
+                    }
+                    released++;
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            }
+        } finally {
+            orderDAO.closeConnection();
+        }
+        return released;
+    }
+
+    /**
+     * Hold stock for an order until {@code holdMinutes} from now, on the
+     * caller's connection.
+     */
+    static void hold(Connection c, int orderId, Map<Integer, Integer> quantities, int holdMinutes) throws SQLException {
+        insert(c, orderId, quantities, HELD, holdMinutes);
+    }
+
+    /**
+     * Record stock already taken off Dish for an order, on the caller's
+     * connection, so a cancellation can give it back.
+     */
+    static void recordCommitted(Connection c, int orderId, Map<Integer, Integer> quantities) throws SQLException {
+        insert(c, orderId, quantities, COMMITTED, 0);
+    }
+
+    /**
+     * Turn the holds of a paid order into a stock decrement, joining the
+     * caller's transaction if one is open. Safe to call more than once: only
+     * rows not yet committed are converted. A hold that had already expired
+     * or been released is still converted, taking stock down to zero at
+     * worst, because the customer has paid for it.
+     *
+     * @return dish ID to quantity of the holds that had already been released
+     * and so were given back to the stock counter; the caller takes them off
+     * the counter again with {@link StockCounter#takeAll(Map)} once its
+     * transaction has committed
+     */
+    static Map<Integer, Integer> commit(Connection c, int orderId) throws SQLException {
+        String releasedSql = "SELECT dishID, quantity FROM StockReservation WHERE orderID = ? AND status = 2";
+        String shortSql = "SELECT d.DishID, d.stock, r.quantity FROM Dish d "
+                + "JOIN StockReservation r ON r.dishID = d.DishID "
+                + "WHERE r.orderID = ? AND r.status <> 1 AND d.stock < r.quantity";
+        String decrementSql = "UPDATE d SET d.stock = CASE WHEN d.stock >= r.quantity THEN d.stock - r.quantity ELSE 0 END "
+                + "FROM Dish d JOIN StockReservation r ON r.dishID = d.DishID "
+                + "WHERE r.orderID = ? AND r.status <> 1";
+        String markSql = "UPDATE StockReservation SET status = 1, updatedAt = GETDATE() "
+                + "WHERE orderID = ? AND status <> 1";
+
+        boolean ownTransaction = c.getAutoCommit();
+        if (ownTransaction) {
+            c.setAutoCommit(false);
+        }
+        Map<Integer, Integer> late;
+        int rows;
+        try {
+            late = quantities(c, releasedSql, orderId);
+            try (PreparedStatement ps = c.prepareStatement(shortSql)) {
+                ps.setInt(1, orderId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        Util.logError("Paid order #" + orderId + " oversells dish " + rs.getInt("DishID")
+                                + ": wanted " + rs.getInt("quantity") + ", stock " + rs.getInt("stock"));
+                    }
+                }
+            }
+            try (PreparedStatement ps = c.prepareStatement(decrementSql)) {
+                ps.setInt(1, orderId);
+                ps.executeUpdate();
+            }
+            try (PreparedStatement ps = c.prepareStatement(markSql)) {
+                ps.setInt(1, orderId);
+                rows = ps.executeUpdate();
+            }
+            if (ownTransaction) {
+                c.commit();
+            }
+        } catch (SQLException e) {
+            if (ownTransaction) {
+                c.rollback();
+            }
+            throw e;
+        } finally {
+            if (ownTransaction) {
+                c.setAutoCommit(true);
+            }
+        }
+
+        if (rows > 0) {
+            MenuCatalog.invalidateStock();
+        }
+        return late;
+    }
+
+    /**
+     * Release everything an order reserved, joining the caller's transaction
+     * if one is open: holds are dropped and committed quantities go back on
+     * Dish.stock.
+     *
+     * @return dish ID to quantity released; the caller gives it back to the
+     * stock counter with {@link StockCounter#incrementAll(Map)} once its
+     * transaction has committed
+     */
+    static Map<Integer, Integer> release(Connection c, int orderId) throws SQLException {
+        String releasingSql = "SELECT dishID, quantity FROM StockReservation WHERE orderID = ? AND status <> 2";
+        String restoreSql = "UPDATE d SET d.stock = d.stock + r.quantity "
+                + "FROM Dish d JOIN StockReservation r ON r.dishID = d.DishID "
+                + "WHERE r.orderID = ? AND r.status = 1";
+        String markSql = "UPDATE StockReservation SET status = 2, updatedAt = GETDATE() "
+                + "WHERE orderID = ? AND status <> 2";
+
+        boolean ownTransaction = c.getAutoCommit();
+        if (ownTransaction) {
+            c.setAutoCommit(false);
+        }
+        Map<Integer, Integer> released;
+        int rows;
+        try {
+            released = quantities(c, releasingSql, orderId);
+            try (PreparedStatement ps = c.prepareStatement(restoreSql)) {
+                ps.setInt(1, orderId);
+                ps.executeUpdate();
+            }
+            try (PreparedStatement ps = c.prepareStatement(markSql)) {
+                ps.setInt(1, orderId);
+                rows = ps.executeUpdate();
+            }
+            if (ownTransaction) {
+                c.commit();
+            }
+        } catch (SQLException e) {
+            if (ownTransaction) {
+                c.rollback();
+            }
+            throw e;
+        } finally {
+            if (ownTransaction) {
+                c.setAutoCommit(true);
+            }
+        }
+
+        if (rows > 0) {
+            MenuCatalog.invalidateStock();
+        }
+        return released;
+    }
+
+    private static Map<Integer, Integer> quantities(Connection c, String sql, int orderId) throws SQLException {
+        Map<Integer, Integer> quantities = new HashMap<>();
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setInt(1, orderId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    quantities.put(rs.getInt("dishID"), rs.getInt("quantity"));
+                }
+            }
+        }
+        return quantities;
+    }
+
+    private static void insert(Connection c, int orderId, Map<Integer, Integer> quantities, int status, int holdMinutes)
+            throws SQLException {
+        String sql = "INSERT INTO StockReservation (orderID, dishID, quantity, status, expiresAt) "
+                + "VALUES (?, ?, ?, ?, DATEADD(MINUTE, ?, GETDATE()))";
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            for (Map.Entry<Integer, Integer> entry : quantities.entrySet()) {
+                ps.setInt(1, orderId);
+                ps.setInt(2, entry.getKey());
+                ps.setInt(3, entry.getValue());
+                ps.setInt(4, status);
+                ps.setInt(5, holdMinutes);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+}
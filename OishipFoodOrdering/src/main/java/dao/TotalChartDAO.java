@@ -4,12 +4,12 @@ import model.ChartData;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import utils.db.ConnectionPool;
 
 public class TotalChartDAO {
 
     private Connection getConnection() throws SQLException {
-        String url = "jdbc:sqlserver://localhost:1433;databaseName=Oiship;encrypt=true;trustServerCertificate=true";
-        return DriverManager.getConnection(url, "sa", "123456");
+        return ConnectionPool.getInstance().openConnection();
     }
 
     public List<ChartData> getOrderStats() {
@@ -3,10 +3,13 @@ package dao;
 import java.math.BigDecimal;
 import model.Voucher;
 import utils.DBContext;
+import utils.voucher.VoucherEngine;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class VoucherDAO extends DBContext {
 
@@ -17,22 +20,7 @@ public class VoucherDAO extends DBContext {
         try (PreparedStatement ps = conn.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
 
             while (rs.next()) {
-                Voucher v = new Voucher(
-                        rs.getInt("voucherID"),
-                        rs.getString("code"),
-                        rs.getString("voucherDescription"),
-                        rs.getString("discountType"),
-                        rs.getBigDecimal("discount"),
-                        rs.getBigDecimal("maxDiscountValue"),
-                        rs.getBigDecimal("minOrderValue"),
-                        rs.getTimestamp("startDate").toLocalDateTime(),
-                        rs.getTimestamp("endDate").toLocalDateTime(),
-                        rs.getInt("usageLimit"),
-                        rs.getInt("usedCount"),
-                        rs.getInt("active") == 1,
-                        rs.getInt("FK_Voucher_Account")
-                );
-                list.add(v);
+                list.add(mapVoucher(rs));
             }
 
         } catch (Exception e) {
@@ -42,6 +30,59 @@ public class VoucherDAO extends DBContext {
         return list;
     }
 
+    /**
+     * Active vouchers that have not ended yet, including ones that start
+     * later, for the voucher engine's index.
+     */
+    public List<Voucher> getActiveVouchers() throws SQLException {
+        List<Voucher> list = new ArrayList<>();
+        String sql = "SELECT * FROM Voucher WHERE active = 1 AND startDate IS NOT NULL AND endDate >= GETDATE()";
+        try (PreparedStatement ps = conn.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                list.add(mapVoucher(rs));
+            }
+        }
+        return list;
+    }
+
+    /**
+     * IDs of the vouchers a customer has already used, on an order or as
+     * recorded in CustomerVoucher.
+     */
+    public Set<Integer> getUsedVoucherIds(int customerId) throws SQLException {
+        Set<Integer> ids = new HashSet<>();
+        String sql = "SELECT voucherID FROM CustomerVoucher WHERE customerID = ? "
+                + "UNION SELECT FK_Order_Voucher FROM [Order] WHERE FK_Order_Customer = ? AND FK_Order_Voucher IS NOT NULL";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, customerId);
+            ps.setInt(2, customerId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getInt(1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    private Voucher mapVoucher(ResultSet rs) throws SQLException {
+        return new Voucher(
+                rs.getInt("voucherID"),
+                rs.getString("code"),
+                rs.getString("voucherDescription"),
+                rs.getString("discountType"),
+                rs.getBigDecimal("discount"),
+                rs.getBigDecimal("maxDiscountValue"),
+                rs.getBigDecimal("minOrderValue"),
+                rs.getTimestamp("startDate").toLocalDateTime(),
+                rs.getTimestamp("endDate").toLocalDateTime(),
+                rs.getInt("usageLimit"),
+                rs.getInt("usedCount"),
+                rs.getInt("active") == 1,
+                rs.getInt("FK_Voucher_Account")
+        );
+    }
+
     public void addVoucher(Voucher v) {
         String sql = "INSERT INTO Voucher (code, voucherDescription, discountType, discount, maxDiscountValue, minOrderValue, startDate, endDate, usageLimit, active, FK_Voucher_Account) "
                 + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
@@ -77,7 +118,7 @@ public class VoucherDAO extends DBContext {
 
     public void updateVoucher(Voucher v) {
         String sql = "UPDATE Voucher SET code = ?, voucherDescription = ?, discountType = ?, discount = ?, maxDiscountValue = ?, "
-                + "minOrderValue = ?, startDate = ?, endDate = ?, usageLimit = ?, usedCount = ?, active = ?, FK_Voucher_Account = ? WHERE voucherID = ?";
+                + "minOrderValue = ?, startDate = ?, endDate = ?, usageLimit = ?, active = ?, FK_Voucher_Account = ? WHERE voucherID = ?";
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, v.getCode());
             ps.setString(2, v.getVoucherDescription());
@@ -88,10 +129,10 @@ public class VoucherDAO extends DBContext {
             ps.setTimestamp(7, Timestamp.valueOf(v.getStartDate()));
             ps.setTimestamp(8, Timestamp.valueOf(v.getEndDate()));
             ps.setInt(9, v.getUsageLimit());
-            ps.setInt(10, v.getUsedCount());
-            ps.setInt(11, v.isActive() ? 1 : 0);
-            ps.setInt(12, v.getAccountID());
-            ps.setInt(13, v.getVoucherID());
+            // usedCount is only changed by redemptions, so an edit cannot undo one
+            ps.setInt(10, v.isActive() ? 1 : 0);
+            ps.setInt(11, v.getAccountID());
+            ps.setInt(12, v.getVoucherID());
             ps.executeUpdate();
         } catch (SQLException e) {
             e.printStackTrace();
@@ -145,47 +186,12 @@ public class VoucherDAO extends DBContext {
     }
 
     public Voucher findValidVoucher(String code, BigDecimal cartTotal) {
-        throw new UnsupportedOperationException("Not supported yet."); // Generated from nbfs://nbhost/SystemFileSystem/Templates/Classes/Code/GeneratedMethodBody
+        Voucher voucher = VoucherEngine.findByCode(code);
+        return voucher != null && VoucherEngine.isUsable(voucher, cartTotal) ? voucher : null;
     }
 
     public Voucher getValidVoucher(String code, BigDecimal orderTotal, int customerID) {
-        String sql = "SELECT * FROM Voucher \n"
-                + "        WHERE code = ? \n"
-                + "          AND active = 1 \n"
-                + "          AND GETDATE() BETWEEN startDate AND endDate \n"
-                + "          AND usageLimit > usedCount \n"
-                + "          AND minOrderValue <= ?\n"
-                + "          AND voucherID IN (\n"
-                + "              SELECT voucherID FROM CustomerVoucher WHERE customerID = ?";
-
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, code);
-            ps.setBigDecimal(2, orderTotal);
-            ps.setInt(3, customerID);
-            ResultSet rs = ps.executeQuery();
-
-            if (rs.next()) {
-                Voucher voucher = new Voucher();
-                voucher.setVoucherID(rs.getInt("voucherID"));
-                voucher.setCode(rs.getString("code"));
-                voucher.setVoucherDescription(rs.getString("voucherDescription"));
-                voucher.setDiscountType(rs.getString("discountType"));
-                voucher.setDiscount(rs.getBigDecimal("discount"));
-                voucher.setMaxDiscountValue(rs.getBigDecimal("maxDiscountValue"));
-                voucher.setMinOrderValue(rs.getBigDecimal("minOrderValue"));
-                voucher.setStartDate(rs.getTimestamp("startDate").toLocalDateTime());
-                voucher.setEndDate(rs.getTimestamp("endDate").toLocalDateTime());
-                voucher.setUsageLimit(rs.getInt("usageLimit"));
-                voucher.setUsedCount(rs.getInt("usedCount"));
-                voucher.setActive(rs.getInt("active") == 1); // Chuyển INT → boolean
-                voucher.setAccountID(rs.getInt("FK_Voucher_Account"));
-                return voucher;
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-
-        return null;
+        return VoucherEngine.evaluate(customerID, code, orderTotal) != null ? VoucherEngine.findByCode(code) : null;
     }
 
     public Voucher getVoucherById(int id) {
@@ -0,0 +1,95 @@
+package dao;
+
+import java.math.BigDecimal;
+import java.sql.*;
+import utils.DBContext;
+
+/**
+ * Redeems a voucher for a customer: one more use on the Voucher row and a
+ * CustomerVoucher row, so the customer cannot use it again.
+ *
+ * The use is taken with a single conditional update that only succeeds while
+ * the voucher is active, open and below its usage limit, so two checkouts can
+ * never both take the last use the way a read followed by
+ * {@code usedCount = usedCount + 1} could. The Voucher row is locked from
+ * that update until the surrounding transaction ends, so callers redeem as
+ * the last step before they commit.
+ */
+public class VoucherRedemptionDAO extends DBContext {
+
+    // SQL Server: duplicate key in a primary key or unique index
+    private static final int DUPLICATE_KEY = 2627;
+    private static final int DUPLICATE_INDEX_KEY = 2601;
+
+    /**
+     * Redeem a voucher in a transaction of its own.
+     *
+     * @return true if the voucher was redeemed, false if the customer cannot
+     * use it (any more) or on error
+     */
+    public boolean redeem(int customerId, int voucherId, BigDecimal orderTotal) {
+        try {
+            conn.setAutoCommit(false);
+            try {
+                boolean redeemed = redeem(conn, customerId, voucherId, orderTotal);
+                if (redeemed) {
+                    conn.commit();
+                } else {
+                    conn.rollback();
+                }
+                return redeemed;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Redeem a voucher in the caller's transaction. When this returns false
+     * the caller must roll back: the CustomerVoucher row may already be
+     * written.
+     *
+     * @param orderTotal order total before the discount, checked against the
+     *                   voucher's minimum order value
+     * @return true if the voucher was redeemed, false if it is used up, not
+     * open, below its minimum or already used by this customer
+     */
+    static boolean redeem(Connection c, int customerId, int voucherId, BigDecimal orderTotal) throws SQLException {
+        // The customer's row first: it only contends with the same customer's
+        // other checkouts, and keeps the shared Voucher row lock short
+        String claim = "INSERT INTO CustomerVoucher(customerID, voucherID) SELECT ?, ? "
+                + "WHERE NOT EXISTS (SELECT 1 FROM CustomerVoucher WHERE customerID = ? AND voucherID = ?)";
+        try (PreparedStatement ps = c.prepareStatement(claim)) {
+            ps.setInt(1, customerId);
+            ps.setInt(2, voucherId);
+            ps.setInt(3, customerId);
+            ps.setInt(4, voucherId);
+            if (ps.executeUpdate() == 0) {
+                return false;
+            }
+        } catch (SQLException e) {
+            // Another checkout of the same customer inserted it first
+            if (e.getErrorCode() == DUPLICATE_KEY || e.getErrorCode() == DUPLICATE_INDEX_KEY) {
+                return false;
+            }
+            throw e;
+        }
+
+        String use = "UPDATE Voucher SET usedCount = ISNULL(usedCount, 0) + 1 "
+                + "WHERE voucherID = ? AND active = 1 "
+                + "AND GETDATE() BETWEEN startDate AND endDate "
+                + "AND ISNULL(usedCount, 0) < usageLimit "
+                + "AND (minOrderValue IS NULL OR minOrderValue <= ?)";
+        try (PreparedStatement ps = c.prepareStatement(use)) {
+            ps.setInt(1, voucherId);
+            ps.setBigDecimal(2, orderTotal);
+            return ps.executeUpdate() == 1;
+        }
+    }
+}
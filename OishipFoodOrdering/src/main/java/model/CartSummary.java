@@ -0,0 +1,54 @@
+package model;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * What the customer sidebar shows about a cart: number of lines, number of
+ * items and their subtotal, without loading the dishes themselves.
+ */
+public class CartSummary {
+
+    private final int lineCount;
+    private final int itemCount;
+    private final BigDecimal subtotal;
+
+    public CartSummary(int lineCount, int itemCount, BigDecimal subtotal) {
+        this.lineCount = lineCount;
+        this.itemCount = itemCount;
+        this.subtotal = subtotal;
+    }
+
+    /**
+     * Summary of cart lines that are already loaded.
+     */
+    public static CartSummary of(List<Cart> carts) {
+        if (carts == null) {
+            return new CartSummary(0, 0, BigDecimal.ZERO);
+        }
+        int items = 0;
+        BigDecimal subtotal = BigDecimal.ZERO;
+        for (Cart cart : carts) {
+            items += cart.getQuantity();
+            if (cart.getDish() != null && cart.getDish().getTotalPrice() != null) {
+                subtotal = subtotal.add(cart.getDish().getTotalPrice().multiply(BigDecimal.valueOf(cart.getQuantity())));
+            }
+        }
+        return new CartSummary(carts.size(), items, subtotal);
+    }
+
+    /**
+     * Number of distinct dishes in the cart.
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    public BigDecimal getSubtotal() {
+        return subtotal;
+    }
+}
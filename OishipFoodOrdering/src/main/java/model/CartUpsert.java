@@ -0,0 +1,59 @@
+package model;
+
+/**
+ * Outcome of adding a dish to a cart. Either the cart line was written
+ * (cartID > 0) or nothing changed, because the dish is not on sale or the
+ * cart would then hold more than is in stock.
+ */
+public class CartUpsert {
+
+    private int cartID = -1;
+    private int quantity;
+    private int available;
+    private boolean dishAvailable;
+
+    public boolean isAdded() {
+        return cartID > 0;
+    }
+
+    public int getCartID() {
+        return cartID;
+    }
+
+    public void setCartID(int cartID) {
+        this.cartID = cartID;
+    }
+
+    /**
+     * Quantity of the dish in the cart after the call.
+     */
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    /**
+     * Units of the dish left for sale when the cart was checked.
+     */
+    public int getAvailable() {
+        return available;
+    }
+
+    public void setAvailable(int available) {
+        this.available = available;
+    }
+
+    /**
+     * False if the dish does not exist or is switched off.
+     */
+    public boolean isDishAvailable() {
+        return dishAvailable;
+    }
+
+    public void setDishAvailable(boolean dishAvailable) {
+        this.dishAvailable = dishAvailable;
+    }
+}
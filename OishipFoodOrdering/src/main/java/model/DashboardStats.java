@@ -14,6 +14,26 @@ public class DashboardStats {
     
     // Constructor
     public DashboardStats() {}
+
+    public DashboardStats(DashboardStats other) {
+        this.totalOrders = other.totalOrders;
+        this.pending = other.pending;
+        this.confirmed = other.confirmed;
+        this.preparing = other.preparing;
+        this.delivery = other.delivery;
+        this.delivered = other.delivered;
+        this.cancelled = other.cancelled;
+        this.failed = other.failed;
+        this.unpaid = other.unpaid;
+        this.paid = other.paid;
+        this.refunded = other.refunded;
+        this.totalReviews = other.totalReviews;
+        this.star1 = other.star1;
+        this.star2 = other.star2;
+        this.star3 = other.star3;
+        this.star4 = other.star4;
+        this.star5 = other.star5;
+    }
     
     // Getters and Setters for all fields...
     public int getTotalOrders() { return totalOrders; }
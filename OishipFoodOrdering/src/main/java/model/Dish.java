@@ -23,6 +23,8 @@ public class Dish {
     private String formattedIngredientsPrice;
     private String formattedOpCost;
     private String formattedProfit;
+    private BigDecimal ingredientCost;
+    private int priceVersion;
 
     public Dish() {
     }
@@ -230,4 +232,20 @@ public class Dish {
     public void setFormattedProfit(String formattedProfit) {
         this.formattedProfit = formattedProfit;
     }
-}
\ No newline at end of file
+
+    public BigDecimal getIngredientCost() {
+        return ingredientCost;
+    }
+
+    public void setIngredientCost(BigDecimal ingredientCost) {
+        this.ingredientCost = ingredientCost;
+    }
+
+    public int getPriceVersion() {
+        return priceVersion;
+    }
+
+    public void setPriceVersion(int priceVersion) {
+        this.priceVersion = priceVersion;
+    }
+}
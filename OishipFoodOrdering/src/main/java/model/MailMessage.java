@@ -0,0 +1,53 @@
+package model;
+
+import java.util.List;
+
+/**
+ * An email waiting in the MailOutbox table to be sent.
+ */
+public class MailMessage {
+
+    public static final int PENDING = 0;
+    public static final int SENT = 1;
+    public static final int FAILED = 2;
+
+    private final long mailID;
+    private final List<String> recipients;
+    private final String subject;
+    private final String body;
+    private final int attempts;
+
+    public MailMessage(long mailID, List<String> recipients, String subject, String body, int attempts) {
+        this.mailID = mailID;
+        this.recipients = recipients;
+        this.subject = subject;
+        this.body = body;
+        this.attempts = attempts;
+    }
+
+    public long getMailID() {
+        return mailID;
+    }
+
+    public List<String> getRecipients() {
+        return recipients;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    /**
+     * HTML body.
+     */
+    public String getBody() {
+        return body;
+    }
+
+    /**
+     * Times the email has been picked up, including the current one.
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+}
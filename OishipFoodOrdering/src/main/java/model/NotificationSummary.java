@@ -0,0 +1,36 @@
+package model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What the customer's notification bell shows: how many notifications are
+ * unread and the newest of them.
+ */
+public class NotificationSummary {
+
+    public static final NotificationSummary EMPTY = new NotificationSummary(0, Collections.emptyList());
+
+    private final int count;
+    private final List<Notification> latest;
+
+    public NotificationSummary(int count, List<Notification> latest) {
+        this.count = count;
+        this.latest = Collections.unmodifiableList(latest);
+    }
+
+    /**
+     * Number of unread notifications, which can be more than
+     * {@link #getLatest()} holds.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * The newest unread notifications, newest first.
+     */
+    public List<Notification> getLatest() {
+        return latest;
+    }
+}
@@ -10,6 +10,7 @@ public class OTP {
     private int isUsed;
     private String email;
     private Integer customerId; // Thay accountId bằng customerId
+    private int attempts; // Wrong codes entered so far
 
     // Constructors
     public OTP() {}
@@ -38,4 +39,6 @@ public class OTP {
     public void setEmail(String email) { this.email = email; }
     public Integer getCustomerId() { return customerId; }
     public void setCustomerId(Integer customerId) { this.customerId = customerId; }
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
 }
\ No newline at end of file
@@ -0,0 +1,163 @@
+package model;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.function.Function;
+
+/**
+ * Filters and keyset cursor for one page of the order management list.
+ * Null fields are not filtered on. The cursor is the (orderCreatedAt,
+ * orderID) of the last order on the previous page; leave it null for the
+ * newest orders.
+ */
+public class OrderFilter {
+
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private Integer orderStatus;
+    private Integer paymentStatus;
+    private LocalDate fromDate; // inclusive
+    private LocalDate toDate; // inclusive
+    private Integer customerID;
+    private String customerName; // substring of the customer's full name
+    private Timestamp afterCreatedAt;
+    private Integer afterOrderID;
+    private int pageSize = DEFAULT_PAGE_SIZE;
+
+    public OrderFilter() {
+    }
+
+    /**
+     * Read the list filters and the keyset cursor from a query string, as
+     * sent by the admin and staff order lists. Invalid values are ignored
+     * rather than rejected.
+     *
+     * @param parameters parameter name to value, e.g. request::getParameter
+     */
+    public static OrderFilter fromParameters(Function<String, String> parameters) {
+        OrderFilter filter = new OrderFilter();
+        filter.setOrderStatus(parseInt(parameters.apply("status")));
+        filter.setPaymentStatus(parseInt(parameters.apply("paymentStatus")));
+        filter.setCustomerID(parseInt(parameters.apply("customerId")));
+        filter.setCustomerName(parameters.apply("customer"));
+        filter.setFromDate(parseDate(parameters.apply("from")));
+        filter.setToDate(parseDate(parameters.apply("to")));
+
+        Integer size = parseInt(parameters.apply("size"));
+        if (size != null) {
+            filter.setPageSize(size);
+        }
+
+        String after = parameters.apply("after");
+        Integer afterId = parseInt(parameters.apply("afterId"));
+        if (after != null && afterId != null) {
+            try {
+                filter.setCursor(new Timestamp(Long.parseLong(after)), afterId);
+            } catch (NumberFormatException e) {
+                // Bad cursor, start from the newest orders
+            }
+        }
+        return filter;
+    }
+
+    private static Integer parseInt(String value) {
+        if (value == null || value.isEmpty() || "all".equals(value)) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static LocalDate parseDate(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    public Integer getOrderStatus() {
+        return orderStatus;
+    }
+
+    public void setOrderStatus(Integer orderStatus) {
+        this.orderStatus = orderStatus;
+    }
+
+    public Integer getPaymentStatus() {
+        return paymentStatus;
+    }
+
+    public void setPaymentStatus(Integer paymentStatus) {
+        this.paymentStatus = paymentStatus;
+    }
+
+    public LocalDate getFromDate() {
+        return fromDate;
+    }
+
+    public void setFromDate(LocalDate fromDate) {
+        this.fromDate = fromDate;
+    }
+
+    public LocalDate getToDate() {
+        return toDate;
+    }
+
+    public void setToDate(LocalDate toDate) {
+        this.toDate = toDate;
+    }
+
+    public Integer getCustomerID() {
+        return customerID;
+    }
+
+    public void setCustomerID(Integer customerID) {
+        this.customerID = customerID;
+    }
+
+    public String getCustomerName() {
+        return customerName;
+    }
+
+    public void setCustomerName(String customerName) {
+        this.customerName = customerName;
+    }
+
+    public Timestamp getAfterCreatedAt() {
+        return afterCreatedAt;
+    }
+
+    public Integer getAfterOrderID() {
+        return afterOrderID;
+    }
+
+    /**
+     * Start the page after the given order (both values must be set, or the
+     * cursor is ignored).
+     */
+    public void setCursor(Timestamp afterCreatedAt, Integer afterOrderID) {
+        this.afterCreatedAt = afterCreatedAt;
+        this.afterOrderID = afterOrderID;
+    }
+
+    public boolean hasCursor() {
+        return afterCreatedAt != null && afterOrderID != null;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE));
+    }
+}
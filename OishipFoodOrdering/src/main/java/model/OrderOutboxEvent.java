@@ -0,0 +1,57 @@
+package model;
+
+/**
+ * A change to an order recorded in the OrderOutbox table, waiting for its
+ * side effects (customer email and notification) to be carried out.
+ */
+public class OrderOutboxEvent {
+
+    public static final String ORDER_STATUS = "ORDER_STATUS";
+    public static final String PAYMENT_STATUS = "PAYMENT_STATUS";
+
+    private final long eventID;
+    private final int orderID;
+    private final String eventType;
+    private final int oldValue;
+    private final int newValue;
+    private final int attempts;
+
+    public OrderOutboxEvent(long eventID, int orderID, String eventType, int oldValue, int newValue, int attempts) {
+        this.eventID = eventID;
+        this.orderID = orderID;
+        this.eventType = eventType;
+        this.oldValue = oldValue;
+        this.newValue = newValue;
+        this.attempts = attempts;
+    }
+
+    public long getEventID() {
+        return eventID;
+    }
+
+    public int getOrderID() {
+        return orderID;
+    }
+
+    /**
+     * {@link #ORDER_STATUS} or {@link #PAYMENT_STATUS}.
+     */
+    public String getEventType() {
+        return eventType;
+    }
+
+    public int getOldValue() {
+        return oldValue;
+    }
+
+    public int getNewValue() {
+        return newValue;
+    }
+
+    /**
+     * Times the event has been picked up, including the current one.
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+}
@@ -0,0 +1,45 @@
+package model;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * One page of the order management list plus the cursor of the next page.
+ */
+public class OrderPage {
+
+    private final List<Order> orders;
+    private final boolean hasNext;
+
+    public OrderPage(List<Order> orders, boolean hasNext) {
+        this.orders = orders;
+        this.hasNext = hasNext;
+    }
+
+    public List<Order> getOrders() {
+        return orders;
+    }
+
+    public boolean isHasNext() {
+        return hasNext;
+    }
+
+    /**
+     * orderCreatedAt of the last order on this page, or null if empty.
+     */
+    public Timestamp getNextCreatedAt() {
+        if (orders.isEmpty()) {
+            return null;
+        }
+        java.util.Date createdAt = orders.get(orders.size() - 1).getOrderCreatedAt();
+        return createdAt instanceof Timestamp ? (Timestamp) createdAt
+                : createdAt != null ? new Timestamp(createdAt.getTime()) : null;
+    }
+
+    /**
+     * orderID of the last order on this page, or 0 if empty.
+     */
+    public int getNextOrderID() {
+        return orders.isEmpty() ? 0 : orders.get(orders.size() - 1).getOrderID();
+    }
+}
@@ -0,0 +1,101 @@
+package model;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of placing an order from the customer's cart. Either the order was
+ * created (orderID > 0) or nothing was written and {@link #getShortages()}
+ * lists the cart lines that could not be served from stock.
+ */
+public class OrderPlacement {
+
+    /**
+     * A dish the customer asked for more of than is in stock.
+     */
+    public static class StockShortage {
+
+        private final int dishID;
+        private final String dishName;
+        private final int requested;
+        private final int available;
+
+        public StockShortage(int dishID, String dishName, int requested, int available) {
+            this.dishID = dishID;
+            this.dishName = dishName;
+            this.requested = requested;
+            this.available = available;
+        }
+
+        public int getDishID() {
+            return dishID;
+        }
+
+        public String getDishName() {
+            return dishName;
+        }
+
+        public int getRequested() {
+            return requested;
+        }
+
+        public int getAvailable() {
+            return available;
+        }
+    }
+
+    private int orderID = -1;
+    private BigDecimal amount = BigDecimal.ZERO;
+    private BigDecimal discount = BigDecimal.ZERO;
+    private Integer voucherID;
+    private final List<StockShortage> shortages = new ArrayList<>();
+
+    public boolean isPlaced() {
+        return orderID > 0;
+    }
+
+    public int getOrderID() {
+        return orderID;
+    }
+
+    public void setOrderID(int orderID) {
+        this.orderID = orderID;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+
+    public BigDecimal getDiscount() {
+        return discount;
+    }
+
+    public void setDiscount(BigDecimal discount) {
+        this.discount = discount;
+    }
+
+    /**
+     * Voucher actually applied, or null if none was requested or it was no
+     * longer usable.
+     */
+    public Integer getVoucherID() {
+        return voucherID;
+    }
+
+    public void setVoucherID(Integer voucherID) {
+        this.voucherID = voucherID;
+    }
+
+    public List<StockShortage> getShortages() {
+        return shortages;
+    }
+
+    public void addShortage(StockShortage shortage) {
+        shortages.add(shortage);
+    }
+}
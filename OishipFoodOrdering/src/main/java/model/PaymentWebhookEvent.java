@@ -0,0 +1,40 @@
+package model;
+
+/**
+ * A verified PayOS payment webhook waiting in the PaymentWebhookEvent inbox
+ * to be applied to its order.
+ */
+public class PaymentWebhookEvent {
+
+    public static final int PENDING = 0;
+    public static final int APPLIED = 1;
+    public static final int FAILED = 2;
+
+    private final long eventID;
+    private final long orderCode;
+    private final int attempts;
+
+    public PaymentWebhookEvent(long eventID, long orderCode, int attempts) {
+        this.eventID = eventID;
+        this.orderCode = orderCode;
+        this.attempts = attempts;
+    }
+
+    public long getEventID() {
+        return eventID;
+    }
+
+    /**
+     * PayOS order code, which is the order ID.
+     */
+    public long getOrderCode() {
+        return orderCode;
+    }
+
+    /**
+     * Times the event has been picked up, including the current one.
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+}
@@ -0,0 +1,56 @@
+package utils;
+
+import io.github.cdimascio.dotenv.Dotenv;
+
+/**
+ * Settings from the .env file in src/main/resources, read once. Tuning keys
+ * are optional: a missing, blank or malformed value gives the default.
+ */
+public final class Env {
+
+    private static final Dotenv DOTENV = Dotenv.configure()
+            .filename(".env")
+            .ignoreIfMissing()
+            .load();
+
+    private Env() {
+    }
+
+    /**
+     * @return the value, or null if it is not set
+     */
+    public static String get(String key) {
+        return DOTENV.get(key);
+    }
+
+    /**
+     * @return the trimmed value, or {@code defaultValue} if it is not set or
+     * blank
+     */
+    public static String get(String key, String defaultValue) {
+        String value = DOTENV.get(key);
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    public static long getLong(String key, long defaultValue) {
+        String value = get(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid value for " + key + ": " + value + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public static int getInt(String key, int defaultValue) {
+        return (int) getLong(key, defaultValue);
+    }
+
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = get(key, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+}
@@ -0,0 +1,109 @@
+package utils.account;
+
+import dao.AccountDAO;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import model.Account;
+
+/**
+ * Logged-in accounts by account ID, so customer pages can show the user's
+ * name without reading Account (and Customer) on every request.
+ *
+ * An entry is loaded on first use and dropped when the account is edited,
+ * its password changed, its status changed or it is deleted, and when the
+ * session ends. Entries are also reloaded after {@link #MAX_AGE_MS} in case
+ * the account was changed outside this process. At most
+ * {@link #MAX_ENTRIES} are kept; past that, accounts are read but not
+ * cached until stale entries are dropped.
+ *
+ * The cached Account is shared: callers must not modify it.
+ */
+public class PrincipalCache {
+
+    public static final String REQUEST_ATTRIBUTE = "principal";
+
+    private static final long MAX_AGE_MS = TimeUnit.MINUTES.toMillis(5);
+    private static final int MAX_ENTRIES = 10_000;
+
+    private static final Map<Integer, Entry> ENTRIES = new ConcurrentHashMap<>();
+
+    private PrincipalCache() {
+    }
+
+    /**
+     * The logged-in user of the request, resolved once per request (see
+     * PrincipalFilter). Null if nobody is logged in or the account is gone.
+     */
+    public static Account current(HttpServletRequest request) {
+        Object resolved = request.getAttribute(REQUEST_ATTRIBUTE);
+        if (resolved instanceof Account) {
+            return (Account) resolved;
+        }
+        HttpSession session = request.getSession(false);
+        Object userId = session != null ? session.getAttribute("userId") : null;
+        if (!(userId instanceof Integer)) {
+            return null;
+        }
+        Account account = get((Integer) userId);
+        if (account != null) {
+            request.setAttribute(REQUEST_ATTRIBUTE, account);
+        }
+        return account;
+    }
+
+    /**
+     * The account, loaded if it is not cached. Null if there is no such
+     * account or on a database error; neither is cached.
+     */
+    public static Account get(int accountId) {
+        Entry entry = ENTRIES.get(accountId);
+        if (isFresh(entry)) {
+            return entry.account;
+        }
+        if (ENTRIES.size() >= MAX_ENTRIES) {
+            ENTRIES.values().removeIf(e -> !isFresh(e));
+            if (ENTRIES.size() >= MAX_ENTRIES) {
+                return load(accountId);
+            }
+        }
+        // Loading inside compute makes an invalidation for this account wait
+        // for the load, so the stale result is dropped rather than kept
+        Entry loaded = ENTRIES.compute(accountId, (id, current) -> {
+            if (isFresh(current)) {
+                return current;
+            }
+            Account account = load(id);
+            return account != null ? new Entry(account) : null;
+        });
+        return loaded != null ? loaded.account : null;
+    }
+
+    /**
+     * Forget an account, e.g. after it was edited or deleted or when its
+     * session ends.
+     */
+    public static void invalidate(int accountId) {
+        ENTRIES.remove(accountId);
+    }
+
+    private static Account load(int accountId) {
+        return new AccountDAO().findByID(accountId);
+    }
+
+    private static boolean isFresh(Entry entry) {
+        return entry != null && System.currentTimeMillis() - entry.loadedAt < MAX_AGE_MS;
+    }
+
+    private static class Entry {
+
+        private final Account account;
+        private final long loadedAt = System.currentTimeMillis();
+
+        Entry(Account account) {
+            this.account = account;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package utils.account;
+
+import jakarta.servlet.annotation.WebListener;
+import jakarta.servlet.http.HttpSession;
+import jakarta.servlet.http.HttpSessionEvent;
+import jakarta.servlet.http.HttpSessionListener;
+
+/**
+ * Drops a user's cached account when their session ends.
+ */
+@WebListener
+public class PrincipalSessionListener implements HttpSessionListener {
+
+    @Override
+    public void sessionDestroyed(HttpSessionEvent se) {
+        Object userId = se.getSession().getAttribute("userId");
+        if (userId instanceof Integer) {
+            PrincipalCache.invalidate((Integer) userId);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package utils.admin;
+
+import dao.OrderDAO;
+
+/**
+ * Fill unitPrice / unitCost / profit on order lines created before those
+ * columns existed. Safe to re-run: only rows still missing a price are
+ * touched.
+ */
+public class BackfillOrderDetailPrices {
+
+    private static final int BATCH_SIZE = 500;
+
+    public static void main(String[] args) {
+        OrderDAO orderDAO = new OrderDAO();
+        try {
+            System.out.println("✅ Backfilling order line prices. Time: " + new java.util.Date());
+            int updated = orderDAO.backfillOrderDetailPrices(BATCH_SIZE);
+            System.out.println("✅ Backfilled " + updated + " order lines. Time: " + new java.util.Date());
+        } finally {
+            orderDAO.closeConnection();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package utils.admin;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import utils.mail.EmailTemplate;
+import utils.mail.EmailTemplates;
+
+/**
+ * Times rendering the verification email three ways: reading the template and
+ * replacing placeholders for every email, replacing placeholders in a cached
+ * copy, and rendering the compiled template. Also checks that all three give
+ * the same HTML. No database or mail server is needed.
+ *
+ * Usage: EmailTemplateBenchmark [emails]
+ */
+public class EmailTemplateBenchmark {
+
+    private static final String PATH = "email/" + EmailTemplates.VERIFICATION + ".html";
+
+    public static void main(String[] args) throws Exception {
+        int emails = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        Map<String, String> values = new HashMap<>();
+        values.put("name", "Nguyễn Văn A");
+        values.put("code", "042917");
+
+        String source = read();
+        EmailTemplates.warmUp();
+        EmailTemplate template = EmailTemplates.get(EmailTemplates.VERIFICATION);
+
+        String expected = replace(source, values);
+        if (!expected.equals(template.render(values))) {
+            System.err.println("❌ Compiled template renders different HTML than replacing placeholders.");
+            System.exit(1);
+        }
+
+        // Twice each: the first round lets the JIT compile the code
+        for (int round = 1; round <= 2; round++) {
+            System.out.println("Round " + round + ", " + emails + " emails:");
+            long start = System.nanoTime();
+            long size = 0;
+            for (int i = 0; i < emails; i++) {
+                size += replace(read(), values).length();
+            }
+            report("read and replace", start, emails, size);
+
+            start = System.nanoTime();
+            size = 0;
+            for (int i = 0; i < emails; i++) {
+                size += replace(source, values).length();
+            }
+            report("cached, replace", start, emails, size);
+
+            start = System.nanoTime();
+            size = 0;
+            for (int i = 0; i < emails; i++) {
+                size += template.render(values).length();
+            }
+            report("compiled", start, emails, size);
+        }
+    }
+
+    private static String read() throws IOException {
+        try (InputStream in = EmailTemplateBenchmark.class.getClassLoader().getResourceAsStream(PATH)) {
+            if (in == null) {
+                throw new IOException("Not on the classpath: " + PATH);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String replace(String source, Map<String, String> values) {
+        String html = source;
+        for (Map.Entry<String, String> value : values.entrySet()) {
+            html = html.replace("{{" + value.getKey() + "}}", value.getValue());
+        }
+        return html;
+    }
+
+    private static void report(String label, long start, int emails, long size) {
+        long nanos = System.nanoTime() - start;
+        // size keeps the JIT from dropping the renders
+        System.out.printf("  %-18s %8.2f µs/email (%d chars)%n", label, nanos / 1000.0 / emails, size);
+    }
+}
@@ -0,0 +1,209 @@
+package utils.admin;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import utils.mail.SmtpTransportPool;
+
+/**
+ * Checks that SmtpTransportPool sends many emails over few connections and
+ * gets past connections the server drops, against a fake SMTP server on
+ * localhost. No database or real mail server is needed.
+ *
+ * Usage: MailDeliveryCheck [emails] [threads]
+ */
+public class MailDeliveryCheck {
+
+    private static final int CONNECTIONS = 2;
+    private static final int MESSAGES_PER_CONNECTION = 25;
+
+    public static void main(String[] args) throws Exception {
+        int emails = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        boolean ok = checkReuse(emails, threads);
+        ok &= checkDroppedConnections(emails, threads);
+        if (!ok) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean checkReuse(int emails, int threads) throws Exception {
+        try (FakeSmtpServer server = new FakeSmtpServer(0)) {
+            int failed = send(server, emails, threads);
+            // Every connection reopens after MESSAGES_PER_CONNECTION emails
+            int allowed = emails / MESSAGES_PER_CONNECTION + CONNECTIONS;
+            System.out.println("✅ Reuse: " + server.messages.get() + " of " + emails + " emails over "
+                    + server.connections.get() + " connections, " + failed + " failed");
+            if (failed > 0 || server.messages.get() != emails || server.connections.get() > allowed) {
+                System.err.println("❌ Expected all emails over at most " + allowed + " connections.");
+                return false;
+            }
+            return true;
+        }
+    }
+
+    private static boolean checkDroppedConnections(int emails, int threads) throws Exception {
+        // The server hangs up after every 7 emails on a connection
+        try (FakeSmtpServer server = new FakeSmtpServer(7)) {
+            int failed = send(server, emails, threads);
+            System.out.println("✅ Dropped connections: " + server.messages.get() + " of " + emails + " emails over "
+                    + server.connections.get() + " connections, " + failed + " failed");
+            if (failed > 0 || server.messages.get() != emails) {
+                System.err.println("❌ Expected every email to get through on a new connection.");
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Send emails from several threads, a few per batch as MailQueue does.
+     *
+     * @return emails that failed
+     */
+    private static int send(FakeSmtpServer server, int emails, int threads) throws InterruptedException {
+        Properties properties = new Properties();
+        properties.put("mail.smtp.host", "127.0.0.1");
+        properties.put("mail.smtp.port", String.valueOf(server.getPort()));
+        SmtpTransportPool pool = new SmtpTransportPool(properties, null, null, "check@oiship.local",
+                CONNECTIONS, MESSAGES_PER_CONNECTION);
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        ExecutorService senders = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            senders.submit(() -> {
+                int start;
+                while ((start = next.getAndAdd(5)) < emails) {
+                    List<MimeMessage> batch = new ArrayList<>();
+                    try {
+                        for (int i = start; i < Math.min(start + 5, emails); i++) {
+                            batch.add(pool.newMessage(List.of("customer" + i + "@oiship.local"),
+                                    "Check " + i, "<p>Email " + i + "</p>"));
+                        }
+                    } catch (MessagingException e) {
+                        e.printStackTrace();
+                        failed.addAndGet(Math.min(start + 5, emails) - start);
+                        continue;
+                    }
+                    pool.sendAll(batch, (index, error) -> {
+                        if (error != null) {
+                            System.err.println("Email failed: " + error.getMessage());
+                            failed.incrementAndGet();
+                        }
+                    });
+                }
+            });
+        }
+        senders.shutdown();
+        senders.awaitTermination(2, TimeUnit.MINUTES);
+        pool.close();
+        return failed.get();
+    }
+
+    /**
+     * Just enough SMTP to accept emails: no TLS, no authentication.
+     */
+    private static class FakeSmtpServer implements AutoCloseable {
+
+        final AtomicInteger connections = new AtomicInteger();
+        final AtomicInteger messages = new AtomicInteger();
+
+        private final ServerSocket socket;
+        private final int dropAfter;
+        private final ExecutorService handlers = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "fake-smtp");
+            t.setDaemon(true);
+            return t;
+        });
+
+        /**
+         * @param dropAfter hang up after this many emails on a connection, 0
+         *                  for never
+         */
+        FakeSmtpServer(int dropAfter) throws IOException {
+            this.dropAfter = dropAfter;
+            socket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            handlers.execute(() -> {
+                while (!socket.isClosed()) {
+                    try {
+                        Socket client = socket.accept();
+                        connections.incrementAndGet();
+                        handlers.execute(() -> handle(client));
+                    } catch (IOException e) {
+                        // Closed
+                    }
+                }
+            });
+        }
+
+        int getPort() {
+            return socket.getLocalPort();
+        }
+
+        private void handle(Socket client) {
+            try (Socket c = client;
+                    BufferedReader in = new BufferedReader(new InputStreamReader(c.getInputStream(), StandardCharsets.US_ASCII));
+                    OutputStream out = c.getOutputStream()) {
+                reply(out, "220 fake ESMTP");
+                int received = 0;
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String command = line.length() >= 4 ? line.substring(0, 4).toUpperCase() : line.toUpperCase();
+                    switch (command) {
+                        case "EHLO":
+                            reply(out, "250-fake\r\n250 8BITMIME");
+                            break;
+                        case "MAIL":
+                            if (dropAfter > 0 && received >= dropAfter) {
+                                reply(out, "421 closing connection");
+                                return;
+                            }
+                            reply(out, "250 OK");
+                            break;
+                        case "DATA":
+                            reply(out, "354 go ahead");
+                            while ((line = in.readLine()) != null && !line.equals(".")) {
+                                // Message content
+                            }
+                            received++;
+                            messages.incrementAndGet();
+                            reply(out, "250 queued");
+                            break;
+                        case "QUIT":
+                            reply(out, "221 bye");
+                            return;
+                        default: // HELO, RCPT, RSET, NOOP
+                            reply(out, "250 OK");
+                    }
+                }
+            } catch (IOException e) {
+                // Client went away
+            }
+        }
+
+        private static void reply(OutputStream out, String text) throws IOException {
+            out.write((text + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+            handlers.shutdownNow();
+        }
+    }
+}
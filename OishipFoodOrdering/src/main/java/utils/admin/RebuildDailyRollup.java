@@ -0,0 +1,26 @@
+package utils.admin;
+
+import dao.DailyRollupDAO;
+
+/**
+ * Rebuild the DailyOrderRollup / DailyDishRollup tables from the order
+ * history. Run once after creating the tables on an existing database, and
+ * again after editing orders directly in SQL.
+ */
+public class RebuildDailyRollup {
+
+    public static void main(String[] args) {
+        DailyRollupDAO rollupDAO = new DailyRollupDAO();
+        try {
+            System.out.println("✅ Rebuilding daily rollup. Time: " + new java.util.Date());
+            int days = rollupDAO.rebuildAll();
+            if (days >= 0) {
+                System.out.println("✅ Rebuilt " + days + " days. Time: " + new java.util.Date());
+            } else {
+                System.err.println("❌ Rollup rebuild failed, see stack trace above.");
+            }
+        } finally {
+            rollupDAO.closeConnection();
+        }
+    }
+}
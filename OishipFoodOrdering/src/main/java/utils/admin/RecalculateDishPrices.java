@@ -0,0 +1,26 @@
+package utils.admin;
+
+import dao.DishDAO;
+
+/**
+ * Recompute the stored ingredientCost / price of every dish. Run once after
+ * adding the price columns to an existing database, or after changing the
+ * pricing formula in TotalPriceCalculator.
+ */
+public class RecalculateDishPrices {
+
+    public static void main(String[] args) {
+        DishDAO dishDAO = new DishDAO();
+        try {
+            System.out.println("✅ Recalculating dish prices. Time: " + new java.util.Date());
+            int checked = dishDAO.recalculateAllPrices();
+            if (checked >= 0) {
+                System.out.println("✅ Checked " + checked + " dishes. Time: " + new java.util.Date());
+            } else {
+                System.err.println("❌ Price recalculation failed, see stack trace above.");
+            }
+        } finally {
+            dishDAO.closeConnection();
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package utils.admin;
+
+import dao.CartDAO;
+import dao.OrderPlacementDAO;
+import dao.VoucherRedemptionDAO;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import model.CartUpsert;
+import model.OrderPlacement;
+import model.Voucher;
+import utils.DBContext;
+import utils.voucher.VoucherPermits;
+
+/**
+ * Checks that a voucher cannot be redeemed more often than its usage limit
+ * when many checkouts redeem it at once.
+ *
+ * Without arguments only the in-memory permits are checked. With a voucher
+ * ID, every customer who has not used that voucher also redeems it at the
+ * same moment against the database, and the Voucher and CustomerVoucher rows
+ * are checked afterwards. With a dish ID as well, those customers instead
+ * each put {@code quantity} of the dish in their cart and check out with the
+ * voucher at the same moment through OrderPlacementDAO, as cash orders, and
+ * exactly as many orders as the voucher had uses left must carry it. Either
+ * way this uses up the voucher, and placing orders also uses up stock and
+ * cart lines: run it on a test database only.
+ *
+ * Usage: VoucherRedemptionCheck [voucherID] [threads] [dishID] [quantity]
+ */
+public class VoucherRedemptionCheck extends DBContext {
+
+    private static final int PERMIT_LIMIT = 100;
+    private static final int PERMIT_ATTEMPTS = 5_000;
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        boolean ok = checkPermits(threads);
+        if (args.length > 0) {
+            VoucherRedemptionCheck check = new VoucherRedemptionCheck();
+            try {
+                if (args.length > 2) {
+                    int quantity = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+                    ok &= check.checkOrders(Integer.parseInt(args[0]), threads, Integer.parseInt(args[2]), quantity);
+                } else {
+                    ok &= check.checkDatabase(Integer.parseInt(args[0]), threads);
+                }
+            } finally {
+                check.closeConnection();
+            }
+        }
+        if (!ok) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean checkPermits(int threads) throws InterruptedException {
+        Voucher voucher = new Voucher();
+        voucher.setVoucherID(-1);
+        voucher.setUsageLimit(PERMIT_LIMIT);
+        voucher.setUsedCount(0);
+
+        AtomicInteger confirmed = new AtomicInteger();
+        // Every third checkout fails after taking its permit and gives it back
+        AtomicInteger attempt = new AtomicInteger();
+        run(threads, PERMIT_ATTEMPTS, () -> {
+            if (!VoucherPermits.tryAcquire(voucher)) {
+                return;
+            }
+            if (attempt.incrementAndGet() % 3 == 0) {
+                VoucherPermits.release(voucher.getVoucherID());
+            } else {
+                confirmed.incrementAndGet();
+                VoucherPermits.confirm(voucher.getVoucherID());
+            }
+        });
+
+        if (confirmed.get() == PERMIT_LIMIT && !VoucherPermits.hasUsesLeft(voucher)) {
+            System.out.println("✅ Permits: " + confirmed.get() + " of " + PERMIT_ATTEMPTS
+                    + " checkouts used a voucher limited to " + PERMIT_LIMIT);
+            return true;
+        }
+        System.err.println("❌ Permits: " + confirmed.get() + " checkouts used a voucher limited to " + PERMIT_LIMIT);
+        return false;
+    }
+
+    private boolean checkDatabase(int voucherId, int threads) throws SQLException, InterruptedException {
+        int[] before = readCounts(voucherId);
+        if (before == null) {
+            System.err.println("❌ Voucher " + voucherId + " not found.");
+            return false;
+        }
+        List<Integer> customers = customersWithoutVoucher(voucherId);
+        System.out.println("✅ Voucher " + voucherId + ": used " + before[0] + " of " + before[1]
+                + ", " + customers.size() + " customers redeeming. Time: " + new java.util.Date());
+
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger redeemed = new AtomicInteger();
+        run(threads, customers.size(), () -> {
+            int customerId = customers.get(next.getAndIncrement());
+            VoucherRedemptionDAO dao = new VoucherRedemptionDAO();
+            try {
+                // The largest total there is, so the minimum order value never gets in the way
+                if (dao.redeem(customerId, voucherId, new BigDecimal("1000000000"))) {
+                    redeemed.incrementAndGet();
+                }
+            } finally {
+                dao.closeConnection();
+            }
+        });
+
+        int[] after = readCounts(voucherId);
+        int recorded = after[2] - before[2];
+        int expected = Math.min(customers.size(), Math.max(0, before[1] - before[0]));
+        System.out.println("✅ Redeemed " + redeemed.get() + ", usedCount now " + after[0] + " of " + after[1]
+                + ", " + recorded + " new CustomerVoucher rows. Time: " + new java.util.Date());
+
+        if (after[0] > after[1]) {
+            System.err.println("❌ Voucher " + voucherId + " was over-redeemed.");
+            return false;
+        }
+        if (after[0] - before[0] != redeemed.get() || recorded != redeemed.get()) {
+            System.err.println("❌ usedCount and CustomerVoucher do not match the redemptions.");
+            return false;
+        }
+        if (redeemed.get() != expected) {
+            // Only fails if the voucher is closed, inactive or changed while running
+            System.err.println("❌ Expected " + expected + " redemptions.");
+            return false;
+        }
+        return true;
+    }
+
+    private boolean checkOrders(int voucherId, int threads, int dishId, int quantity)
+            throws SQLException, InterruptedException {
+        int[] before = readCounts(voucherId);
+        if (before == null) {
+            System.err.println("❌ Voucher " + voucherId + " not found.");
+            return false;
+        }
+        List<Integer> customers = new ArrayList<>();
+        List<Integer> cartIds = new ArrayList<>();
+        CartDAO cartDAO = new CartDAO();
+        try {
+            for (Integer customerId : customersWithoutVoucher(voucherId)) {
+                CartUpsert line = cartDAO.addOrIncrement(customerId, dishId, quantity);
+                if (line.isAdded()) {
+                    customers.add(customerId);
+                    cartIds.add(line.getCartID());
+                }
+            }
+        } finally {
+            cartDAO.closeConnection();
+        }
+        int lastOrderId = lastOrderId();
+        System.out.println("✅ Voucher " + voucherId + ": used " + before[0] + " of " + before[1]
+                + ", " + customers.size() + " customers checking out. Time: " + new java.util.Date());
+
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger placed = new AtomicInteger();
+        AtomicInteger discounted = new AtomicInteger();
+        run(threads, customers.size(), () -> {
+            int i = next.getAndIncrement();
+            OrderPlacementDAO dao = new OrderPlacementDAO();
+            try {
+                OrderPlacement order = dao.placeOrder(customers.get(i),
+                        new String[]{String.valueOf(cartIds.get(i))}, voucherId, false);
+                if (order.isPlaced()) {
+                    placed.incrementAndGet();
+                    if (order.getVoucherID() != null) {
+                        discounted.incrementAndGet();
+                    }
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+            } finally {
+                dao.closeConnection();
+            }
+        });
+
+        int[] after = readCounts(voucherId);
+        int carrying = ordersWithVoucher(voucherId, lastOrderId);
+        int expected = Math.min(placed.get(), Math.max(0, before[1] - before[0]));
+        System.out.println("✅ Placed " + placed.get() + " orders, " + carrying + " with the voucher, usedCount now "
+                + after[0] + " of " + after[1] + ". Time: " + new java.util.Date());
+
+        if (placed.get() != customers.size()) {
+            // Only fails if the dish ran out or a checkout failed
+            System.err.println("❌ Expected " + customers.size() + " orders.");
+            return false;
+        }
+        if (carrying != expected || discounted.get() != expected) {
+            System.err.println("❌ Expected exactly " + expected + " orders with the voucher.");
+            return false;
+        }
+        if (after[0] - before[0] != expected || after[2] - before[2] != expected) {
+            System.err.println("❌ usedCount and CustomerVoucher do not match the orders.");
+            return false;
+        }
+        return true;
+    }
+
+    private int lastOrderId() throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT ISNULL(MAX(orderID), 0) FROM [Order]");
+                ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private int ordersWithVoucher(int voucherId, int afterOrderId) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM [Order] WHERE FK_Order_Voucher = ? AND orderID > ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, voucherId);
+            ps.setInt(2, afterOrderId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * usedCount, usageLimit and CustomerVoucher rows of a voucher, or null.
+     */
+    private int[] readCounts(int voucherId) throws SQLException {
+        String sql = "SELECT ISNULL(v.usedCount, 0) AS usedCount, v.usageLimit, "
+                + "(SELECT COUNT(*) FROM CustomerVoucher cv WHERE cv.voucherID = v.voucherID) AS customers "
+                + "FROM Voucher v WHERE v.voucherID = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, voucherId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                return new int[]{rs.getInt("usedCount"), rs.getInt("usageLimit"), rs.getInt("customers")};
+            }
+        }
+    }
+
+    private List<Integer> customersWithoutVoucher(int voucherId) throws SQLException {
+        String sql = "SELECT c.customerID FROM Customer c WHERE NOT EXISTS "
+                + "(SELECT 1 FROM CustomerVoucher cv WHERE cv.customerID = c.customerID AND cv.voucherID = ?)";
+        List<Integer> customers = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, voucherId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    customers.add(rs.getInt("customerID"));
+                }
+            }
+        }
+        return customers;
+    }
+
+    /**
+     * Run a task the given number of times on a pool of threads, all
+     * starting together.
+     */
+    private static void run(int threads, int times, Runnable task) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int i = 0; i < times; i++) {
+            pool.submit(() -> {
+                try {
+                    start.await();
+                    task.run();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        pool.awaitTermination(5, TimeUnit.MINUTES);
+    }
+}
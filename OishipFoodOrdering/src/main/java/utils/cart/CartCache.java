@@ -0,0 +1,183 @@
+package utils.cart;
+
+import dao.CartDAO;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import model.Cart;
+import model.CartSummary;
+import model.Dish;
+import utils.catalog.MenuCatalog;
+
+/**
+ * Carts of customers with a live session, kept in memory so customer pages
+ * can show the cart without querying Cart and Dish on every request.
+ *
+ * A cart is loaded from the database the first time it is read and then kept
+ * up to date by CartDAO, which writes every change through to it after the
+ * database write succeeded. Only dish IDs and quantities are kept; names,
+ * images and prices come from {@link MenuCatalog}. A cart is dropped when the
+ * customer's session ends and reloaded after {@link #MAX_AGE_MS} in case it
+ * was changed outside this process.
+ */
+public class CartCache {
+
+    private static final long MAX_AGE_MS = TimeUnit.MINUTES.toMillis(10);
+
+    private static final Map<Integer, CustomerCart> CARTS = new ConcurrentHashMap<>();
+    // Cart line ID to customer, for writes that only know the line
+    private static final Map<Integer, Integer> LINE_OWNERS = new ConcurrentHashMap<>();
+
+    private CartCache() {
+    }
+
+    /**
+     * The customer's cart, loaded from the database if it is not cached.
+     */
+    public static CustomerCart get(int customerId) throws SQLException {
+        CustomerCart cart = CARTS.get(customerId);
+        if (cart != null && System.currentTimeMillis() - cart.getLoadedAt() < MAX_AGE_MS) {
+            return cart;
+        }
+        try {
+            // Loading inside compute makes concurrent write-throughs for this
+            // customer wait for the load and apply on top of it
+            return CARTS.compute(customerId, (id, current) -> {
+                if (current != null && current != cart) {
+                    return current;
+                }
+                if (current != null) {
+                    forgetLines(current);
+                }
+                return load(id);
+            });
+        } catch (IllegalStateException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Line count, item count and subtotal at current menu prices.
+     */
+    public static CartSummary getSummary(int customerId) throws SQLException {
+        int lineCount = 0;
+        int itemCount = 0;
+        BigDecimal subtotal = BigDecimal.ZERO;
+        for (CustomerCart.Line line : get(customerId).getLines()) {
+            lineCount++;
+            itemCount += line.getQuantity();
+            BigDecimal price = MenuCatalog.getPrice(line.getDishID());
+            if (price != null) {
+                subtotal = subtotal.add(price.multiply(BigDecimal.valueOf(line.getQuantity())));
+            }
+        }
+        return new CartSummary(lineCount, itemCount, subtotal);
+    }
+
+    /**
+     * The cart as Cart objects with their dishes taken from the menu catalog.
+     *
+     * @return the lines, or null if a dish is missing from the catalog and
+     * the caller has to read the cart from the database
+     */
+    public static List<Cart> getCarts(int customerId) throws SQLException {
+        List<Cart> carts = new ArrayList<>();
+        for (CustomerCart.Line line : get(customerId).getLines()) {
+            Dish dish = MenuCatalog.getDish(line.getDishID());
+            if (dish == null) {
+                return null;
+            }
+            carts.add(new Cart(line.getCartID(), customerId, line.getDishID(), line.getQuantity(), dish));
+        }
+        return carts;
+    }
+
+    /**
+     * A line was inserted or its quantity set, for a customer and dish.
+     */
+    public static void lineWritten(int customerId, int cartID, int dishID, int quantity) {
+        LINE_OWNERS.put(cartID, customerId);
+        CARTS.computeIfPresent(customerId, (id, cart) -> {
+            cart.put(cartID, dishID, quantity);
+            return cart;
+        });
+    }
+
+    /**
+     * The quantity of a customer's line for a dish was set.
+     */
+    public static void quantityWritten(int customerId, int dishID, int quantity) {
+        CARTS.computeIfPresent(customerId, (id, cart) -> {
+            CustomerCart.Line line = cart.getByDish(dishID);
+            if (line != null) {
+                cart.put(line.getCartID(), dishID, quantity);
+            }
+            return cart;
+        });
+    }
+
+    /**
+     * The quantity of a cart line was set.
+     */
+    public static void quantityWritten(int cartID, int quantity) {
+        Integer owner = LINE_OWNERS.get(cartID);
+        if (owner == null) {
+            return;
+        }
+        CARTS.computeIfPresent(owner, (id, cart) -> {
+            cart.setQuantity(cartID, quantity);
+            return cart;
+        });
+    }
+
+    /**
+     * Cart lines were deleted.
+     */
+    public static void linesRemoved(Collection<Integer> cartIDs) {
+        for (Integer cartID : cartIDs) {
+            Integer owner = LINE_OWNERS.remove(cartID);
+            if (owner != null) {
+                CARTS.computeIfPresent(owner, (id, cart) -> {
+                    cart.remove(cartIDs);
+                    return cart;
+                });
+            }
+        }
+    }
+
+    /**
+     * Forget a customer's cart, e.g. when their session ends.
+     */
+    public static void evict(int customerId) {
+        CustomerCart cart = CARTS.remove(customerId);
+        if (cart != null) {
+            forgetLines(cart);
+        }
+    }
+
+    private static void forgetLines(CustomerCart cart) {
+        for (CustomerCart.Line line : cart.getLines()) {
+            LINE_OWNERS.remove(line.getCartID(), cart.getCustomerID());
+        }
+    }
+
+    private static CustomerCart load(int customerId) {
+        try {
+            List<CustomerCart.Line> lines = new CartDAO().getCartLines(customerId);
+            for (CustomerCart.Line line : lines) {
+                LINE_OWNERS.put(line.getCartID(), customerId);
+            }
+            return new CustomerCart(customerId, lines);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
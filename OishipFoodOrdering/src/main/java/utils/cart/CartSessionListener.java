@@ -0,0 +1,22 @@
+package utils.cart;
+
+import jakarta.servlet.annotation.WebListener;
+import jakarta.servlet.http.HttpSession;
+import jakarta.servlet.http.HttpSessionEvent;
+import jakarta.servlet.http.HttpSessionListener;
+
+/**
+ * Drops a customer's cached cart when their session ends.
+ */
+@WebListener
+public class CartSessionListener implements HttpSessionListener {
+
+    @Override
+    public void sessionDestroyed(HttpSessionEvent se) {
+        HttpSession session = se.getSession();
+        Object userId = session.getAttribute("userId");
+        if ("customer".equals(session.getAttribute("role")) && userId instanceof Integer) {
+            CartCache.evict((Integer) userId);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package utils.cart;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact copy of one customer's cart: cart line ID, dish ID and quantity per
+ * line. Dish details and prices are looked up in the menu catalog when read.
+ */
+public class CustomerCart {
+
+    /**
+     * One cart line.
+     */
+    public static class Line {
+
+        private final int cartID;
+        private final int dishID;
+        private final int quantity;
+
+        public Line(int cartID, int dishID, int quantity) {
+            this.cartID = cartID;
+            this.dishID = dishID;
+            this.quantity = quantity;
+        }
+
+        public int getCartID() {
+            return cartID;
+        }
+
+        public int getDishID() {
+            return dishID;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+    }
+
+    private final int customerID;
+    private final long loadedAt = System.currentTimeMillis();
+    // Keyed by dish: Cart holds at most one line per customer and dish
+    private final Map<Integer, Line> lines = new LinkedHashMap<>();
+
+    CustomerCart(int customerID, List<Line> loaded) {
+        this.customerID = customerID;
+        for (Line line : loaded) {
+            lines.put(line.getDishID(), line);
+        }
+    }
+
+    public int getCustomerID() {
+        return customerID;
+    }
+
+    long getLoadedAt() {
+        return loadedAt;
+    }
+
+    /**
+     * The lines in the order they were added.
+     */
+    public synchronized List<Line> getLines() {
+        return new ArrayList<>(lines.values());
+    }
+
+    synchronized void put(int cartID, int dishID, int quantity) {
+        lines.put(dishID, new Line(cartID, dishID, quantity));
+    }
+
+    synchronized boolean setQuantity(int cartID, int quantity) {
+        for (Line line : lines.values()) {
+            if (line.getCartID() == cartID) {
+                lines.put(line.getDishID(), new Line(cartID, line.getDishID(), quantity));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    synchronized Line getByDish(int dishID) {
+        return lines.get(dishID);
+    }
+
+    synchronized void remove(Collection<Integer> cartIDs) {
+        lines.values().removeIf(line -> cartIDs.contains(line.getCartID()));
+    }
+}
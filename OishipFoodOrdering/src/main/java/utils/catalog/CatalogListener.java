@@ -0,0 +1,26 @@
+package utils.catalog;
+
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+import utils.Env;
+
+/**
+ * Builds the menu catalog at startup and stops its background refresh on
+ * undeploy. Refresh interval and stock TTL can be tuned with
+ * CATALOG_REFRESH_SECONDS and CATALOG_STOCK_TTL_MS in .env.
+ */
+@WebListener
+public class CatalogListener implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        MenuCatalog.start(Env.getLong("CATALOG_REFRESH_SECONDS", 300),
+                Env.getLong("CATALOG_STOCK_TTL_MS", 2_000));
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        MenuCatalog.stop();
+    }
+}
@@ -0,0 +1,63 @@
+package utils.catalog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import model.Category;
+import model.Dish;
+
+/**
+ * Immutable view of the menu at one point in time: every dish with its
+ * category and stored prices, plus the category list. Snapshots are
+ * never modified after construction, so any number of request threads can
+ * read one without locking; a new snapshot replaces the old one wholesale.
+ */
+public class CatalogSnapshot {
+
+    private final long version;
+    private final long builtAt;
+    private final List<Dish> dishes;
+    private final Map<Integer, Dish> dishesById;
+    private final List<Category> categories;
+
+    CatalogSnapshot(long version, List<Dish> dishes, List<Category> categories) {
+        this.version = version;
+        this.builtAt = System.currentTimeMillis();
+        this.dishes = Collections.unmodifiableList(new ArrayList<>(dishes));
+        Map<Integer, Dish> byId = new LinkedHashMap<>();
+        for (Dish dish : dishes) {
+            if (dish.getIngredients() != null) {
+                dish.setIngredients(Collections.unmodifiableList(dish.getIngredients()));
+            }
+            byId.put(dish.getDishID(), dish);
+        }
+        this.dishesById = Collections.unmodifiableMap(byId);
+        this.categories = Collections.unmodifiableList(new ArrayList<>(categories));
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getBuiltAt() {
+        return builtAt;
+    }
+
+    /**
+     * Dishes exactly as loaded; callers must not modify them. Use
+     * {@link MenuCatalog} to get copies with live stock applied.
+     */
+    List<Dish> getDishes() {
+        return dishes;
+    }
+
+    Dish getDish(int dishId) {
+        return dishesById.get(dishId);
+    }
+
+    List<Category> getCategories() {
+        return categories;
+    }
+}
@@ -0,0 +1,274 @@
+package utils.catalog;
+
+import dao.CategoryDAO;
+import dao.DishDAO;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import model.Category;
+import model.Dish;
+import utils.Util;
+import utils.stock.StockCounter;
+
+/**
+ * Application-wide menu cache for customer-facing pages.
+ *
+ * Dishes, categories and ingredient costs only change when staff edit them,
+ * so readers are served from a {@link CatalogSnapshot} held in an atomic
+ * reference. Edits call {@link #invalidate()}, which rebuilds a fresh
+ * snapshot in the background and swaps it in; a periodic refresh covers any
+ * change made outside the app. Stock moves with every order, so it is not
+ * taken from the snapshot but overlaid from a narrow stock query with a short
+ * time-to-live.
+ */
+public class MenuCatalog {
+
+    private static final long DEFAULT_STOCK_TTL_MS = 2_000L;
+
+    private static final AtomicReference<CatalogSnapshot> SNAPSHOT = new AtomicReference<>();
+    private static final AtomicReference<StockLevels> STOCK = new AtomicReference<>();
+    private static final AtomicLong VERSION = new AtomicLong();
+    private static final AtomicBoolean REBUILD_PENDING = new AtomicBoolean(false);
+    private static final Object BUILD_LOCK = new Object();
+
+    private static volatile long stockTtlMs = DEFAULT_STOCK_TTL_MS;
+    private static volatile ExecutorService rebuilder = newRebuilder();
+    private static volatile ScheduledExecutorService refresher;
+
+    private MenuCatalog() {
+    }
+
+    /**
+     * Start the periodic safety-net refresh and build the first snapshot.
+     *
+     * @param refreshSeconds seconds between full rebuilds, 0 to disable
+     * @param stockTtl how long stock levels may be reused, in milliseconds
+     */
+    public static synchronized void start(long refreshSeconds, long stockTtl) {
+        stockTtlMs = stockTtl;
+        if (rebuilder.isShutdown()) {
+            rebuilder = newRebuilder();
+        }
+        invalidate();
+        if (refreshSeconds > 0 && refresher == null) {
+            refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "menu-catalog-refresh");
+                t.setDaemon(true);
+                return t;
+            });
+            refresher.scheduleWithFixedDelay(MenuCatalog::invalidate, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    public static synchronized void stop() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+            refresher = null;
+        }
+        rebuilder.shutdownNow();
+    }
+
+    /**
+     * Schedule a rebuild after dishes, categories or ingredients changed.
+     * Readers keep using the current snapshot until the new one is ready;
+     * several invalidations in a row collapse into one rebuild.
+     */
+    public static void invalidate() {
+        if (REBUILD_PENDING.compareAndSet(false, true)) {
+            try {
+                rebuilder.execute(() -> {
+                    REBUILD_PENDING.set(false);
+                    rebuild();
+                });
+            } catch (RuntimeException e) {
+                REBUILD_PENDING.set(false);
+                SNAPSHOT.set(null); // Executor gone (undeploy): next reader builds inline
+            }
+        }
+    }
+
+    /**
+     * Drop cached stock levels so the next reader sees the current values.
+     * Called whenever stock is decremented or edited.
+     */
+    public static void invalidateStock() {
+        STOCK.set(null);
+    }
+
+    /**
+     * Current snapshot, built on the calling thread if none exists yet.
+     *
+     * @return the current snapshot
+     */
+    public static CatalogSnapshot getSnapshot() {
+        CatalogSnapshot snapshot = SNAPSHOT.get();
+        return snapshot != null ? snapshot : rebuild();
+    }
+
+    public static List<Category> getCategories() {
+        return getSnapshot().getCategories();
+    }
+
+    /**
+     * All dishes with live stock, ordered by dish ID.
+     *
+     * @return copies of every dish
+     */
+    public static List<Dish> getAllDishes() {
+        return withStock(getSnapshot().getDishes(), false, null);
+    }
+
+    /**
+     * Dishes currently on sale, with live stock.
+     *
+     * @return copies of the available dishes
+     */
+    public static List<Dish> getAvailableDishes() {
+        return withStock(getSnapshot().getDishes(), true, null);
+    }
+
+    public static List<Dish> getDishesByCategory(int catId) {
+        return withStock(getSnapshot().getDishes(), false, catId);
+    }
+
+    /**
+     * One dish with live stock.
+     *
+     * @param dishId dish ID
+     * @return a copy of the dish, or null if it is not on the menu
+     */
+    public static Dish getDish(int dishId) {
+        Dish dish = getSnapshot().getDish(dishId);
+        if (dish == null) {
+            return null;
+        }
+        return copyWithStock(dish, getStockLevels());
+    }
+
+    /**
+     * Current price of a dish, without copying it.
+     *
+     * @return the price, or null if the dish is not on the menu
+     */
+    public static BigDecimal getPrice(int dishId) {
+        Dish dish = getSnapshot().getDish(dishId);
+        return dish != null ? dish.getTotalPrice() : null;
+    }
+
+    private static List<Dish> withStock(List<Dish> source, boolean availableOnly, Integer catId) {
+        StockLevels stock = getStockLevels();
+        List<Dish> result = new ArrayList<>(source.size());
+        for (Dish dish : source) {
+            if (catId != null && dish.getCategoryId() != catId) {
+                continue;
+            }
+            Dish copy = copyWithStock(dish, stock);
+            if (!availableOnly || copy.isIsAvailable()) {
+                result.add(copy);
+            }
+        }
+        return result;
+    }
+
+    private static Dish copyWithStock(Dish source, StockLevels stock) {
+        Dish dish = new Dish();
+        dish.setDishID(source.getDishID());
+        dish.setDishName(source.getDishName());
+        dish.setOpCost(source.getOpCost());
+        dish.setInterestPercentage(source.getInterestPercentage());
+        dish.setImage(source.getImage());
+        dish.setDishDescription(source.getDishDescription());
+        dish.setCategoryId(source.getCategoryId());
+        dish.setCategory(source.getCategory());
+        dish.setTotalPrice(source.getTotalPrice());
+        dish.setIngredientNames(source.getIngredientNames());
+        dish.setAvgRating(source.getAvgRating());
+        dish.setFormattedPrice(source.getFormattedPrice());
+        dish.setIngredients(source.getIngredients());
+        dish.setFormattedIngredientsPrice(source.getFormattedIngredientsPrice());
+        dish.setFormattedOpCost(source.getFormattedOpCost());
+        dish.setFormattedProfit(source.getFormattedProfit());
+        dish.setIngredientCost(source.getIngredientCost());
+        dish.setPriceVersion(source.getPriceVersion());
+
+        int[] level = stock.levels.get(source.getDishID());
+        if (level != null) {
+            dish.setStock(level[0]);
+            dish.setIsAvailable(level[1] == 1);
+        } else {
+            dish.setStock(source.getStock());
+            dish.setIsAvailable(source.isIsAvailable());
+        }
+        Integer counted = StockCounter.getAvailable(source.getDishID());
+        if (counted != null) {
+            dish.setStock(counted);
+        }
+        return dish;
+    }
+
+    private static StockLevels getStockLevels() {
+        StockLevels current = STOCK.get();
+        if (current != null && System.currentTimeMillis() - current.loadedAt < stockTtlMs) {
+            return current;
+        }
+        DishDAO dishDAO = new DishDAO();
+        try {
+            StockLevels fresh = new StockLevels(dishDAO.getStockLevels());
+            STOCK.set(fresh);
+            return fresh;
+        } finally {
+            dishDAO.closeConnection();
+        }
+    }
+
+    private static CatalogSnapshot rebuild() {
+        synchronized (BUILD_LOCK) {
+            // Runs on the rebuild thread, outside any request scope
+            try (DishDAO dishDAO = new DishDAO(); CategoryDAO categoryDAO = new CategoryDAO()) {
+                List<Dish> dishes = dishDAO.loadAllDishes();
+                List<Category> categories = categoryDAO.loadAllCategories();
+                CatalogSnapshot snapshot = new CatalogSnapshot(VERSION.incrementAndGet(), dishes, categories);
+                SNAPSHOT.set(snapshot);
+                invalidateStock();
+                System.out.println("Menu catalog rebuilt: version " + snapshot.getVersion()
+                        + ", " + dishes.size() + " dishes, " + categories.size() + " categories");
+                return snapshot;
+            } catch (SQLException | RuntimeException e) {
+                // Keep serving the last menu rather than a blank one
+                e.printStackTrace();
+                Util.logError("Failed to rebuild menu catalog: " + e.getMessage());
+                CatalogSnapshot previous = SNAPSHOT.get();
+                return previous != null ? previous
+                        : new CatalogSnapshot(0, Collections.emptyList(), Collections.emptyList());
+            }
+        }
+    }
+
+    private static ExecutorService newRebuilder() {
+        return Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "menu-catalog-rebuild");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private static class StockLevels {
+
+        private final long loadedAt = System.currentTimeMillis();
+        private final Map<Integer, int[]> levels;
+
+        StockLevels(Map<Integer, int[]> levels) {
+            this.levels = levels;
+        }
+    }
+}
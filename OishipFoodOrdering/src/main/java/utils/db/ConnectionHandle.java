@@ -0,0 +1,140 @@
+package utils.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@link Connection} a DAO actually holds. It borrows a physical
+ * connection lazily on the first JDBC call and gives it back on
+ * {@code close()}; calling it again afterwards simply borrows another one, so
+ * DAOs that close their connection in try-with-resources keep working.
+ * Statements created through the handle are closed when it is released.
+ *
+ * Each thread gets its own lease: a DAO kept in a servlet field is shared by
+ * concurrent requests, and one request ending must not close the statements
+ * of another or hand its connection back to the pool.
+ */
+class ConnectionHandle implements InvocationHandler {
+
+    private final ConnectionPool pool;
+    private final Map<Thread, Lease> leases = new ConcurrentHashMap<>();
+
+    private ConnectionHandle(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    static Connection newProxy(ConnectionPool pool) {
+        return (Connection) Proxy.newProxyInstance(
+                ConnectionHandle.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new ConnectionHandle(pool));
+    }
+
+    /**
+     * A physical connection borrowed by one thread through this handle, and
+     * the statements created on it.
+     */
+    final class Lease {
+
+        private final Thread owner;
+        private final PooledConnection connection;
+        private final List<Statement> statements = new ArrayList<>();
+
+        private Lease(Thread owner, PooledConnection connection) {
+            this.owner = owner;
+            this.connection = connection;
+        }
+
+        private synchronized void track(Statement statement) {
+            // Drop statements the DAO already closed so long-lived handles do not grow
+            for (Iterator<Statement> it = statements.iterator(); it.hasNext();) {
+                try {
+                    if (it.next().isClosed()) {
+                        it.remove();
+                    }
+                } catch (SQLException e) {
+                    it.remove();
+                }
+            }
+            statements.add(statement);
+        }
+
+        /**
+         * Close any statements left open and return the physical connection
+         * to the pool. Safe to call more than once, from any thread.
+         */
+        void release() {
+            if (!leases.remove(owner, this)) {
+                return;
+            }
+            synchronized (this) {
+                for (Statement statement : statements) {
+                    try {
+                        statement.close();
+                    } catch (SQLException e) {
+                        // Statement already unusable; the connection reset below handles the rest
+                    }
+                }
+                statements.clear();
+            }
+            pool.release(connection);
+        }
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "close":
+                Lease current = leases.get(Thread.currentThread());
+                if (current != null) {
+                    current.release();
+                }
+                return null;
+            case "isClosed":
+                return pool.isShutdown();
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "PooledConnectionHandle@" + Integer.toHexString(System.identityHashCode(proxy));
+            default:
+                break;
+        }
+
+        Lease lease = acquire();
+        Object result;
+        try {
+            result = method.invoke(lease.connection.getConnection(), args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+
+        if (result instanceof Statement) {
+            lease.track((Statement) result);
+        }
+        return result;
+    }
+
+    private Lease acquire() throws SQLException {
+        Thread thread = Thread.currentThread();
+        Lease lease = leases.get(thread);
+        if (lease == null) {
+            // Only this thread adds its own entry, so there is no race here
+            lease = new Lease(thread, pool.borrow());
+            leases.put(thread, lease);
+            ConnectionScope.register(lease);
+        }
+        return lease;
+    }
+}
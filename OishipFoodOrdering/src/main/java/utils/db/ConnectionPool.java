@@ -0,0 +1,354 @@
+package utils.db;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import utils.Util;
+
+/**
+ * Bounded pool of SQL Server connections shared by every DAO.
+ *
+ * Connections are lent out through {@link #openConnection()}, which returns a
+ * lazy handle: the physical connection is only borrowed on first use and goes
+ * back to the pool when the handle is closed or when the HTTP request that
+ * borrowed it ends (see {@link DatabaseListener}). A background housekeeper
+ * evicts idle and expired connections, keeps {@code minIdle} warm and reports
+ * connections held longer than the leak detection threshold.
+ */
+public class ConnectionPool {
+
+    private static volatile ConnectionPool instance;
+
+    private final PoolConfig config;
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> inUse = ConcurrentHashMap.newKeySet();
+    private final Semaphore permits;
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean shutdown = false;
+
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong closedCount = new AtomicLong();
+    private final AtomicLong leakCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    private ConnectionPool(PoolConfig config) {
+        this.config = config;
+        this.permits = new Semaphore(config.getMaxPoolSize(), true);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Get the shared pool, creating it from the .env file on first use (for
+     * example when a DAO is used from a main method outside Tomcat).
+     *
+     * @return the shared pool
+     */
+    public static ConnectionPool getInstance() {
+        ConnectionPool pool = instance;
+        if (pool == null) {
+            synchronized (ConnectionPool.class) {
+                pool = instance;
+                if (pool == null) {
+                    pool = start(PoolConfig.fromEnv());
+                    instance = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Start the shared pool with an explicit configuration. Called once from
+     * {@link DatabaseListener} when the webapp starts; if another listener
+     * already touched the database first, the running pool is kept.
+     *
+     * @param config pool configuration
+     * @return the running pool
+     */
+    public static synchronized ConnectionPool init(PoolConfig config) {
+        if (instance == null) {
+            instance = start(config);
+        }
+        return instance;
+    }
+
+    /**
+     * Close every pooled connection and stop the housekeeper.
+     */
+    public static synchronized void shutdownInstance() {
+        if (instance != null) {
+            instance.shutdown();
+            instance = null;
+        }
+    }
+
+    private static ConnectionPool start(PoolConfig config) {
+        try {
+            Class.forName("com.microsoft.sqlserver.jdbc.SQLServerDriver");
+        } catch (ClassNotFoundException e) {
+            System.out.println("Cannot found class for SQL Server Driver");
+            Util.logError(String.format("Cannot found class for SQL Server Driver\n%s\n---", e.getMessage()));
+        }
+
+        ConnectionPool pool = new ConnectionPool(config);
+        pool.logServerInfo();
+        pool.fillMinIdle();
+        long interval = config.getHousekeepingIntervalMs();
+        pool.housekeeper.scheduleWithFixedDelay(pool::housekeep, interval, interval, TimeUnit.MILLISECONDS);
+        return pool;
+    }
+
+    /**
+     * Create a connection handle for a DAO. No physical connection is taken
+     * from the pool until the handle is first used.
+     *
+     * @return a pooled connection handle
+     */
+    public Connection openConnection() {
+        return ConnectionHandle.newProxy(this);
+    }
+
+    PooledConnection borrow() throws SQLException {
+        if (shutdown) {
+            throw new SQLException("Connection pool has been shut down");
+        }
+
+        long start = System.nanoTime();
+        waiting.incrementAndGet();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(config.getConnectionTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        } finally {
+            waiting.decrementAndGet();
+        }
+
+        if (!acquired) {
+            timeoutCount.incrementAndGet();
+            PoolStats stats = getStats();
+            Util.logError("Connection pool exhausted after " + config.getConnectionTimeoutMs() + "ms: " + stats);
+            throw new SQLTimeoutException("Timed out waiting for a database connection (" + stats + ")");
+        }
+
+        try {
+            PooledConnection pc;
+            while ((pc = idle.pollFirst()) != null) {
+                if (pc.isExpired(config.getMaxLifetimeMs()) || !isUsable(pc)) {
+                    closePhysical(pc);
+                    continue;
+                }
+                break;
+            }
+            if (pc == null) {
+                pc = createPhysical();
+            }
+
+            pc.markBorrowed(config.getLeakDetectionThresholdMs() > 0
+                    ? new Exception("Connection borrowed here") : null);
+            inUse.add(pc);
+
+            borrowCount.incrementAndGet();
+            long waited = System.nanoTime() - start;
+            totalWaitNanos.addAndGet(waited);
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+            return pc;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    void release(PooledConnection pc) {
+        if (pc == null || !inUse.remove(pc)) {
+            return;
+        }
+
+        boolean reusable = !shutdown && !pc.isExpired(config.getMaxLifetimeMs());
+        try {
+            Connection c = pc.getConnection();
+            if (c.isClosed()) {
+                reusable = false;
+            } else if (!c.getAutoCommit()) {
+                // Never hand the next borrower a half-finished transaction
+                c.rollback();
+                c.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            System.out.println("Error resetting pooled connection: " + e.getMessage());
+            reusable = false;
+        }
+
+        if (reusable) {
+            pc.markReturned();
+            idle.offerFirst(pc);
+        } else {
+            closePhysical(pc);
+        }
+        permits.release();
+    }
+
+    private boolean isUsable(PooledConnection pc) {
+        try {
+            Connection c = pc.getConnection();
+            if (c.isClosed()) {
+                return false;
+            }
+            if (System.currentTimeMillis() - pc.getLastUsedAt() < config.getValidationIntervalMs()) {
+                return true;
+            }
+            return c.isValid(config.getValidationTimeoutSeconds());
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection createPhysical() throws SQLException {
+        try {
+            Connection c = DriverManager.getConnection(config.getJdbcUrl());
+            createdCount.incrementAndGet();
+            return new PooledConnection(c);
+        } catch (SQLException e) {
+            System.out.println("Fail to connect to SQL server");
+            System.out.println(e.getMessage());
+            Util.logError(String.format("Fail to connect to SQL server\n%s\n---", e.getMessage()));
+            throw e;
+        }
+    }
+
+    private void closePhysical(PooledConnection pc) {
+        try {
+            pc.getConnection().close();
+        } catch (SQLException e) {
+            System.out.println("Error closing connection: " + e.getMessage());
+        }
+        closedCount.incrementAndGet();
+    }
+
+    private void fillMinIdle() {
+        while (!shutdown && idle.size() + inUse.size() < config.getMinIdle()) {
+            if (!permits.tryAcquire()) {
+                return;
+            }
+            try {
+                idle.offerLast(createPhysical());
+            } catch (SQLException e) {
+                return;
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    private void housekeep() {
+        try {
+            // Evict expired connections and those idle past the timeout, oldest first
+            List<PooledConnection> snapshot = new ArrayList<>(idle);
+            for (int i = snapshot.size() - 1; i >= 0; i--) {
+                PooledConnection pc = snapshot.get(i);
+                boolean expired = pc.isExpired(config.getMaxLifetimeMs());
+                boolean surplus = idle.size() + inUse.size() > config.getMinIdle()
+                        && pc.isIdleLongerThan(config.getIdleTimeoutMs());
+                if ((expired || surplus) && idle.remove(pc)) {
+                    closePhysical(pc);
+                }
+            }
+
+            fillMinIdle();
+
+            long threshold = config.getLeakDetectionThresholdMs();
+            if (threshold > 0) {
+                long now = System.currentTimeMillis();
+                for (PooledConnection pc : inUse) {
+                    if (!pc.isLeakReported() && now - pc.getBorrowedAt() > threshold) {
+                        pc.setLeakReported(true);
+                        leakCount.incrementAndGet();
+                        System.out.println("Possible connection leak: held for " + (now - pc.getBorrowedAt()) + "ms");
+                        Exception trace = pc.getBorrowTrace();
+                        if (trace != null) {
+                            trace.printStackTrace();
+                        }
+                        Util.logError("Possible connection leak: held for " + (now - pc.getBorrowedAt()) + "ms");
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void logServerInfo() {
+        try {
+            PooledConnection pc = createPhysical();
+            DatabaseMetaData md = pc.getConnection().getMetaData();
+            System.out.println("Connect database successfully!");
+            System.out.println("Driver name: " + md.getDriverName());
+            System.out.println("Driver version: " + md.getDriverVersion());
+            System.out.println("Product name: " + md.getDatabaseProductName());
+            System.out.println("Product version: " + md.getDatabaseProductVersion());
+            System.out.println("Pool size: " + config.getMaxPoolSize() + ", min idle: " + config.getMinIdle());
+            System.out.println("----");
+            idle.offerLast(pc);
+        } catch (SQLException e) {
+            // Already logged by createPhysical; the pool retries on first borrow
+        }
+    }
+
+    private synchronized void shutdown() {
+        if (shutdown) {
+            return;
+        }
+        shutdown = true;
+        housekeeper.shutdownNow();
+        PooledConnection pc;
+        while ((pc = idle.pollFirst()) != null) {
+            closePhysical(pc);
+        }
+        for (PooledConnection active : new ArrayList<>(inUse)) {
+            inUse.remove(active);
+            closePhysical(active);
+        }
+        System.out.println("Database connection pool closed successfully.");
+    }
+
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    /**
+     * Snapshot of pool usage and saturation counters.
+     *
+     * @return current statistics
+     */
+    public PoolStats getStats() {
+        long borrows = borrowCount.get();
+        double avgWaitMs = borrows == 0 ? 0 : totalWaitNanos.get() / 1_000_000.0 / borrows;
+        int active = inUse.size();
+        int idleCount = idle.size();
+        return new PoolStats(config.getMaxPoolSize(), active + idleCount, active, idleCount,
+                waiting.get(), borrows, timeoutCount.get(), createdCount.get(), closedCount.get(),
+                leakCount.get(), avgWaitMs, maxWaitNanos.get() / 1_000_000.0);
+    }
+}
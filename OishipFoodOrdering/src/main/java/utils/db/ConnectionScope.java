@@ -0,0 +1,59 @@
+package utils.db;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tracks the connections borrowed while serving one HTTP request so they can
+ * all be returned to the pool when the request ends, even though DAOs never
+ * close their connection explicitly.
+ */
+public class ConnectionScope {
+
+    private static final ThreadLocal<ConnectionScope> CURRENT = new ThreadLocal<>();
+
+    private final List<ConnectionHandle.Lease> leases = new ArrayList<>();
+
+    private ConnectionScope() {
+    }
+
+    /**
+     * Open a scope bound to the current thread.
+     *
+     * @return the new scope
+     */
+    public static ConnectionScope begin() {
+        ConnectionScope scope = new ConnectionScope();
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    static void register(ConnectionHandle.Lease lease) {
+        ConnectionScope scope = CURRENT.get();
+        if (scope != null) {
+            scope.add(lease);
+        }
+    }
+
+    private synchronized void add(ConnectionHandle.Lease lease) {
+        leases.add(lease);
+    }
+
+    /**
+     * Return every connection borrowed in this scope and unbind it from the
+     * current thread if it is still bound there.
+     */
+    public void end() {
+        List<ConnectionHandle.Lease> toRelease;
+        synchronized (this) {
+            toRelease = new ArrayList<>(leases);
+            leases.clear();
+        }
+        for (ConnectionHandle.Lease lease : toRelease) {
+            lease.release();
+        }
+        if (CURRENT.get() == this) {
+            CURRENT.remove();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package utils.db;
+
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.ServletRequestEvent;
+import jakarta.servlet.ServletRequestListener;
+import jakarta.servlet.annotation.WebListener;
+import java.util.Date;
+import utils.Util;
+
+/**
+ * Starts the connection pool when the webapp is deployed, closes it on
+ * undeploy, and returns every connection a request borrowed once that
+ * request has been served.
+ */
+@WebListener
+public class DatabaseListener implements ServletContextListener, ServletRequestListener {
+
+    private static final String SCOPE_ATTRIBUTE = ConnectionScope.class.getName();
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        try {
+            ConnectionPool pool = ConnectionPool.init(PoolConfig.fromEnv());
+            sce.getServletContext().setAttribute("connectionPool", pool);
+            System.out.println("Database connection pool started at " + new Date());
+        } catch (RuntimeException e) {
+            // Keep the webapp deployable; getInstance() retries on first use
+            System.out.println("Failed to start database connection pool: " + e.getMessage());
+            Util.logError("Failed to start database connection pool: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        ConnectionPool.shutdownInstance();
+    }
+
+    @Override
+    public void requestInitialized(ServletRequestEvent sre) {
+        sre.getServletRequest().setAttribute(SCOPE_ATTRIBUTE, ConnectionScope.begin());
+    }
+
+    @Override
+    public void requestDestroyed(ServletRequestEvent sre) {
+        Object scope = sre.getServletRequest().getAttribute(SCOPE_ATTRIBUTE);
+        if (scope instanceof ConnectionScope) {
+            ((ConnectionScope) scope).end();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package utils.db;
+
+import utils.Env;
+
+/**
+ * Connection pool settings. Database credentials come from the same .env
+ * keys DBContext always used; pool tuning keys are optional and fall back to
+ * defaults sized for a single Tomcat node.
+ */
+public class PoolConfig {
+
+    private final String jdbcUrl;
+    private final int maxPoolSize;
+    private final int minIdle;
+    private final long connectionTimeoutMs;
+    private final long idleTimeoutMs;
+    private final long maxLifetimeMs;
+    private final long validationIntervalMs;
+    private final int validationTimeoutSeconds;
+    private final long leakDetectionThresholdMs;
+    private final long housekeepingIntervalMs;
+
+    public PoolConfig(String jdbcUrl, int maxPoolSize, int minIdle, long connectionTimeoutMs,
+            long idleTimeoutMs, long maxLifetimeMs, long validationIntervalMs,
+            int validationTimeoutSeconds, long leakDetectionThresholdMs, long housekeepingIntervalMs) {
+        if (maxPoolSize < 1) {
+            throw new IllegalArgumentException("maxPoolSize must be at least 1");
+        }
+        this.jdbcUrl = jdbcUrl;
+        this.maxPoolSize = maxPoolSize;
+        this.minIdle = Math.max(0, Math.min(minIdle, maxPoolSize));
+        this.connectionTimeoutMs = connectionTimeoutMs;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.maxLifetimeMs = maxLifetimeMs;
+        this.validationIntervalMs = validationIntervalMs;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.leakDetectionThresholdMs = leakDetectionThresholdMs;
+        this.housekeepingIntervalMs = housekeepingIntervalMs;
+    }
+
+    /**
+     * Build the configuration from the .env file.
+     *
+     * @return pool configuration
+     */
+    public static PoolConfig fromEnv() {
+        String host = Env.get("DATABASE_HOST", "localhost");
+        String port = Env.get("DATABASE_PORT", "1433");
+        String databaseName = Env.get("DATABASE_NAME");
+        String username = Env.get("DATABASE_USERNAME");
+        String password = Env.get("DATABASE_PASSWORD");
+
+        String dbURL = String.format("jdbc:sqlserver://%s:%s;"
+                + "databaseName=%s;"
+                + "user=%s;"
+                + "password=%s;"
+                + "encrypt=true;trustServerCertificate=true;", host, port, databaseName, username, password);
+
+        return new PoolConfig(
+                dbURL,
+                Env.getInt("DB_POOL_MAX_SIZE", 20),
+                Env.getInt("DB_POOL_MIN_IDLE", 2),
+                Env.getLong("DB_POOL_CONNECTION_TIMEOUT_MS", 30_000L),
+                Env.getLong("DB_POOL_IDLE_TIMEOUT_MS", 600_000L),
+                Env.getLong("DB_POOL_MAX_LIFETIME_MS", 1_800_000L),
+                Env.getLong("DB_POOL_VALIDATION_INTERVAL_MS", 5_000L),
+                Env.getInt("DB_POOL_VALIDATION_TIMEOUT_SECONDS", 3),
+                Env.getLong("DB_POOL_LEAK_DETECTION_MS", 60_000L),
+                Env.getLong("DB_POOL_HOUSEKEEPING_MS", 30_000L));
+    }
+
+    public String getJdbcUrl() {
+        return jdbcUrl;
+    }
+
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    public long getConnectionTimeoutMs() {
+        return connectionTimeoutMs;
+    }
+
+    public long getIdleTimeoutMs() {
+        return idleTimeoutMs;
+    }
+
+    public long getMaxLifetimeMs() {
+        return maxLifetimeMs;
+    }
+
+    public long getValidationIntervalMs() {
+        return validationIntervalMs;
+    }
+
+    public int getValidationTimeoutSeconds() {
+        return validationTimeoutSeconds;
+    }
+
+    public long getLeakDetectionThresholdMs() {
+        return leakDetectionThresholdMs;
+    }
+
+    public long getHousekeepingIntervalMs() {
+        return housekeepingIntervalMs;
+    }
+}
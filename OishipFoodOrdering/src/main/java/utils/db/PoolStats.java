@@ -0,0 +1,105 @@
+package utils.db;
+
+/**
+ * Point-in-time snapshot of the connection pool, used for the admin metrics
+ * endpoint and for log lines when the pool is saturated.
+ */
+public class PoolStats {
+
+    private final int maxPoolSize;
+    private final int totalConnections;
+    private final int activeConnections;
+    private final int idleConnections;
+    private final int waitingThreads;
+    private final long borrowCount;
+    private final long timeoutCount;
+    private final long createdCount;
+    private final long closedCount;
+    private final long leakCount;
+    private final double averageWaitMs;
+    private final double maxWaitMs;
+    private final double saturation;
+
+    public PoolStats(int maxPoolSize, int totalConnections, int activeConnections, int idleConnections,
+            int waitingThreads, long borrowCount, long timeoutCount, long createdCount, long closedCount,
+            long leakCount, double averageWaitMs, double maxWaitMs) {
+        this.maxPoolSize = maxPoolSize;
+        this.totalConnections = totalConnections;
+        this.activeConnections = activeConnections;
+        this.idleConnections = idleConnections;
+        this.waitingThreads = waitingThreads;
+        this.borrowCount = borrowCount;
+        this.timeoutCount = timeoutCount;
+        this.createdCount = createdCount;
+        this.closedCount = closedCount;
+        this.leakCount = leakCount;
+        this.averageWaitMs = averageWaitMs;
+        this.maxWaitMs = maxWaitMs;
+        this.saturation = maxPoolSize == 0 ? 0 : (double) activeConnections / maxPoolSize;
+    }
+
+    /**
+     * Share of the pool currently lent out, from 0.0 to 1.0.
+     *
+     * @return active connections divided by the pool size
+     */
+    public double getSaturation() {
+        return saturation;
+    }
+
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    public int getTotalConnections() {
+        return totalConnections;
+    }
+
+    public int getActiveConnections() {
+        return activeConnections;
+    }
+
+    public int getIdleConnections() {
+        return idleConnections;
+    }
+
+    public int getWaitingThreads() {
+        return waitingThreads;
+    }
+
+    public long getBorrowCount() {
+        return borrowCount;
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount;
+    }
+
+    public long getCreatedCount() {
+        return createdCount;
+    }
+
+    public long getClosedCount() {
+        return closedCount;
+    }
+
+    public long getLeakCount() {
+        return leakCount;
+    }
+
+    public double getAverageWaitMs() {
+        return averageWaitMs;
+    }
+
+    public double getMaxWaitMs() {
+        return maxWaitMs;
+    }
+
+    @Override
+    public String toString() {
+        return "PoolStats{" + "max=" + maxPoolSize + ", total=" + totalConnections
+                + ", active=" + activeConnections + ", idle=" + idleConnections
+                + ", waiting=" + waitingThreads + ", borrowed=" + borrowCount
+                + ", timeouts=" + timeoutCount + ", leaks=" + leakCount + '}';
+    }
+}
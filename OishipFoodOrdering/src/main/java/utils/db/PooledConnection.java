@@ -0,0 +1,66 @@
+package utils.db;
+
+import java.sql.Connection;
+
+/**
+ * A physical SQL Server connection owned by the pool together with the
+ * bookkeeping needed for validation, eviction and leak detection.
+ */
+class PooledConnection {
+
+    private final Connection connection;
+    private final long createdAt;
+    private volatile long lastUsedAt;
+    private volatile long borrowedAt;
+    private volatile Exception borrowTrace;
+    private volatile boolean leakReported;
+
+    PooledConnection(Connection connection) {
+        this.connection = connection;
+        this.createdAt = System.currentTimeMillis();
+        this.lastUsedAt = createdAt;
+    }
+
+    Connection getConnection() {
+        return connection;
+    }
+
+    long getLastUsedAt() {
+        return lastUsedAt;
+    }
+
+    long getBorrowedAt() {
+        return borrowedAt;
+    }
+
+    Exception getBorrowTrace() {
+        return borrowTrace;
+    }
+
+    boolean isLeakReported() {
+        return leakReported;
+    }
+
+    void setLeakReported(boolean leakReported) {
+        this.leakReported = leakReported;
+    }
+
+    void markBorrowed(Exception trace) {
+        this.borrowedAt = System.currentTimeMillis();
+        this.borrowTrace = trace;
+        this.leakReported = false;
+    }
+
+    void markReturned() {
+        this.lastUsedAt = System.currentTimeMillis();
+        this.borrowTrace = null;
+    }
+
+    boolean isExpired(long maxLifetimeMs) {
+        return maxLifetimeMs > 0 && System.currentTimeMillis() - createdAt >= maxLifetimeMs;
+    }
+
+    boolean isIdleLongerThan(long idleTimeoutMs) {
+        return idleTimeoutMs > 0 && System.currentTimeMillis() - lastUsedAt >= idleTimeoutMs;
+    }
+}
@@ -0,0 +1,120 @@
+package utils.mail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An HTML email template split once into its fixed text and {{name}}
+ * placeholders, so rendering only appends pieces instead of searching and
+ * copying the whole template for every value.
+ *
+ * Values are HTML-escaped. A placeholder without a value renders empty.
+ */
+public class EmailTemplate {
+
+    // Builders larger than this are not kept between renders
+    private static final int MAX_KEPT_CAPACITY = 256 * 1024;
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(8192));
+
+    private final String name;
+    // texts[i] comes before slots[i]; the last text has no slot after it
+    private final String[] texts;
+    private final String[] slots;
+    private final int fixedLength;
+
+    private EmailTemplate(String name, String[] texts, String[] slots) {
+        this.name = name;
+        this.texts = texts;
+        this.slots = slots;
+        int length = 0;
+        for (String text : texts) {
+            length += text.length();
+        }
+        this.fixedLength = length;
+    }
+
+    /**
+     * Split a template into text and placeholders.
+     *
+     * @param name   for error messages
+     * @param source template HTML with {{name}} placeholders
+     */
+    public static EmailTemplate compile(String name, String source) {
+        List<String> texts = new ArrayList<>();
+        List<String> slots = new ArrayList<>();
+        int from = 0;
+        while (true) {
+            int open = source.indexOf("{{", from);
+            int close = open < 0 ? -1 : source.indexOf("}}", open + 2);
+            if (close < 0) {
+                break;
+            }
+            texts.add(source.substring(from, open));
+            slots.add(source.substring(open + 2, close).trim());
+            from = close + 2;
+        }
+        texts.add(source.substring(from));
+        return new EmailTemplate(name, texts.toArray(new String[0]), slots.toArray(new String[0]));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Placeholder names in order of appearance, repeats included.
+     */
+    public List<String> getSlots() {
+        return List.of(slots);
+    }
+
+    /**
+     * Fill in the placeholders.
+     *
+     * @param values placeholder name to plain text value
+     */
+    public String render(Map<String, ?> values) {
+        StringBuilder out = BUFFER.get();
+        out.setLength(0);
+        out.ensureCapacity(fixedLength + 64 * slots.length);
+        for (int i = 0; i < slots.length; i++) {
+            out.append(texts[i]);
+            Object value = values.get(slots[i]);
+            if (value != null) {
+                escape(value.toString(), out);
+            }
+        }
+        out.append(texts[slots.length]);
+        String html = out.toString();
+        if (out.capacity() > MAX_KEPT_CAPACITY) {
+            BUFFER.remove();
+        }
+        return html;
+    }
+
+    private static void escape(String text, StringBuilder out) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&':
+                    out.append("&amp;");
+                    break;
+                case '<':
+                    out.append("&lt;");
+                    break;
+                case '>':
+                    out.append("&gt;");
+                    break;
+                case '"':
+                    out.append("&quot;");
+                    break;
+                case '\'':
+                    out.append("&#39;");
+                    break;
+                default:
+                    out.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package utils.mail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The email templates under /email on the classpath (src/main/resources),
+ * each read and compiled once and then rendered from memory.
+ *
+ * With EMAIL_TEMPLATE_RELOAD_MS set, a template that is a plain file is read
+ * again when it changes, checked at most that often, so templates can be
+ * edited without a restart during development. Templates inside a jar are
+ * never reloaded.
+ */
+public class EmailTemplates {
+
+    public static final String VERIFICATION = "verification";
+    public static final String ORDER_UPDATE = "order-update";
+
+    private static final String[] ALL = {VERIFICATION, ORDER_UPDATE};
+
+    private static final Map<String, Entry> TEMPLATES = new ConcurrentHashMap<>();
+
+    private static volatile long reloadMs;
+
+    private EmailTemplates() {
+    }
+
+    private static class Entry {
+
+        final EmailTemplate template;
+        final File file;
+        final long lastModified;
+        volatile long checkedAt = System.currentTimeMillis();
+
+        Entry(EmailTemplate template, File file) {
+            this.template = template;
+            this.file = file;
+            this.lastModified = file == null ? 0 : file.lastModified();
+        }
+
+        boolean isStale() {
+            long now = System.currentTimeMillis();
+            if (file == null || now - checkedAt < reloadMs) {
+                return false;
+            }
+            checkedAt = now;
+            return file.lastModified() != lastModified;
+        }
+    }
+
+    /**
+     * Check templates for changes at most every {@code ms} milliseconds, 0
+     * for never.
+     */
+    public static void setReloadMs(long ms) {
+        reloadMs = Math.max(0, ms);
+    }
+
+    /**
+     * Load, compile and render every template once, so the first emails after
+     * startup do not pay for it and a missing template shows up in the log
+     * right away.
+     */
+    public static void warmUp() {
+        for (String name : ALL) {
+            try {
+                EmailTemplate template = get(name);
+                Map<String, String> sample = new HashMap<>();
+                for (String slot : template.getSlots()) {
+                    sample.put(slot, slot);
+                }
+                template.render(sample);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Render a template.
+     *
+     * @param name   one of the constants of this class
+     * @param values placeholder name to plain text value
+     * @throws IllegalStateException if the template cannot be read
+     */
+    public static String render(String name, Map<String, ?> values) {
+        return get(name).render(values);
+    }
+
+    /**
+     * @throws IllegalStateException if the template cannot be read
+     */
+    public static EmailTemplate get(String name) {
+        Entry entry = TEMPLATES.get(name);
+        if (entry != null && (reloadMs == 0 || !entry.isStale())) {
+            return entry.template;
+        }
+        // Unless another thread has just loaded it
+        return TEMPLATES.compute(name, (key, current) -> current == entry ? load(key) : current).template;
+    }
+
+    private static Entry load(String name) {
+        String path = "email/" + name + ".html";
+        URL url = EmailTemplates.class.getClassLoader().getResource(path);
+        if (url == null) {
+            throw new IllegalStateException("Email template not found: " + path);
+        }
+        try (InputStream in = url.openStream()) {
+            String source = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            File file = "file".equals(url.getProtocol()) ? new File(url.toURI()) : null;
+            return new Entry(EmailTemplate.compile(name, source), file);
+        } catch (IOException | URISyntaxException e) {
+            throw new IllegalStateException("Cannot read email template " + path, e);
+        }
+    }
+}
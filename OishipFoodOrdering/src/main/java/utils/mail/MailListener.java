@@ -0,0 +1,51 @@
+package utils.mail;
+
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+import java.util.Properties;
+import utils.Env;
+
+/**
+ * Loads the email templates, opens the SMTP connection pool and starts the
+ * mail queue at startup, and stops the queue and pool on undeploy. The SMTP
+ * server is the one of EMAIL_HOST, EMAIL_PORT, EMAIL_NAME and
+ * EMAIL_APP_PASSWORD; connections, emails per connection, poll interval,
+ * batch size and retry limit can be tuned with MAIL_SMTP_CONNECTIONS,
+ * MAIL_MESSAGES_PER_CONNECTION, MAIL_POLL_MS, MAIL_BATCH_SIZE and
+ * MAIL_MAX_ATTEMPTS in .env, and templates can be reloaded on change during
+ * development with EMAIL_TEMPLATE_RELOAD_MS.
+ */
+@WebListener
+public class MailListener implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        // Templates are needed even when emails are sent without the queue
+        EmailTemplates.setReloadMs(Env.getLong("EMAIL_TEMPLATE_RELOAD_MS", 0));
+        EmailTemplates.warmUp();
+
+        String host = Env.get("EMAIL_HOST", null);
+        if (host == null) {
+            System.out.println("MailListener: EMAIL_HOST not set, emails are not queued");
+            return;
+        }
+        Properties properties = new Properties();
+        properties.put("mail.smtp.auth", "true");
+        properties.put("mail.smtp.starttls.enable", "true");
+        properties.put("mail.smtp.host", host);
+        properties.put("mail.smtp.port", String.valueOf(Env.getLong("EMAIL_PORT", 587)));
+        String username = Env.get("EMAIL_NAME");
+        SmtpTransportPool pool = new SmtpTransportPool(properties, username, Env.get("EMAIL_APP_PASSWORD"),
+                username, Env.getInt("MAIL_SMTP_CONNECTIONS", 2),
+                Env.getInt("MAIL_MESSAGES_PER_CONNECTION", 100));
+        MailQueue.start(pool, Env.getLong("MAIL_POLL_MS", 5000),
+                Env.getInt("MAIL_BATCH_SIZE", 20),
+                Env.getInt("MAIL_MAX_ATTEMPTS", 6));
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        MailQueue.stop();
+    }
+}
@@ -0,0 +1,203 @@
+package utils.mail;
+
+import dao.MailOutboxDAO;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import model.MailMessage;
+import utils.Util;
+import utils.queue.LeasedQueue;
+
+/**
+ * Sends emails stored in the MailOutbox table (see MailOutboxDAO) over a
+ * {@link SmtpTransportPool}, so pages that send mail do not wait for SMTP.
+ *
+ * Emails are picked up in batches of MAIL_BATCH_SIZE right after one is
+ * queued and every MAIL_POLL_MS. A batch is split over the pool's
+ * connections, each sending its share over one connection, and the sent ones
+ * are marked in one update. An email that cannot be sent is tried again
+ * after an exponential backoff until it reaches MAIL_MAX_ATTEMPTS, then
+ * marked failed. Delivery is at least once: an email can be sent twice if
+ * the server stops right after sending it.
+ */
+public class MailQueue {
+
+    private static final int LEASE_SECONDS = 300;
+    // 30 s, 1 min, 2 min, ... up to an hour
+    private static final int BACKOFF_BASE_SECONDS = 30;
+    private static final int BACKOFF_MAX_SECONDS = 3600;
+
+    private static final LeasedQueue.Wake WAKE = new LeasedQueue.Wake();
+
+    private static volatile SmtpTransportPool transports;
+    private static volatile ScheduledExecutorService poller;
+    private static volatile ExecutorService senders;
+    private static volatile int batchSize = 20;
+    private static volatile int maxAttempts = 6;
+
+    private MailQueue() {
+    }
+
+    /**
+     * Start sending queued emails in the background.
+     *
+     * @param pool     SMTP connections to send over, one sender thread each
+     * @param pollMs   milliseconds between polls
+     * @param batch    emails picked up per poll
+     * @param attempts give up on an email after this many attempts
+     */
+    public static synchronized void start(SmtpTransportPool pool, long pollMs, int batch, int attempts) {
+        if (poller != null) {
+            return;
+        }
+        transports = pool;
+        batchSize = Math.max(1, batch);
+        maxAttempts = Math.max(1, attempts);
+        AtomicInteger senderNumber = new AtomicInteger();
+        senders = Executors.newFixedThreadPool(pool.getSize(), r -> {
+            Thread t = new Thread(r, "mail-sender-" + senderNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "mail-queue-poller");
+            t.setDaemon(true);
+            return t;
+        });
+        poller.scheduleWithFixedDelay(MailQueue::drain, 0, Math.max(100, pollMs), TimeUnit.MILLISECONDS);
+    }
+
+    public static synchronized void stop() {
+        if (poller != null) {
+            poller.shutdownNow();
+            poller = null;
+        }
+        if (senders != null) {
+            // Emails being sent stay pending and are picked up after the next start
+            senders.shutdownNow();
+            senders = null;
+        }
+        if (transports != null) {
+            transports.close();
+            transports = null;
+        }
+    }
+
+    public static boolean isRunning() {
+        return poller != null;
+    }
+
+    /**
+     * The SMTP connections of the running queue, or null.
+     */
+    public static SmtpTransportPool getTransports() {
+        return transports;
+    }
+
+    /**
+     * Send soon instead of at the next poll, e.g. right after an email was
+     * queued. Calls made while a send is already waiting to run add nothing.
+     */
+    public static void wake() {
+        WAKE.signal(poller, MailQueue::drain);
+    }
+
+    /**
+     * Send batches until no email is due.
+     */
+    private static void drain() {
+        try (MailOutboxDAO dao = new MailOutboxDAO()) {
+            int sent;
+            do {
+                sent = sendBatch(dao);
+            } while (sent == batchSize && !Thread.currentThread().isInterrupted());
+        } catch (SQLException | RuntimeException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static int sendBatch(MailOutboxDAO dao) throws SQLException, InterruptedException {
+        SmtpTransportPool pool = transports;
+        ExecutorService workers = senders;
+        if (pool == null || workers == null) {
+            return 0;
+        }
+        List<MailMessage> mails = dao.claimDue(batchSize, LEASE_SECONDS);
+        if (mails.isEmpty()) {
+            return 0;
+        }
+
+        List<MailMessage> sendable = new ArrayList<>();
+        List<MimeMessage> messages = new ArrayList<>();
+        for (MailMessage mail : mails) {
+            try {
+                messages.add(pool.newMessage(mail.getRecipients(), mail.getSubject(),
+                        mail.getBody() != null ? mail.getBody() : ""));
+                sendable.add(mail);
+            } catch (MessagingException | RuntimeException e) {
+                // A bad address does not get better by retrying
+                fail(dao, mail, e, true);
+            }
+        }
+
+        // One share per connection, each sent over a single connection
+        String[] errors = new String[sendable.size()];
+        // Until a share reports otherwise, e.g. if its thread was stopped
+        Arrays.fill(errors, "Not sent");
+        int shares = Math.min(pool.getSize(), sendable.size());
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int share = 0; share < shares; share++) {
+            List<Integer> indexes = new ArrayList<>();
+            for (int i = share; i < sendable.size(); i += shares) {
+                indexes.add(i);
+            }
+            tasks.add(() -> {
+                List<MimeMessage> batch = new ArrayList<>();
+                for (int i : indexes) {
+                    batch.add(messages.get(i));
+                }
+                pool.sendAll(batch, (position, error) -> errors[indexes.get(position)] = error == null
+                        ? null : error.getClass().getSimpleName() + ": " + error.getMessage());
+                return null;
+            });
+        }
+        workers.invokeAll(tasks);
+
+        List<Long> sent = new ArrayList<>();
+        for (int i = 0; i < sendable.size(); i++) {
+            if (errors[i] == null) {
+                sent.add(sendable.get(i).getMailID());
+            } else {
+                fail(dao, sendable.get(i), errors[i], false);
+            }
+        }
+        dao.markSent(sent);
+        return mails.size();
+    }
+
+    private static void fail(MailOutboxDAO dao, MailMessage mail, Exception e, boolean permanent) {
+        fail(dao, mail, e.getClass().getSimpleName() + ": " + e.getMessage(), permanent);
+    }
+
+    private static void fail(MailOutboxDAO dao, MailMessage mail, String error, boolean permanent) {
+        if (permanent || mail.getAttempts() >= maxAttempts) {
+            dao.giveUp(mail.getMailID(), error);
+            Util.logError("Giving up email " + mail.getMailID() + " to " + mail.getRecipients() + ": " + error);
+        } else {
+            dao.retryLater(mail.getMailID(),
+                    LeasedQueue.backoffSeconds(mail.getAttempts(), BACKOFF_BASE_SECONDS, BACKOFF_MAX_SECONDS),
+                    error);
+        }
+    }
+}
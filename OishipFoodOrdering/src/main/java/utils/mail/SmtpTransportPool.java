@@ -0,0 +1,238 @@
+package utils.mail;
+
+import jakarta.mail.Address;
+import jakarta.mail.Authenticator;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Multipart;
+import jakarta.mail.PasswordAuthentication;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeBodyPart;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeMultipart;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A few SMTP connections that are opened and authenticated once and then
+ * send many emails each, instead of one connect, STARTTLS, AUTH and QUIT per
+ * email.
+ *
+ * A connection is used by one thread at a time. It is opened on first use,
+ * reopened after {@code messagesPerConnection} emails or when it has been
+ * idle long enough that the server has likely dropped it, and reopened once
+ * if it breaks while sending.
+ */
+public class SmtpTransportPool {
+
+    // Servers drop idle connections after a few minutes; reopen before that
+    private static final long MAX_IDLE_MS = TimeUnit.SECONDS.toMillis(60);
+    private static final long BORROW_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(30);
+    private static final String TIMEOUT_MS = "15000";
+
+    private final Session session;
+    private final String username;
+    private final String password;
+    private final String from;
+    private final int messagesPerConnection;
+    private final BlockingQueue<Connection> idle;
+    private final int size;
+
+    /**
+     * Called with the outcome of each email of a batch.
+     */
+    public interface SendCallback {
+
+        /**
+         * @param index position of the email in the batch
+         * @param error null if it was sent
+         */
+        void done(int index, MessagingException error);
+    }
+
+    /**
+     * @param properties            mail.smtp.* settings (host, port, auth,
+     *                              STARTTLS)
+     * @param username              SMTP login, also the sender; null for no
+     *                              authentication
+     * @param from                  sender address
+     * @param size                  connections
+     * @param messagesPerConnection emails sent before a connection is
+     *                              reopened
+     */
+    public SmtpTransportPool(Properties properties, String username, String password, String from,
+            int size, int messagesPerConnection) {
+        Properties props = new Properties();
+        props.putAll(properties);
+        props.putIfAbsent("mail.smtp.connectiontimeout", TIMEOUT_MS);
+        props.putIfAbsent("mail.smtp.timeout", TIMEOUT_MS);
+        props.putIfAbsent("mail.smtp.writetimeout", TIMEOUT_MS);
+        this.session = username == null ? Session.getInstance(props) : Session.getInstance(props, new Authenticator() {
+            @Override
+            protected PasswordAuthentication getPasswordAuthentication() {
+                return new PasswordAuthentication(username, password);
+            }
+        });
+        this.username = username;
+        this.password = password;
+        this.from = from;
+        this.size = Math.max(1, size);
+        this.messagesPerConnection = Math.max(1, messagesPerConnection);
+        this.idle = new ArrayBlockingQueue<>(this.size);
+        for (int i = 0; i < this.size; i++) {
+            idle.add(new Connection());
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * An HTML email from the pool's sender.
+     */
+    public MimeMessage newMessage(List<String> recipients, String subject, String htmlContent)
+            throws MessagingException {
+        MimeMessage message = new MimeMessage(session);
+        message.setFrom(new InternetAddress(from));
+
+        Address[] toAddresses = recipients.stream()
+                .map(email -> {
+                    try {
+                        return new InternetAddress(email.trim());
+                    } catch (AddressException e) {
+                        throw new RuntimeException("Invalid email address: " + email, e);
+                    }
+                }).toArray(Address[]::new);
+
+        message.setRecipients(Message.RecipientType.TO, toAddresses);
+        message.setSubject(subject, "UTF-8");
+
+        MimeBodyPart mimeBodyPart = new MimeBodyPart();
+        mimeBodyPart.setContent(htmlContent, "text/html; charset=UTF-8");
+
+        Multipart multipart = new MimeMultipart();
+        multipart.addBodyPart(mimeBodyPart);
+
+        message.setContent(multipart);
+        return message;
+    }
+
+    /**
+     * Send one email.
+     */
+    public void send(MimeMessage message) throws MessagingException {
+        MessagingException[] failure = new MessagingException[1];
+        sendAll(List.of(message), (index, error) -> failure[0] = error);
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+    }
+
+    /**
+     * Send emails one after another over a single connection, reporting each
+     * one's outcome to {@code callback}. One email failing does not stop the
+     * others.
+     */
+    public void sendAll(List<MimeMessage> messages, SendCallback callback) {
+        Connection connection;
+        try {
+            connection = idle.poll(BORROW_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            connection = null;
+        }
+        if (connection == null) {
+            MessagingException busy = new MessagingException("No SMTP connection free");
+            for (int i = 0; i < messages.size(); i++) {
+                callback.done(i, busy);
+            }
+            return;
+        }
+        try {
+            for (int i = 0; i < messages.size(); i++) {
+                MessagingException error = null;
+                try {
+                    connection.send(messages.get(i));
+                } catch (MessagingException e) {
+                    error = e;
+                }
+                callback.done(i, error);
+            }
+        } finally {
+            idle.add(connection);
+        }
+    }
+
+    /**
+     * Close every connection. Connections in use are closed when they are
+     * given back and used again.
+     */
+    public void close() {
+        List<Connection> connections = new ArrayList<>();
+        idle.drainTo(connections);
+        for (Connection connection : connections) {
+            connection.close();
+            idle.add(connection);
+        }
+    }
+
+    private class Connection {
+
+        private Transport transport;
+        private int sent;
+        private long lastUsed;
+
+        void send(MimeMessage message) throws MessagingException {
+            open(false);
+            try {
+                transport.sendMessage(message, message.getAllRecipients());
+            } catch (MessagingException e) {
+                // isConnected() sends a NOOP; a rejected recipient leaves the connection usable
+                if (transport.isConnected()) {
+                    throw e;
+                }
+                open(true); // Dropped by the server: once more on a new connection
+                transport.sendMessage(message, message.getAllRecipients());
+            }
+            sent++;
+            lastUsed = System.currentTimeMillis();
+        }
+
+        private void open(boolean force) throws MessagingException {
+            boolean usable = transport != null && !force && sent < messagesPerConnection
+                    && System.currentTimeMillis() - lastUsed < MAX_IDLE_MS;
+            if (usable) {
+                return;
+            }
+            close();
+            Transport fresh = session.getTransport("smtp");
+            if (username == null) {
+                fresh.connect();
+            } else {
+                fresh.connect(username, password);
+            }
+            transport = fresh;
+            sent = 0;
+            lastUsed = System.currentTimeMillis();
+        }
+
+        void close() {
+            if (transport != null) {
+                try {
+                    transport.close();
+                } catch (MessagingException e) {
+                    // Already gone
+                }
+                transport = null;
+            }
+        }
+    }
+}
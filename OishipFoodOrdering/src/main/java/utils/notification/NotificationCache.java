@@ -0,0 +1,94 @@
+package utils.notification;
+
+import dao.NotificationDAO;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import model.NotificationSummary;
+
+/**
+ * Unread notification count and newest unread notifications per customer, so
+ * customer pages can render the notification bell without a query.
+ *
+ * A customer's entry is loaded on first use and dropped when they mark a
+ * notification read or their session ends. Adding, editing or deleting a
+ * notification drops every entry. Entries are also reloaded after
+ * {@link #MAX_AGE_MS} in case notifications were changed outside this
+ * process.
+ */
+public class NotificationCache {
+
+    public static final int LATEST = 20;
+
+    private static final long MAX_AGE_MS = TimeUnit.MINUTES.toMillis(2);
+
+    private static final Map<Integer, Entry> ENTRIES = new ConcurrentHashMap<>();
+    // Bumped by invalidateAll, so a load that raced it is not kept
+    private static final AtomicLong GENERATION = new AtomicLong();
+
+    private NotificationCache() {
+    }
+
+    /**
+     * The customer's unread notifications, loaded if they are not cached.
+     * On a database error nothing is shown and nothing cached.
+     */
+    public static NotificationSummary get(int customerId) {
+        Entry entry = ENTRIES.get(customerId);
+        if (isFresh(entry)) {
+            return entry.summary;
+        }
+        // Loading inside compute makes an invalidation for this customer wait
+        // for the load, so the stale result is dropped rather than kept
+        Entry loaded = ENTRIES.compute(customerId, (id, current) -> {
+            if (isFresh(current)) {
+                return current;
+            }
+            long generation = GENERATION.get();
+            NotificationDAO dao = new NotificationDAO();
+            try {
+                return new Entry(dao.getUnreadSummary(id, LATEST), generation);
+            } catch (SQLException e) {
+                e.printStackTrace();
+                return null;
+            }
+        });
+        return loaded != null ? loaded.summary : NotificationSummary.EMPTY;
+    }
+
+    /**
+     * Forget a customer's entry, e.g. after they read a notification or when
+     * their session ends.
+     */
+    public static void invalidate(int customerId) {
+        ENTRIES.remove(customerId);
+    }
+
+    /**
+     * Forget every entry. Call after notifications are added, edited or
+     * deleted.
+     */
+    public static void invalidateAll() {
+        GENERATION.incrementAndGet();
+        ENTRIES.clear();
+    }
+
+    private static boolean isFresh(Entry entry) {
+        return entry != null && entry.generation == GENERATION.get()
+                && System.currentTimeMillis() - entry.loadedAt < MAX_AGE_MS;
+    }
+
+    private static class Entry {
+
+        private final NotificationSummary summary;
+        private final long generation;
+        private final long loadedAt = System.currentTimeMillis();
+
+        Entry(NotificationSummary summary, long generation) {
+            this.summary = summary;
+            this.generation = generation;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package utils.outbox;
+
+import com.google.gson.JsonObject;
+import dao.OrderOutboxDAO;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import model.Account;
+import model.OrderOutboxEvent;
+import utils.EmailService;
+import utils.Util;
+import utils.mail.EmailTemplates;
+import utils.push.PushHub;
+import utils.queue.LeasedQueue;
+
+/**
+ * Carries out the side effects of order changes recorded in the OrderOutbox
+ * table: the customer is emailed when their order or its payment changes
+ * status, and their open pages are told at once (see PushHub).
+ *
+ * Events are picked up in batches of ORDER_OUTBOX_BATCH_SIZE right after a
+ * change commits (see {@link #wake()}) and every ORDER_OUTBOX_POLL_MS, with
+ * one query for all their customers and one update marking them done.
+ * Emails are handed to the mail queue (see MailQueue), which sends and
+ * retries them. An event whose email cannot even be queued is tried again
+ * after an exponential backoff until it reaches ORDER_OUTBOX_MAX_ATTEMPTS,
+ * then marked failed. Delivery is at least once: an email can be queued
+ * twice if the server stops right after queuing it.
+ */
+public class OrderOutboxDispatcher {
+
+    private static final int LEASE_SECONDS = 300;
+    // 30 s, 1 min, 2 min, ... up to an hour
+    private static final int BACKOFF_BASE_SECONDS = 30;
+    private static final int BACKOFF_MAX_SECONDS = 3600;
+
+    private static final String[] ORDER_STATUSES = {
+        "Pending", "Confirmed", "Preparing", "Out for Delivery", "Delivered", "Cancelled", "Failed"};
+    private static final String[] PAYMENT_STATUSES = {"Unpaid", "Paid", "Refunded"};
+
+    private static final LeasedQueue.Wake WAKE = new LeasedQueue.Wake();
+
+    private static volatile ScheduledExecutorService dispatcher;
+    private static volatile int batchSize = 50;
+    private static volatile int maxAttempts = 8;
+
+    private OrderOutboxDispatcher() {
+    }
+
+    /**
+     * Start dispatching in the background.
+     *
+     * @param pollMs   milliseconds between polls, 0 to disable
+     * @param batch    events picked up per poll
+     * @param attempts give up on an event after this many attempts
+     */
+    public static synchronized void start(long pollMs, int batch, int attempts) {
+        batchSize = Math.max(1, batch);
+        maxAttempts = Math.max(1, attempts);
+        if (pollMs > 0 && dispatcher == null) {
+            dispatcher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "order-outbox-dispatcher");
+                t.setDaemon(true);
+                return t;
+            });
+            dispatcher.scheduleWithFixedDelay(OrderOutboxDispatcher::drain, pollMs, pollMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Dispatch soon instead of at the next poll, e.g. right after an order
+     * change committed. Calls made while a dispatch is already waiting to run
+     * add nothing.
+     */
+    public static void wake() {
+        WAKE.signal(dispatcher, OrderOutboxDispatcher::drain);
+    }
+
+    public static synchronized void stop() {
+        if (dispatcher != null) {
+            dispatcher.shutdownNow();
+            dispatcher = null;
+        }
+    }
+
+    /**
+     * Dispatch batches until no event is due.
+     */
+    private static void drain() {
+        try (OrderOutboxDAO dao = new OrderOutboxDAO()) {
+            int dispatched;
+            do {
+                dispatched = dispatchBatch(dao);
+            } while (dispatched == batchSize && !Thread.currentThread().isInterrupted());
+        } catch (SQLException | RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static int dispatchBatch(OrderOutboxDAO dao) throws SQLException {
+        List<OrderOutboxEvent> events = dao.claimDue(batchSize, LEASE_SECONDS);
+        if (events.isEmpty()) {
+            return 0;
+        }
+        List<Integer> orderIds = new ArrayList<>();
+        for (OrderOutboxEvent event : events) {
+            orderIds.add(event.getOrderID());
+        }
+        Map<Integer, Account> customers = dao.getCustomers(orderIds);
+
+        List<Long> done = new ArrayList<>();
+        for (OrderOutboxEvent event : events) {
+            if (event.getAttempts() == 1) {
+                // Once, not on every email retry; an open page that missed it sees the change on reload
+                push(event, customers.get(event.getOrderID()));
+            }
+            try {
+                notifyCustomer(event, customers.get(event.getOrderID()));
+                done.add(event.getEventID());
+            } catch (Exception | LinkageError e) {
+                String error = e.getClass().getSimpleName() + ": " + e.getMessage();
+                if (event.getAttempts() >= maxAttempts) {
+                    dao.giveUp(event.getEventID(), error);
+                    Util.logError("Giving up outbox event " + event.getEventID() + " of order #"
+                            + event.getOrderID() + ": " + error);
+                } else {
+                    dao.retryLater(event.getEventID(),
+                            LeasedQueue.backoffSeconds(event.getAttempts(), BACKOFF_BASE_SECONDS, BACKOFF_MAX_SECONDS),
+                            error);
+                }
+            }
+        }
+        dao.markDone(done);
+        return events.size();
+    }
+
+    private static void push(OrderOutboxEvent event, Account customer) {
+        if (customer == null) {
+            return;
+        }
+        boolean payment = OrderOutboxEvent.PAYMENT_STATUS.equals(event.getEventType());
+        JsonObject data = new JsonObject();
+        data.addProperty("orderID", event.getOrderID());
+        data.addProperty("status", event.getNewValue());
+        data.addProperty("statusText", name(payment ? PAYMENT_STATUSES : ORDER_STATUSES, event.getNewValue()));
+        PushHub.publish(customer.getAccountID(), payment ? "payment-status" : "order-status", data.toString());
+    }
+
+    private static void notifyCustomer(OrderOutboxEvent event, Account customer) throws Exception {
+        if (customer == null || customer.getEmail() == null || customer.getEmail().isEmpty()) {
+            return; // Walk-in order or deleted account: nobody to tell
+        }
+        String subject;
+        Map<String, Object> values = new HashMap<>();
+        values.put("name", customer.getFullName());
+        if (OrderOutboxEvent.PAYMENT_STATUS.equals(event.getEventType())) {
+            subject = "Oiship - Payment update for order #" + event.getOrderID();
+            values.put("change", "The payment status of your order #" + event.getOrderID());
+            values.put("status", name(PAYMENT_STATUSES, event.getNewValue()));
+        } else {
+            subject = "Oiship - Order #" + event.getOrderID() + " is " + name(ORDER_STATUSES, event.getNewValue());
+            values.put("change", "Your order #" + event.getOrderID());
+            values.put("status", name(ORDER_STATUSES, event.getNewValue()));
+        }
+        String content = EmailTemplates.render(EmailTemplates.ORDER_UPDATE, values);
+        EmailService.queueEmail(List.of(customer.getEmail()), subject, content);
+    }
+
+    private static String name(String[] names, int value) {
+        return value >= 0 && value < names.length ? names[value] : String.valueOf(value);
+    }
+}
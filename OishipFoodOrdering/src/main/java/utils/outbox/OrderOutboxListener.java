@@ -0,0 +1,28 @@
+package utils.outbox;
+
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+import utils.Env;
+
+/**
+ * Starts the order outbox dispatcher at startup and stops it on undeploy.
+ * Poll interval, batch size and retry limit can be tuned with
+ * ORDER_OUTBOX_POLL_MS, ORDER_OUTBOX_BATCH_SIZE and ORDER_OUTBOX_MAX_ATTEMPTS
+ * in .env.
+ */
+@WebListener
+public class OrderOutboxListener implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        OrderOutboxDispatcher.start(Env.getLong("ORDER_OUTBOX_POLL_MS", 2000),
+                Env.getInt("ORDER_OUTBOX_BATCH_SIZE", 50),
+                Env.getInt("ORDER_OUTBOX_MAX_ATTEMPTS", 8));
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        OrderOutboxDispatcher.stop();
+    }
+}
@@ -0,0 +1,294 @@
+package utils.push;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Open Server-Sent Events streams of logged-in customers (see
+ * CustomerEventsServlet), and the events pushed to them.
+ *
+ * A stream is an async request, so an idle one costs a socket and an entry
+ * here, not a request thread. A customer can have several streams, one per
+ * open tab, and every event for them goes to each. Streams per node are
+ * capped at PUSH_MAX_CONNECTIONS; past that the browser is told to come back
+ * later and the pages keep working without live updates.
+ *
+ * Events are handed to one hub thread, so publishing never blocks the
+ * caller. Streams are written without blocking: the hub writes what the
+ * socket takes and queues the rest, which the container writes once the
+ * socket drains, so one slow browser never holds up the others. A stream
+ * with more than MAX_QUEUED_BYTES waiting is closed and its browser
+ * reconnects. A comment line is sent every PUSH_HEARTBEAT_MS so proxies keep
+ * idle streams open and streams of browsers that went away are noticed and
+ * dropped.
+ */
+public class PushHub {
+
+    private static final int MAX_QUEUED_BYTES = 64 * 1024;
+    private static final Map<Integer, Map<AsyncContext, Stream>> STREAMS = new ConcurrentHashMap<>();
+    private static final AtomicInteger CONNECTIONS = new AtomicInteger();
+
+    private static volatile ScheduledExecutorService hub;
+    private static volatile int maxConnections = 2000;
+
+    private PushHub() {
+    }
+
+    /**
+     * An open stream and the frames it has not taken yet.
+     */
+    private static final class Stream implements WriteListener {
+
+        final int customerId;
+        final AsyncContext context;
+        final ServletOutputStream out;
+        private final ArrayDeque<byte[]> queue = new ArrayDeque<>();
+        private int queuedBytes;
+
+        Stream(int customerId, AsyncContext context) throws IOException {
+            this.customerId = customerId;
+            this.context = context;
+            this.out = context.getResponse().getOutputStream();
+        }
+
+        /**
+         * Queue a frame and write as much as the socket takes.
+         *
+         * @return false if the stream failed or is too far behind
+         */
+        synchronized boolean offer(byte[] frame) {
+            if (queuedBytes + frame.length > MAX_QUEUED_BYTES) {
+                return false;
+            }
+            queue.add(frame);
+            queuedBytes += frame.length;
+            return drain();
+        }
+
+        /**
+         * Write queued frames until the socket would block; the container
+         * calls {@link #onWritePossible()} once it can take more.
+         *
+         * @return false if writing failed
+         */
+        private synchronized boolean drain() {
+            try {
+                while (out.isReady()) {
+                    byte[] frame = queue.poll();
+                    if (frame == null) {
+                        out.flush();
+                        return true;
+                    }
+                    queuedBytes -= frame.length;
+                    out.write(frame);
+                }
+                return true;
+            } catch (IOException | IllegalStateException e) {
+                // Completed or timed out in the meantime
+                return false;
+            }
+        }
+
+        @Override
+        public void onWritePossible() {
+            if (!drain()) {
+                close(this);
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            close(this);
+        }
+    }
+
+    /**
+     * Start accepting streams.
+     *
+     * @param max         streams per node
+     * @param heartbeatMs milliseconds between heartbeats
+     */
+    public static synchronized void start(int max, long heartbeatMs) {
+        if (hub != null) {
+            return;
+        }
+        maxConnections = Math.max(1, max);
+        hub = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "push-hub");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, heartbeatMs);
+        hub.scheduleWithFixedDelay(PushHub::heartbeat, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Close every stream and stop. Browsers reconnect to the next instance.
+     */
+    public static synchronized void stop() {
+        ScheduledExecutorService current = hub;
+        if (current == null) {
+            return;
+        }
+        hub = null;
+        current.shutdownNow();
+        for (Integer customerId : new ArrayList<>(STREAMS.keySet())) {
+            closeNow(customerId);
+        }
+    }
+
+    /**
+     * Add an open stream of a customer. From here on the stream is written
+     * without blocking; write anything else to it before registering.
+     *
+     * @return false if the hub is stopped or full; the caller should refuse
+     * the stream
+     */
+    public static boolean register(int customerId, AsyncContext context) throws IOException {
+        if (hub == null) {
+            return false;
+        }
+        if (CONNECTIONS.incrementAndGet() > maxConnections) {
+            CONNECTIONS.decrementAndGet();
+            return false;
+        }
+        Stream stream;
+        try {
+            stream = new Stream(customerId, context);
+        } catch (IOException | RuntimeException e) {
+            CONNECTIONS.decrementAndGet();
+            throw e;
+        }
+        // Before the hub can see it: the stream cannot be checked for room until then
+        stream.out.setWriteListener(stream);
+        STREAMS.computeIfAbsent(customerId, id -> new ConcurrentHashMap<>()).put(context, stream);
+        return true;
+    }
+
+    /**
+     * Remove a stream that ended. Safe to call more than once.
+     */
+    public static void unregister(int customerId, AsyncContext context) {
+        boolean[] removed = new boolean[1];
+        STREAMS.computeIfPresent(customerId, (id, streams) -> {
+            removed[0] = streams.remove(context) != null;
+            return streams.isEmpty() ? null : streams;
+        });
+        if (removed[0]) {
+            CONNECTIONS.decrementAndGet();
+        }
+    }
+
+    /**
+     * Close every stream of a customer, e.g. when they log out.
+     */
+    public static void closeAll(int customerId) {
+        if (STREAMS.containsKey(customerId)) {
+            submit(() -> closeNow(customerId));
+        }
+    }
+
+    private static void closeNow(int customerId) {
+        Map<AsyncContext, Stream> streams = STREAMS.get(customerId);
+        if (streams == null) {
+            return;
+        }
+        for (Stream stream : new ArrayList<>(streams.values())) {
+            close(stream);
+        }
+    }
+
+    /**
+     * Send an event to every stream of a customer. Does nothing if they have
+     * none open.
+     *
+     * @param event event name the page listens for
+     * @param json  event data, one line of JSON
+     */
+    public static void publish(int customerId, String event, String json) {
+        if (!STREAMS.containsKey(customerId)) {
+            return;
+        }
+        byte[] frame = frame(event, json);
+        submit(() -> send(customerId, frame));
+    }
+
+    /**
+     * Send an event to every open stream.
+     */
+    public static void broadcast(String event, String json) {
+        if (STREAMS.isEmpty()) {
+            return;
+        }
+        byte[] frame = frame(event, json);
+        submit(() -> {
+            for (Integer customerId : STREAMS.keySet()) {
+                send(customerId, frame);
+            }
+        });
+    }
+
+    public static int getConnectionCount() {
+        return CONNECTIONS.get();
+    }
+
+    private static void heartbeat() {
+        byte[] ping = ": ping\n\n".getBytes(StandardCharsets.UTF_8);
+        for (Integer customerId : STREAMS.keySet()) {
+            send(customerId, ping);
+        }
+    }
+
+    private static byte[] frame(String event, String json) {
+        return ("event: " + event + "\ndata: " + json + "\n\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void submit(Runnable task) {
+        ScheduledExecutorService current = hub;
+        if (current == null) {
+            return;
+        }
+        try {
+            current.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Stopping; the streams are being closed anyway
+        }
+    }
+
+    /**
+     * Queue a frame on every stream of a customer, dropping those that fail
+     * or fell too far behind. Only called on the hub thread.
+     */
+    private static void send(int customerId, byte[] frame) {
+        Map<AsyncContext, Stream> streams = STREAMS.get(customerId);
+        if (streams == null) {
+            return;
+        }
+        for (Stream stream : streams.values()) {
+            if (!stream.offer(frame)) {
+                close(stream);
+            }
+        }
+    }
+
+    private static void close(Stream stream) {
+        unregister(stream.customerId, stream.context);
+        try {
+            stream.context.complete();
+        } catch (IllegalStateException e) {
+            // Already completed
+        }
+    }
+}
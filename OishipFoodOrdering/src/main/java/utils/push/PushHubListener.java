@@ -0,0 +1,39 @@
+package utils.push;
+
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+import jakarta.servlet.http.HttpSession;
+import jakarta.servlet.http.HttpSessionEvent;
+import jakarta.servlet.http.HttpSessionListener;
+import utils.Env;
+
+/**
+ * Starts the push hub at startup and stops it on undeploy, and closes a
+ * customer's streams when their session ends. The stream cap and heartbeat
+ * interval can be tuned with PUSH_MAX_CONNECTIONS and PUSH_HEARTBEAT_MS in
+ * .env.
+ */
+@WebListener
+public class PushHubListener implements ServletContextListener, HttpSessionListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        PushHub.start(Env.getInt("PUSH_MAX_CONNECTIONS", 2000),
+                Env.getLong("PUSH_HEARTBEAT_MS", 25000));
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        PushHub.stop();
+    }
+
+    @Override
+    public void sessionDestroyed(HttpSessionEvent se) {
+        HttpSession session = se.getSession();
+        Object userId = session.getAttribute("userId");
+        if ("customer".equals(session.getAttribute("role")) && userId instanceof Integer) {
+            PushHub.closeAll((Integer) userId);
+        }
+    }
+}
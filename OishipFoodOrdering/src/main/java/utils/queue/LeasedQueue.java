@@ -0,0 +1,129 @@
+package utils.queue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * What the background queues stored in tables (MailOutbox,
+ * PaymentWebhookEvent, OrderOutbox) have in common.
+ *
+ * Each table has a status (0 = pending), attempts, nextAttemptAt and
+ * lastError column. A worker claims due rows by leasing them: attempts goes
+ * up and nextAttemptAt moves past the lease, so a row that is neither
+ * finished nor rescheduled when the lease runs out is claimed again. A row
+ * that fails is rescheduled after an exponential backoff.
+ */
+public final class LeasedQueue {
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private LeasedQueue() {
+    }
+
+    /**
+     * Maps one claimed row.
+     */
+    public interface RowMapper<T> {
+
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Claim pending rows that are due. READPAST lets a second instance claim
+     * other rows instead of waiting. OUTPUT does not keep the TOP order, so
+     * callers that care sort the result.
+     *
+     * @param table   queue table
+     * @param orderBy which due rows go first
+     * @param output  columns to return, each as inserted.column
+     * @param limit   at most this many rows
+     */
+    public static <T> List<T> claimDue(Connection c, String table, String orderBy, String output,
+            int limit, int leaseSeconds, RowMapper<T> mapper) throws SQLException {
+        String sql = "WITH due AS (SELECT TOP (?) * FROM " + table + " WITH (UPDLOCK, READPAST, ROWLOCK) "
+                + "    WHERE status = 0 AND nextAttemptAt <= GETDATE() ORDER BY " + orderBy + ") "
+                + "UPDATE due SET attempts = attempts + 1, nextAttemptAt = DATEADD(SECOND, ?, GETDATE()) "
+                + "OUTPUT " + output;
+        List<T> rows = new ArrayList<>();
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setInt(1, limit);
+            ps.setInt(2, leaseSeconds);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(mapper.map(rs));
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Try a pending row again after {@code delaySeconds}. Errors are only
+     * printed: the lease runs out and the row is claimed again anyway.
+     */
+    public static void retryLater(Connection c, String table, String idColumn, long id,
+            int delaySeconds, String error) {
+        String sql = "UPDATE " + table + " SET nextAttemptAt = DATEADD(SECOND, ?, GETDATE()), lastError = ? "
+                + "WHERE " + idColumn + " = ? AND status = 0";
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setInt(1, delaySeconds);
+            ps.setString(2, truncate(error));
+            ps.setLong(3, id);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * An error cut to what fits in lastError.
+     */
+    public static String truncate(String error) {
+        return error != null && error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+    }
+
+    /**
+     * Delay before the next attempt: base, twice the base, four times, ...
+     * up to max.
+     *
+     * @param attempts attempts made so far, at least 1
+     */
+    public static int backoffSeconds(int attempts, int baseSeconds, int maxSeconds) {
+        int shift = Math.min(Math.max(attempts, 1) - 1, 16);
+        return (int) Math.min((long) baseSeconds << shift, maxSeconds);
+    }
+
+    /**
+     * Runs a queue's drain soon instead of at its next poll. Calls made while
+     * a drain is already waiting to run add nothing.
+     */
+    public static class Wake {
+
+        private final AtomicBoolean pending = new AtomicBoolean();
+
+        /**
+         * @param executor the queue's poller, or null if it is stopped
+         */
+        public void signal(ScheduledExecutorService executor, Runnable drain) {
+            if (executor == null || !pending.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                executor.execute(() -> {
+                    pending.set(false);
+                    drain.run();
+                });
+            } catch (RejectedExecutionException e) {
+                // Stopping; the rows are picked up after the next start
+                pending.set(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package utils.security;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token buckets limiting login attempts per client IP and per email, checked
+ * by LoginThrottleFilter before any password is hashed.
+ *
+ * Each bucket holds up to a burst of attempts and refills at a steady rate
+ * per minute. An attempt needs a token from both its IP's and its email's
+ * bucket, so a single client cannot try many accounts and many clients
+ * cannot hammer one account. Buckets that have filled up again are dropped
+ * every minute, so a wave of made-up emails does not pile up.
+ */
+public class LoginThrottle {
+
+    private static final Map<String, Bucket> BUCKETS = new ConcurrentHashMap<>();
+
+    private static volatile ScheduledExecutorService sweeper;
+    private static volatile int ipBurst = 20;
+    private static volatile double ipPerMinute = 30;
+    private static volatile int emailBurst = 5;
+    private static volatile double emailPerMinute = 5;
+
+    private LoginThrottle() {
+    }
+
+    /**
+     * Set the limits and start dropping idle buckets.
+     */
+    public static synchronized void start(int ipMax, double ipRate, int emailMax, double emailRate) {
+        ipBurst = Math.max(1, ipMax);
+        ipPerMinute = Math.max(0.1, ipRate);
+        emailBurst = Math.max(1, emailMax);
+        emailPerMinute = Math.max(0.1, emailRate);
+        if (sweeper == null) {
+            sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "login-throttle-sweeper");
+                t.setDaemon(true);
+                return t;
+            });
+            sweeper.scheduleWithFixedDelay(LoginThrottle::sweep, 1, 1, TimeUnit.MINUTES);
+        }
+    }
+
+    public static synchronized void stop() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+            sweeper = null;
+        }
+        BUCKETS.clear();
+    }
+
+    /**
+     * Take a token for a login attempt.
+     *
+     * @param email may be null if the form had none
+     * @return 0 if the attempt may go ahead, otherwise the seconds to wait
+     */
+    public static long tryAcquire(String ip, String email) {
+        long now = System.nanoTime();
+        long wait = BUCKETS.computeIfAbsent("ip:" + ip, k -> new Bucket(ipBurst, ipPerMinute, now))
+                .tryTake(now);
+        if (wait > 0 || email == null || email.trim().isEmpty()) {
+            return wait;
+        }
+        String key = "email:" + email.trim().toLowerCase();
+        return BUCKETS.computeIfAbsent(key, k -> new Bucket(emailBurst, emailPerMinute, now)).tryTake(now);
+    }
+
+    private static void sweep() {
+        long now = System.nanoTime();
+        BUCKETS.values().removeIf(bucket -> bucket.isFull(now));
+    }
+
+    private static final class Bucket {
+
+        private final int capacity;
+        private final double tokensPerNano;
+        private double tokens;
+        private long refilledAt;
+
+        Bucket(int capacity, double perMinute, long now) {
+            this.capacity = capacity;
+            this.tokensPerNano = perMinute / TimeUnit.MINUTES.toNanos(1);
+            this.tokens = capacity;
+            this.refilledAt = now;
+        }
+
+        synchronized long tryTake(long now) {
+            refill(now);
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            long nanos = (long) Math.ceil((1 - tokens) / tokensPerNano);
+            return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(nanos));
+        }
+
+        synchronized boolean isFull(long now) {
+            refill(now);
+            return tokens >= capacity;
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+            refilledAt = now;
+        }
+    }
+}
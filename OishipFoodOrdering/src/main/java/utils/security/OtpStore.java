@@ -0,0 +1,239 @@
+package utils.security;
+
+import dao.OTPDAO;
+import dao.SecurityDAO;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import model.OTP;
+
+/**
+ * One-time codes for registration and password recovery (see VerifyServlet
+ * and PasswordRecoveryServlet), checked in memory instead of querying the OTP
+ * table on every attempt.
+ *
+ * Only the hash of a code is kept, and codes are compared in constant time.
+ * A new code for an email replaces the previous one. Each code is also
+ * written to the OTP table: the page that checks it belongs to the session
+ * that asked for it, so it normally reaches this server, and the table is only
+ * read when the code is not in memory, e.g. after a restart. A code is used up
+ * once it is accepted or after OTP_MAX_ATTEMPTS wrong tries.
+ *
+ * Expired codes are dropped from memory every minute, and rows that expired
+ * more than OTP_RETENTION_HOURS ago are deleted from the table every
+ * OTP_PURGE_MINUTES.
+ */
+public class OtpStore {
+
+    public static final int TTL_MINUTES = 5;
+
+    private static final int PURGE_BATCH = 5000;
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final Map<String, Code> CODES = new ConcurrentHashMap<>();
+
+    private static volatile ScheduledExecutorService purger;
+    private static volatile int maxAttempts = 5;
+    private static volatile int retentionHours = 24;
+
+    /**
+     * Outcome of checking a code.
+     */
+    public enum Result {
+        VALID,
+        INVALID,
+        /**
+         * Expired, used up, or never sent.
+         */
+        EXPIRED,
+        /**
+         * Wrong too often; the code is used up.
+         */
+        TOO_MANY_ATTEMPTS
+    }
+
+    private OtpStore() {
+    }
+
+    private static final class Code {
+
+        final int otpId;
+        final byte[] hash;
+        final long expiresAt;
+        int attempts;
+        boolean used;
+
+        Code(int otpId, byte[] hash, long expiresAt) {
+            this.otpId = otpId;
+            this.hash = hash;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Set the limits and start purging expired codes.
+     *
+     * @param attempts     wrong tries allowed per code
+     * @param purgeMinutes minutes between purges of the OTP table, 0 to never
+     *                     delete rows
+     * @param retention    hours an expired row is kept
+     */
+    public static synchronized void start(int attempts, long purgeMinutes, int retention) {
+        maxAttempts = Math.max(1, attempts);
+        retentionHours = Math.max(0, retention);
+        if (purger != null) {
+            return;
+        }
+        purger = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "otp-purger");
+            t.setDaemon(true);
+            return t;
+        });
+        purger.scheduleWithFixedDelay(OtpStore::sweep, 1, 1, TimeUnit.MINUTES);
+        if (purgeMinutes > 0) {
+            purger.scheduleWithFixedDelay(OtpStore::purge, 1, purgeMinutes, TimeUnit.MINUTES);
+        }
+    }
+
+    public static synchronized void stop() {
+        if (purger != null) {
+            purger.shutdownNow();
+            purger = null;
+        }
+        // Codes still pending are checked against the table after a restart
+        CODES.clear();
+    }
+
+    /**
+     * Create a code for an email, replacing any earlier one.
+     *
+     * @param customerId stored with the row, null if there is no customer yet
+     * @return the six-digit code to send, or null if it could not be stored;
+     * nothing must be sent then
+     */
+    public static String issue(String email, Integer customerId) {
+        String code = String.format("%06d", RANDOM.nextInt(1000000));
+        String hash = SecurityDAO.hashOTP(code);
+        LocalDateTime createdAt = LocalDateTime.now();
+        LocalDateTime expiresAt = createdAt.plusMinutes(TTL_MINUTES);
+        int otpId = new OTPDAO().insertOtpTemp(email, hash, Timestamp.valueOf(createdAt),
+                Timestamp.valueOf(expiresAt), customerId);
+        if (otpId <= 0) {
+            // The earlier code may already be marked used in the table
+            CODES.remove(key(email));
+            return null;
+        }
+        CODES.put(key(email), new Code(otpId, bytes(hash),
+                System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(TTL_MINUTES)));
+        return code;
+    }
+
+    /**
+     * Check a code entered for an email. A valid code is used up.
+     */
+    public static Result verify(String email, String input) {
+        if (email == null) {
+            return Result.EXPIRED;
+        }
+        Code code = CODES.get(key(email));
+        if (code == null) {
+            return verifyStored(email, input);
+        }
+        Result result;
+        int otpId;
+        synchronized (code) {
+            if (code.used || System.currentTimeMillis() > code.expiresAt) {
+                CODES.remove(key(email), code);
+                return Result.EXPIRED;
+            }
+            if (matches(input, code.hash)) {
+                result = Result.VALID;
+            } else {
+                code.attempts++;
+                result = code.attempts >= maxAttempts ? Result.TOO_MANY_ATTEMPTS : Result.INVALID;
+            }
+            if (result != Result.INVALID) {
+                code.used = true;
+                CODES.remove(key(email), code);
+            }
+            otpId = code.otpId;
+        }
+        if (result != Result.INVALID && otpId > 0) {
+            // So the table cannot hand out the same code again
+            new OTPDAO().markOtpAsUsed(otpId);
+        }
+        return result;
+    }
+
+    /**
+     * Throw away the pending code of an email.
+     */
+    public static void invalidate(String email) {
+        if (email == null) {
+            return;
+        }
+        Code code = CODES.remove(key(email));
+        if (code != null && code.otpId > 0) {
+            new OTPDAO().markOtpAsUsed(code.otpId);
+        }
+    }
+
+    /**
+     * Check against the newest unused row in the table, for codes issued
+     * before a restart or by another server.
+     */
+    private static Result verifyStored(String email, String input) {
+        OTPDAO dao = new OTPDAO();
+        OTP otp = dao.getLatestOtpByEmail(email);
+        if (otp == null || otp.getIsUsed() == 1 || dao.isOtpExpired(otp.getOtpExpiresAt())
+                || otp.getAttempts() >= maxAttempts) {
+            return Result.EXPIRED;
+        }
+        if (matches(input, bytes(otp.getOtp()))) {
+            // Whoever marks it first gets it
+            return dao.markOtpAsUsed(otp.getOtpId()) ? Result.VALID : Result.EXPIRED;
+        }
+        int attempts = dao.recordFailedAttempt(otp.getOtpId(), maxAttempts);
+        return attempts >= maxAttempts ? Result.TOO_MANY_ATTEMPTS : Result.INVALID;
+    }
+
+    private static boolean matches(String input, byte[] hash) {
+        if (input == null || input.trim().isEmpty() || hash == null) {
+            return false;
+        }
+        String inputHash = SecurityDAO.hashOTP(input.trim());
+        return inputHash != null && MessageDigest.isEqual(bytes(inputHash), hash);
+    }
+
+    private static byte[] bytes(String hash) {
+        return hash == null ? null : hash.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static String key(String email) {
+        return email.trim().toLowerCase();
+    }
+
+    private static void sweep() {
+        long now = System.currentTimeMillis();
+        CODES.values().removeIf(code -> now > code.expiresAt);
+    }
+
+    private static void purge() {
+        try (OTPDAO dao = new OTPDAO()) {
+            Timestamp before = Timestamp.valueOf(LocalDateTime.now().minusHours(retentionHours));
+            int batch;
+            do {
+                batch = dao.deleteExpired(before, PURGE_BATCH);
+            } while (batch == PURGE_BATCH && !Thread.currentThread().isInterrupted());
+        } catch (SQLException | RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+}
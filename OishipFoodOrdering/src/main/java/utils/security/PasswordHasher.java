@@ -0,0 +1,201 @@
+package utils.security;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import org.mindrot.jbcrypt.BCrypt;
+
+/**
+ * Runs BCrypt hashing and verification on a fixed pool of
+ * PASSWORD_HASH_THREADS threads (one per core by default) with a queue of
+ * PASSWORD_HASH_QUEUE, so a burst of logins keeps at most that many cores
+ * busy and request threads stay free for everything else.
+ *
+ * Logins use {@link #tryVerify(String, String)}, which refuses at once with
+ * {@link BusyException} when the queue is full; the login page answers 429.
+ * Hashing a new password and checking the current one before a change are
+ * rare and wait for a free place in the queue instead.
+ *
+ * Until the pool is started (e.g. in the utils.admin tools) everything runs
+ * on the calling thread.
+ */
+public class PasswordHasher {
+
+    public static final int DEFAULT_COST = 12;
+
+    // How long hash() and verify() wait for a free place in a full queue
+    private static final long QUEUE_WAIT_MS = 10_000;
+
+    private static volatile ThreadPoolExecutor pool;
+    private static volatile int cost = DEFAULT_COST;
+
+    /**
+     * Thrown when the pool is too busy to take the work.
+     */
+    public static class BusyException extends RuntimeException {
+
+        public BusyException() {
+            super("Password hashing is busy, try again shortly");
+        }
+    }
+
+    private PasswordHasher() {
+    }
+
+    /**
+     * Start the pool.
+     *
+     * @param threads    hashing threads
+     * @param queue      hashes waiting at most
+     * @param bcryptCost cost factor of new hashes; logins rehash passwords
+     *                   hashed with another one
+     */
+    public static synchronized void start(int threads, int queue, int bcryptCost) {
+        if (pool != null) {
+            return;
+        }
+        cost = Math.max(4, Math.min(bcryptCost, 31)); // What BCrypt accepts
+        int size = Math.max(1, threads);
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queue)), r -> {
+            Thread t = new Thread(r, "password-hasher-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        // hash() and verify() put work straight into the queue, so the threads must already be there
+        executor.prestartAllCoreThreads();
+        pool = executor;
+    }
+
+    public static synchronized void stop() {
+        ThreadPoolExecutor current = pool;
+        if (current == null) {
+            return;
+        }
+        pool = null;
+        for (Runnable waiting : current.shutdownNow()) {
+            // Wakes up the request waiting for it with a BusyException
+            ((Future<?>) waiting).cancel(false);
+        }
+    }
+
+    /**
+     * Hash a new password with the configured cost, waiting for the pool if
+     * it is busy.
+     */
+    public static String hash(String plainPassword) {
+        return run(() -> BCrypt.hashpw(plainPassword, BCrypt.gensalt(cost)), true);
+    }
+
+    /**
+     * Check a password, waiting for the pool if it is busy.
+     */
+    public static boolean verify(String plainPassword, String hashedPassword) {
+        return run(() -> BCrypt.checkpw(plainPassword, hashedPassword), true);
+    }
+
+    /**
+     * Check a login password.
+     *
+     * @throws BusyException at once if the queue is full
+     */
+    public static boolean tryVerify(String plainPassword, String hashedPassword) {
+        return run(() -> BCrypt.checkpw(plainPassword, hashedPassword), false);
+    }
+
+    /**
+     * Whether a hash was made with another cost factor than the configured
+     * one, so it should be replaced after the next successful login.
+     */
+    public static boolean needsRehash(String hashedPassword) {
+        // $2a$12$...
+        if (hashedPassword == null || hashedPassword.length() < 7 || hashedPassword.charAt(3) != '$') {
+            return false;
+        }
+        try {
+            return Integer.parseInt(hashedPassword.substring(4, 6)) != cost;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Hash a password again in the background and hand the new hash to
+     * {@code store} on the hashing thread. Skipped if the pool is busy or not
+     * started; the next login tries again.
+     */
+    public static void rehashLater(String plainPassword, Consumer<String> store) {
+        ThreadPoolExecutor current = pool;
+        if (current == null) {
+            return;
+        }
+        try {
+            current.execute(() -> {
+                try {
+                    store.accept(BCrypt.hashpw(plainPassword, BCrypt.gensalt(cost)));
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Busy with logins, which come first
+        }
+    }
+
+    public static int getQueueLength() {
+        ThreadPoolExecutor current = pool;
+        return current == null ? 0 : current.getQueue().size();
+    }
+
+    private static <T> T run(Callable<T> work, boolean wait) {
+        FutureTask<T> task = new FutureTask<>(work);
+        ThreadPoolExecutor current = pool;
+        if (current == null) {
+            task.run();
+        } else if (wait) {
+            try {
+                if (!current.getQueue().offer(task, QUEUE_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                    throw new BusyException();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BusyException();
+            }
+            if (current.isShutdown() && current.remove(task)) {
+                throw new BusyException(); // Stopped just now; nobody would run it
+            }
+        } else {
+            try {
+                current.execute(task);
+            } catch (RejectedExecutionException e) {
+                throw new BusyException();
+            }
+        }
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause; // e.g. BCrypt rejecting a malformed hash
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (CancellationException e) {
+            throw new BusyException();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusyException();
+        }
+    }
+}
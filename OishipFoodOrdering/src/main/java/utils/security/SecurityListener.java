@@ -0,0 +1,40 @@
+package utils.security;
+
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+import utils.Env;
+
+/**
+ * Starts the password hashing pool, the login throttle and the OTP store at
+ * startup and stops them on undeploy. Pool size, queue and BCrypt cost can be
+ * tuned with PASSWORD_HASH_THREADS, PASSWORD_HASH_QUEUE and
+ * PASSWORD_BCRYPT_COST, the login limits with LOGIN_IP_BURST,
+ * LOGIN_IP_PER_MINUTE, LOGIN_EMAIL_BURST and LOGIN_EMAIL_PER_MINUTE, and the
+ * OTPs with OTP_MAX_ATTEMPTS, OTP_PURGE_MINUTES and OTP_RETENTION_HOURS in
+ * .env.
+ */
+@WebListener
+public class SecurityListener implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        PasswordHasher.start(Env.getInt("PASSWORD_HASH_THREADS", Runtime.getRuntime().availableProcessors()),
+                Env.getInt("PASSWORD_HASH_QUEUE", 32),
+                Env.getInt("PASSWORD_BCRYPT_COST", PasswordHasher.DEFAULT_COST));
+        LoginThrottle.start(Env.getInt("LOGIN_IP_BURST", 20),
+                Env.getLong("LOGIN_IP_PER_MINUTE", 30),
+                Env.getInt("LOGIN_EMAIL_BURST", 5),
+                Env.getLong("LOGIN_EMAIL_PER_MINUTE", 5));
+        OtpStore.start(Env.getInt("OTP_MAX_ATTEMPTS", 5),
+                Env.getLong("OTP_PURGE_MINUTES", 60),
+                Env.getInt("OTP_RETENTION_HOURS", 24));
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        OtpStore.stop();
+        LoginThrottle.stop();
+        PasswordHasher.stop();
+    }
+}
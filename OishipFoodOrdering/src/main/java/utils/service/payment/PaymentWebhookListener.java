@@ -0,0 +1,28 @@
+package utils.service.payment;
+
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+import utils.Env;
+
+/**
+ * Starts the PayOS webhook workers at startup and stops them on undeploy.
+ * Worker count, poll interval and retry limit can be tuned with
+ * PAYMENT_WEBHOOK_WORKERS, PAYMENT_WEBHOOK_POLL_MS and
+ * PAYMENT_WEBHOOK_MAX_ATTEMPTS in .env.
+ */
+@WebListener
+public class PaymentWebhookListener implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        PaymentWebhookQueue.start(Env.getInt("PAYMENT_WEBHOOK_WORKERS", 4),
+                Env.getLong("PAYMENT_WEBHOOK_POLL_MS", 5000),
+                Env.getInt("PAYMENT_WEBHOOK_MAX_ATTEMPTS", 10));
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        PaymentWebhookQueue.stop();
+    }
+}
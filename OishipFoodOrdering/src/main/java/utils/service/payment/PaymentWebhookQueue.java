@@ -0,0 +1,147 @@
+package utils.service.payment;
+
+import dao.PaymentWebhookDAO;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import model.PaymentWebhookEvent;
+import utils.Util;
+import utils.queue.LeasedQueue;
+
+/**
+ * Applies stored PayOS webhooks (see PaymentWebhookDAO) on a small pool of
+ * worker threads, so the webhook servlet can answer PayOS as soon as the
+ * event is stored.
+ *
+ * A poller picks up due events right after a webhook is stored and every
+ * PAYMENT_WEBHOOK_POLL_MS in case one was missed or is due for a retry. An
+ * event whose transaction fails, e.g. on a deadlock or a lost connection, is
+ * tried again after an exponential backoff until it reaches
+ * PAYMENT_WEBHOOK_MAX_ATTEMPTS, then marked failed.
+ */
+public class PaymentWebhookQueue {
+
+    private static final int LEASE_SECONDS = 120;
+    // 5 s, 10 s, 20 s, ... up to 10 minutes
+    private static final int BACKOFF_BASE_SECONDS = 5;
+    private static final int BACKOFF_MAX_SECONDS = 600;
+
+    private static final AtomicInteger IN_FLIGHT = new AtomicInteger();
+    private static final LeasedQueue.Wake WAKE = new LeasedQueue.Wake();
+
+    private static volatile ScheduledExecutorService poller;
+    private static volatile ExecutorService workers;
+    private static volatile int workerCount;
+    private static volatile int maxAttempts = 10;
+
+    private PaymentWebhookQueue() {
+    }
+
+    /**
+     * Start applying stored webhooks in the background.
+     *
+     * @param threads worker threads
+     * @param pollMs  milliseconds between polls for due events
+     * @param attempts give up on an event after this many attempts
+     */
+    public static synchronized void start(int threads, long pollMs, int attempts) {
+        if (poller != null) {
+            return;
+        }
+        workerCount = Math.max(1, threads);
+        maxAttempts = Math.max(1, attempts);
+        AtomicInteger workerNumber = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(workerCount, r -> {
+            Thread t = new Thread(r, "payment-webhook-worker-" + workerNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "payment-webhook-poller");
+            t.setDaemon(true);
+            return t;
+        });
+        poller.scheduleWithFixedDelay(PaymentWebhookQueue::poll, 0, Math.max(100, pollMs), TimeUnit.MILLISECONDS);
+    }
+
+    public static synchronized void stop() {
+        if (poller != null) {
+            poller.shutdownNow();
+            poller = null;
+        }
+        if (workers != null) {
+            // Events being applied roll back and are picked up after the next start
+            workers.shutdownNow();
+            workers = null;
+        }
+    }
+
+    /**
+     * Store a verified successful-payment webhook and have it applied soon.
+     * Runs on the request thread.
+     *
+     * @return false if it could not be stored, so PayOS should send it again
+     */
+    public static boolean accept(long orderCode, BigDecimal amount, String reference, String payload) {
+        if (!new PaymentWebhookDAO().enqueue(orderCode, amount, reference, payload)) {
+            return false;
+        }
+        WAKE.signal(poller, PaymentWebhookQueue::poll);
+        return true;
+    }
+
+    private static void poll() {
+        ExecutorService pool = workers;
+        int free = workerCount * 2 - IN_FLIGHT.get();
+        if (pool == null || free <= 0) {
+            return;
+        }
+        try (PaymentWebhookDAO dao = new PaymentWebhookDAO()) {
+            List<PaymentWebhookEvent> events = dao.claimDue(free, LEASE_SECONDS);
+            for (PaymentWebhookEvent event : events) {
+                IN_FLIGHT.incrementAndGet();
+                try {
+                    pool.execute(() -> {
+                        try {
+                            process(event);
+                        } finally {
+                            IN_FLIGHT.decrementAndGet();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    // Stopping; the lease runs out and the event is claimed again
+                    IN_FLIGHT.decrementAndGet();
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void process(PaymentWebhookEvent event) {
+        PaymentWebhookDAO dao = new PaymentWebhookDAO();
+        try {
+            if (!dao.apply(event)) {
+                Util.logError("Payment webhook for unknown order #" + event.getOrderCode());
+            }
+        } catch (SQLException | RuntimeException e) {
+            String error = e.getClass().getSimpleName() + ": " + e.getMessage();
+            if (event.getAttempts() >= maxAttempts) {
+                dao.giveUp(event.getEventID(), error);
+                Util.logError("Giving up payment webhook for order #" + event.getOrderCode() + ": " + error);
+            } else {
+                dao.retryLater(event.getEventID(),
+                        LeasedQueue.backoffSeconds(event.getAttempts(), BACKOFF_BASE_SECONDS, BACKOFF_MAX_SECONDS),
+                        error);
+            }
+        } finally {
+            dao.closeConnection();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package utils.stats;
+
+import dao.DashboardStatsDAO;
+import java.util.EnumMap;
+import java.util.Map;
+import model.DashboardStats;
+import utils.Env;
+
+/**
+ * Short-lived cache of dashboard stats per {@link StatsWindow}.
+ *
+ * Each window is loaded with one {@link DashboardStatsDAO} round trip and
+ * then reused for DASHBOARD_STATS_TTL_MS (default 15 seconds), so repeated
+ * dashboard refreshes do not touch the database. Concurrent misses on the
+ * same window wait for a single load instead of each running the query.
+ */
+public class DashboardStatsEngine {
+
+    private static final long DEFAULT_TTL_MS = 15_000L;
+    private static final long TTL_MS = loadTtl();
+
+    private static final Map<StatsWindow, Entry> CACHE = new EnumMap<>(StatsWindow.class);
+    private static final Map<StatsWindow, Object> LOCKS = new EnumMap<>(StatsWindow.class);
+
+    static {
+        for (StatsWindow window : StatsWindow.values()) {
+            LOCKS.put(window, new Object());
+        }
+    }
+
+    private DashboardStatsEngine() {
+    }
+
+    /**
+     * Stats for a window, loaded at most once per TTL. The returned object is
+     * a copy, so callers may modify it.
+     *
+     * @param window time window
+     * @return order, payment and rating counts for the window
+     */
+    public static DashboardStats get(StatsWindow window) {
+        Entry entry = read(window);
+        if (entry == null || entry.isExpired()) {
+            synchronized (LOCKS.get(window)) {
+                entry = read(window);
+                if (entry == null || entry.isExpired()) {
+                    entry = new Entry(load(window));
+                    synchronized (CACHE) {
+                        CACHE.put(window, entry);
+                    }
+                }
+            }
+        }
+        return new DashboardStats(entry.stats);
+    }
+
+    /**
+     * Drop every cached window, e.g. after bulk edits to orders.
+     */
+    public static void invalidate() {
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+    }
+
+    private static Entry read(StatsWindow window) {
+        synchronized (CACHE) {
+            return CACHE.get(window);
+        }
+    }
+
+    private static DashboardStats load(StatsWindow window) {
+        try (DashboardStatsDAO dao = new DashboardStatsDAO()) {
+            return dao.loadStats(window.from(), window.to());
+        }
+    }
+
+    private static long loadTtl() {
+        return Env.getLong("DASHBOARD_STATS_TTL_MS", DEFAULT_TTL_MS);
+    }
+
+    private static final class Entry {
+
+        private final DashboardStats stats;
+        private final long loadedAt = System.currentTimeMillis();
+
+        private Entry(DashboardStats stats) {
+            this.stats = stats;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() - loadedAt >= TTL_MS;
+        }
+    }
+}
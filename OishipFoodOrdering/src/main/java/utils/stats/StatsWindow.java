@@ -0,0 +1,43 @@
+package utils.stats;
+
+import java.time.LocalDate;
+
+/**
+ * Time windows shown on the dashboards. Bounds are computed fresh on every
+ * call so a cached entry never outlives midnight by more than its TTL.
+ */
+public enum StatsWindow {
+    TODAY,
+    MONTH,
+    ALL;
+
+    /**
+     * First day included, or null for no lower bound.
+     */
+    public LocalDate from() {
+        LocalDate today = LocalDate.now();
+        switch (this) {
+            case TODAY:
+                return today;
+            case MONTH:
+                return today.withDayOfMonth(1);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * First day excluded, or null for no upper bound.
+     */
+    public LocalDate to() {
+        LocalDate today = LocalDate.now();
+        switch (this) {
+            case TODAY:
+                return today.plusDays(1);
+            case MONTH:
+                return today.withDayOfMonth(1).plusMonths(1);
+            default:
+                return null;
+        }
+    }
+}
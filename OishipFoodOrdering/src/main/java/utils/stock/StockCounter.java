@@ -0,0 +1,365 @@
+package utils.stock;
+
+import dao.DishDAO;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import utils.Util;
+
+/**
+ * In-process count of how many of each dish can still be sold: Dish.stock
+ * minus held reservations minus decrements not yet written back.
+ *
+ * When enabled (STOCK_COUNTER_ENABLED=true) the counter is what availability
+ * checks read, and orders take stock with a compare-and-decrement on it, so
+ * popular dishes do not turn their Dish row into a lock hotspot. Decrements
+ * that do not need to be part of an order transaction are queued with
+ * {@link #decrementLater(int, int)} and written back in one batch every
+ * STOCK_COUNTER_FLUSH_MS. The counter is loaded from the database at startup
+ * and reloaded for a dish whenever staff edit its stock. When disabled every
+ * call site falls back to reading and updating Dish directly.
+ *
+ * Stock taken by an order that has not committed yet is in flight: the
+ * database does not show it and it is not queued either, so reloading a dish
+ * subtracts it along with the queued decrements. Once the order commits the
+ * take is settled with {@link #decrementLater(int, int)} or
+ * {@link #settleAll(Map)}; if it rolls back it is given back with
+ * {@link #cancelAll(Map)}.
+ *
+ * Single-instance only: several app servers would each keep their own count.
+ */
+public class StockCounter {
+
+    private static final Map<Integer, AtomicInteger> AVAILABLE = new ConcurrentHashMap<>();
+    private static final Map<Integer, AtomicInteger> PENDING = new ConcurrentHashMap<>();
+    private static final Map<Integer, AtomicInteger> IN_FLIGHT = new ConcurrentHashMap<>();
+    // Held by reloads from flush to the last counter set, so neither a flush
+    // between draining PENDING and writing Dish nor a later write is missed
+    private static final Object FLUSH_LOCK = new Object();
+    // Takes and settles share it; a reload holds it alone while it reads the
+    // database and sets counters, so it sees each take either in flight or
+    // already in the database
+    private static final ReadWriteLock COUNT_LOCK = new ReentrantReadWriteLock();
+
+    private static volatile boolean enabled = false;
+    private static volatile ScheduledExecutorService flusher;
+
+    private StockCounter() {
+    }
+
+    /**
+     * Load every dish from the database and start the write-behind flusher.
+     *
+     * @param flushMs milliseconds between write-backs
+     */
+    public static synchronized void start(long flushMs) {
+        if (enabled) {
+            return;
+        }
+        reconcileAll();
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "stock-counter-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(StockCounter::flush, flushMs, flushMs, TimeUnit.MILLISECONDS);
+        enabled = true;
+    }
+
+    /**
+     * Write back everything pending and fall back to the database path.
+     */
+    public static synchronized void stop() {
+        if (!enabled) {
+            return;
+        }
+        enabled = false;
+        flusher.shutdownNow();
+        flusher = null;
+        flush();
+        AVAILABLE.clear();
+        IN_FLIGHT.clear();
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Units of a dish that can still be sold, or null if the counter is
+     * disabled or does not know the dish yet.
+     */
+    public static Integer getAvailable(int dishId) {
+        if (!enabled) {
+            return null;
+        }
+        AtomicInteger counter = counterFor(dishId);
+        return counter != null ? Math.max(0, counter.get()) : null;
+    }
+
+    /**
+     * Take {@code quantity} units of a dish if that many are left. The units
+     * are in flight until the caller settles or cancels them.
+     *
+     * @return false if there was not enough stock; nothing is taken then
+     */
+    public static boolean tryDecrement(int dishId, int quantity) {
+        AtomicInteger counter = counterFor(dishId);
+        if (counter == null) {
+            return false;
+        }
+        COUNT_LOCK.readLock().lock();
+        try {
+            while (true) {
+                int current = counter.get();
+                if (current < quantity) {
+                    return false;
+                }
+                if (counter.compareAndSet(current, current - quantity)) {
+                    add(IN_FLIGHT, dishId, quantity);
+                    return true;
+                }
+            }
+        } finally {
+            COUNT_LOCK.readLock().unlock();
+        }
+    }
+
+    /**
+     * Take several dishes at once, all or nothing.
+     *
+     * @param quantities dish ID to quantity
+     * @return dish ID to units available for every dish that was short;
+     * empty if everything was taken
+     */
+    public static Map<Integer, Integer> tryDecrementAll(Map<Integer, Integer> quantities) {
+        Map<Integer, Integer> taken = new HashMap<>();
+        Map<Integer, Integer> shortages = new HashMap<>();
+        for (Map.Entry<Integer, Integer> entry : quantities.entrySet()) {
+            if (tryDecrement(entry.getKey(), entry.getValue())) {
+                taken.put(entry.getKey(), entry.getValue());
+            } else {
+                Integer available = getAvailable(entry.getKey());
+                shortages.put(entry.getKey(), available != null ? available : 0);
+            }
+        }
+        if (!shortages.isEmpty()) {
+            cancelAll(taken);
+        }
+        return shortages;
+    }
+
+    /**
+     * Give units back after a cancellation. Units taken by an order that
+     * rolled back go back with {@link #cancelAll(Map)}.
+     */
+    public static void increment(int dishId, int quantity) {
+        if (!enabled) {
+            return;
+        }
+        AtomicInteger counter = AVAILABLE.get(dishId);
+        if (counter != null) {
+            counter.addAndGet(quantity);
+        }
+    }
+
+    public static void incrementAll(Map<Integer, Integer> quantities) {
+        for (Map.Entry<Integer, Integer> entry : quantities.entrySet()) {
+            increment(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Give back units taken with {@link #tryDecrement(int, int)} whose order
+     * rolled back.
+     */
+    public static void cancelAll(Map<Integer, Integer> quantities) {
+        if (!enabled) {
+            return;
+        }
+        COUNT_LOCK.readLock().lock();
+        try {
+            for (Map.Entry<Integer, Integer> entry : quantities.entrySet()) {
+                add(IN_FLIGHT, entry.getKey(), -entry.getValue());
+                AtomicInteger counter = AVAILABLE.get(entry.getKey());
+                if (counter != null) {
+                    counter.addAndGet(entry.getValue());
+                }
+            }
+        } finally {
+            COUNT_LOCK.readLock().unlock();
+        }
+    }
+
+    /**
+     * Settle units taken with {@link #tryDecrement(int, int)} whose order
+     * committed and already shows in the database, e.g. as a hold. Call only
+     * after the commit.
+     */
+    public static void settleAll(Map<Integer, Integer> quantities) {
+        if (!enabled) {
+            return;
+        }
+        COUNT_LOCK.readLock().lock();
+        try {
+            for (Map.Entry<Integer, Integer> entry : quantities.entrySet()) {
+                add(IN_FLIGHT, entry.getKey(), -entry.getValue());
+            }
+        } finally {
+            COUNT_LOCK.readLock().unlock();
+        }
+    }
+
+    /**
+     * Take units whether or not that many are left, for stock the database
+     * has already taken (a late payment for a released hold). The count may
+     * go below zero; {@link #getAvailable(int)} reports that as zero.
+     */
+    public static void takeAll(Map<Integer, Integer> quantities) {
+        if (!enabled) {
+            return;
+        }
+        for (Map.Entry<Integer, Integer> entry : quantities.entrySet()) {
+            AtomicInteger counter = AVAILABLE.get(entry.getKey());
+            if (counter != null) {
+                counter.addAndGet(-entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Settle units taken with {@link #tryDecrement(int, int)} by queueing a
+     * decrement of Dish.stock for the next write-back. Call only after the
+     * order, if any, committed.
+     */
+    public static void decrementLater(int dishId, int quantity) {
+        COUNT_LOCK.readLock().lock();
+        try {
+            add(PENDING, dishId, quantity);
+            add(IN_FLIGHT, dishId, -quantity);
+        } finally {
+            COUNT_LOCK.readLock().unlock();
+        }
+    }
+
+    /**
+     * Write every queued decrement to Dish in one batch. Runs on the flusher
+     * thread; also called before staff edit stock so the edit is applied on
+     * top of the current value.
+     */
+    public static void flush() {
+        synchronized (FLUSH_LOCK) {
+            Map<Integer, Integer> batch = new HashMap<>();
+            for (Map.Entry<Integer, AtomicInteger> entry : PENDING.entrySet()) {
+                int quantity = entry.getValue().getAndSet(0);
+                if (quantity > 0) {
+                    batch.put(entry.getKey(), quantity);
+                }
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            try (DishDAO dishDAO = new DishDAO()) {
+                if (!dishDAO.applyStockDecrements(batch)) {
+                    requeue(batch);
+                }
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                requeue(batch);
+            }
+        }
+    }
+
+    /**
+     * Reload some dishes from the database, after flushing what is queued
+     * for them. Called when staff edit stock and when a paid order takes
+     * stock that was already given back.
+     */
+    public static void reconcile(Collection<Integer> dishIds) {
+        if (!enabled || dishIds.isEmpty()) {
+            return;
+        }
+        synchronized (FLUSH_LOCK) {
+            flush();
+            try (DishDAO dishDAO = new DishDAO()) {
+                COUNT_LOCK.writeLock().lock();
+                try {
+                    Map<Integer, int[]> levels = dishDAO.getStockLevels(dishIds);
+                    for (Integer dishId : dishIds) {
+                        int[] level = levels.get(dishId);
+                        if (level == null) {
+                            AVAILABLE.remove(dishId);
+                        } else {
+                            AVAILABLE.computeIfAbsent(dishId, id -> new AtomicInteger()).set(unseen(dishId, level[0]));
+                        }
+                    }
+                } finally {
+                    COUNT_LOCK.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    private static void reconcileAll() {
+        synchronized (FLUSH_LOCK) {
+            flush();
+            try (DishDAO dishDAO = new DishDAO()) {
+                COUNT_LOCK.writeLock().lock();
+                try {
+                    Map<Integer, int[]> levels = dishDAO.getStockLevels();
+                    AVAILABLE.keySet().retainAll(levels.keySet());
+                    for (Map.Entry<Integer, int[]> entry : levels.entrySet()) {
+                        AVAILABLE.computeIfAbsent(entry.getKey(), id -> new AtomicInteger())
+                                .set(unseen(entry.getKey(), entry.getValue()[0]));
+                    }
+                } finally {
+                    COUNT_LOCK.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    private static AtomicInteger counterFor(int dishId) {
+        AtomicInteger counter = AVAILABLE.get(dishId);
+        if (counter == null && enabled) {
+            // Dish added since startup
+            reconcile(Collections.singletonList(dishId));
+            counter = AVAILABLE.get(dishId);
+        }
+        return counter;
+    }
+
+    /**
+     * A database stock level minus what the database does not show yet:
+     * decrements queued since the last flush and takes still in flight.
+     */
+    private static int unseen(int dishId, int level) {
+        return level - get(PENDING, dishId) - get(IN_FLIGHT, dishId);
+    }
+
+    private static int get(Map<Integer, AtomicInteger> counts, int dishId) {
+        AtomicInteger quantity = counts.get(dishId);
+        return quantity != null ? quantity.get() : 0;
+    }
+
+    private static void add(Map<Integer, AtomicInteger> counts, int dishId, int quantity) {
+        counts.computeIfAbsent(dishId, id -> new AtomicInteger()).addAndGet(quantity);
+    }
+
+    private static void requeue(Map<Integer, Integer> batch) {
+        Util.logError("Stock write-back failed, will retry: " + batch);
+        for (Map.Entry<Integer, Integer> entry : batch.entrySet()) {
+            // Already settled; only the write is retried
+            add(PENDING, entry.getKey(), entry.getValue());
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package utils.stock;
+
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+import utils.Env;
+
+/**
+ * Starts the in-process stock counter when STOCK_COUNTER_ENABLED=true in
+ * .env, and writes back its queued decrements on undeploy. The write-back
+ * interval is STOCK_COUNTER_FLUSH_MS.
+ */
+@WebListener
+public class StockCounterListener implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        if (Env.getBoolean("STOCK_COUNTER_ENABLED", false)) {
+            StockCounter.start(Env.getLong("STOCK_COUNTER_FLUSH_MS", 500));
+        }
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        StockCounter.stop();
+    }
+}
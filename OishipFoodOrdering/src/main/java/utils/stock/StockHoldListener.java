@@ -0,0 +1,26 @@
+package utils.stock;
+
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+import utils.Env;
+
+/**
+ * Starts the stock hold sweeper at startup and stops it on undeploy. Hold
+ * time and sweep interval can be tuned with STOCK_HOLD_MINUTES and
+ * STOCK_HOLD_SWEEP_SECONDS in .env.
+ */
+@WebListener
+public class StockHoldListener implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        StockHolds.start(Env.getInt("STOCK_HOLD_MINUTES", 15),
+                Env.getLong("STOCK_HOLD_SWEEP_SECONDS", 60));
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        StockHolds.stop();
+    }
+}
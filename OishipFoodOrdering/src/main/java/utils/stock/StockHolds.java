@@ -0,0 +1,68 @@
+package utils.stock;
+
+import dao.StockReservationDAO;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hold time for stock reserved by unpaid online orders, and the background
+ * sweeper that releases holds once it runs out.
+ *
+ * A customer who leaves the PayOS page without paying or cancelling would
+ * otherwise keep the stock forever; the sweeper cancels such orders after
+ * STOCK_HOLD_MINUTES so the dishes can be sold again.
+ */
+public class StockHolds {
+
+    private static final int DEFAULT_HOLD_MINUTES = 15;
+
+    private static volatile int holdMinutes = DEFAULT_HOLD_MINUTES;
+    private static volatile ScheduledExecutorService sweeper;
+
+    private StockHolds() {
+    }
+
+    /**
+     * Start releasing expired holds in the background.
+     *
+     * @param minutes how long an unpaid online order may hold stock
+     * @param sweepSeconds seconds between sweeps, 0 to disable
+     */
+    public static synchronized void start(int minutes, long sweepSeconds) {
+        holdMinutes = minutes > 0 ? minutes : DEFAULT_HOLD_MINUTES;
+        if (sweepSeconds > 0 && sweeper == null) {
+            sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "stock-hold-sweeper");
+                t.setDaemon(true);
+                return t;
+            });
+            sweeper.scheduleWithFixedDelay(StockHolds::sweep, sweepSeconds, sweepSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    public static synchronized void stop() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+            sweeper = null;
+        }
+    }
+
+    public static int getHoldMinutes() {
+        return holdMinutes;
+    }
+
+    /**
+     * Release every expired hold now.
+     *
+     * @return number of orders released, or -1 on error
+     */
+    public static int sweep() {
+        try (StockReservationDAO dao = new StockReservationDAO()) {
+            return dao.releaseExpired();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+}
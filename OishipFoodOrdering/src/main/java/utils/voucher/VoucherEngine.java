@@ -0,0 +1,297 @@
+package utils.voucher;
+
+import dao.VoucherDAO;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import model.Voucher;
+import utils.Util;
+
+/**
+ * Decides which vouchers a customer can use and what they take off an order,
+ * without querying Voucher and [Order] for every cart view.
+ *
+ * Active vouchers that have not ended are kept in an index by code and by
+ * validity window, reloaded every {@link #INDEX_TTL_MS} and whenever staff
+ * edit vouchers ({@link #invalidate()}). The vouchers each customer has
+ * already used are loaded once per customer and kept up to date by
+ * {@link #recordRedemption(int, int)}. Uses left are counted by
+ * {@link VoucherPermits}, which is reset whenever the index is reloaded; they
+ * are only a hint, placing the order redeems the voucher with a conditional
+ * update in its transaction.
+ *
+ * A failed load is never cached: the previous index stays in use, and a
+ * customer whose used vouchers cannot be read gets no voucher until they can.
+ */
+public class VoucherEngine {
+
+    public static final String PERCENT = "%";
+
+    private static final long INDEX_TTL_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final int MAX_CUSTOMERS = 10_000;
+
+    private static final AtomicReference<VoucherIndex> INDEX = new AtomicReference<>();
+    private static final Object LOAD_LOCK = new Object();
+
+    // Least recently used customers are dropped first
+    private static final Map<Integer, Set<Integer>> USED = Collections.synchronizedMap(
+            new LinkedHashMap<Integer, Set<Integer>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Set<Integer>> eldest) {
+            return size() > MAX_CUSTOMERS;
+        }
+    });
+
+    private VoucherEngine() {
+    }
+
+    /**
+     * Drop the index so the next call reloads it. Call after vouchers are
+     * added, edited or deleted.
+     */
+    public static void invalidate() {
+        INDEX.set(null);
+    }
+
+    /**
+     * Vouchers the customer can use right now, whatever the order total.
+     */
+    public static List<Voucher> getAvailableVouchers(int customerId) {
+        Set<Integer> used = getUsedVoucherIds(customerId);
+        List<Voucher> available = new ArrayList<>();
+        if (used == null) {
+            return available;
+        }
+        for (Voucher voucher : getIndex().current()) {
+            if (!used.contains(voucher.getVoucherID()) && hasUsesLeft(voucher)) {
+                available.add(voucher);
+            }
+        }
+        return available;
+    }
+
+    /**
+     * Active voucher with the given code, whether or not its window is open.
+     *
+     * @return the voucher, or null if there is no such active voucher
+     */
+    public static Voucher findByCode(String code) {
+        return code == null ? null : getIndex().byCode.get(normalize(code));
+    }
+
+    /**
+     * Discount of a voucher for a customer's order.
+     *
+     * @return the discount, or null if the customer cannot use the voucher
+     * on this order
+     */
+    public static BigDecimal evaluate(int customerId, int voucherId, BigDecimal orderTotal) {
+        Voucher voucher = getIndex().byId.get(voucherId);
+        if (voucher == null || !isOpen(voucher, LocalDateTime.now()) || !hasUsesLeft(voucher)) {
+            return null;
+        }
+        Set<Integer> used = getUsedVoucherIds(customerId);
+        if (used == null || used.contains(voucherId)) {
+            return null;
+        }
+        return discountFor(voucher, orderTotal);
+    }
+
+    /**
+     * Same as {@link #evaluate(int, int, BigDecimal)} for a code.
+     */
+    public static BigDecimal evaluate(int customerId, String code, BigDecimal orderTotal) {
+        Voucher voucher = findByCode(code);
+        return voucher == null ? null : evaluate(customerId, voucher.getVoucherID(), orderTotal);
+    }
+
+    /**
+     * True if the voucher's window is open, it has uses left and the total
+     * reaches its minimum order value. Does not look at who is ordering.
+     */
+    public static boolean isUsable(Voucher voucher, BigDecimal orderTotal) {
+        return isOpen(voucher, LocalDateTime.now()) && hasUsesLeft(voucher)
+                && discountFor(voucher, orderTotal) != null;
+    }
+
+    /**
+     * What a voucher takes off an order total: a percentage capped at
+     * maxDiscountValue, or a fixed VND amount. Never more than the total.
+     *
+     * @return the discount, or null if the total is below minOrderValue
+     */
+    public static BigDecimal discountFor(Voucher voucher, BigDecimal orderTotal) {
+        if (voucher.getMinOrderValue() != null && orderTotal.compareTo(voucher.getMinOrderValue()) < 0) {
+            return null;
+        }
+        BigDecimal discount;
+        if (PERCENT.equals(voucher.getDiscountType())) {
+            discount = orderTotal.multiply(voucher.getDiscount())
+                    .divide(BigDecimal.valueOf(100), 2, RoundingMode.HALF_UP);
+            if (voucher.getMaxDiscountValue() != null && discount.compareTo(voucher.getMaxDiscountValue()) > 0) {
+                discount = voucher.getMaxDiscountValue();
+            }
+        } else {
+            discount = voucher.getDiscount() != null ? voucher.getDiscount() : BigDecimal.ZERO;
+        }
+        return discount.min(orderTotal);
+    }
+
+    /**
+     * A customer's order with this voucher was committed.
+     */
+    public static void recordRedemption(int customerId, int voucherId) {
+        Set<Integer> used = USED.get(customerId);
+        if (used != null) {
+            used.add(voucherId);
+        }
+    }
+
+    /**
+     * Active voucher with the given ID, whether or not its window is open.
+     *
+     * @return the voucher, or null if there is no such active voucher
+     */
+    public static Voucher findById(int voucherId) {
+        return getIndex().byId.get(voucherId);
+    }
+
+    private static boolean hasUsesLeft(Voucher voucher) {
+        return VoucherPermits.hasUsesLeft(voucher);
+    }
+
+    private static boolean isOpen(Voucher voucher, LocalDateTime now) {
+        return !now.isBefore(voucher.getStartDate()) && !now.isAfter(voucher.getEndDate());
+    }
+
+    /**
+     * @return the customer's used vouchers, or null if they cannot be read
+     */
+    private static Set<Integer> getUsedVoucherIds(int customerId) {
+        Set<Integer> used = USED.get(customerId);
+        if (used == null) {
+            used = ConcurrentHashMap.newKeySet();
+            try (VoucherDAO dao = new VoucherDAO()) {
+                used.addAll(dao.getUsedVoucherIds(customerId));
+            } catch (SQLException e) {
+                e.printStackTrace();
+                return null;
+            }
+            Set<Integer> raced = USED.putIfAbsent(customerId, used);
+            if (raced != null) {
+                used = raced;
+            }
+        }
+        return used;
+    }
+
+    private static VoucherIndex getIndex() {
+        VoucherIndex index = INDEX.get();
+        if (index != null && System.currentTimeMillis() - index.loadedAt < INDEX_TTL_MS) {
+            return index;
+        }
+        synchronized (LOAD_LOCK) {
+            index = INDEX.get();
+            if (index == null || System.currentTimeMillis() - index.loadedAt >= INDEX_TTL_MS) {
+                List<Voucher> vouchers;
+                try (VoucherDAO dao = new VoucherDAO()) {
+                    vouchers = dao.getActiveVouchers();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                    Util.logError("Failed to load vouchers: " + e.getMessage());
+                    // Tried again on the next call
+                    return index != null ? index : new VoucherIndex(Collections.emptyList());
+                }
+                index = new VoucherIndex(vouchers);
+                VoucherPermits.reconcile(vouchers);
+                INDEX.set(index);
+            }
+            return index;
+        }
+    }
+
+    private static String normalize(String code) {
+        // Voucher.code is compared case-insensitively by SQL Server
+        return code.trim().toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Active vouchers that have not ended, as loaded at one point in time.
+     */
+    private static class VoucherIndex {
+
+        private final long loadedAt = System.currentTimeMillis();
+        private final Map<String, Voucher> byCode = new HashMap<>();
+        private final Map<Integer, Voucher> byId = new HashMap<>();
+        // By startDate, so the vouchers open at a given time are a prefix
+        private final List<Voucher> byStart;
+        private final AtomicReference<Window> window = new AtomicReference<>();
+
+        VoucherIndex(List<Voucher> vouchers) {
+            for (Voucher voucher : vouchers) {
+                if (voucher.getCode() != null) {
+                    byCode.put(normalize(voucher.getCode()), voucher);
+                }
+                byId.put(voucher.getVoucherID(), voucher);
+            }
+            byStart = new ArrayList<>(vouchers);
+            byStart.sort(Comparator.comparing(Voucher::getStartDate));
+        }
+
+        /**
+         * Vouchers whose window is open now. Recomputed only when a window
+         * opens or closes.
+         */
+        List<Voucher> current() {
+            LocalDateTime now = LocalDateTime.now();
+            Window current = window.get();
+            if (current != null && now.isBefore(current.validUntil)) {
+                return current.vouchers;
+            }
+
+            List<Voucher> open = new ArrayList<>();
+            LocalDateTime validUntil = LocalDateTime.MAX;
+            for (Voucher voucher : byStart) {
+                if (now.isBefore(voucher.getStartDate())) {
+                    validUntil = min(validUntil, voucher.getStartDate());
+                    break;
+                }
+                if (!now.isAfter(voucher.getEndDate())) {
+                    open.add(voucher);
+                    validUntil = min(validUntil, voucher.getEndDate().plusNanos(1));
+                }
+            }
+            Window next = new Window(Collections.unmodifiableList(open), validUntil);
+            window.set(next);
+            return next.vouchers;
+        }
+
+        private static LocalDateTime min(LocalDateTime a, LocalDateTime b) {
+            return a.isBefore(b) ? a : b;
+        }
+    }
+
+    private static class Window {
+
+        private final List<Voucher> vouchers;
+        private final LocalDateTime validUntil;
+
+        Window(List<Voucher> vouchers, LocalDateTime validUntil) {
+            this.vouchers = vouchers;
+            this.validUntil = validUntil;
+        }
+    }
+}
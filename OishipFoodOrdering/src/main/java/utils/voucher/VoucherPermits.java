@@ -0,0 +1,115 @@
+package utils.voucher;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import model.Voucher;
+
+/**
+ * In-memory count of the uses each voucher has left, so that checkouts for a
+ * voucher that is used up are turned away without touching the Voucher row.
+ *
+ * A checkout takes a permit before it writes the order and either confirms it
+ * after the order committed or releases it when the order failed. Only as
+ * many checkouts as there are uses left reach the conditional update in
+ * VoucherRedemptionDAO, which stays the authority: a permit never lets a
+ * voucher be used more often than its usage limit, it only keeps the losers
+ * of a flash sale from queueing on the row lock. The counts are reset from
+ * the database every time the voucher index is reloaded.
+ */
+public class VoucherPermits {
+
+    private static final Map<Integer, Slots> SLOTS = new ConcurrentHashMap<>();
+
+    private VoucherPermits() {
+    }
+
+    /**
+     * Take one use of the voucher for a checkout in progress.
+     *
+     * @return false if no use is left
+     */
+    public static boolean tryAcquire(Voucher voucher) {
+        return slotsFor(voucher).tryAcquire();
+    }
+
+    /**
+     * The checkout that took a permit committed its order.
+     */
+    public static void confirm(int voucherId) {
+        Slots slots = SLOTS.get(voucherId);
+        if (slots != null) {
+            slots.inFlight.updateAndGet(n -> Math.max(0, n - 1));
+        }
+    }
+
+    /**
+     * The checkout that took a permit did not use the voucher.
+     */
+    public static void release(int voucherId) {
+        Slots slots = SLOTS.get(voucherId);
+        if (slots != null) {
+            slots.inFlight.updateAndGet(n -> Math.max(0, n - 1));
+            slots.taken.decrementAndGet();
+        }
+    }
+
+    /**
+     * True if the voucher has uses left, counting checkouts in progress.
+     */
+    public static boolean hasUsesLeft(Voucher voucher) {
+        Slots slots = slotsFor(voucher);
+        return slots.taken.get() < slots.limit;
+    }
+
+    /**
+     * Reset the counts from freshly loaded vouchers: used in the database
+     * plus checkouts still in progress. Vouchers that are gone are dropped.
+     */
+    static void reconcile(Collection<Voucher> vouchers) {
+        Map<Integer, Voucher> loaded = new HashMap<>();
+        for (Voucher voucher : vouchers) {
+            loaded.put(voucher.getVoucherID(), voucher);
+        }
+        SLOTS.keySet().retainAll(loaded.keySet());
+        for (Voucher voucher : loaded.values()) {
+            SLOTS.compute(voucher.getVoucherID(), (id, current) -> {
+                int inFlight = current != null ? current.inFlight.get() : 0;
+                return new Slots(voucher.getUsageLimit(), voucher.getUsedCount() + inFlight, inFlight);
+            });
+        }
+    }
+
+    private static Slots slotsFor(Voucher voucher) {
+        return SLOTS.computeIfAbsent(voucher.getVoucherID(),
+                id -> new Slots(voucher.getUsageLimit(), voucher.getUsedCount(), 0));
+    }
+
+    private static class Slots {
+
+        private final int limit;
+        // Uses committed in the database plus checkouts in progress
+        private final AtomicInteger taken;
+        private final AtomicInteger inFlight;
+
+        Slots(int limit, int taken, int inFlight) {
+            this.limit = limit;
+            this.taken = new AtomicInteger(taken);
+            this.inFlight = new AtomicInteger(inFlight);
+        }
+
+        boolean tryAcquire() {
+            int current;
+            do {
+                current = taken.get();
+                if (current >= limit) {
+                    return false;
+                }
+            } while (!taken.compareAndSet(current, current + 1));
+            inFlight.incrementAndGet();
+            return true;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 <%@ page contentType="text/html;charset=UTF-8" language="java" %>
 <%@ page import="java.util.List" %>
 <%@ page import="model.Cart" %>
+<%@ page import="model.CartSummary" %>
 <%@ taglib prefix="c" uri="http://java.sun.com/jsp/jstl/core" %>
 <!DOCTYPE html>
 <html>
@@ -500,8 +501,8 @@
                 </a>
 
                 <%
-                    List<Cart> cartItems = (List<Cart>) session.getAttribute("cartItems");
-                    int totalDishes = (cartItems != null) ? cartItems.size() : 0;
+                    CartSummary cartSummary = (CartSummary) session.getAttribute("cartSummary");
+                    int totalDishes = (cartSummary != null) ? cartSummary.getLineCount() : 0;
                 %>
 
                 <!-- Cart with badge -->
@@ -542,7 +543,7 @@
                                id="notificationDropdown" data-bs-toggle="dropdown" aria-expanded="false">
                                 <i class="fas fa-bell fa-lg" style="color: var(--oiship-orange);"></i>
                                 <span class="badge rounded-pill bg-danger position-absolute top-0 start-100 translate-middle" id="notificationBadge">
-                                    <%= ((List<?>) request.getAttribute("notifications")) != null ? ((List<?>) request.getAttribute("notifications")).size() : 0%>
+                                    <%= request.getAttribute("notificationCount") != null ? request.getAttribute("notificationCount") : 0%>
                                 </span>
                             </a>
                             <ul class="dropdown-menu dropdown-menu-end p-2" aria-labelledby="notificationDropdown" style="min-width: 350px; max-height: 400px; overflow-y: auto;">
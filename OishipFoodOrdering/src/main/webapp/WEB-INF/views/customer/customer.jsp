@@ -1,6 +1,7 @@
 <%@page import="java.util.Map"%>
 <%@page import="model.Review"%>
 <%@page import="model.Cart"%>
+<%@page import="model.CartSummary"%>
 <%@page import="java.util.List"%>
 <%@page import="model.Category"%>
 <%@page import="model.Dish"%>
@@ -897,8 +898,8 @@
                 </a>
 
                 <%
-                    List<Cart> cartItems = (List<Cart>) session.getAttribute("cartItems");
-                    int totalDishes = (cartItems != null) ? cartItems.size() : 0;
+                    CartSummary cartSummary = (CartSummary) session.getAttribute("cartSummary");
+                    int totalDishes = (cartSummary != null) ? cartSummary.getLineCount() : 0;
                 %>
 
                 <!-- Cart with badge -->
@@ -943,7 +944,7 @@
                                id="notificationDropdown" data-bs-toggle="dropdown" aria-expanded="false">
                                 <i class="fas fa-bell fa-lg"></i>
                                 <span class="badge rounded-pill bg-danger position-absolute top-0 start-100 translate-middle" id="notificationBadge">
-                                    <%= ((List<?>) request.getAttribute("notifications")) != null ? ((List<?>) request.getAttribute("notifications")).size() : 0%>
+                                    <%= request.getAttribute("notificationCount") != null ? request.getAttribute("notificationCount") : 0%>
                                 </span>
                             </a>
                             <ul class="dropdown-menu dropdown-menu-end p-2" aria-labelledby="notificationDropdown" style="min-width: 350px; max-height: 400px; overflow-y: auto;">
@@ -1642,5 +1643,6 @@
         </script>
 
         <script src="https://cdn.jsdelivr.net/npm/bootstrap@5.3.0/dist/js/bootstrap.bundle.min.js"></script>
+        <script src="<%= request.getContextPath()%>/js/customer-events.js" data-events-url="<%= request.getContextPath()%>/customer/events"></script>
     </body>
 </html>
\ No newline at end of file
@@ -4,6 +4,7 @@
 <%@ page import="model.OrderDetail" %>
 <%@ page import="model.Dish" %>
 <%@ page import="model.Cart" %>
+<%@ page import="model.CartSummary" %>
 <%@ page import="java.text.SimpleDateFormat" %>
 <%@ taglib prefix="c" uri="http://java.sun.com/jsp/jstl/core" %>
 <!DOCTYPE html>
@@ -723,8 +724,8 @@
                 </a>
 
                 <%
-                    List<Cart> cartItems = (List<Cart>) session.getAttribute("cartItems");
-                    int totalDishes = (cartItems != null) ? cartItems.size() : 0;
+                    CartSummary cartSummary = (CartSummary) session.getAttribute("cartSummary");
+                    int totalDishes = (cartSummary != null) ? cartSummary.getLineCount() : 0;
                 %>
 
                 <!-- Cart with badge -->
@@ -765,7 +766,7 @@
                                id="notificationDropdown" data-bs-toggle="dropdown" aria-expanded="false">
                                 <i class="fas fa-bell fa-lg" style="color: var(--oiship-orange);"></i>
                                 <span class="badge rounded-pill bg-danger position-absolute top-0 start-100 translate-middle" id="notificationBadge">
-                                    <%= ((List<?>) request.getAttribute("notifications")) != null ? ((List<?>) request.getAttribute("notifications")).size() : 0%>
+                                    <%= request.getAttribute("notificationCount") != null ? request.getAttribute("notificationCount") : 0%>
                                 </span>
                             </a>
                             <ul class="dropdown-menu dropdown-menu-end p-2" aria-labelledby="notificationDropdown" style="min-width: 350px; max-height: 400px; overflow-y: auto;">
@@ -933,15 +934,17 @@
                                     <!-- Payment Status -->
                                     <span class="status-label 
                                           <%= (order.getPaymentStatus() == 1) ? "status-success" : ((order.getPaymentStatus() == 2) ? "status-danger" : "status-pending")%>"
+                                          data-payment-status-of="<%= order.getOrderID()%>"
                                           style="min-height: 31px; display: inline-flex; align-items: center; justify-content: center;">
                                         <i class="fas fa-money-check-alt me-1"></i>
-                                        Payment: <%= (order.getPaymentStatus() == 1) ? "Paid" : ((order.getPaymentStatus() == 2) ? "Refunded" : "Unpaid")%>
+                                        Payment: <span class="status-text"><%= (order.getPaymentStatus() == 1) ? "Paid" : ((order.getPaymentStatus() == 2) ? "Refunded" : "Unpaid")%></span>
                                     </span>
                                     <!-- Order Status -->
                                     <span class="status-label <%= orderClass%>"
+                                          data-order-status-of="<%= order.getOrderID()%>"
                                           style="min-height: 31px; display: inline-flex; align-items: center; justify-content: center;">
                                         <i class="fas fa-info-circle me-1"></i>
-                                        <%= orderStatusText[os]%>
+                                        <span class="status-text"><%= orderStatusText[os]%></span>
                                     </span>
                                     <% if (order.getOrderStatus() == 0) {%>
                                     <form action="<%= request.getContextPath()%>/customer/cancel-order" method="post"
@@ -1094,6 +1097,7 @@
         </div>
 
         <script src="https://cdn.jsdelivr.net/npm/bootstrap@5.3.3/dist/js/bootstrap.bundle.min.js"></script>
+        <script src="<%= request.getContextPath()%>/js/customer-events.js" data-events-url="<%= request.getContextPath()%>/customer/events"></script>
 
         <!-- Enhanced Notification Scripts -->
         <script>
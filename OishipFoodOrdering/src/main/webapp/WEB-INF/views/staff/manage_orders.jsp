@@ -178,38 +178,49 @@
                 <h1>Manage Orders</h1>
 
                 <!-- Search + Filter + Create Order -->
-                <div class="row mb-4 align-items-end">
+                <form method="get" action="${pageContext.request.contextPath}/staff/manage-orders" class="row mb-4 g-2 align-items-end">
                     <!-- Search -->
-                    <div class="col-md-5">
-                        <div class="d-flex align-items-center">
-                            <label class="me-2 fw-semibold mb-0 flex-shrink-0">Search Customer:</label>
-                            <input type="text" id="customerSearch" class="form-control" placeholder="Enter customer name..." />
-                        </div>
+                    <div class="col-md-3">
+                        <label class="fw-semibold mb-1">Search Customer:</label>
+                        <input type="text" name="customer" value="<c:out value='${param.customer}'/>" class="form-control" placeholder="Enter customer name..." />
                     </div>
 
                     <!-- Filter -->
-                    <div class="col-md-5 mt-3 mt-md-0">
-                        <div class="d-flex align-items-center">
-                            <label class="me-2 fw-semibold mb-0 flex-shrink-0">Filter by Status:</label>
-                            <select id="statusFilter" class="form-select">
-                                <option value="all">All</option>
-                                <option value="0">Pending</option>
-                                <option value="1">Confirmed</option>
-                                <option value="2">Preparing</option>
-                                <option value="3">Out for Delivery</option>
-                                <option value="4">Delivered</option>
-                                <option value="5">Cancelled</option>
-                                <option value="6">Failed</option>
-                            </select>
-                        </div>
+                    <div class="col-md-2">
+                        <label class="fw-semibold mb-1">Status:</label>
+                        <select name="status" class="form-select">
+                            <option value="all">All</option>
+                            <c:forEach var="entry" items="${statusMap}">
+                                <option value="${entry.key}" <c:if test="${filter.orderStatus == entry.key}">selected</c:if>>${entry.value}</option>
+                            </c:forEach>
+                        </select>
                     </div>
-
-                    <!-- Create Order -->
-                    <div class="col-md-2 mt-3 mt-md-0 text-md-end">
-                        <a href="${pageContext.request.contextPath}/staff/manage-orders/create-order" class="btn btn-success w-100">
-                            <i class="bi bi-plus-circle"></i> Create
-                        </a>
+                    <div class="col-md-2">
+                        <label class="fw-semibold mb-1">Payment:</label>
+                        <select name="paymentStatus" class="form-select">
+                            <option value="all">All</option>
+                            <c:forEach var="entry" items="${paymentStatusMap}">
+                                <option value="${entry.key}" <c:if test="${filter.paymentStatus == entry.key}">selected</c:if>>${entry.value}</option>
+                            </c:forEach>
+                        </select>
+                    </div>
+                    <div class="col-md-2">
+                        <label class="fw-semibold mb-1">From:</label>
+                        <input type="date" name="from" value="${filter.fromDate}" class="form-control" />
+                    </div>
+                    <div class="col-md-2">
+                        <label class="fw-semibold mb-1">To:</label>
+                        <input type="date" name="to" value="${filter.toDate}" class="form-control" />
                     </div>
+                    <div class="col-md-1">
+                        <button type="submit" class="btn btn-primary w-100"><i class="bi bi-funnel"></i></button>
+                    </div>
+                </form>
+
+                <div class="mb-3 text-md-end">
+                    <a href="${pageContext.request.contextPath}/staff/manage-orders/create-order" class="btn btn-success">
+                        <i class="bi bi-plus-circle"></i> Create
+                    </a>
                 </div>
 
                 <!-- Orders Table -->
@@ -232,7 +243,7 @@
                         </thead>
                         <tbody id="orderTableBody" class="text-start">
                             <c:forEach var="o" items="${orders}" varStatus="status">
-                                <tr data-customer="${o.customerName}" data-status="${o.orderStatus}">
+                                <tr>
                                     <td class="text-center">${status.index + 1}</td>
                                     <td class="text-center">${o.orderID}</td>
                                     <td class="truncate">${o.customerName}</td>
@@ -357,82 +368,26 @@
                         </tbody>
                     </table>
                 </div>
-                <div id="orderPagination" class="mt-4 d-flex justify-content-center"></div>
+                <!-- Keyset pagination: "Older" continues after the last order shown -->
+                <c:url var="newestUrl" value="/staff/manage-orders">
+                    <c:param name="customer" value="${param.customer}" />
+                    <c:param name="status" value="${param.status}" />
+                    <c:param name="paymentStatus" value="${param.paymentStatus}" />
+                    <c:param name="from" value="${param.from}" />
+                    <c:param name="to" value="${param.to}" />
+                    <c:param name="size" value="${filter.pageSize}" />
+                </c:url>
+                <div id="orderPagination" class="mt-4 d-flex justify-content-center">
+                    <c:if test="${filter.hasCursor()}">
+                        <a class="btn btn-sm mx-1 btn-outline-primary" href="${newestUrl}">Newest</a>
+                    </c:if>
+                    <c:if test="${orderPage.hasNext}">
+                        <a class="btn btn-sm mx-1 btn-outline-primary" href="${newestUrl}&after=${orderPage.nextCreatedAt.time}&afterId=${orderPage.nextOrderID}">Older</a>
+                    </c:if>
+                </div>
 
             </div>
 
-            <!-- JavaScript Filter -->
-            <script>
-                document.addEventListener("DOMContentLoaded", () => {
-                    const rowsPerPage = 20;
-                    const tableBody = document.getElementById("orderTableBody");
-                    const rows = Array.from(tableBody.querySelectorAll("tr"));
-                    const pagination = document.getElementById("orderPagination");
-                    const searchInput = document.getElementById("customerSearch");
-                    const statusFilter = document.getElementById("statusFilter");
-
-                    function removeVietnameseTones(str) {
-                        return str.normalize("NFD").replace(/[\u0300-\u036f]/g, "")
-                                .replace(/đ/g, "d").replace(/Đ/g, "D");
-                    }
-
-                    function filterRows() {
-                        const keyword = removeVietnameseTones(searchInput.value.trim().toLowerCase());
-                        const selectedStatus = statusFilter.value;
-
-                        return rows.filter(row => {
-                            const customer = removeVietnameseTones(row.getAttribute("data-customer")?.toLowerCase() || "");
-                            const status = row.getAttribute("data-status");
-                            const matchSearch = customer.includes(keyword);
-                            const matchStatus = selectedStatus === "all" || status === selectedStatus;
-                            return matchSearch && matchStatus;
-                        });
-                    }
-
-                    function showPage(filteredRows, page) {
-                        tableBody.innerHTML = "";
-                        const start = (page - 1) * rowsPerPage;
-                        const end = start + rowsPerPage;
-                        const paginated = filteredRows.slice(start, end);
-                        paginated.forEach(row => tableBody.appendChild(row));
-                        renderPagination(filteredRows.length, page);
-                    }
-
-                    function renderPagination(totalRows, currentPage) {
-                        pagination.innerHTML = "";
-                        const totalPages = Math.ceil(totalRows / rowsPerPage);
-                        if (totalPages <= 1)
-                            return;
-
-                        const createButton = (text, page, active = false, disabled = false) => {
-                            const btn = document.createElement("button");
-                            btn.className = "btn btn-sm mx-1 " + (active ? "btn-primary" : "btn-outline-primary");
-                            btn.textContent = text;
-                            btn.disabled = disabled;
-                            btn.onclick = () => showPage(filterRows(), page);
-                            pagination.appendChild(btn);
-                        };
-
-                        createButton("Previous", currentPage - 1, false, currentPage === 1);
-                        for (let i = 1; i <= totalPages; i++) {
-                            createButton(i, i, i === currentPage);
-                        }
-                        createButton("Next", currentPage + 1, false, currentPage === totalPages);
-                    }
-
-                    function init() {
-                        showPage(filterRows(), 1);
-                    }
-
-                    // Event listeners
-                    searchInput.addEventListener("input", () => showPage(filterRows(), 1));
-                    statusFilter.addEventListener("change", () => showPage(filterRows(), 1));
-
-                    // Initialize
-                    init();
-                });
-            </script>
-
         </div>
     </body>
 </html>
\ No newline at end of file
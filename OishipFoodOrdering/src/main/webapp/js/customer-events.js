@@ -0,0 +1,54 @@
+// customer-events.js
+// Live order status, payment status and notification updates pushed from
+// /customer/events, so customer pages do not need reloading to see them.
+// The stream URL comes from the data-events-url attribute of the script tag.
+
+(function () {
+    const script = document.currentScript;
+    const url = script && script.dataset.eventsUrl;
+    if (!url || !window.EventSource) {
+        return;
+    }
+
+    const orderClasses = ['status-pending', 'status-confirmed', 'status-confirmed',
+        'status-delivery', 'status-success', 'status-danger', 'status-danger'];
+    const paymentClasses = ['status-pending', 'status-success', 'status-danger'];
+    const allClasses = ['status-pending', 'status-confirmed', 'status-delivery', 'status-success', 'status-danger'];
+
+    function updateStatus(attribute, classes, data) {
+        document.querySelectorAll('[' + attribute + '="' + data.orderID + '"]').forEach(label => {
+            const text = label.querySelector('.status-text');
+            if (text) {
+                text.textContent = data.statusText;
+            }
+            label.classList.remove(...allClasses);
+            if (classes[data.status]) {
+                label.classList.add(classes[data.status]);
+            }
+        });
+    }
+
+    const source = new EventSource(url);
+
+    source.addEventListener('order-status', event => {
+        const data = JSON.parse(event.data);
+        updateStatus('data-order-status-of', orderClasses, data);
+        // Only pending orders can be cancelled
+        if (data.status !== 0) {
+            document.querySelectorAll('form[action$="/customer/cancel-order"] input[name="orderID"][value="' + data.orderID + '"]')
+                    .forEach(input => input.form.remove());
+        }
+    });
+
+    source.addEventListener('payment-status', event => {
+        updateStatus('data-payment-status-of', paymentClasses, JSON.parse(event.data));
+    });
+
+    source.addEventListener('notification', () => {
+        const badge = document.getElementById('notificationBadge');
+        if (badge) {
+            badge.textContent = (parseInt(badge.textContent, 10) || 0) + 1;
+            badge.style.display = '';
+        }
+    });
+})();
@@ -49,7 +49,10 @@ CREATE TABLE Dish (
     DishDescription NVARCHAR(255),
     stock INT, -- Represents the number of ready-to-sell dishes
     isAvailable BIT DEFAULT 0, -- 1 = available, 0 = not available
-    FK_Dish_Category INT FOREIGN KEY REFERENCES Category(catID)
+    FK_Dish_Category INT FOREIGN KEY REFERENCES Category(catID),
+    ingredientCost DECIMAL(12,2), -- SUM(unitCost * quantity), maintained by DishDAO.recalculatePrices
+    price DECIMAL(12,2), -- (ingredientCost + opCost) * (1 + interestPercentage/100), rounded up to 1000 VND
+    priceVersion INT NOT NULL DEFAULT 0 -- Bumped every time price or ingredientCost changes
 );
 
 -- Ingredient table
@@ -73,7 +76,8 @@ CREATE TABLE Cart (
 	cartID INT IDENTITY(1,1) PRIMARY KEY,
 	quantity INT,
 	FK_Cart_Customer INT FOREIGN KEY REFERENCES Customer(customerID),
-	FK_Cart_Dish INT FOREIGN KEY REFERENCES Dish(DishID)
+	FK_Cart_Dish INT FOREIGN KEY REFERENCES Dish(DishID),
+	CONSTRAINT UQ_Cart_Customer_Dish UNIQUE (FK_Cart_Customer, FK_Cart_Dish)
 );
 
 -- Voucher table
@@ -124,7 +128,9 @@ CREATE TABLE [Order] (
     orderCreatedAt DATETIME DEFAULT GETDATE(),
     orderUpdatedAt DATETIME DEFAULT GETDATE(),
     FK_Order_Voucher INT FOREIGN KEY REFERENCES Voucher(voucherID),
-    FK_Order_Customer INT FOREIGN KEY REFERENCES Customer(customerID)
+    FK_Order_Customer INT FOREIGN KEY REFERENCES Customer(customerID),
+    -- Account behind the latest OrderStatusHistory / PaymentStatusHistory row
+    lastUpdatedBy INT NULL FOREIGN KEY REFERENCES Account(accountID)
 );
 
 CREATE TABLE OrderStatusHistory (
@@ -163,7 +169,61 @@ CREATE TABLE OrderDetail (
     ODID INT IDENTITY(1,1) PRIMARY KEY,
 	quantity INT,
     FK_OD_Order INT FOREIGN KEY REFERENCES [Order](orderID),
-    FK_OD_Dish INT FOREIGN KEY REFERENCES Dish(DishID)
+    FK_OD_Dish INT FOREIGN KEY REFERENCES Dish(DishID),
+    unitPrice DECIMAL(12,2), -- Selling price per unit when the order was placed
+    unitCost DECIMAL(12,2), -- opCost + ingredientCost per unit when the order was placed
+    profit DECIMAL(12,2) -- unitPrice - unitCost (per unit)
+);
+
+CREATE INDEX IX_Order_CreatedAt ON [Order](orderCreatedAt);
+CREATE INDEX IX_Order_Customer ON [Order](FK_Order_Customer, orderCreatedAt);
+
+-- Stock reserved per order and dish, maintained by StockReservationDAO
+CREATE TABLE StockReservation (
+    orderID INT NOT NULL FOREIGN KEY REFERENCES [Order](orderID) ON DELETE CASCADE,
+    dishID INT NOT NULL FOREIGN KEY REFERENCES Dish(DishID),
+    quantity INT NOT NULL,
+    -- 0 = Held (online payment pending, not yet taken off Dish.stock)
+    -- 1 = Committed (taken off Dish.stock)
+    -- 2 = Released (hold dropped or stock given back)
+    status TINYINT NOT NULL DEFAULT 0,
+    expiresAt DATETIME NOT NULL, -- End of the hold; unused once committed
+    createdAt DATETIME DEFAULT GETDATE(),
+    updatedAt DATETIME DEFAULT GETDATE(),
+    PRIMARY KEY (orderID, dishID)
+);
+
+CREATE INDEX IX_StockReservation_Held ON StockReservation(dishID, expiresAt) INCLUDE (quantity) WHERE status = 0;
+
+-- Daily dashboard rollups, maintained by DailyRollupDAO
+CREATE TABLE DailyOrderRollup (
+    rollupDate DATE PRIMARY KEY,
+    totalOrders INT NOT NULL DEFAULT 0,
+    -- Orders created that day by current orderStatus (0-6)
+    pendingOrders INT NOT NULL DEFAULT 0,
+    confirmedOrders INT NOT NULL DEFAULT 0,
+    preparingOrders INT NOT NULL DEFAULT 0,
+    deliveringOrders INT NOT NULL DEFAULT 0,
+    deliveredOrders INT NOT NULL DEFAULT 0,
+    cancelledOrders INT NOT NULL DEFAULT 0,
+    failedOrders INT NOT NULL DEFAULT 0,
+    -- ... and by current paymentStatus (0-2)
+    unpaidOrders INT NOT NULL DEFAULT 0,
+    paidOrders INT NOT NULL DEFAULT 0,
+    refundedOrders INT NOT NULL DEFAULT 0,
+    revenue DECIMAL(14,2) NOT NULL DEFAULT 0, -- SUM(amount) of paid orders
+    profit DECIMAL(14,2) NOT NULL DEFAULT 0, -- SUM(OrderDetail.profit * quantity) of paid orders
+    refunds DECIMAL(14,2) NOT NULL DEFAULT 0, -- SUM(amount) of refunded orders
+    income DECIMAL(14,2) NOT NULL DEFAULT 0, -- profit minus amount of refunded delivered orders
+    updatedAt DATETIME DEFAULT GETDATE()
+);
+
+CREATE TABLE DailyDishRollup (
+    rollupDate DATE,
+    dishID INT,
+    itemsSold INT NOT NULL DEFAULT 0, -- Excludes cancelled, failed and refunded orders
+    revenue DECIMAL(14,2) NOT NULL DEFAULT 0,
+    PRIMARY KEY (rollupDate, dishID)
 );
 
 CREATE TABLE Payment (
@@ -175,6 +235,62 @@ CREATE TABLE Payment (
     AmountPaid DECIMAL(18, 2) NOT NULL
 );
 
+-- At most one confirmed payment per order, whatever PayOS resends
+CREATE UNIQUE INDEX UQ_Payment_Order_Confirmed ON Payment(OrderID) WHERE IsConfirmed = 1;
+
+-- Verified PayOS webhooks waiting to be applied, maintained by PaymentWebhookDAO
+CREATE TABLE PaymentWebhookEvent (
+    eventID BIGINT IDENTITY(1,1) PRIMARY KEY,
+    orderCode BIGINT NOT NULL,
+    amount DECIMAL(18, 2) NULL,
+    reference NVARCHAR(100) NULL,
+    payload NVARCHAR(MAX) NULL,
+    -- 0 = Pending, 1 = Applied, 2 = Failed (gave up or unknown order)
+    status TINYINT NOT NULL DEFAULT 0,
+    attempts INT NOT NULL DEFAULT 0,
+    nextAttemptAt DATETIME NOT NULL DEFAULT GETDATE(),
+    lastError NVARCHAR(500) NULL,
+    receivedAt DATETIME NOT NULL DEFAULT GETDATE(),
+    processedAt DATETIME NULL,
+    CONSTRAINT UQ_PaymentWebhookEvent_OrderCode UNIQUE (orderCode)
+);
+
+CREATE INDEX IX_PaymentWebhookEvent_Due ON PaymentWebhookEvent(nextAttemptAt) WHERE status = 0;
+
+-- Order changes whose side effects (customer emails) are still to be carried
+-- out, written with the change and drained by OrderOutboxDispatcher
+CREATE TABLE OrderOutbox (
+    eventID BIGINT IDENTITY(1,1) PRIMARY KEY,
+    orderID INT NOT NULL FOREIGN KEY REFERENCES [Order](orderID) ON DELETE CASCADE,
+    eventType VARCHAR(30) NOT NULL, -- ORDER_STATUS or PAYMENT_STATUS
+    oldValue INT NULL,
+    newValue INT NULL,
+    status TINYINT NOT NULL DEFAULT 0, -- 0 = Pending, 1 = Done, 2 = Failed
+    attempts INT NOT NULL DEFAULT 0,
+    nextAttemptAt DATETIME NOT NULL DEFAULT GETDATE(),
+    lastError NVARCHAR(500) NULL,
+    createdAt DATETIME NOT NULL DEFAULT GETDATE(),
+    processedAt DATETIME NULL
+);
+
+CREATE INDEX IX_OrderOutbox_Due ON OrderOutbox(nextAttemptAt) WHERE status = 0;
+
+-- Emails waiting to be sent, drained by MailQueue; the body is cleared once sent
+CREATE TABLE MailOutbox (
+    mailID BIGINT IDENTITY(1,1) PRIMARY KEY,
+    recipients NVARCHAR(1000) NOT NULL, -- comma-separated
+    subject NVARCHAR(255) NOT NULL,
+    body NVARCHAR(MAX) NULL,
+    status TINYINT NOT NULL DEFAULT 0, -- 0 = Pending, 1 = Sent, 2 = Failed
+    attempts INT NOT NULL DEFAULT 0,
+    nextAttemptAt DATETIME NOT NULL DEFAULT GETDATE(),
+    lastError NVARCHAR(500) NULL,
+    createdAt DATETIME NOT NULL DEFAULT GETDATE(),
+    sentAt DATETIME NULL
+);
+
+CREATE INDEX IX_MailOutbox_Due ON MailOutbox(nextAttemptAt) WHERE status = 0;
+
 -- Review table
 CREATE TABLE Review (
     reviewID INT IDENTITY(1,1) PRIMARY KEY,
@@ -185,6 +301,8 @@ CREATE TABLE Review (
     FK_Review_Customer INT FOREIGN KEY REFERENCES Customer(customerID)
 );
 
+CREATE INDEX IX_Review_CreatedAt ON Review(reviewCreatedAt) INCLUDE (rating);
+
 -- OTP table
 CREATE TABLE OTP (
     otpID INT IDENTITY(1,1) PRIMARY KEY,
@@ -193,26 +311,36 @@ CREATE TABLE OTP (
     otpExpiresAt DATETIME,
     isUsed INT,
 	email NVARCHAR(100),
-	FK_OTP_Customer INT FOREIGN KEY REFERENCES Customer(customerID)
+	FK_OTP_Customer INT FOREIGN KEY REFERENCES Customer(customerID),
+    attempts INT NOT NULL DEFAULT 0 -- Wrong codes entered
 );
 
+-- Newest unused code of an email, and expired codes for OtpStore's purge
+CREATE INDEX IX_OTP_Email ON OTP(email, otpCreatedAt) WHERE isUsed = 0;
+CREATE INDEX IX_OTP_ExpiresAt ON OTP(otpExpiresAt);
+
 -- Notification table
 -- Example: close/open restaurant date, have new voucher,...   
 CREATE TABLE [Notification] (
     notID INT IDENTITY(1,1) PRIMARY KEY,
     notTitle NVARCHAR(255),
 	notDescription NVARCHAR(255),
-	FK_Notification_Account INT FOREIGN KEY REFERENCES Account(accountID) -- Admin/Staff add notification
+	FK_Notification_Account INT FOREIGN KEY REFERENCES Account(accountID), -- Admin/Staff add notification
+    createdAt DATETIME NOT NULL DEFAULT GETDATE() -- Customers who signed up later do not see it
+);
+
+-- Notifications are stored once for all customers. What a customer has read
+-- is a high-water mark (every notID up to readUpTo is read) plus one row per
+-- notification read above it, maintained by NotificationDAO.markAsRead
+CREATE TABLE NotificationReadMark (
+    customerID INT PRIMARY KEY FOREIGN KEY REFERENCES Customer(customerID),
+    readUpTo INT NOT NULL DEFAULT 0
 );
 
--- Notification - Customer
-CREATE TABLE CustomerNotification (
-		customerID INT,
-		notID INT,	
-		isRead BIT DEFAULT 0,
-		PRIMARY KEY (customerID, notID),
-		FOREIGN KEY (customerID) REFERENCES Customer(customerID),
-		FOREIGN KEY (notID) REFERENCES Notification(notID)
+CREATE TABLE NotificationRead (
+    customerID INT FOREIGN KEY REFERENCES Customer(customerID),
+    notID INT FOREIGN KEY REFERENCES Notification(notID) ON DELETE CASCADE,
+    PRIMARY KEY (customerID, notID)
 );
 
 -- Contact table
@@ -0,0 +1,302 @@
+-- Schema changes for databases created before the matching change to
+-- OishipFoodOrdering_DBScript.sql. Every block is safe to run more than once.
+USE Oiship
+GO
+
+-- Materialized dish price ----------------------------------------------------
+IF COL_LENGTH('Dish', 'ingredientCost') IS NULL
+    ALTER TABLE Dish ADD ingredientCost DECIMAL(12,2);
+IF COL_LENGTH('Dish', 'price') IS NULL
+    ALTER TABLE Dish ADD price DECIMAL(12,2);
+IF COL_LENGTH('Dish', 'priceVersion') IS NULL
+    ALTER TABLE Dish ADD priceVersion INT NOT NULL DEFAULT 0;
+GO
+
+-- Backfill (same formula as TotalPriceCalculator). Also run after loading
+-- ExampleData.sql, or use utils.admin.RecalculateDishPrices instead.
+UPDATE d
+SET d.ingredientCost = ROUND(x.recipeCost, 2),
+    d.price = CEILING((x.recipeCost + ISNULL(d.opCost, 0))
+                      * (1 + ISNULL(d.interestPercentage, 0) / 100) / 1000) * 1000,
+    d.priceVersion = d.priceVersion + 1
+FROM Dish d
+CROSS APPLY (
+    SELECT ISNULL(SUM(i.unitCost * di.quantity), 0) AS recipeCost
+    FROM DishIngredient di
+    JOIN Ingredient i ON i.ingredientID = di.ingredientID
+    WHERE di.dishID = d.DishID
+) x
+WHERE d.price IS NULL;
+GO
+
+-- Price captured on order lines ----------------------------------------------
+IF COL_LENGTH('OrderDetail', 'unitPrice') IS NULL
+    ALTER TABLE OrderDetail ADD unitPrice DECIMAL(12,2);
+IF COL_LENGTH('OrderDetail', 'unitCost') IS NULL
+    ALTER TABLE OrderDetail ADD unitCost DECIMAL(12,2);
+IF COL_LENGTH('OrderDetail', 'profit') IS NULL
+    ALTER TABLE OrderDetail ADD profit DECIMAL(12,2);
+GO
+
+-- Backfill old lines from the current dish price (the price they were sold at
+-- was never recorded). utils.admin.BackfillOrderDetailPrices does the same in
+-- batches.
+UPDATE od
+SET od.unitPrice = ISNULL(d.price, 0),
+    od.unitCost = ISNULL(d.opCost, 0) + ISNULL(d.ingredientCost, 0),
+    od.profit = ISNULL(d.price, 0) - (ISNULL(d.opCost, 0) + ISNULL(d.ingredientCost, 0))
+FROM OrderDetail od
+JOIN Dish d ON od.FK_OD_Dish = d.DishID
+WHERE od.unitPrice IS NULL;
+GO
+
+-- Daily dashboard rollups ----------------------------------------------------
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'IX_Order_CreatedAt')
+    CREATE INDEX IX_Order_CreatedAt ON [Order](orderCreatedAt);
+GO
+
+IF OBJECT_ID('DailyOrderRollup', 'U') IS NULL
+CREATE TABLE DailyOrderRollup (
+    rollupDate DATE PRIMARY KEY,
+    totalOrders INT NOT NULL DEFAULT 0,
+    -- Orders created that day by current orderStatus (0-6)
+    pendingOrders INT NOT NULL DEFAULT 0,
+    confirmedOrders INT NOT NULL DEFAULT 0,
+    preparingOrders INT NOT NULL DEFAULT 0,
+    deliveringOrders INT NOT NULL DEFAULT 0,
+    deliveredOrders INT NOT NULL DEFAULT 0,
+    cancelledOrders INT NOT NULL DEFAULT 0,
+    failedOrders INT NOT NULL DEFAULT 0,
+    -- ... and by current paymentStatus (0-2)
+    unpaidOrders INT NOT NULL DEFAULT 0,
+    paidOrders INT NOT NULL DEFAULT 0,
+    refundedOrders INT NOT NULL DEFAULT 0,
+    revenue DECIMAL(14,2) NOT NULL DEFAULT 0, -- SUM(amount) of paid orders
+    profit DECIMAL(14,2) NOT NULL DEFAULT 0, -- SUM(OrderDetail.profit * quantity) of paid orders
+    refunds DECIMAL(14,2) NOT NULL DEFAULT 0, -- SUM(amount) of refunded orders
+    income DECIMAL(14,2) NOT NULL DEFAULT 0, -- profit minus amount of refunded delivered orders
+    updatedAt DATETIME DEFAULT GETDATE()
+);
+GO
+
+IF OBJECT_ID('DailyDishRollup', 'U') IS NULL
+CREATE TABLE DailyDishRollup (
+    rollupDate DATE,
+    dishID INT,
+    itemsSold INT NOT NULL DEFAULT 0, -- Excludes cancelled, failed and refunded orders
+    revenue DECIMAL(14,2) NOT NULL DEFAULT 0,
+    PRIMARY KEY (rollupDate, dishID)
+);
+GO
+
+-- Then run utils.admin.RebuildDailyRollup to fill both tables from the order
+-- history.
+
+-- Dashboard stats ------------------------------------------------------------
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'IX_Review_CreatedAt')
+    CREATE INDEX IX_Review_CreatedAt ON Review(reviewCreatedAt) INCLUDE (rating);
+GO
+
+-- Order management list ------------------------------------------------------
+IF COL_LENGTH('Order', 'lastUpdatedBy') IS NULL
+    ALTER TABLE [Order] ADD lastUpdatedBy INT NULL FOREIGN KEY REFERENCES Account(accountID);
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'IX_Order_Customer')
+    CREATE INDEX IX_Order_Customer ON [Order](FK_Order_Customer, orderCreatedAt);
+GO
+
+-- Backfill from the latest status or payment change of each order
+UPDATE o
+SET o.lastUpdatedBy = h.changedByAccountID
+FROM [Order] o
+CROSS APPLY (
+    SELECT TOP 1 x.changedByAccountID
+    FROM (
+        SELECT changedByAccountID, changeTime FROM OrderStatusHistory WHERE orderID = o.orderID
+        UNION ALL
+        SELECT changedByAccountID, changeTime FROM PaymentStatusHistory WHERE orderID = o.orderID
+    ) x
+    ORDER BY x.changeTime DESC
+) h
+WHERE o.lastUpdatedBy IS NULL;
+GO
+
+-- Stock reservations -----------------------------------------------------------
+-- Orders placed before this change have no rows, so cancelling them does not
+-- give stock back (same as before).
+IF OBJECT_ID('StockReservation', 'U') IS NULL
+CREATE TABLE StockReservation (
+    orderID INT NOT NULL FOREIGN KEY REFERENCES [Order](orderID) ON DELETE CASCADE,
+    dishID INT NOT NULL FOREIGN KEY REFERENCES Dish(DishID),
+    quantity INT NOT NULL,
+    status TINYINT NOT NULL DEFAULT 0, -- 0 = Held, 1 = Committed, 2 = Released
+    expiresAt DATETIME NOT NULL,
+    createdAt DATETIME DEFAULT GETDATE(),
+    updatedAt DATETIME DEFAULT GETDATE(),
+    PRIMARY KEY (orderID, dishID)
+);
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'IX_StockReservation_Held')
+    CREATE INDEX IX_StockReservation_Held ON StockReservation(dishID, expiresAt) INCLUDE (quantity) WHERE status = 0;
+GO
+
+-- One cart line per customer and dish ------------------------------------------
+-- Merge duplicate lines into the oldest one before adding the constraint.
+UPDATE c
+SET c.quantity = x.total
+FROM Cart c
+JOIN (
+    SELECT MIN(cartID) AS keepID, SUM(quantity) AS total
+    FROM Cart
+    GROUP BY FK_Cart_Customer, FK_Cart_Dish
+    HAVING COUNT(*) > 1
+) x ON c.cartID = x.keepID;
+GO
+
+DELETE c
+FROM Cart c
+WHERE EXISTS (
+    SELECT 1 FROM Cart k
+    WHERE k.FK_Cart_Customer = c.FK_Cart_Customer AND k.FK_Cart_Dish = c.FK_Cart_Dish AND k.cartID < c.cartID
+);
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'UQ_Cart_Customer_Dish')
+    ALTER TABLE Cart ADD CONSTRAINT UQ_Cart_Customer_Dish UNIQUE (FK_Cart_Customer, FK_Cart_Dish);
+GO
+
+-- PayOS webhook inbox ----------------------------------------------------------
+IF OBJECT_ID('PaymentWebhookEvent', 'U') IS NULL
+CREATE TABLE PaymentWebhookEvent (
+    eventID BIGINT IDENTITY(1,1) PRIMARY KEY,
+    orderCode BIGINT NOT NULL,
+    amount DECIMAL(18, 2) NULL,
+    reference NVARCHAR(100) NULL,
+    payload NVARCHAR(MAX) NULL,
+    status TINYINT NOT NULL DEFAULT 0, -- 0 = Pending, 1 = Applied, 2 = Failed
+    attempts INT NOT NULL DEFAULT 0,
+    nextAttemptAt DATETIME NOT NULL DEFAULT GETDATE(),
+    lastError NVARCHAR(500) NULL,
+    receivedAt DATETIME NOT NULL DEFAULT GETDATE(),
+    processedAt DATETIME NULL,
+    CONSTRAINT UQ_PaymentWebhookEvent_OrderCode UNIQUE (orderCode)
+);
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'IX_PaymentWebhookEvent_Due')
+    CREATE INDEX IX_PaymentWebhookEvent_Due ON PaymentWebhookEvent(nextAttemptAt) WHERE status = 0;
+GO
+
+-- Orders paid twice by repeated webhooks keep their payment rows; look them up
+-- with the query below and clean them up by hand, then run this block again.
+--   SELECT OrderID, COUNT(*) FROM Payment WHERE IsConfirmed = 1 GROUP BY OrderID HAVING COUNT(*) > 1
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'UQ_Payment_Order_Confirmed')
+   AND NOT EXISTS (SELECT 1 FROM Payment WHERE IsConfirmed = 1 GROUP BY OrderID HAVING COUNT(*) > 1)
+    CREATE UNIQUE INDEX UQ_Payment_Order_Confirmed ON Payment(OrderID) WHERE IsConfirmed = 1;
+GO
+
+-- Order outbox -----------------------------------------------------------------
+IF OBJECT_ID('OrderOutbox', 'U') IS NULL
+CREATE TABLE OrderOutbox (
+    eventID BIGINT IDENTITY(1,1) PRIMARY KEY,
+    orderID INT NOT NULL FOREIGN KEY REFERENCES [Order](orderID) ON DELETE CASCADE,
+    eventType VARCHAR(30) NOT NULL, -- ORDER_STATUS or PAYMENT_STATUS
+    oldValue INT NULL,
+    newValue INT NULL,
+    status TINYINT NOT NULL DEFAULT 0, -- 0 = Pending, 1 = Done, 2 = Failed
+    attempts INT NOT NULL DEFAULT 0,
+    nextAttemptAt DATETIME NOT NULL DEFAULT GETDATE(),
+    lastError NVARCHAR(500) NULL,
+    createdAt DATETIME NOT NULL DEFAULT GETDATE(),
+    processedAt DATETIME NULL
+);
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'IX_OrderOutbox_Due')
+    CREATE INDEX IX_OrderOutbox_Due ON OrderOutbox(nextAttemptAt) WHERE status = 0;
+GO
+
+-- Broadcast notifications ------------------------------------------------------
+-- Notifications are stored once; CustomerNotification (one row per customer and
+-- notification) is converted to a read mark plus exceptions and dropped.
+-- Existing notifications get the current time, so customers who sign up from
+-- now on do not see them.
+IF COL_LENGTH('Notification', 'createdAt') IS NULL
+    ALTER TABLE [Notification] ADD createdAt DATETIME NOT NULL CONSTRAINT DF_Notification_CreatedAt DEFAULT GETDATE();
+GO
+
+IF OBJECT_ID('NotificationReadMark', 'U') IS NULL
+CREATE TABLE NotificationReadMark (
+    customerID INT PRIMARY KEY FOREIGN KEY REFERENCES Customer(customerID),
+    readUpTo INT NOT NULL DEFAULT 0
+);
+GO
+
+IF OBJECT_ID('NotificationRead', 'U') IS NULL
+CREATE TABLE NotificationRead (
+    customerID INT FOREIGN KEY REFERENCES Customer(customerID),
+    notID INT FOREIGN KEY REFERENCES Notification(notID) ON DELETE CASCADE,
+    PRIMARY KEY (customerID, notID)
+);
+GO
+
+IF OBJECT_ID('CustomerNotification', 'U') IS NOT NULL
+BEGIN
+    -- Read up to just below the customer's oldest unread notification; a
+    -- customer with nothing unread has read everything
+    INSERT INTO NotificationReadMark (customerID, readUpTo)
+    SELECT c.customerID,
+           ISNULL((SELECT MIN(cn.notID) - 1 FROM CustomerNotification cn
+                   WHERE cn.customerID = c.customerID AND cn.isRead = 0),
+                  (SELECT ISNULL(MAX(notID), 0) FROM [Notification]))
+    FROM Customer c
+    WHERE NOT EXISTS (SELECT 1 FROM NotificationReadMark m WHERE m.customerID = c.customerID);
+
+    -- Above the mark, everything that was read or never sent to the customer
+    INSERT INTO NotificationRead (customerID, notID)
+    SELECT m.customerID, n.notID
+    FROM NotificationReadMark m
+    JOIN [Notification] n ON n.notID > m.readUpTo
+    WHERE NOT EXISTS (SELECT 1 FROM CustomerNotification cn
+                      WHERE cn.customerID = m.customerID AND cn.notID = n.notID AND cn.isRead = 0)
+      AND NOT EXISTS (SELECT 1 FROM NotificationRead r
+                      WHERE r.customerID = m.customerID AND r.notID = n.notID);
+
+    DROP TABLE CustomerNotification;
+END
+GO
+
+-- Mail outbox ------------------------------------------------------------------
+IF OBJECT_ID('MailOutbox', 'U') IS NULL
+CREATE TABLE MailOutbox (
+    mailID BIGINT IDENTITY(1,1) PRIMARY KEY,
+    recipients NVARCHAR(1000) NOT NULL, -- comma-separated
+    subject NVARCHAR(255) NOT NULL,
+    body NVARCHAR(MAX) NULL,
+    status TINYINT NOT NULL DEFAULT 0, -- 0 = Pending, 1 = Sent, 2 = Failed
+    attempts INT NOT NULL DEFAULT 0,
+    nextAttemptAt DATETIME NOT NULL DEFAULT GETDATE(),
+    lastError NVARCHAR(500) NULL,
+    createdAt DATETIME NOT NULL DEFAULT GETDATE(),
+    sentAt DATETIME NULL
+);
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'IX_MailOutbox_Due')
+    CREATE INDEX IX_MailOutbox_Due ON MailOutbox(nextAttemptAt) WHERE status = 0;
+GO
+
+-- OTP attempts and purge -------------------------------------------------------
+IF COL_LENGTH('OTP', 'attempts') IS NULL
+    ALTER TABLE OTP ADD attempts INT NOT NULL DEFAULT 0;
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'IX_OTP_Email')
+    CREATE INDEX IX_OTP_Email ON OTP(email, otpCreatedAt) WHERE isUsed = 0;
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'IX_OTP_ExpiresAt')
+    CREATE INDEX IX_OTP_ExpiresAt ON OTP(otpExpiresAt);
+GO